@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.benchmark;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.EntitlementCurator;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.pki.X509ByteExtensionWrapper;
+import org.candlepin.pki.X509ExtensionWrapper;
+import org.candlepin.pki.impl.BouncyCastlePKIUtility;
+import org.candlepin.pki.impl.DefaultSubjectKeyIdentifierWriter;
+import org.candlepin.util.X509V3ExtensionUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for entitlement certificate generation: building the v3 entitlement
+ * payload and signing the certificate itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class CertificateBenchmark {
+
+    /** Content sets on each provided product. */
+    @Param({ "10", "200" })
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    public int contentPerProduct;
+
+    private X509V3ExtensionUtil extensionUtil;
+    private BouncyCastlePKIUtility pki;
+
+    private Product sku;
+    private Entitlement entitlement;
+    private List<org.candlepin.model.dto.Product> productModels;
+    private Set<X509ExtensionWrapper> extensions;
+    private Set<X509ByteExtensionWrapper> byteExtensions;
+    private KeyPair clientKeyPair;
+    private Date start;
+    private Date end;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException, IOException {
+        Fixtures fixtures = new Fixtures();
+        extensionUtil = new X509V3ExtensionUtil(Fixtures.createConfig(), new EntitlementCurator(null));
+        pki = new BouncyCastlePKIUtility(new Fixtures.GeneratedPKIReader(),
+            new DefaultSubjectKeyIdentifierWriter(), Fixtures.createConfig());
+
+        List<Product> engProducts = new ArrayList<Product>();
+        for (int i = 0; i < 5; i++) {
+            engProducts.add(fixtures.createEngProduct(contentPerProduct));
+        }
+
+        sku = fixtures.createMktProduct(null);
+        Pool pool = fixtures.createPool(sku, new HashSet<Product>(engProducts), 100);
+        Consumer consumer = fixtures.createConsumer(engProducts);
+        entitlement = fixtures.attach(consumer, pool, 1);
+
+        Set<Product> products = new HashSet<Product>(engProducts);
+        products.add(sku);
+        productModels = extensionUtil.createProducts(sku, products, "/prefix", null, consumer,
+            entitlement);
+
+        extensions = extensionUtil.getExtensions(entitlement, "/prefix", null);
+        byteExtensions = extensionUtil.getByteExtensions(sku, productModels, entitlement, "/prefix",
+            null);
+        clientKeyPair = pki.generateNewKeyPair();
+        start = pool.getStartDate();
+        end = pool.getEndDate();
+    }
+
+    @Benchmark
+    public byte[] createEntitlementDataPayload() throws IOException {
+        return extensionUtil.createEntitlementDataPayload(sku, productModels, entitlement,
+            "/prefix", null);
+    }
+
+    @Benchmark
+    public X509Certificate createX509Certificate() throws GeneralSecurityException, IOException {
+        return pki.createX509Certificate("CN=" + entitlement.getId(), extensions, byteExtensions,
+            start, end, clientKeyPair, BigInteger.valueOf(System.nanoTime()), null);
+    }
+}
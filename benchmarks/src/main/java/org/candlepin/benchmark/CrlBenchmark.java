@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.benchmark;
+
+import org.candlepin.pki.X509CRLEntryWrapper;
+import org.candlepin.pki.impl.BouncyCastlePKIUtility;
+import org.candlepin.pki.impl.DefaultSubjectKeyIdentifierWriter;
+import org.candlepin.util.X509CRLStreamWriter;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks rewriting a large CRL with X509CRLStreamWriter, the way the CRL
+ * job appends newly revoked serials.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CrlBenchmark {
+
+    /** Entries already on the CRL. */
+    @Param({ "10000", "100000" })
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    public int crlSize;
+
+    /** Serials added on each rewrite. */
+    @Param({ "100" })
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    public int added;
+
+    private byte[] crl;
+    private RSAPrivateKey key;
+    private X509Certificate ca;
+    private long nextSerial;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.GeneratedPKIReader reader = new Fixtures.GeneratedPKIReader();
+        key = (RSAPrivateKey) reader.getCaKey();
+        ca = reader.getCACert();
+
+        BouncyCastlePKIUtility pki = new BouncyCastlePKIUtility(reader,
+            new DefaultSubjectKeyIdentifierWriter(), Fixtures.createConfig());
+        List<X509CRLEntryWrapper> entries = new ArrayList<X509CRLEntryWrapper>(crlSize);
+        Date revoked = new Date();
+        for (int i = 0; i < crlSize; i++) {
+            entries.add(new X509CRLEntryWrapper(BigInteger.valueOf(1000000L + i), revoked));
+        }
+        crl = pki.createX509CRL(entries, BigInteger.ONE).getEncoded();
+        nextSerial = 1000000L + crlSize;
+    }
+
+    @Benchmark
+    public void appendToCrl() throws Exception {
+        X509CRLStreamWriter writer = new X509CRLStreamWriter(new ByteArrayInputStream(crl), key, ca);
+        writer.preScan(new ByteArrayInputStream(crl));
+
+        Date now = new Date();
+        for (int i = 0; i < added; i++) {
+            writer.add(BigInteger.valueOf(nextSerial++), now, CRLReason.privilegeWithdrawn);
+        }
+
+        writer.lock();
+        writer.write(new NullOutputStream());
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.benchmark;
+
+import org.candlepin.TestingModules;
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.guice.CandlepinRequestScope;
+import org.candlepin.junit.CandlepinLiquibaseResource;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
+import org.candlepin.model.Owner;
+import org.candlepin.model.VirtConsumerMap;
+import org.candlepin.resteasy.parameter.KeyValueParameter;
+import org.candlepin.util.Util;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Benchmarks consumer fact searches and guest lookups against an in-memory database
+ * populated with a synthetic org. The legacy variants run the queries that matched
+ * lower cased values in cp_consumer_facts, so a run shows what the fact index buys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FactSearchBenchmark {
+
+    private static final String LEGACY_FACT_SEARCH =
+        "select c.id from cp_consumer c where c.owner_id = :ownerid and exists (" +
+        "select 1 from cp_consumer_facts f where f.cp_consumer_id = c.id " +
+        "and f.mapkey = :key and lower(f.element) like :value)";
+
+    private static final String LEGACY_GUEST_LOOKUP =
+        "select cp_consumer.uuid from cp_consumer " +
+        "inner join cp_consumer_facts " +
+        "on cp_consumer.id = cp_consumer_facts.cp_consumer_id " +
+        "where cp_consumer_facts.mapkey = 'virt.uuid' and " +
+        "lower(cp_consumer_facts.element) in (:guestids) " +
+        "and cp_consumer.owner_id = :ownerid " +
+        "order by cp_consumer.updated desc";
+
+    /** Consumers in the org. */
+    @Param({ "1000", "10000" })
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    public int consumers;
+
+    /** Facts on each consumer, besides the virt facts. */
+    @Param({ "30" })
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    public int facts;
+
+    /** Guest ids resolved per lookup, as a hypervisor check-in would report. */
+    @Param({ "50" })
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    public int guests;
+
+    private CandlepinLiquibaseResource liquibase;
+    private CandlepinRequestScope requestScope;
+    private ConsumerCurator consumerCurator;
+    private EntityManager em;
+    private Owner owner;
+    private Set<String> guestIds;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        liquibase = new CandlepinLiquibaseResource();
+        liquibase.createLiquibaseSchema();
+        liquibase.runUpdate();
+
+        Injector parent = Guice.createInjector(new TestingModules.JpaModule());
+        Injector injector = parent.createChildInjector(
+            new TestingModules.StandardTest(new CandlepinCommonTestConfig()));
+        requestScope = injector.getInstance(CandlepinRequestScope.class);
+        requestScope.enter();
+
+        consumerCurator = injector.getInstance(ConsumerCurator.class);
+        em = injector.getInstance(EntityManager.class);
+        populate();
+
+        guestIds = new HashSet<String>();
+        for (int i = 0; i < guests; i++) {
+            // Reported in upper case, the way some hypervisors send them
+            guestIds.add(guestUuid(i * (consumers / guests)).toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    private void populate() {
+        em.getTransaction().begin();
+        owner = new Owner("fact-benchmark-org", "Fact Benchmark Org");
+        em.persist(owner);
+        ConsumerType type = new ConsumerType(ConsumerTypeEnum.SYSTEM);
+        em.persist(type);
+
+        for (int i = 0; i < consumers; i++) {
+            Consumer consumer = new Consumer("system-" + i, "benchmark", owner, type);
+            for (int f = 0; f < facts; f++) {
+                consumer.setFact("fact." + f, "Value-" + f + "-" + i);
+            }
+            consumer.setFact("virt.is_guest", "true");
+            consumer.setFact("virt.uuid", guestUuid(i));
+            em.persist(consumer);
+
+            if (i % 200 == 199) {
+                em.flush();
+                em.clear();
+                owner = em.merge(owner);
+                type = em.merge(type);
+            }
+        }
+        em.getTransaction().commit();
+        em.clear();
+    }
+
+    private static String guestUuid(int i) {
+        return String.format("%08x-0000-4000-8000-%012x", i, (long) i);
+    }
+
+    @TearDown
+    public void tearDown() {
+        requestScope.exit();
+        liquibase.dropPublicSchema();
+        liquibase.dropLiquibaseSchema();
+    }
+
+    private int nextConsumer() {
+        next = (next + 7919) % consumers;
+        return next;
+    }
+
+    @Benchmark
+    public Object searchFactEquals() {
+        int i = nextConsumer();
+        return search("fact.7", "value-7-" + i);
+    }
+
+    @Benchmark
+    public Object searchFactEqualsLegacy() {
+        int i = nextConsumer();
+        return legacySearch("fact.7", "value-7-" + i);
+    }
+
+    @Benchmark
+    public Object searchFactWildcard() {
+        int i = nextConsumer();
+        return search("fact.7", "value-7-" + i + "*");
+    }
+
+    @Benchmark
+    public Object searchFactWildcardLegacy() {
+        int i = nextConsumer();
+        return legacySearch("fact.7", "value-7-" + i + "%");
+    }
+
+    @Benchmark
+    public VirtConsumerMap guestLookup() {
+        return consumerCurator.getGuestConsumersMap(owner, guestIds);
+    }
+
+    @Benchmark
+    public Object guestLookupLegacy() {
+        List<String> possibleGuestIds = Util.getPossibleUuids(
+            guestIds.toArray(new String[guestIds.size()]));
+        return em.createNativeQuery(LEGACY_GUEST_LOOKUP)
+            .setParameter("guestids", possibleGuestIds)
+            .setParameter("ownerid", owner.getId())
+            .getResultList();
+    }
+
+    @Benchmark
+    public Consumer findByVirtUuid() {
+        return consumerCurator.findByVirtUuid(
+            guestUuid(nextConsumer()).toUpperCase(Locale.ENGLISH), owner.getId());
+    }
+
+    private Object search(String key, String value) {
+        List<KeyValueParameter> filters = new ArrayList<KeyValueParameter>();
+        filters.add(new FactParameter(key, value));
+        return consumerCurator.searchOwnerConsumers(owner, null, null, null, null, filters,
+            null, null, null, null).getPageData();
+    }
+
+    private Object legacySearch(String key, String value) {
+        return em.createNativeQuery(LEGACY_FACT_SEARCH)
+            .setParameter("ownerid", owner.getId())
+            .setParameter("key", key)
+            .setParameter("value", value.toLowerCase(Locale.ENGLISH))
+            .getResultList();
+    }
+
+    /**
+     * A fact filter built from an already split key and value, as the REST layer would
+     * hand it to the curator after parsing "key:value".
+     */
+    private static class FactParameter extends KeyValueParameter {
+        private final String key;
+        private final String value;
+
+        FactParameter(String key, String value) {
+            super("fact", key + ":" + value);
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String key() {
+            return key;
+        }
+
+        @Override
+        public String value() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.benchmark;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerInstalledProduct;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
+import org.candlepin.model.Content;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.model.ProductContent;
+import org.candlepin.model.Rules;
+import org.candlepin.model.RulesCurator;
+import org.candlepin.pki.PKIReader;
+import org.candlepin.policy.js.JsRunnerProvider;
+import org.candlepin.policy.js.JsRunnerRequestCache;
+import org.candlepin.util.Util;
+
+import com.google.inject.Provider;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.x509.X509V3CertificateGenerator;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Generated, deterministic data for the benchmarks. Nothing here touches a
+ * database; the few curators the code under test needs are replaced with
+ * in-memory stand-ins.
+ */
+public class Fixtures {
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    // Fixed seed so every run benchmarks the same data.
+    private final Random random = new Random(20160301L);
+    private final Owner owner;
+    private int sequence;
+
+    public Fixtures() {
+        owner = new Owner("benchmark-org", "Benchmark Org");
+        owner.setId("benchmark-org-id");
+    }
+
+    public Owner getOwner() {
+        return owner;
+    }
+
+    private String nextId(String prefix) {
+        return prefix + "-" + (++sequence);
+    }
+
+    public static Date yearsFromNow(int years) {
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.YEAR, years);
+        return cal.getTime();
+    }
+
+    /**
+     * @param contentCount number of content sets attached to the product
+     * @return an engineering product with the given amount of content
+     */
+    public Product createEngProduct(int contentCount) {
+        String id = Integer.toString(10000 + (++sequence));
+        Product product = new Product(id, "Engineering Product " + id, owner);
+        for (int i = 0; i < contentCount; i++) {
+            String contentId = nextId("content");
+            Content content = new Content(owner, contentId, contentId, contentId, "yum",
+                "benchmark", "/content/dist/" + id + "/" + i + "/$releasever/$basearch/os",
+                "/gpg/" + id, "x86_64");
+            product.addProductContent(new ProductContent(product, content, random.nextBoolean()));
+        }
+        return product;
+    }
+
+    /**
+     * @return a marketing product with the attributes the rules look at
+     */
+    public Product createMktProduct(String stackId) {
+        String id = nextId("SKU");
+        Product product = new Product(id, "Marketing Product " + id, owner);
+        product.setAttribute("type", "MKT");
+        product.setAttribute("sockets", Integer.toString(1 + random.nextInt(4)));
+        product.setAttribute("support_level", random.nextBoolean() ? "Premium" : "Standard");
+        product.setAttribute("support_type", "L1-L3");
+        product.setAttribute("multi-entitlement", "yes");
+        if (stackId != null) {
+            product.setAttribute("stacking_id", stackId);
+        }
+        return product;
+    }
+
+    public Pool createPool(Product sku, Set<Product> provided, long quantity) {
+        String subId = nextId("sub");
+        Pool pool = new Pool(owner, sku, provided, quantity, yearsFromNow(-1),
+            yearsFromNow(1 + random.nextInt(3)), "contract-" + subId, "account-1", "order-" + subId);
+        pool.setId(nextId("pool"));
+        pool.setCreated(new Date());
+        pool.setUpdated(new Date());
+        pool.setConsumed(quantity / 2);
+        return pool;
+    }
+
+    /**
+     * @param count number of pools to build
+     * @param engProducts products the pools provide, a few each
+     * @return the pools, a third of them stackable
+     */
+    public List<Pool> createPools(int count, List<Product> engProducts) {
+        List<Pool> pools = new ArrayList<Pool>(count);
+        for (int i = 0; i < count; i++) {
+            Set<Product> provided = new HashSet<Product>();
+            for (int j = 0; j < 3; j++) {
+                provided.add(engProducts.get(random.nextInt(engProducts.size())));
+            }
+            String stackId = (i % 3 == 0) ? "stack-" + (i % 5) : null;
+            pools.add(createPool(createMktProduct(stackId), provided, 100));
+        }
+        return pools;
+    }
+
+    public Consumer createConsumer(List<Product> installed) {
+        Consumer consumer = new Consumer(nextId("system"), "benchmark", owner,
+            new ConsumerType(ConsumerTypeEnum.SYSTEM));
+        consumer.setId(nextId("consumer"));
+        consumer.setFact("cpu.cpu_socket(s)", "4");
+        consumer.setFact("memory.memtotal", "16000000");
+        consumer.setFact("system.certificate_version", "3.2");
+        consumer.setFact("uname.machine", "x86_64");
+        consumer.setFact("virt.is_guest", "false");
+        for (int i = 0; i < 40; i++) {
+            consumer.setFact("benchmark.fact." + i, "value-" + random.nextInt(1000));
+        }
+        for (Product product : installed) {
+            consumer.addInstalledProduct(new ConsumerInstalledProduct(product.getId(),
+                product.getName()));
+        }
+        return consumer;
+    }
+
+    public Entitlement attach(Consumer consumer, Pool pool, int quantity) {
+        Entitlement ent = new Entitlement(pool, consumer, quantity);
+        ent.setId(nextId("ent"));
+        ent.setCreated(new Date());
+        ent.setUpdated(new Date());
+        consumer.addEntitlement(ent);
+        return ent;
+    }
+
+    public static Configuration createConfig() {
+        return new MapConfiguration(ConfigProperties.DEFAULT_PROPERTIES);
+    }
+
+    public static I18n createI18n() {
+        return I18nFactory.getI18n(Fixtures.class, "org.candlepin.i18n.Messages", Locale.US,
+            I18nFactory.FALLBACK);
+    }
+
+    /**
+     * @return a provider compiling the rules shipped with the server
+     */
+    public static JsRunnerProvider createJsRunnerProvider() {
+        Provider<JsRunnerRequestCache> cacheProvider = new Provider<JsRunnerRequestCache>() {
+            @Override
+            public JsRunnerRequestCache get() {
+                return new JsRunnerRequestCache();
+            }
+        };
+        return new JsRunnerProvider(new FixedRulesCurator(), cacheProvider);
+    }
+
+    /**
+     * Serves the default rules file without a database.
+     */
+    static class FixedRulesCurator extends RulesCurator {
+        private final Rules rules = new Rules(Util.readFile(
+            FixedRulesCurator.class.getResourceAsStream(DEFAULT_RULES_FILE)));
+        private final Date updated = new Date();
+
+        @Override
+        public void updateDbRules() {
+            // Nothing to update.
+        }
+
+        @Override
+        public Rules getRules() {
+            return rules;
+        }
+
+        @Override
+        public Date getUpdated() {
+            return updated;
+        }
+    }
+
+    /**
+     * A throwaway self signed CA, generated once per benchmark run.
+     */
+    public static class GeneratedPKIReader implements PKIReader {
+        private final X509Certificate caCert;
+        private final PrivateKey caKey;
+
+        public GeneratedPKIReader() throws GeneralSecurityException {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            KeyPair caKeyPair = generator.generateKeyPair();
+
+            X500Principal dn = new X500Principal("CN=Benchmark CA");
+            X509V3CertificateGenerator certGen = new X509V3CertificateGenerator();
+            certGen.setSerialNumber(BigInteger.ONE);
+            certGen.setIssuerDN(dn);
+            certGen.setSubjectDN(dn);
+            certGen.setNotBefore(yearsFromNow(-1));
+            certGen.setNotAfter(yearsFromNow(10));
+            certGen.setPublicKey(caKeyPair.getPublic());
+            certGen.setSignatureAlgorithm("SHA256WithRSA");
+
+            caCert = certGen.generate(caKeyPair.getPrivate());
+            caKey = caKeyPair.getPrivate();
+        }
+
+        @Override
+        public X509Certificate getCACert() {
+            return caCert;
+        }
+
+        @Override
+        public Set<X509Certificate> getUpstreamCACerts() {
+            return null;
+        }
+
+        @Override
+        public PrivateKey getCaKey() {
+            return caKey;
+        }
+    }
+}
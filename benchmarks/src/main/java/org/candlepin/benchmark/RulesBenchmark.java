@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.benchmark;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.EntitlementCurator;
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolQuantity;
+import org.candlepin.model.Product;
+import org.candlepin.policy.ValidationResult;
+import org.candlepin.policy.js.JsRunner;
+import org.candlepin.policy.js.JsRunnerProvider;
+import org.candlepin.policy.js.autobind.AutobindRules;
+import org.candlepin.policy.js.compliance.ComplianceRules;
+import org.candlepin.policy.js.compliance.ComplianceStatus;
+import org.candlepin.policy.js.compliance.StatusReasonMessageGenerator;
+import org.candlepin.policy.js.entitlement.Enforcer.CallerType;
+import org.candlepin.policy.js.entitlement.EntitlementRules;
+import org.candlepin.util.DateSourceImpl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the javascript rules: compliance, entitlement validation and
+ * autobind, plus the per-request cost of getting a JsRunner.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class RulesBenchmark {
+
+    /** Number of pools validated in one preEntitlement batch / offered to autobind. */
+    @Param({ "10", "100" })
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    public int poolCount;
+
+    /** Number of entitlements the consumer already has. */
+    @Param({ "5", "50" })
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    public int entitlementCount;
+
+    private JsRunnerProvider provider;
+    private ComplianceRules complianceRules;
+    private EntitlementRules entitlementRules;
+    private AutobindRules autobindRules;
+
+    private Consumer consumer;
+    private List<PoolQuantity> poolQuantities;
+    private List<Pool> pools;
+    private String[] productIds;
+    private ComplianceStatus compliance;
+    private Date onDate;
+
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = new Fixtures();
+        provider = Fixtures.createJsRunnerProvider();
+
+        complianceRules = new ComplianceRules(provider.get(), new EntitlementCurator(null),
+            new StatusReasonMessageGenerator(Fixtures.createI18n()), null, null);
+        entitlementRules = new EntitlementRules(new DateSourceImpl(), provider.get(),
+            Fixtures.createI18n(), Fixtures.createConfig(), null, null);
+        autobindRules = new AutobindRules(provider.get());
+
+        List<Product> engProducts = new ArrayList<Product>();
+        for (int i = 0; i < 20; i++) {
+            engProducts.add(fixtures.createEngProduct(5));
+        }
+
+        consumer = fixtures.createConsumer(engProducts);
+        for (Pool pool : fixtures.createPools(entitlementCount, engProducts)) {
+            fixtures.attach(consumer, pool, 1);
+        }
+
+        pools = fixtures.createPools(poolCount, engProducts);
+        poolQuantities = new ArrayList<PoolQuantity>();
+        for (Pool pool : pools) {
+            poolQuantities.add(new PoolQuantity(pool, 1));
+        }
+
+        productIds = new String[engProducts.size()];
+        for (int i = 0; i < productIds.length; i++) {
+            productIds[i] = engProducts.get(i).getId();
+        }
+
+        onDate = new Date();
+        compliance = complianceRules.getStatus(consumer, onDate, false, false);
+    }
+
+    @Benchmark
+    public JsRunner jsRunnerGet() {
+        return provider.get();
+    }
+
+    @Benchmark
+    public ComplianceStatus complianceGetStatus() {
+        return complianceRules.getStatus(consumer, onDate, false, false);
+    }
+
+    @Benchmark
+    public ComplianceStatus complianceGetStatusWithNewRunner() {
+        // What a request pays: a fresh runner scope plus the status calculation.
+        ComplianceRules rules = new ComplianceRules(provider.get(), new EntitlementCurator(null),
+            new StatusReasonMessageGenerator(Fixtures.createI18n()), null, null);
+        return rules.getStatus(consumer, onDate, false, false);
+    }
+
+    @Benchmark
+    public Map<String, ValidationResult> preEntitlementBatch() {
+        return entitlementRules.preEntitlement(consumer, null, poolQuantities,
+            CallerType.BIND);
+    }
+
+    @Benchmark
+    public List<PoolQuantity> autobindSelectBestPools() {
+        return autobindRules.selectBestPools(consumer, productIds, new ArrayList<Pool>(pools),
+            compliance, null, new HashSet<String>(), false);
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.benchmark;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.resteasy.JsonProvider;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Benchmarks serializing API responses with the mapper the REST layer uses,
+ * including the HATEOAS and dynamic property filters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class SerializationBenchmark {
+
+    /** Size of the serialized pool and entitlement lists. */
+    @Param({ "100", "10000" })
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    public int listSize;
+
+    private ObjectMapper mapper;
+    private List<Pool> pools;
+    private List<Entitlement> entitlements;
+    private Consumer consumer;
+
+    @Setup
+    public void setUp() {
+        mapper = new JsonProvider(false).locateMapper(Object.class, MediaType.APPLICATION_JSON_TYPE);
+
+        Fixtures fixtures = new Fixtures();
+        List<Product> engProducts = new ArrayList<Product>();
+        for (int i = 0; i < 50; i++) {
+            engProducts.add(fixtures.createEngProduct(3));
+        }
+
+        pools = fixtures.createPools(listSize, engProducts);
+        consumer = fixtures.createConsumer(engProducts.subList(0, 10));
+        entitlements = new ArrayList<Entitlement>(listSize);
+        for (Pool pool : pools) {
+            entitlements.add(fixtures.attach(consumer, pool, 1));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializePools() throws IOException {
+        return mapper.writeValueAsBytes(pools);
+    }
+
+    @Benchmark
+    public byte[] serializeEntitlements() throws IOException {
+        return mapper.writeValueAsBytes(entitlements);
+    }
+
+    @Benchmark
+    public byte[] serializeConsumer() throws IOException {
+        return mapper.writeValueAsBytes(consumer);
+    }
+}
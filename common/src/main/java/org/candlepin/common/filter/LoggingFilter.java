@@ -34,6 +34,13 @@ import javax.servlet.http.HttpServletResponse;
 /**
  * LoggingFilter
  *
+ * Request and response bodies are only buffered for logging when this logger is at
+ * DEBUG. Otherwise bodies stream straight through, except for requests small enough
+ * ("body.tee.max_size" bytes, default 32k) that later per-org debug logging can
+ * still print them. The durations of all requests, failed ones included, are
+ * collected in a histogram which is logged every "timing.log.interval" requests
+ * (default 1000, 0 to disable).
+ *
  * This class must be a Singleton as described in
  * <a href="http://code.google.com/p/google-guice/wiki/ServletModule#Filter_Mapping">
  * the Guice documentation</a>.
@@ -43,11 +50,36 @@ public class LoggingFilter implements Filter {
 
     private static Logger log = LoggerFactory.getLogger(LoggingFilter.class);
 
+    private static final int DEFAULT_BODY_TEE_MAX_SIZE = 32 * 1024;
+    private static final int DEFAULT_TIMING_LOG_INTERVAL = 1000;
+
     private String customHeaderName;
+    private int bodyTeeMaxSize = DEFAULT_BODY_TEE_MAX_SIZE;
+    private int timingLogInterval = DEFAULT_TIMING_LOG_INTERVAL;
+    private final TimingHistogram timings = new TimingHistogram();
 
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
         customHeaderName = filterConfig.getInitParameter("header.name");
+        bodyTeeMaxSize = getIntParameter(filterConfig, "body.tee.max_size",
+            DEFAULT_BODY_TEE_MAX_SIZE);
+        timingLogInterval = getIntParameter(filterConfig, "timing.log.interval",
+            DEFAULT_TIMING_LOG_INTERVAL);
+    }
+
+    private static int getIntParameter(FilterConfig filterConfig, String name, int defaultValue)
+        throws ServletException {
+        String value = filterConfig.getInitParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e) {
+            throw new ServletException("Invalid value for " + name + ": " + value, e);
+        }
     }
 
     @Override
@@ -60,10 +92,13 @@ public class LoggingFilter implements Filter {
         FilterChain chain) throws IOException, ServletException {
 
         long startTime = System.currentTimeMillis();
-        TeeHttpServletRequest req = new TeeHttpServletRequest(
-            (HttpServletRequest) request);
+        boolean debug = log.isDebugEnabled();
+        HttpServletRequest req = (HttpServletRequest) request;
+        if (debug || isSmallBody(req)) {
+            req = new TeeHttpServletRequest(req);
+        }
         TeeHttpServletResponse resp = new TeeHttpServletResponse(
-            (HttpServletResponse) response);
+            (HttpServletResponse) response, debug);
 
         try {
             // Generate a UUID for this request and store in the thread local MDC.
@@ -80,8 +115,8 @@ public class LoggingFilter implements Filter {
             // Not sure this is useful yet.
             resp.setHeader(customHeaderName, requestUUID);
 
-            if (log.isDebugEnabled()) {
-                log.debug("{}", ServletLogger.logRequest(req));
+            if (debug) {
+                log.debug("{}", ServletLogger.logRequest((TeeHttpServletRequest) req));
             }
             else {
                 log.info("{}", ServletLogger.logBasicRequestInfo(req));
@@ -89,7 +124,7 @@ public class LoggingFilter implements Filter {
 
             chain.doFilter(req, resp);
 
-            if (log.isDebugEnabled()) {
+            if (debug) {
                 log.debug("{}", ServletLogger.logResponse(resp, startTime));
             }
             else {
@@ -99,7 +134,23 @@ public class LoggingFilter implements Filter {
             resp.finish();
         }
         finally {
+            // Requests failing in the chain count towards the timings as well
+            recordTiming(System.currentTimeMillis() - startTime);
             MDC.clear();
         }
     }
+
+    private boolean isSmallBody(HttpServletRequest req) {
+        // Unknown (-1) lengths are streamed, they may be arbitrarily large.
+        int length = req.getContentLength();
+        return length >= 0 && length <= bodyTeeMaxSize;
+    }
+
+    private void recordTiming(long duration) {
+        timings.record(duration);
+
+        if (timingLogInterval > 0 && timings.getCount() % timingLogInterval == 0) {
+            log.info("Request timings: {}", timings);
+        }
+    }
 }
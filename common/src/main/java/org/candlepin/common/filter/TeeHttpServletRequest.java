@@ -26,6 +26,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 
 import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 
@@ -64,6 +66,24 @@ public class TeeHttpServletRequest extends HttpServletRequestWrapper implements
         return new BufferedReader(new InputStreamReader(this.getInputStream()));
     }
 
+    /**
+     * @param request a servlet request, possibly wrapped
+     * @return true if the request or one of the requests it wraps has its body
+     * buffered by a TeeHttpServletRequest, so the body can be read again
+     */
+    public static boolean isBuffered(ServletRequest request) {
+        while (request != null) {
+            if (request instanceof TeeHttpServletRequest) {
+                return true;
+            }
+
+            request = (request instanceof ServletRequestWrapper) ?
+                ((ServletRequestWrapper) request).getRequest() : null;
+        }
+
+        return false;
+    }
+
     @Override
     public String getBody() {
         if (ServletLogger.showAsText(getContentType())) {
@@ -32,6 +32,9 @@ import javax.servlet.http.HttpServletResponseWrapper;
 
 /**
  * Heavily borrowed from the logback-access package.
+ *
+ * When body teeing is turned off the wrapper only tracks status and headers, and the
+ * body streams straight to the underlying response.
  */
 public class TeeHttpServletResponse extends HttpServletResponseWrapper
     implements BodyLogger {
@@ -40,13 +43,23 @@ public class TeeHttpServletResponse extends HttpServletResponseWrapper
     protected PrintWriter teeWriter;
     protected Map<String, List<String>> headers = new HashMap<String, List<String>>();
     protected int status;
+    protected final boolean teeBody;
 
     public TeeHttpServletResponse(HttpServletResponse httpServletResponse) {
+        this(httpServletResponse, true);
+    }
+
+    public TeeHttpServletResponse(HttpServletResponse httpServletResponse, boolean teeBody) {
         super(httpServletResponse);
+        this.teeBody = teeBody;
     }
 
     @Override
     public ServletOutputStream getOutputStream() throws IOException {
+        if (!teeBody) {
+            return super.getOutputStream();
+        }
+
         if (teeServletOutputStream == null) {
             teeServletOutputStream = new TeeServletOutputStream(
                 this.getResponse());
@@ -56,6 +69,10 @@ public class TeeHttpServletResponse extends HttpServletResponseWrapper
 
     @Override
     public PrintWriter getWriter() throws IOException {
+        if (!teeBody) {
+            return super.getWriter();
+        }
+
         if (this.teeWriter == null) {
             this.teeWriter = new PrintWriter(new OutputStreamWriter(
                 getOutputStream()), true);
@@ -64,8 +81,11 @@ public class TeeHttpServletResponse extends HttpServletResponseWrapper
     }
 
     @Override
-    public void flushBuffer() {
-        if (this.teeWriter != null) {
+    public void flushBuffer() throws IOException {
+        if (!teeBody) {
+            super.flushBuffer();
+        }
+        else if (this.teeWriter != null) {
             this.teeWriter.flush();
         }
     }
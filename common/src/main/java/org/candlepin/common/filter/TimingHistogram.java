@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.common.filter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed bucket histogram of durations in milliseconds. Recording is lock free
+ * so it can sit on the request path; the counts are cumulative from creation.
+ */
+public class TimingHistogram {
+    private static final long[] DEFAULT_BOUNDS =
+        { 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+    private final long[] bounds;
+    private final AtomicLongArray buckets;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public TimingHistogram() {
+        this(DEFAULT_BOUNDS);
+    }
+
+    /**
+     * @param bounds inclusive upper bounds of the buckets in milliseconds, ascending;
+     * durations above the last bound go to an extra, unbounded bucket
+     */
+    public TimingHistogram(long... bounds) {
+        this.bounds = bounds.clone();
+        this.buckets = new AtomicLongArray(bounds.length + 1);
+    }
+
+    public void record(long millis) {
+        int bucket = 0;
+        while (bucket < bounds.length && millis > bounds[bucket]) {
+            bucket++;
+        }
+
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        total.addAndGet(millis);
+
+        long current = max.get();
+        while (millis > current && !max.compareAndSet(current, millis)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param bucket bucket index, from 0 to the number of bounds
+     * @return the number of durations recorded in the bucket
+     */
+    public long getBucket(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * @param bucket bucket index
+     * @return the inclusive upper bound of the bucket in milliseconds, or -1 for the
+     * last, unbounded bucket
+     */
+    public long getBucketBound(int bucket) {
+        return bucket < bounds.length ? bounds[bucket] : -1;
+    }
+
+    /**
+     * @return the cumulative counts keyed by the upper bound of each bucket, the
+     * last one being "+Inf"
+     */
+    public Map<String, Long> getBuckets() {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            cumulative += buckets.get(i);
+            result.put(i < bounds.length ? String.valueOf(bounds[i]) : "+Inf", cumulative);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        long n = count.get();
+        StringBuilder builder = new StringBuilder()
+            .append("count=").append(n)
+            .append(", mean=").append(n == 0 ? 0 : total.get() / n)
+            .append(", max=").append(max.get());
+
+        for (int i = 0; i < buckets.length(); i++) {
+            builder.append(", ");
+            if (i < bounds.length) {
+                builder.append("<=").append(bounds[i]);
+            }
+            else {
+                builder.append('>').append(bounds[bounds.length - 1]);
+            }
+            builder.append("ms=").append(buckets.get(i));
+        }
+
+        return builder.toString();
+    }
+}
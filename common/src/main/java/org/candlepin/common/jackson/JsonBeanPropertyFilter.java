@@ -18,8 +18,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 
 
@@ -29,6 +31,14 @@ import java.lang.reflect.Field;
 public abstract class JsonBeanPropertyFilter extends CheckableBeanPropertyFilter {
     private static Logger log = LoggerFactory.getLogger(JsonBeanPropertyFilter.class);
 
+    /*
+     * Annotation lookups depend only on the class, property and annotation, so the
+     * result is computed once and shared by every filter instance. The set of
+     * serialized classes is small and fixed, which keeps this map bounded.
+     */
+    private static final ConcurrentMap<AnnotationKey, Boolean> ANNOTATION_CACHE =
+        new ConcurrentHashMap<AnnotationKey, Boolean>();
+
     /**
      * Checks if the specified annotation has been applied to the given object's class, property
      * or accessor (in that order).
@@ -47,40 +57,84 @@ public abstract class JsonBeanPropertyFilter extends CheckableBeanPropertyFilter
      *  accessor; false otherwise.
      */
     protected boolean annotationPresent(Object obj, String property, Class<? extends Annotation> annotation) {
+        AnnotationKey key = new AnnotationKey(obj.getClass(), property, annotation);
+        Boolean present = ANNOTATION_CACHE.get(key);
+
+        if (present == null) {
+            present = lookupAnnotation(obj.getClass(), property, annotation);
+            ANNOTATION_CACHE.putIfAbsent(key, present);
+        }
+
+        return present;
+    }
+
+    private static boolean lookupAnnotation(Class<?> type, String property,
+        Class<? extends Annotation> annotation) {
         // Check for the annotation on the class...
-        if (obj.getClass().getAnnotation(annotation) != null) {
+        if (type.getAnnotation(annotation) != null) {
             return true;
         }
 
         // Check the property field
-        try {
-            Field field = obj.getClass().getField(property);
+        for (Field field : type.getFields()) {
+            if (field.getName().equals(property)) {
+                return field.getAnnotation(annotation) != null || accessorAnnotated(type, property,
+                    annotation);
+            }
+        }
+
+        return accessorAnnotated(type, property, annotation);
+    }
 
-            if (field.getAnnotation(annotation) != null) {
+    private static boolean accessorAnnotated(Class<?> type, String property,
+        Class<? extends Annotation> annotation) {
+        // Check the accessor. Walking the public methods avoids building a
+        // NoSuchMethodException for every miss.
+        String suffix = property.substring(0, 1).toUpperCase() + property.substring(1);
+        String getter = "get" + suffix;
+        String isser = "is" + suffix;
+
+        for (Method method : type.getMethods()) {
+            if (method.getParameterTypes().length == 0 &&
+                (method.getName().equals(getter) || method.getName().equals(isser)) &&
+                method.getAnnotation(annotation) != null) {
+                log.debug("Found {} on {}.{}", annotation.getSimpleName(), type.getName(),
+                    method.getName());
                 return true;
             }
         }
-        catch (NoSuchFieldException e) {
-            // Nope. Move on to the accessor check.
-        }
 
-        // Check the accessor
-        String[] prefixes = { "get", "is" };
-        property = property.substring(0, 1).toUpperCase() + property.substring(1);
+        return false;
+    }
+
+    /**
+     * Cache key for a (class, property, annotation) lookup.
+     */
+    private static final class AnnotationKey {
+        private final Class<?> type;
+        private final String property;
+        private final Class<? extends Annotation> annotation;
 
-        for (String prefix : prefixes) {
-            try {
-                Method method = obj.getClass().getMethod(prefix + property);
+        AnnotationKey(Class<?> type, String property, Class<? extends Annotation> annotation) {
+            this.type = type;
+            this.property = property;
+            this.annotation = annotation;
+        }
 
-                if (method.getAnnotation(annotation) != null) {
-                    return true;
-                }
-            }
-            catch (NoSuchMethodException e) {
-                // Doesn't exist.
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof AnnotationKey)) {
+                return false;
             }
+
+            AnnotationKey that = (AnnotationKey) other;
+            return type == that.type && annotation == that.annotation &&
+                property.equals(that.property);
         }
 
-        return false;
+        @Override
+        public int hashCode() {
+            return (type.hashCode() * 31 + property.hashCode()) * 31 + annotation.hashCode();
+        }
     }
 }
@@ -25,6 +25,7 @@ public class Page<T> {
     private T pageData;
     private Integer maxRecords;
     private PageRequest pageRequest;
+    private String nextCursor;
 
     public T getPageData() {
         return pageData;
@@ -42,6 +43,18 @@ public class Page<T> {
         this.maxRecords = maxRecords;
     }
 
+    /**
+     * @return the cursor for the page following this one when seeking, or null
+     * if this is the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     public PageRequest getPageRequest() {
         return pageRequest;
     }
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.common.paging;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * The position of the last row handed out by a seeking page: the value of the
+ * sort key and the id of that row. Clients only ever see the encoded form, which
+ * is URL safe and should be treated as opaque.
+ */
+public class PageCursor {
+    private static final String ENCODING = "UTF-8";
+    private static final char SEPARATOR = ':';
+    private static final char VALUE_MARKER = '=';
+
+    private final String id;
+    private final String sortValue;
+
+    public PageCursor(String id, String sortValue) {
+        if (id == null || id.indexOf(SEPARATOR) != -1) {
+            throw new IllegalArgumentException("Invalid cursor id: " + id);
+        }
+
+        this.id = id;
+        this.sortValue = sortValue;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSortValue() {
+        return sortValue;
+    }
+
+    public String encode() {
+        StringBuilder raw = new StringBuilder(id).append(SEPARATOR);
+        if (sortValue != null) {
+            raw.append(VALUE_MARKER).append(sortValue);
+        }
+
+        try {
+            return Base64.encodeBase64URLSafeString(raw.toString().getBytes(ENCODING));
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param encoded a cursor previously produced by {@link #encode()}
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the value is not a valid cursor
+     */
+    public static PageCursor decode(String encoded) {
+        String raw;
+        try {
+            raw = new String(Base64.decodeBase64(encoded.getBytes(ENCODING)), ENCODING);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+
+        int split = raw.indexOf(SEPARATOR);
+        if (split <= 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + encoded);
+        }
+
+        String rest = raw.substring(split + 1);
+        if (rest.length() > 0 && rest.charAt(0) != VALUE_MARKER) {
+            throw new IllegalArgumentException("Invalid cursor: " + encoded);
+        }
+
+        String sortValue = rest.length() == 0 ? null : rest.substring(1);
+        return new PageCursor(raw.substring(0, split), sortValue);
+    }
+}
@@ -30,6 +30,7 @@ public class PageRequest {
     public static final String SORT_BY_PARAM = "sort_by";
     public static final String PAGE_PARAM = "page";
     public static final String PER_PAGE_PARAM = "per_page";
+    public static final String CURSOR_PARAM = "cursor";
 
     public static final Integer DEFAULT_PAGE = Integer.valueOf(1);
     public static final Integer DEFAULT_PER_PAGE = Integer.valueOf(10);
@@ -39,6 +40,7 @@ public class PageRequest {
     private Integer perPage;
     private String sortBy;
     private Order order;
+    private String cursor;
 
     public Integer getPage() {
         return page;
@@ -72,7 +74,32 @@ public class PageRequest {
         this.order = order;
     }
 
+    /**
+     * Returns the opaque cursor pointing just past the last row of the previous page.
+     * An empty cursor requests the first page in seek mode.
+     *
+     * @return the cursor, or null if this request uses offset paging
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     public boolean isPaging() {
         return perPage != null && page != null;
     }
+
+    /**
+     * Seek (keyset) paging walks the result set by (sort key, id) instead of by
+     * offset, so the cost of fetching a page does not depend on how deep it is.
+     * Seeking pages do not carry a total record count.
+     *
+     * @return true if this request pages by cursor rather than by page number
+     */
+    public boolean isSeeking() {
+        return perPage != null && cursor != null;
+    }
 }
@@ -71,7 +71,7 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
         }
 
         // If we aren't paging, then no need for Link headers.
-        if (page.getPageRequest() == null || !page.getPageRequest().isPaging()) {
+        if (page.getPageRequest() == null || !needsLinks(page.getPageRequest())) {
             return;
         }
 
@@ -89,6 +89,18 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
 
         LinkHeader header = new LinkHeader();
 
+        if (page.getPageRequest().isSeeking()) {
+            // Seeking pages know nothing about their position or the total count,
+            // so all we can offer is the way forward and the way back to the start.
+            if (page.getNextCursor() != null) {
+                header.addLink(null, "next", buildCursorLink(builder, page.getNextCursor()), null);
+            }
+
+            header.addLink(null, "first", buildCursorLink(builder, ""), null);
+            respContext.getHeaders().add(LINK_HEADER, header.toString());
+            return;
+        }
+
         Integer next = getNextPage(page);
         if (next != null) {
             header.addLink(null, "next", buildPageLink(builder, next), null);
@@ -104,6 +116,10 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
         respContext.getHeaders().add(LINK_HEADER, header.toString());
     }
 
+    private boolean needsLinks(PageRequest pageRequest) {
+        return pageRequest.isPaging() || pageRequest.isSeeking();
+    }
+
     protected String buildPageLink(UriBuilder b, int value) {
         // Copy so we can use the same builder for building each link.
         UriBuilder builder = b.clone();
@@ -111,6 +127,14 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
         return builder.build().toString();
     }
 
+    protected String buildCursorLink(UriBuilder b, String cursor) {
+        // Replace rather than append so the cursor of the current request does not
+        // follow us into the link.
+        UriBuilder builder = b.clone();
+        builder.replaceQueryParam(PageRequest.CURSOR_PARAM, cursor);
+        return builder.build().toString();
+    }
+
     protected Integer getLastPage(Page<?> page) {
         PageRequest pageRequest = page.getPageRequest();
 
@@ -178,7 +202,8 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
         // parameters provided too.
         if (params != null) {
             for (Entry<String, List<String>> e : params.entrySet()) {
-                if (!e.getKey().equals(PageRequest.PAGE_PARAM)) {
+                if (!e.getKey().equals(PageRequest.PAGE_PARAM) &&
+                    !e.getKey().equals(PageRequest.CURSOR_PARAM)) {
                     for (String v : e.getValue()) {
                         builder = builder.queryParam(e.getKey(), v);
                     }
@@ -55,8 +55,14 @@ public class PageRequestFilter implements ContainerRequestFilter {
         String perPage = params.getFirst(PageRequest.PER_PAGE_PARAM);
         String order = params.getFirst(PageRequest.ORDER_PARAM);
         String sortBy = params.getFirst(PageRequest.SORT_BY_PARAM);
+        String cursor = params.getFirst(PageRequest.CURSOR_PARAM);
 
-        if (page != null || perPage != null || order != null || sortBy != null) {
+        if (cursor != null) {
+            p = readSeekRequest(cursor, page, perPage);
+            p.setOrder(order == null ? PageRequest.DEFAULT_ORDER : readOrder(order));
+            p.setSortBy(sortBy);
+        }
+        else if (page != null || perPage != null || order != null || sortBy != null) {
             p = new PageRequest();
 
             if (order == null) {
@@ -94,6 +100,28 @@ public class PageRequestFilter implements ContainerRequestFilter {
         ResteasyProviderFactory.pushContext(PageRequest.class, p);
     }
 
+    private PageRequest readSeekRequest(String cursor, String page, String perPage) {
+        I18n i18n = this.i18nProvider.get();
+        if (page != null) {
+            throw new BadRequestException(i18n.tr("the page and cursor parameters" +
+                " cannot be used together"));
+        }
+
+        PageRequest p = new PageRequest();
+        // An empty cursor asks for the first page.
+        p.setCursor(cursor);
+
+        try {
+            p.setPerPage(perPage == null ? PageRequest.DEFAULT_PER_PAGE : readInteger(perPage));
+        }
+        catch (NumberFormatException nfe) {
+            throw new BadRequestException(i18n.tr("the per_page parameter must be a" +
+                " positive integer when paging by cursor"), nfe);
+        }
+
+        return p;
+    }
+
     private Order readOrder(String order) {
         if ("ascending".equalsIgnoreCase(order) || "asc".equalsIgnoreCase(order)) {
             return Order.ASCENDING;
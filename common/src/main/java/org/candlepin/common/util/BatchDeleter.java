@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.common.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+
+/**
+ * Deletes the rows of an entity that match a condition in bounded batches, walking
+ * the table in primary key order. Unless the caller already has a transaction open,
+ * every batch is removed in a short transaction of its own, so a large cleanup
+ * neither holds its locks for long nor piles up in one huge transaction.
+ *
+ * Batches can be spaced out to stay under a number of rows per second, and progress
+ * is logged as the work goes on.
+ */
+public class BatchDeleter {
+    private static Logger log = LoggerFactory.getLogger(BatchDeleter.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    // how often a long running cleanup reports how far it got, in milliseconds
+    private static final long PROGRESS_INTERVAL = 30000;
+
+    private final EntityManager entityManager;
+    private final String entity;
+    private final String condition;
+    private final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int maxRowsPerSecond = 0;
+
+    /**
+     * @param entityManager the entity manager to delete with
+     * @param entity the name of the entity to delete from
+     * @param condition the HQL condition rows have to meet to be deleted, referring to
+     * the entity as "e"
+     */
+    public BatchDeleter(EntityManager entityManager, String entity, String condition) {
+        this.entityManager = entityManager;
+        this.entity = entity;
+        this.condition = condition;
+    }
+
+    public BatchDeleter setParameter(String name, Object value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    /**
+     * @param batchSize the most rows to delete in a single transaction
+     * @return this deleter
+     */
+    public BatchDeleter setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param maxRowsPerSecond how many rows to delete per second at most, 0 or less
+     * for no limit
+     * @return this deleter
+     */
+    public BatchDeleter setMaxRowsPerSecond(int maxRowsPerSecond) {
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        return this;
+    }
+
+    /**
+     * Deletes all matching rows.
+     *
+     * @return the number of rows deleted
+     */
+    public int execute() {
+        String select = "select e.id from " + entity + " e where (" + condition + ")";
+        long start = System.currentTimeMillis();
+        long lastReport = start;
+        Throttle throttle = new Throttle(maxRowsPerSecond);
+        int deleted = 0;
+        int batches = 0;
+        Object lastId = null;
+
+        List<?> ids;
+        do {
+            Query query = entityManager.createQuery(lastId == null ?
+                select + " order by e.id" :
+                select + " and e.id > :lastId order by e.id");
+            for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+                query.setParameter(parameter.getKey(), parameter.getValue());
+            }
+            if (lastId != null) {
+                query.setParameter("lastId", lastId);
+            }
+            ids = query.setMaxResults(batchSize).getResultList();
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            deleted += deleteBatch(ids);
+            batches++;
+            lastId = ids.get(ids.size() - 1);
+
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= PROGRESS_INTERVAL) {
+                log.info("Deleted {} {} rows in {} batches so far", deleted, entity, batches);
+                lastReport = now;
+            }
+        } while (ids.size() == batchSize && pause(throttle, deleted));
+
+        log.info("Deleted {} {} rows in {} batches, took {} ms", deleted, entity, batches,
+            System.currentTimeMillis() - start);
+        return deleted;
+    }
+
+    private int deleteBatch(List<?> ids) {
+        EntityTransaction transaction = entityManager.getTransaction();
+        boolean owned = !transaction.isActive();
+        if (owned) {
+            transaction.begin();
+        }
+
+        try {
+            int count = entityManager.createQuery("delete from " + entity + " where id in (:ids)")
+                .setParameter("ids", ids)
+                .executeUpdate();
+            if (owned) {
+                transaction.commit();
+            }
+            return count;
+        }
+        catch (RuntimeException e) {
+            if (owned && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
+    private boolean pause(Throttle throttle, int deleted) {
+        if (!throttle.pause(deleted)) {
+            log.warn("Interrupted, stopping the cleanup of {} after {} rows", entity, deleted);
+            return false;
+        }
+        return true;
+    }
+}
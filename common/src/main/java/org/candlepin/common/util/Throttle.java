@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.common.util;
+
+/**
+ * Spaces out work done in batches so that it stays under a number of items per
+ * second. The rate is measured from when the throttle was created, so a batch that
+ * ran slow leaves room for the next one.
+ */
+public class Throttle {
+    private final int maxPerSecond;
+    private final long start;
+
+    /**
+     * @param maxPerSecond how many items to handle per second at most, 0 or less for
+     * no limit
+     */
+    public Throttle(int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+        this.start = System.currentTimeMillis();
+    }
+
+    /**
+     * Waits until the items handled so far fit the rate.
+     *
+     * @param handled the number of items handled since the throttle was created
+     * @return false if interrupted while waiting, in which case the interrupt flag is
+     * set again and the caller should stop
+     */
+    public boolean pause(int handled) {
+        if (maxPerSecond <= 0) {
+            return true;
+        }
+
+        long wait = start + handled * 1000L / maxPerSecond - System.currentTimeMillis();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -38,7 +38,11 @@ import java.util.Enumeration;
 
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
 import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -147,4 +151,59 @@ public class LoggingFilterTest {
 
     }
 
+    @Test
+    public void testDoFilterInfoStreamsBodies() throws Exception {
+        filterlogger.setLevel(Level.INFO);
+        when(request.getContentLength()).thenReturn(-1);
+        ServletOutputStream out = mock(ServletOutputStream.class);
+        when(response.getOutputStream()).thenReturn(out);
+
+        filter.doFilter(request, response, chain);
+
+        ArgumentCaptor<ServletRequest> req = ArgumentCaptor.forClass(ServletRequest.class);
+        ArgumentCaptor<ServletResponse> resp = ArgumentCaptor.forClass(ServletResponse.class);
+        verify(chain).doFilter(req.capture(), resp.capture());
+        assertSame(request, req.getValue());
+        assertSame(out, resp.getValue().getOutputStream());
+        verify(request, never()).getInputStream();
+    }
+
+    @Test
+    public void testDoFilterInfoBuffersSmallRequests() throws Exception {
+        filterlogger.setLevel(Level.INFO);
+        when(request.getContentLength()).thenReturn(15);
+
+        filter.doFilter(request, response, chain);
+
+        ArgumentCaptor<ServletRequest> req = ArgumentCaptor.forClass(ServletRequest.class);
+        verify(chain).doFilter(req.capture(), any(ServletResponse.class));
+        assertTrue(req.getValue() instanceof TeeHttpServletRequest);
+    }
+
+    @Test
+    public void testTimingsLoggedIncludingFailures() throws Exception {
+        filterlogger.setLevel(Level.INFO);
+        FilterConfig config = mock(FilterConfig.class);
+        when(config.getInitParameter("timing.log.interval")).thenReturn("2");
+        filter.init(config);
+
+        filter.doFilter(request, response, chain);
+        doThrow(new ServletException("boom")).when(chain)
+            .doFilter(any(ServletRequest.class), any(ServletResponse.class));
+        try {
+            filter.doFilter(request, response, chain);
+            fail("expected the chain's exception");
+        }
+        catch (ServletException e) {
+            // expected
+        }
+
+        ArgumentCaptor<ILoggingEvent> events = ArgumentCaptor.forClass(ILoggingEvent.class);
+        verify(mockapp, atLeastOnce()).doAppend(events.capture());
+        boolean logged = false;
+        for (ILoggingEvent event : events.getAllValues()) {
+            logged |= event.getFormattedMessage().startsWith("Request timings: count=2,");
+        }
+        assertTrue(logged);
+    }
 }
@@ -80,4 +80,15 @@ public class TeeHttpServletResponseTest {
             }
         }
     }
+
+    @Test
+    public void passThroughDoesNotBuffer() throws IOException {
+        TeeHttpServletResponse tee = new TeeHttpServletResponse(resp, false);
+        ServletOutputStream out = tee.getOutputStream();
+        out.write("this is my body".getBytes());
+
+        assertSame(resp.getOutputStream(), out);
+        assertNull(tee.getOutputBuffer());
+        assertEquals("", tee.getBody());
+    }
 }
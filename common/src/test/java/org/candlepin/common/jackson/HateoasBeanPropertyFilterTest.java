@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.common.jackson;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * HateoasBeanPropertyFilterTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class HateoasBeanPropertyFilterTest {
+
+    @Mock
+    private PropertyWriter writer;
+
+    private JsonGenerator jsonGenerator;
+    private HateoasBeanPropertyFilter filter;
+
+    @Before
+    public void setUp() throws IOException {
+        jsonGenerator = new JsonFactory().createGenerator(new StringWriter());
+        filter = new HateoasBeanPropertyFilter();
+    }
+
+    private void nestInObject() throws IOException {
+        jsonGenerator.writeStartObject();
+        jsonGenerator.writeFieldName("nested");
+        jsonGenerator.writeStartObject();
+    }
+
+    @Test
+    public void topLevelAlwaysSerialized() throws IOException {
+        jsonGenerator.writeStartObject();
+        when(writer.getName()).thenReturn("plain");
+        assertTrue(filter.isSerializable(new Annotated(), jsonGenerator, null, writer));
+    }
+
+    @Test
+    public void nestedIncludesOnlyAnnotatedAccessors() throws IOException {
+        nestInObject();
+        Annotated obj = new Annotated();
+
+        // Repeat the checks so the cached answers are exercised as well.
+        for (int i = 0; i < 2; i++) {
+            when(writer.getName()).thenReturn("id");
+            assertTrue(filter.isSerializable(obj, jsonGenerator, null, writer));
+            when(writer.getName()).thenReturn("active");
+            assertTrue(filter.isSerializable(obj, jsonGenerator, null, writer));
+            when(writer.getName()).thenReturn("plain");
+            assertFalse(filter.isSerializable(obj, jsonGenerator, null, writer));
+            when(writer.getName()).thenReturn("missing");
+            assertFalse(filter.isSerializable(obj, jsonGenerator, null, writer));
+        }
+    }
+
+    @Test
+    public void nestedIncludesEverythingOnAnnotatedClass() throws IOException {
+        nestInObject();
+        when(writer.getName()).thenReturn("anything");
+        assertTrue(filter.isSerializable(new IncludedType(), jsonGenerator, null, writer));
+    }
+
+    @Test
+    public void arrayExcludesAnnotatedAccessors() throws IOException {
+        jsonGenerator.writeStartArray();
+        jsonGenerator.writeStartObject();
+        Annotated obj = new Annotated();
+
+        when(writer.getName()).thenReturn("big");
+        assertFalse(filter.isSerializable(obj, jsonGenerator, null, writer));
+        when(writer.getName()).thenReturn("plain");
+        assertTrue(filter.isSerializable(obj, jsonGenerator, null, writer));
+    }
+
+    /**
+     * Annotated accessors
+     */
+    public static class Annotated {
+        @HateoasInclude
+        public String getId() {
+            return "id";
+        }
+
+        @HateoasInclude
+        public boolean isActive() {
+            return true;
+        }
+
+        @HateoasArrayExclude
+        public String getBig() {
+            return "big";
+        }
+
+        public String getPlain() {
+            return "plain";
+        }
+    }
+
+    /**
+     * Annotated type
+     */
+    @HateoasInclude
+    public static class IncludedType {
+    }
+}
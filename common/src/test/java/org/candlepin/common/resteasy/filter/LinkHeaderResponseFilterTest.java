@@ -365,4 +365,65 @@ public class LinkHeaderResponseFilterTest {
         assertTrue(header.contains("rel=\"next\""));
         assertTrue(header.contains("rel=\"prev\""));
     }
+
+    @Test
+    public void testDoesNotAddCursorQueryParameter() {
+        MultivaluedMap<String, String> map = new MultivaluedMapImpl<String, String>();
+        map.add("cursor", "abc");
+        map.add("per_page", "5");
+        UriBuilder bu = UriBuilder.fromUri("https://localhost:8443/candlepin/resource");
+        URI returned = interceptor.addUnchangingQueryParams(bu, map).build();
+        assertEquals(URI.create("https://localhost:8443/candlepin/resource?per_page=5"), returned);
+    }
+
+    @Test
+    public void testPostProcessWithSeeking() throws Exception {
+        when(page.getPageRequest()).thenReturn(pageRequest);
+        when(page.getNextCursor()).thenReturn("bmV4dA");
+        when(pageRequest.isSeeking()).thenReturn(true);
+
+        when(config.containsKey(eq(this.apiUrlPrefixKey))).thenReturn(false);
+
+        MultivaluedMap<String, Object> map = new MultivaluedMapImpl<String, Object>();
+        ResteasyProviderFactory.pushContext(Page.class, page);
+
+        mockReq = MockHttpRequest.create("GET",
+                new URI("/candlepin/resource?cursor=abc&per_page=10"),
+                new URI("https://example.com"));
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+        when(mockResponseContext.getHeaders()).thenReturn(map);
+
+        interceptor.filter(mockRequestContext, mockResponseContext);
+        String header = (String) map.getFirst(LinkHeaderResponseFilter.LINK_HEADER);
+
+        assertTrue(header.contains("cursor=bmV4dA"));
+        assertTrue(header.contains("rel=\"next\""));
+        assertTrue(header.contains("rel=\"first\""));
+        assertFalse(header.contains("rel=\"last\""));
+        assertFalse(header.contains("rel=\"prev\""));
+        assertFalse(header.contains("cursor=abc"));
+    }
+
+    @Test
+    public void testPostProcessWithSeekingOnLastPage() throws Exception {
+        when(page.getPageRequest()).thenReturn(pageRequest);
+        when(pageRequest.isSeeking()).thenReturn(true);
+
+        when(config.containsKey(eq(this.apiUrlPrefixKey))).thenReturn(false);
+
+        MultivaluedMap<String, Object> map = new MultivaluedMapImpl<String, Object>();
+        ResteasyProviderFactory.pushContext(Page.class, page);
+
+        mockReq = MockHttpRequest.create("GET",
+                new URI("/candlepin/resource?cursor=abc"),
+                new URI("https://example.com"));
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+        when(mockResponseContext.getHeaders()).thenReturn(map);
+
+        interceptor.filter(mockRequestContext, mockResponseContext);
+        String header = (String) map.getFirst(LinkHeaderResponseFilter.LINK_HEADER);
+
+        assertFalse(header.contains("rel=\"next\""));
+        assertTrue(header.contains("rel=\"first\""));
+    }
 }
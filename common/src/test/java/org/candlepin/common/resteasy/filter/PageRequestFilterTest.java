@@ -174,4 +174,60 @@ public class PageRequestFilterTest {
         assertEquals(PageRequest.Order.DESCENDING, p.getOrder());
         assertEquals("id", p.getSortBy());
     }
+
+    @Test
+    public void testEmptyCursorStartsSeeking() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?cursor=&per_page=25");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+
+        PageRequest p = ResteasyProviderFactory.getContextData(PageRequest.class);
+        assertTrue(p.isSeeking());
+        assertFalse(p.isPaging());
+        assertEquals("", p.getCursor());
+        assertEquals(Integer.valueOf(25), p.getPerPage());
+        assertEquals(PageRequest.DEFAULT_ORDER, p.getOrder());
+    }
+
+    @Test
+    public void testCursorWithoutLimit() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?cursor=abc&order=asc&sort_by=name");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+
+        PageRequest p = ResteasyProviderFactory.getContextData(PageRequest.class);
+        assertTrue(p.isSeeking());
+        assertEquals("abc", p.getCursor());
+        assertEquals(PageRequest.DEFAULT_PER_PAGE, p.getPerPage());
+        assertEquals(PageRequest.Order.ASCENDING, p.getOrder());
+        assertEquals("name", p.getSortBy());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testDoesNotAllowCursorAndPage() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?cursor=abc&page=2");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+    }
+
+    @Test
+    public void testCursorWithBadLimitHasItsOwnMessage() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?cursor=abc&per_page=-1");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        try {
+            interceptor.filter(mockRequestContext);
+            fail("Expected a BadRequestException");
+        }
+        catch (BadRequestException e) {
+            assertTrue(e.getMessage().contains("per_page"));
+        }
+    }
 }
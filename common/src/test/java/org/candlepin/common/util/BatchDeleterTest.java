@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.common.util;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+
+/**
+ * BatchDeleterTest
+ */
+public class BatchDeleterTest {
+    private EntityManager em;
+    private EntityTransaction tx;
+    private Query firstSelect;
+    private Query nextSelect;
+    private Query delete;
+
+    @Before
+    public void init() {
+        em = mock(EntityManager.class);
+        tx = mock(EntityTransaction.class);
+        firstSelect = mock(Query.class);
+        nextSelect = mock(Query.class);
+        delete = mock(Query.class);
+
+        when(em.getTransaction()).thenReturn(tx);
+        when(em.createQuery("select e.id from Thing e where (e.old = :old) order by e.id"))
+            .thenReturn(firstSelect);
+        when(em.createQuery(
+            "select e.id from Thing e where (e.old = :old) and e.id > :lastId order by e.id"))
+            .thenReturn(nextSelect);
+        when(em.createQuery("delete from Thing where id in (:ids)")).thenReturn(delete);
+        for (Query query : new Query[] {firstSelect, nextSelect, delete}) {
+            when(query.setParameter(anyString(), any())).thenReturn(query);
+            when(query.setMaxResults(anyInt())).thenReturn(query);
+        }
+    }
+
+    @Test
+    public void deletesInBatchesByKey() {
+        when(firstSelect.getResultList()).thenReturn(Arrays.asList("a", "b"));
+        when(nextSelect.getResultList()).thenReturn(Arrays.asList("c"));
+        when(delete.executeUpdate()).thenReturn(2, 1);
+
+        int deleted = new BatchDeleter(em, "Thing", "e.old = :old")
+            .setParameter("old", true)
+            .setBatchSize(2)
+            .execute();
+
+        assertEquals(3, deleted);
+        verify(firstSelect).setParameter("old", true);
+        verify(nextSelect).setParameter("lastId", "b");
+        verify(delete).setParameter("ids", Arrays.asList("a", "b"));
+        verify(delete).setParameter("ids", Arrays.asList("c"));
+        verify(tx, times(2)).begin();
+        verify(tx, times(2)).commit();
+    }
+
+    @Test
+    public void stopsWhenNothingMatches() {
+        when(firstSelect.getResultList()).thenReturn(Collections.emptyList());
+        assertEquals(0, new BatchDeleter(em, "Thing", "e.old = :old").execute());
+        verify(delete, never()).executeUpdate();
+        verify(tx, never()).begin();
+    }
+
+    @Test
+    public void joinsTransactionOfCaller() {
+        when(tx.isActive()).thenReturn(true);
+        when(firstSelect.getResultList()).thenReturn(Arrays.asList("a"));
+        when(delete.executeUpdate()).thenReturn(1);
+
+        assertEquals(1, new BatchDeleter(em, "Thing", "e.old = :old").setBatchSize(2).execute());
+        verify(tx, never()).begin();
+        verify(tx, never()).commit();
+    }
+
+    @Test
+    public void rollsBackFailedBatch() {
+        when(firstSelect.getResultList()).thenReturn(Arrays.asList("a"));
+        when(delete.executeUpdate()).thenThrow(new RuntimeException("locked"));
+        when(tx.isActive()).thenReturn(false, true);
+
+        try {
+            new BatchDeleter(em, "Thing", "e.old = :old").execute();
+            fail("expected the failure to be passed on");
+        }
+        catch (RuntimeException e) {
+            assertEquals("locked", e.getMessage());
+        }
+        verify(tx).rollback();
+    }
+
+    @Test
+    public void limitsRate() {
+        when(firstSelect.getResultList()).thenReturn(Arrays.asList("a", "b"));
+        when(nextSelect.getResultList()).thenReturn(Arrays.asList("c"));
+        when(delete.executeUpdate()).thenReturn(2, 1);
+
+        long start = System.currentTimeMillis();
+        new BatchDeleter(em, "Thing", "e.old = :old")
+            .setBatchSize(2)
+            .setMaxRowsPerSecond(10)
+            .execute();
+        // the first two rows use up 200 ms of the budget before the next batch
+        assertTrue(System.currentTimeMillis() - start >= 190);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyBatches() {
+        new BatchDeleter(em, "Thing", "e.old = :old").setBatchSize(0);
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.common.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * ThrottleTest
+ */
+public class ThrottleTest {
+
+    @Test
+    public void waitsForRate() {
+        long start = System.currentTimeMillis();
+        assertTrue(new Throttle(10).pause(3));
+        // three items at ten per second take 300 ms
+        assertTrue(System.currentTimeMillis() - start >= 290);
+    }
+
+    @Test
+    public void noLimit() {
+        long start = System.currentTimeMillis();
+        assertTrue(new Throttle(0).pause(1000000));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void stopsWhenInterrupted() {
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(new Throttle(1).pause(10));
+            assertTrue(Thread.currentThread().isInterrupted());
+        }
+        finally {
+            Thread.interrupted();
+        }
+    }
+}
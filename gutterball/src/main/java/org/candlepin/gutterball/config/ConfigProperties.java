@@ -47,6 +47,10 @@ public class ConfigProperties {
         "gutterball.tasks.data_cleanup.max_data_age";
     public static final String DATA_CLEANUP_TASK_MAX_EVENT_AGE_UNIT =
         "gutterball.tasks.data_cleanup.max_data_age_units";
+    public static final String DATA_CLEANUP_TASK_BATCH_SIZE =
+        "gutterball.tasks.data_cleanup.batch_size";
+    public static final String DATA_CLEANUP_TASK_MAX_ROWS_PER_SECOND =
+        "gutterball.tasks.data_cleanup.max_rows_per_second";
 
     // Authentication
     public static final String OAUTH_AUTHENTICATION = "gutterball.auth.oauth.enable";
@@ -81,6 +85,8 @@ public class ConfigProperties {
                 this.put(DATA_CLEANUP_TASK_SCHEDULE, "0 3 * * *");
                 this.put(DATA_CLEANUP_TASK_MAX_EVENT_AGE, "30");
                 this.put(DATA_CLEANUP_TASK_MAX_EVENT_AGE_UNIT, "days");
+                this.put(DATA_CLEANUP_TASK_BATCH_SIZE, "1000");
+                this.put(DATA_CLEANUP_TASK_MAX_ROWS_PER_SECOND, "0");
             }
         };
 }
@@ -17,12 +17,12 @@ package org.candlepin.gutterball.curator;
 
 import java.util.Calendar;
 
-import javax.persistence.Query;
-
+import org.candlepin.common.config.Configuration;
+import org.candlepin.common.util.BatchDeleter;
+import org.candlepin.gutterball.config.ConfigProperties;
 import org.candlepin.gutterball.model.Event;
 
 import com.google.inject.Inject;
-import com.google.inject.persist.Transactional;
 
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Projections;
@@ -34,9 +34,12 @@ import org.hibernate.criterion.Restrictions;
  */
 public class EventCurator extends BaseCurator<Event> {
 
+    private Configuration config;
+
     @Inject
-    public EventCurator() {
+    public EventCurator(Configuration config) {
         super(Event.class);
+        this.config = config;
     }
 
     public boolean hasEventForMessage(String messageId) {
@@ -50,17 +53,24 @@ public class EventCurator extends BaseCurator<Event> {
         return ((Long) criteria.uniqueResult()) > 0;
     }
 
-    @Transactional
+    /**
+     * Deletes processed events older than the given number of minutes, in batches
+     * that each commit on their own.
+     *
+     * @param minutes the age, in minutes, past which events are removed
+     * @return the number of events deleted
+     */
     public int cleanupEvents(int minutes) {
-        // Can't effectively delete items using Criteria API so we'll use HQL
-        // to get it done in one request.
         Calendar cal = Calendar.getInstance();
         cal.add(Calendar.MINUTE, -1 * minutes);
 
-        String deleteHQL = "delete from Event where timestamp <= :date and status != :event_status";
-        Query query = getEntityManager().createQuery(deleteHQL);
-        query.setParameter("date", cal.getTime());
-        query.setParameter("event_status", Event.Status.RECEIVED);
-        return query.executeUpdate();
+        return new BatchDeleter(getEntityManager(), "Event",
+            "e.timestamp <= :date and e.status != :event_status")
+            .setParameter("date", cal.getTime())
+            .setParameter("event_status", Event.Status.RECEIVED)
+            .setBatchSize(config.getInt(ConfigProperties.DATA_CLEANUP_TASK_BATCH_SIZE,
+                BatchDeleter.DEFAULT_BATCH_SIZE))
+            .setMaxRowsPerSecond(config.getInt(ConfigProperties.DATA_CLEANUP_TASK_MAX_ROWS_PER_SECOND, 0))
+            .execute();
     }
 }
@@ -54,6 +54,10 @@ import java.util.concurrent.TimeUnit;
  *      gutterball.tasks.data_cleanup.max_data_age_units:
  *          the unit of time (defined by {@link TimeUnit}) for data_cleanup.max_data_age
  *          (default: days)
+ *      gutterball.tasks.data_cleanup.batch_size:
+ *          how many events to delete per transaction (default: 1000)
+ *      gutterball.tasks.data_cleanup.max_rows_per_second:
+ *          the most events to delete per second, 0 for no limit (default: 0)
  * </pre>
  */
 public class DataCleanupTask implements Runnable {
@@ -17,7 +17,9 @@ package org.candlepin.gutterball.curator;
 
 import static org.junit.Assert.*;
 
+import org.candlepin.common.config.Configuration;
 import org.candlepin.gutterball.DatabaseTestFixture;
+import org.candlepin.gutterball.config.ConfigProperties;
 import org.candlepin.gutterball.model.Event;
 
 import org.junit.Before;
@@ -55,6 +57,28 @@ public class EventCuratorTest extends DatabaseTestFixture {
         assertFalse(curator.hasEventForMessage("not-found"));
     }
 
+    @Test
+    public void testCleanupEventsInBatches() {
+        beginTransaction();
+        for (int i = 0; i < 5; i++) {
+            Event old = createEvent("old" + i);
+            old.setTimestamp(new Date(System.currentTimeMillis() - 3600000L));
+            curator.create(old);
+        }
+        Event received = createEvent("received");
+        received.setStatus(Event.Status.RECEIVED);
+        received.setTimestamp(new Date(System.currentTimeMillis() - 3600000L));
+        curator.create(received);
+        commitTransaction();
+
+        injector.getInstance(Configuration.class)
+            .setProperty(ConfigProperties.DATA_CLEANUP_TASK_BATCH_SIZE, "2");
+        assertEquals(5, curator.cleanupEvents(30));
+        assertFalse(curator.hasEventForMessage("old0"));
+        assertTrue(curator.hasEventForMessage("received"));
+        assertTrue(curator.hasEventForMessage(event.getMessageId()));
+    }
+
     private Event createEvent(String messageId) {
         return new Event(messageId, "type", Event.Status.PROCESSED, "target", "targetName", "principal",
             "ownerId", "consumerId", "entityId", "oldEntity", "newEntity", "referenceId", "referenceType",
@@ -20,12 +20,21 @@ import static org.candlepin.common.config.ConfigurationPrefixes.JPA_CONFIG_PREFI
 import org.candlepin.pinsetter.tasks.ActiveEntitlementJob;
 import org.candlepin.pinsetter.tasks.CancelJobJob;
 import org.candlepin.pinsetter.tasks.CertificateRevocationListTask;
+import org.candlepin.pinsetter.tasks.EntitleByProductsJob;
 import org.candlepin.pinsetter.tasks.EntitlerJob;
 import org.candlepin.pinsetter.tasks.ExpiredPoolsJob;
 import org.candlepin.pinsetter.tasks.ExportCleaner;
+import org.candlepin.pinsetter.tasks.HealEntireOrgJob;
+import org.candlepin.pinsetter.tasks.HypervisorUpdateJob;
 import org.candlepin.pinsetter.tasks.ImportRecordJob;
 import org.candlepin.pinsetter.tasks.JobCleaner;
+import org.candlepin.pinsetter.tasks.RefreshPoolsForProductJob;
+import org.candlepin.pinsetter.tasks.RefreshPoolsJob;
+import org.candlepin.pinsetter.tasks.RegenDirtyEntitlementCertsJob;
+import org.candlepin.pinsetter.tasks.RegenEnvEntitlementCertsJob;
+import org.candlepin.pinsetter.tasks.RegenProductEntitlementCertsJob;
 import org.candlepin.pinsetter.tasks.SweepBarJob;
+import org.candlepin.pinsetter.tasks.UndoImportsJob;
 import org.candlepin.pinsetter.tasks.UnmappedGuestEntitlementCleanerJob;
 import org.candlepin.pinsetter.tasks.UnpauseJob;
 
@@ -164,14 +173,97 @@ public class ConfigProperties {
         UnpauseJob.class.getName(), SweepBarJob.class.getName(),
         ExportCleaner.class.getName(), ActiveEntitlementJob.class.getName(),
         UnmappedGuestEntitlementCleanerJob.class.getName(),
+        RegenDirtyEntitlementCertsJob.class.getName(),
     };
 
     public static final String ENTITLER_JOB_THROTTLE =
         "pinsetter." + EntitlerJob.class.getName() + ".throttle";
 
+    /**
+     * Cleanup jobs delete old rows in batches of this size, each in a transaction of
+     * its own, and at most the given number of rows per second (0 for no limit).
+     */
+    public static final String CLEANUP_BATCH_SIZE = "candlepin.cleanup.batch_size";
+    public static final String CLEANUP_MAX_ROWS_PER_SECOND = "candlepin.cleanup.max_rows_per_second";
+
+    /**
+     * Async jobs are grouped into named lanes that share the scheduler thread pool.
+     * A lane lists its job classes, the trigger priority they are queued with and
+     * how many of them may hold or wait for a thread at once (0 for no limit).
+     * Lanes do not reserve threads: jobs over the limit are stored without a
+     * trigger, and the UnpauseJob gives them one once the lane has room again.
+     */
+    public static final String PINSETTER_LANES = "pinsetter.lanes";
+    public static final String PINSETTER_LANE_PREFIX = "pinsetter.lane.";
+    public static final String PINSETTER_LANE_JOBS = ".jobs";
+    public static final String PINSETTER_LANE_PRIORITY = ".priority";
+    public static final String PINSETTER_LANE_MAX_RUNNING = ".max_running";
+    /**
+     * Limits a single job class, as in pinsetter.&lt;class name&gt;.max_running,
+     * whether or not it belongs to a lane.
+     */
+    public static final String PINSETTER_JOB_MAX_RUNNING = ".max_running";
+
+    private static final String[] INTERACTIVE_LANE_JOBS = new String[]{
+        EntitlerJob.class.getName(), EntitleByProductsJob.class.getName(),
+        HypervisorUpdateJob.class.getName(),
+    };
+
+    private static final String[] BATCH_LANE_JOBS = new String[]{
+        RefreshPoolsJob.class.getName(), RefreshPoolsForProductJob.class.getName(),
+        HealEntireOrgJob.class.getName(), RegenEnvEntitlementCertsJob.class.getName(),
+        RegenProductEntitlementCertsJob.class.getName(), UndoImportsJob.class.getName(),
+        RegenDirtyEntitlementCertsJob.class.getName(),
+    };
+
     public static final String BATCH_BIND_NUMBER_OF_POOLS_LIMIT =
         "candlepin.batch.bind.number_of_pools_limit";
 
+    /**
+     * Pools listed for a consumer or activation key have to pass the rules before they
+     * can be shown, so paged listings read candidates in batches of this size until the
+     * requested page is full.
+     */
+    public static final String POOL_LIST_BATCH_SIZE = "candlepin.pool.list.batch_size";
+    /**
+     * When a rules filtered pool listing stops early, estimate the total number of pools
+     * from the share of candidates that passed so far. Off by default, in which case the
+     * remaining candidates are still filtered to count the exact total.
+     */
+    public static final String POOL_LIST_ESTIMATE_TOTAL = "candlepin.pool.list.estimate_total";
+
+    /**
+     * Expired pools are cleaned up this many at a time, each page in a transaction of
+     * its own. A run stops after the given number of pages (0 for no limit) and the
+     * next run carries on with the pools that are left.
+     */
+    public static final String EXPIRED_POOLS_PAGE_SIZE = "candlepin.pool.expired.page_size";
+    public static final String EXPIRED_POOLS_MAX_PAGES = "candlepin.pool.expired.max_pages";
+
+    /**
+     * Large revocations, such as those caused by deleting pools, are carried out this
+     * many entitlements at a time, so the certificates of only one batch are loaded at
+     * once.
+     */
+    public static final String REVOKE_BATCH_SIZE = "candlepin.entitlement.revoke.batch_size";
+
+    /**
+     * Certificates marked dirty by lazy regeneration are regenerated in the background
+     * this many at a time, each batch in a transaction of its own. A run handles at most
+     * max_per_run entitlements, at most max_per_second of them per second (0 for no
+     * limit), and leaves the rest to the next run or to the consumers' next check in.
+     */
+    public static final String DIRTY_CERTS_BATCH_SIZE = "candlepin.entitlement.dirty_certs.batch_size";
+    public static final String DIRTY_CERTS_MAX_PER_RUN = "candlepin.entitlement.dirty_certs.max_per_run";
+    public static final String DIRTY_CERTS_MAX_PER_SECOND =
+        "candlepin.entitlement.dirty_certs.max_per_second";
+
+    /**
+     * Certificates affected by content being promoted to or demoted from an environment
+     * are regenerated this many at a time, each batch in a transaction of its own.
+     */
+    public static final String ENV_REGEN_BATCH_SIZE = "candlepin.environment.regen.batch_size";
+
     public static final String SYNC_WORK_DIR = "candlepin.sync.work_dir";
     public static final String CONSUMER_FACTS_MATCHER = "candlepin.consumer.facts.match_regex";
 
@@ -194,6 +286,58 @@ public class ConfigProperties {
 
     public static final String PRODUCT_CACHE_MAX = "candlepin.cache.product_cache_max";
 
+    /**
+     * How long, in seconds, GET /owners/{key}/info results are reused. Set to 0 to
+     * always rebuild them.
+     */
+    public static final String OWNER_INFO_CACHE_TTL = "candlepin.cache.owner_info_ttl_seconds";
+
+    /**
+     * How long, in seconds, finished job statuses are served from memory instead of
+     * being read again for every poll. Set to 0 to always read them.
+     */
+    public static final String JOB_STATUS_CACHE_TTL = "candlepin.cache.job_status_ttl_seconds";
+
+    /**
+     * The longest, in seconds, GET /jobs/{id}?wait=N holds a request open for the
+     * job to finish.
+     */
+    public static final String JOB_STATUS_MAX_WAIT = "candlepin.jobs.status_max_wait_seconds";
+
+    /**
+     * While a status request waits, how often, in seconds, it rereads the job in case
+     * it finished on another node.
+     */
+    public static final String JOB_STATUS_WAIT_RECHECK = "candlepin.jobs.status_recheck_seconds";
+
+    /**
+     * Compliance recalculations are queued in memory for delay_ms so repeated changes to
+     * the same consumer are only computed once, then run batch_size consumers per
+     * transaction. Beyond max_size queued consumers, or with the queue disabled, a
+     * ConsumerComplianceJob is scheduled per consumer instead.
+     */
+    public static final String COMPLIANCE_QUEUE_ENABLED = "candlepin.compliance.queue.enable";
+    public static final String COMPLIANCE_QUEUE_DELAY = "candlepin.compliance.queue.delay_ms";
+    public static final String COMPLIANCE_QUEUE_BATCH_SIZE = "candlepin.compliance.queue.batch_size";
+    public static final String COMPLIANCE_QUEUE_MAX_SIZE = "candlepin.compliance.queue.max_size";
+
+    /**
+     * Consumer check ins are kept in memory and written every flush_interval_seconds,
+     * or once flush_size consumers are waiting. A check in less than staleness_seconds
+     * after the stored one is not written at all.
+     */
+    public static final String CHECKIN_WRITE_BEHIND_ENABLED = "candlepin.checkin.write_behind.enable";
+    public static final String CHECKIN_FLUSH_INTERVAL = "candlepin.checkin.flush_interval_seconds";
+    public static final String CHECKIN_FLUSH_SIZE = "candlepin.checkin.flush_size";
+    public static final String CHECKIN_STALENESS = "candlepin.checkin.staleness_seconds";
+
+    /**
+     * Number of RSA key pairs generated ahead of time for new consumers, and the
+     * threads generating them. A size of 0 generates every key pair on demand.
+     */
+    public static final String KEYPAIR_POOL_SIZE = "candlepin.pki.keypair_pool.size";
+    public static final String KEYPAIR_POOL_THREADS = "candlepin.pki.keypair_pool.threads";
+
     public static final String INTEGER_FACTS = "candlepin.integer_facts";
     private static final String INTEGER_FACT_LIST = "";
 
@@ -267,7 +411,8 @@ public class ConfigProperties {
                 this.put(AUDIT_LISTENERS,
                     "org.candlepin.audit.DatabaseListener," +
                     "org.candlepin.audit.LoggingListener," +
-                    "org.candlepin.audit.ActivationListener");
+                    "org.candlepin.audit.ActivationListener," +
+                    "org.candlepin.audit.OwnerInfoListener");
                 this.put(AUDIT_LOG_FILE, "/var/log/candlepin/audit.log");
                 this.put(AUDIT_LOG_VERBOSE, "false");
                 this.put(AUDIT_FILTER_ENABLED, "false");
@@ -315,7 +460,27 @@ public class ConfigProperties {
                 this.put("org.quartz.threadPool.threadPriority", "5");
                 this.put(DEFAULT_TASKS, StringUtils.join(DEFAULT_TASK_LIST, ","));
                 this.put(ENTITLER_JOB_THROTTLE, "7");
+                this.put(CLEANUP_BATCH_SIZE, "1000");
+                this.put(CLEANUP_MAX_ROWS_PER_SECOND, "0");
+                this.put(PINSETTER_LANES, "interactive,batch");
+                this.put(PINSETTER_LANE_PREFIX + "interactive" + PINSETTER_LANE_JOBS,
+                    StringUtils.join(INTERACTIVE_LANE_JOBS, ","));
+                this.put(PINSETTER_LANE_PREFIX + "interactive" + PINSETTER_LANE_PRIORITY, "7");
+                this.put(PINSETTER_LANE_PREFIX + "batch" + PINSETTER_LANE_JOBS,
+                    StringUtils.join(BATCH_LANE_JOBS, ","));
+                this.put(PINSETTER_LANE_PREFIX + "batch" + PINSETTER_LANE_PRIORITY, "3");
+                // leave a third of the default thread pool to everything else
+                this.put(PINSETTER_LANE_PREFIX + "batch" + PINSETTER_LANE_MAX_RUNNING, "10");
                 this.put(BATCH_BIND_NUMBER_OF_POOLS_LIMIT, "100");
+                this.put(POOL_LIST_BATCH_SIZE, "200");
+                this.put(POOL_LIST_ESTIMATE_TOTAL, "false");
+                this.put(EXPIRED_POOLS_PAGE_SIZE, "100");
+                this.put(EXPIRED_POOLS_MAX_PAGES, "0");
+                this.put(REVOKE_BATCH_SIZE, "1000");
+                this.put(DIRTY_CERTS_BATCH_SIZE, "50");
+                this.put(DIRTY_CERTS_MAX_PER_RUN, "5000");
+                this.put(DIRTY_CERTS_MAX_PER_SECOND, "20");
+                this.put(ENV_REGEN_BATCH_SIZE, "100");
 
                 // AMQP (Qpid) configuration used by events
                 this.put(AMQP_INTEGRATION_ENABLED, String.valueOf(false));
@@ -360,6 +525,21 @@ public class ConfigProperties {
                  */
                 this.put(PRODUCT_CACHE_MAX, "100");
 
+                this.put(OWNER_INFO_CACHE_TTL, "10");
+                this.put(JOB_STATUS_CACHE_TTL, "300");
+                this.put(JOB_STATUS_MAX_WAIT, "60");
+                this.put(JOB_STATUS_WAIT_RECHECK, "3");
+                this.put(COMPLIANCE_QUEUE_ENABLED, "true");
+                this.put(COMPLIANCE_QUEUE_DELAY, "1000");
+                this.put(COMPLIANCE_QUEUE_BATCH_SIZE, "50");
+                this.put(COMPLIANCE_QUEUE_MAX_SIZE, "10000");
+                this.put(CHECKIN_WRITE_BEHIND_ENABLED, "true");
+                this.put(CHECKIN_FLUSH_INTERVAL, "5");
+                this.put(CHECKIN_FLUSH_SIZE, "500");
+                this.put(CHECKIN_STALENESS, "0");
+                this.put(KEYPAIR_POOL_SIZE, "20");
+                this.put(KEYPAIR_POOL_THREADS, "1");
+
                 /**
                  * As we do math on some facts and attributes, we need to constrain
                  * some values
@@ -20,7 +20,6 @@ import org.candlepin.audit.Event.Type;
 import org.candlepin.audit.EventBuilder;
 import org.candlepin.audit.EventFactory;
 import org.candlepin.audit.EventSink;
-import org.candlepin.auth.SystemPrincipal;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
@@ -49,10 +48,6 @@ import org.candlepin.model.ProductCurator;
 import org.candlepin.model.SourceSubscription;
 import org.candlepin.model.activationkeys.ActivationKey;
 import org.candlepin.model.dto.Subscription;
-import org.candlepin.pinsetter.core.PinsetterException;
-import org.candlepin.pinsetter.core.PinsetterJobListener;
-import org.candlepin.pinsetter.core.PinsetterKernel;
-import org.candlepin.pinsetter.tasks.ConsumerComplianceJob;
 import org.candlepin.policy.EntitlementRefusedException;
 import org.candlepin.policy.ValidationError;
 import org.candlepin.policy.ValidationResult;
@@ -78,7 +73,6 @@ import com.google.inject.persist.Transactional;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
-import org.quartz.JobDetail;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
@@ -87,10 +81,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -109,6 +106,9 @@ public class CandlepinPoolManager implements PoolManager {
     private static Logger log = LoggerFactory.getLogger(CandlepinPoolManager.class);
 
     private static final int MAX_ENTITLE_RETRIES = 3;
+    private static final int DEFAULT_EXPIRED_POOLS_PAGE_SIZE = 100;
+    private static final int DEFAULT_REVOKE_BATCH_SIZE = 1000;
+    private static final int DEFAULT_ENV_REGEN_BATCH_SIZE = 100;
 
     private EventSink sink;
     private EventFactory eventFactory;
@@ -126,7 +126,7 @@ public class CandlepinPoolManager implements PoolManager {
     private ProductCurator prodCurator;
     private ContentCurator contentCurator;
     private OwnerCurator ownerCurator;
-    private PinsetterKernel pinsetterKernel;
+    private ComplianceRecalcQueue complianceQueue;
 
     /**
      * @param poolCurator
@@ -144,7 +144,7 @@ public class CandlepinPoolManager implements PoolManager {
         EntitlementCertificateCurator ecC, ComplianceRules complianceRules,
         AutobindRules autobindRules, ActivationKeyRules activationKeyRules,
         ProductCurator prodCurator, ContentCurator contentCurator, OwnerCurator ownerCurator,
-        PinsetterKernel pinsetterKernel, I18n i18n) {
+        ComplianceRecalcQueue complianceQueue, I18n i18n) {
 
         this.poolCurator = poolCurator;
         this.sink = sink;
@@ -163,7 +163,7 @@ public class CandlepinPoolManager implements PoolManager {
         this.prodCurator = prodCurator;
         this.contentCurator = contentCurator;
         this.ownerCurator = ownerCurator;
-        this.pinsetterKernel = pinsetterKernel;
+        this.complianceQueue = complianceQueue;
         this.i18n = i18n;
     }
 
@@ -560,10 +560,48 @@ public class CandlepinPoolManager implements PoolManager {
         regenerateCertificatesByEntIds(updatedMasterPools, lazy);
     }
 
-    public void cleanupExpiredPools() {
-        List<Pool> pools = poolCurator.listExpiredPools();
-        log.info("Expired pools: {}", pools.size());
+    @Override
+    public ExpiredPoolsResult cleanupExpiredPools() {
+        int pageSize = config.getInt(ConfigProperties.EXPIRED_POOLS_PAGE_SIZE, 0);
+        if (pageSize < 1) {
+            pageSize = DEFAULT_EXPIRED_POOLS_PAGE_SIZE;
+        }
+        int maxPages = config.getInt(ConfigProperties.EXPIRED_POOLS_MAX_PAGES, 0);
+        Date now = new Date();
+        ExpiredPoolsResult result = new ExpiredPoolsResult();
+
+        Date lastEndDate = null;
+        String lastId = null;
+        List<Pool> pools;
+        do {
+            pools = poolCurator.listExpiredPools(now, lastEndDate, lastId, pageSize);
+            if (pools.isEmpty()) {
+                break;
+            }
+
+            Pool last = pools.get(pools.size() - 1);
+            lastEndDate = last.getEndDate();
+            lastId = last.getId();
+
+            deleteExpiredPage(pools, result);
+            // the page is committed, don't keep its pools and entitlements around
+            poolCurator.clear();
+
+            if (maxPages > 0 && result.getPages() >= maxPages && pools.size() == pageSize) {
+                log.info("Stopping after {} pages of expired pools, the rest is left for the next run",
+                    result.getPages());
+                break;
+            }
+        } while (pools.size() == pageSize);
+
+        log.info("Expired pools: {}", result);
+        return result;
+    }
+
+    @Transactional
+    protected void deleteExpiredPage(List<Pool> pools, ExpiredPoolsResult result) {
         List<Pool> toDelete = new ArrayList<Pool>();
+        int entitlements = 0;
         for (Pool p : pools) {
             if (p.hasAttribute("derived_pool")) {
                 // Derived pools will be cleaned up when their parent entitlement
@@ -573,8 +611,10 @@ public class CandlepinPoolManager implements PoolManager {
 
             log.info("Cleaning up expired pool: {} ({})", p.getId(), p.getEndDate());
             toDelete.add(p);
+            entitlements += p.getEntitlements().size();
         }
         deletePools(toDelete);
+        result.addPage(toDelete.size(), entitlements);
     }
 
     private boolean isExpired(Subscription subscription) {
@@ -1485,23 +1525,13 @@ public class CandlepinPoolManager implements PoolManager {
 
         for (Entitlement regenEnt : entitlementCurator.listModifying(entitlements.values())) {
             // Lazily regenerate modified certificates:
-            this.regenerateCertificatesOf(regenEnt, generateUeberCert, true);
+            this.regenerateCertificatesOf(regenEnt, generateUeberCert, true, false);
         }
 
         // we might have changed the bonus pool quantities, lets find out.
         handler.handleBonusPools(poolQuantities, entitlements);
 
-        JobDetail detail = ConsumerComplianceJob.scheduleWithForceUpdate(consumer);
-        detail.getJobDataMap().put(PinsetterJobListener.PRINCIPAL_KEY, new SystemPrincipal());
-
-        log.info("Triggering ConsumerComplianceJob: {} for consumer: {}", detail.getKey(),
-            consumer.getUuid());
-        try {
-            pinsetterKernel.scheduleSingleJob(detail);
-        }
-        catch (PinsetterException e) {
-            log.error("ConsumerComplianceJob schedule failed", e.getMessage());
-        }
+        complianceQueue.enqueue(consumer, true);
 
         poolCurator.flush();
 
@@ -1580,20 +1610,32 @@ public class CandlepinPoolManager implements PoolManager {
     }
 
     @Override
-    public void regenerateEntitlementCertificates(Consumer consumer, boolean lazy) {
+    public void regenerateEntitlementCertificates(Consumer consumer, boolean lazy, boolean force) {
         log.info(
             "Regenerating #{}, entitlement certificates for consumer: {}",
             consumer.getEntitlements().size(), consumer
         );
 
         // TODO - Assumes only 1 entitlement certificate exists per entitlement
-        this.regenerateCertificatesOf(consumer.getEntitlements(), lazy);
+        this.regenerateCertificatesOf(consumer.getEntitlements(), lazy, force);
     }
 
     @Transactional
-    void regenerateCertificatesOf(Iterable<Entitlement> iterable, boolean lazy) {
+    void regenerateCertificatesOf(Iterable<Entitlement> iterable, boolean lazy, boolean force) {
+        int regenerated = 0;
+        int unchanged = 0;
         for (Entitlement e : iterable) {
-            regenerateCertificatesOf(e, false, lazy);
+            if (regenerateIfChanged(e, false, lazy, force)) {
+                regenerated++;
+            }
+            else if (!lazy && !e.getDirty()) {
+                unchanged++;
+            }
+        }
+
+        if (!lazy) {
+            log.info("Regenerated {} entitlement certificates, kept {} unchanged ones",
+                regenerated, unchanged);
         }
     }
 
@@ -1602,7 +1644,7 @@ public class CandlepinPoolManager implements PoolManager {
         for (String entId : iterable) {
             Entitlement e = entitlementCurator.find(entId);
             if (e != null) {
-                regenerateCertificatesOf(e, false, lazy);
+                regenerateCertificatesOf(e, false, lazy, false);
             }
             else {
                 // If it has been deleted, that's fine, one less to regenerate
@@ -1614,41 +1656,37 @@ public class CandlepinPoolManager implements PoolManager {
     /**
      * Used to regenerate certificates affected by a mass content promotion/demotion.
      *
-     * WARNING: can be quite expensive, currently we must look up all entitlements in the
-     * environment, all provided products for each entitlement, and check if any product
-     * provides any of the modified content set IDs.
+     * The affected entitlements are found in a single query, and their certificates
+     * are regenerated in batches, each batch in a transaction of its own.
      *
      * @param e Environment where the content was promoted/demoted.
      * @param affectedContent List of content set IDs promoted/demoted.
      */
     @Override
-    @Transactional
     public void regenerateCertificatesOf(Environment e, Set<String> affectedContent, boolean lazy) {
         log.info("Regenerating relevant certificates in environment: {}", e.getId());
 
-        List<Entitlement> allEnvEnts = entitlementCurator.listByEnvironment(e);
-        Set<Entitlement> entsToRegen = new HashSet<Entitlement>();
-        for (Entitlement ent : allEnvEnts) {
-            Product prod = productCurator.lookupById(ent.getOwner(),
-                ent.getPool().getProductId());
-            for (String contentId : affectedContent) {
-                if (prod.hasContent(contentId)) {
-                    entsToRegen.add(ent);
-                }
-            }
+        List<String> entIds = entitlementCurator.listIdsByEnvironmentAndContent(e, affectedContent);
+        log.info("Found {} certificates to regenerate.", entIds.size());
 
-            // Now the provided products:
-            for (Product provided : ent.getPool().getProvidedProducts()) {
-                for (String contentId : affectedContent) {
-                    if (provided.hasContent(contentId)) {
-                        entsToRegen.add(ent);
-                    }
-                }
-            }
+        int batchSize = config.getInt(ConfigProperties.ENV_REGEN_BATCH_SIZE, 0);
+        if (batchSize <= 0) {
+            batchSize = DEFAULT_ENV_REGEN_BATCH_SIZE;
+        }
+
+        for (int from = 0; from < entIds.size(); from += batchSize) {
+            regenerateCertificatesOfBatch(
+                entIds.subList(from, Math.min(from + batchSize, entIds.size())), lazy);
+
+            // Certificates are big, don't hold on to them between batches
+            entitlementCurator.clear();
         }
+    }
 
-        log.info("Found {} certificates to regenerate.", entsToRegen.size());
-        regenerateCertificatesOf(entsToRegen, lazy);
+    @Transactional
+    void regenerateCertificatesOfBatch(Collection<String> entIds, boolean lazy) {
+        // Entitlements deleted since they were looked up are simply not found
+        regenerateCertificatesOf(entitlementCurator.listAllByIds(entIds), lazy, false);
     }
 
     /**
@@ -1656,52 +1694,95 @@ public class CandlepinPoolManager implements PoolManager {
      */
     @Override
     @Transactional
-    public void regenerateCertificatesOf(Entitlement e, boolean ueberCertificate, boolean lazy) {
+    public void regenerateCertificatesOf(Entitlement e, boolean ueberCertificate, boolean lazy,
+        boolean force) {
+        regenerateIfChanged(e, ueberCertificate, lazy, force);
+    }
+
+    /**
+     * Regenerates the certificate of an entitlement unless the new one would say exactly
+     * what the current one does. An unchanged certificate keeps its serial and no
+     * entitlement changed event is sent for it. Forcing always issues a new certificate.
+     *
+     * @return true if a new certificate was issued
+     */
+    @Transactional
+    boolean regenerateIfChanged(Entitlement e, boolean ueberCertificate, boolean lazy,
+        boolean force) {
+
+        if (force) {
+            // Without the hash they were issued with, the current certificates can not be
+            // handed back as unchanged, now or when a lazy regeneration gets to them.
+            for (EntitlementCertificate cert : e.getCertificates()) {
+                cert.setContentHash(null);
+            }
+        }
 
         if (lazy) {
             log.info("Marking certificates dirty for entitlement: {}", e);
             e.setDirty(true);
-            return;
+            return false;
         }
 
         log.debug("Revoking entitlementCertificates of: {}", e);
 
-        Entitlement tempE = new Entitlement();
-        tempE.setCertificates(e.getCertificates());
-        e.setCertificates(null);
+        // The adapter hands back the current certificate if its content is unchanged
+        Set<EntitlementCertificate> previous =
+            new HashSet<EntitlementCertificate>(e.getCertificates());
 
         // below call creates new certificates and saves it to the backend.
         try {
             EntitlementCertificate generated = this.generateEntitlementCertificate(
                 e.getPool(), e, ueberCertificate
             );
-
-            e.setDirty(false);
-            entitlementCurator.merge(e);
-            for (EntitlementCertificate ec : tempE.getCertificates()) {
-                log.debug("Deleting entitlementCertificate: #{}", ec.getId());
-                this.entitlementCertificateCurator.delete(ec);
-            }
-
-            // send entitlement changed event.
-            this.sink.queueEvent(this.eventFactory.entitlementChanged(e));
-            log.debug("Generated entitlementCertificate: #{}", generated.getId());
+            return replaceCertificates(e, previous, generated);
         }
         catch (CertificateSizeException cse) {
-            e.setCertificates(tempE.getCertificates());
             log.warn("The certificate cannot be regenerated at this time: {}", cse.getMessage());
+            return false;
         }
     }
 
+    /*
+     * Puts a freshly generated certificate in place of the previous ones, or keeps them
+     * if the adapter handed back one of them unchanged. Returns true if the entitlement
+     * got a new certificate.
+     */
+    private boolean replaceCertificates(Entitlement e, Set<EntitlementCertificate> previous,
+        EntitlementCertificate generated) {
+        e.setDirty(false);
+        boolean unchanged = generated != null && previous.contains(generated);
+        if (!unchanged) {
+            e.getCertificates().removeAll(previous);
+        }
+        entitlementCurator.merge(e);
+
+        if (unchanged) {
+            log.debug("Entitlement certificate unchanged: #{}", generated.getId());
+            return false;
+        }
+
+        for (EntitlementCertificate ec : previous) {
+            log.debug("Deleting entitlementCertificate: #{}", ec.getId());
+            this.entitlementCertificateCurator.delete(ec);
+        }
+
+        // send entitlement changed event.
+        this.sink.queueEvent(this.eventFactory.entitlementChanged(e));
+        log.debug("Generated entitlementCertificate: #{}", generated.getId());
+        return true;
+    }
+
     @Override
     @Transactional
-    public void regenerateCertificatesOf(Owner owner, String productId, boolean lazy) {
+    public void regenerateCertificatesOf(Owner owner, String productId, boolean lazy,
+        boolean force) {
         List<Pool> poolsForProduct = this.listAvailableEntitlementPools(null, null, owner,
             productId, null, new Date(), false, false, new PoolFilterBuilder(), null)
             .getPageData();
 
         for (Pool pool : poolsForProduct) {
-            regenerateCertificatesOf(pool.getEntitlements(), lazy);
+            regenerateCertificatesOf(pool.getEntitlements(), lazy, force);
         }
     }
 
@@ -1720,24 +1801,101 @@ public class CandlepinPoolManager implements PoolManager {
      */
     @Transactional
     public void revokeEntitlements(List<Entitlement> entsToRevoke, boolean regenCertsAndStatuses) {
+        revokeEntitlements(entsToRevoke, regenCertsAndStatuses, new HashSet<String>());
+    }
+
+    /*
+     * Revokes the entitlements, adding the ids of the derived pools deleted with them
+     * to deletedPoolIds.
+     */
+    private void revokeEntitlements(List<Entitlement> entsToRevoke, boolean regenCertsAndStatuses,
+        Set<String> deletedPoolIds) {
         if (log.isDebugEnabled()) {
             log.debug("Starting batch revoke of entitlements: {}", getEntIds(entsToRevoke));
         }
         if (CollectionUtils.isEmpty(entsToRevoke)) {
             return;
         }
+
+        int batchSize = getRevokeBatchSize();
+        if (entsToRevoke.size() <= batchSize) {
+            revokeEntitlementBatch(entsToRevoke, regenCertsAndStatuses, true, deletedPoolIds);
+            return;
+        }
+
+        // Keep the entitlements of a consumer together, so its stacks are updated once
+        List<Entitlement> sorted = new ArrayList<Entitlement>(entsToRevoke);
+        Collections.sort(sorted, new Comparator<Entitlement>() {
+            @Override
+            public int compare(Entitlement e1, Entitlement e2) {
+                String id1 = e1.getConsumer().getId();
+                String id2 = e2.getConsumer().getId();
+                if (id1 == null || id2 == null) {
+                    return id1 == null ? (id2 == null ? 0 : -1) : 1;
+                }
+                return id1.compareTo(id2);
+            }
+        });
+
+        // The batches share this transaction, so every pool they touch is locked here in
+        // one sorted pass rather than batch by batch, out of order with other lockers.
+        lockPools(sorted, poolCurator.listBySourceEntitlements(sorted));
+
+        log.info("Batch revoking {} entitlements, {} at a time", sorted.size(), batchSize);
+        Set<String> revokedIds = new HashSet<String>();
+        List<Entitlement> batch = new ArrayList<Entitlement>();
+        for (int i = 0; i < sorted.size(); i++) {
+            Entitlement ent = sorted.get(i);
+            // Entitlements of derived pools may have gone with an earlier batch already
+            if (ent.getId() == null || !revokedIds.contains(ent.getId())) {
+                batch.add(ent);
+            }
+
+            if (batch.size() == batchSize || (i == sorted.size() - 1 && !batch.isEmpty())) {
+                for (Entitlement revoked : revokeEntitlementBatch(batch, regenCertsAndStatuses, false,
+                    deletedPoolIds)) {
+                    revokedIds.add(revoked.getId());
+                }
+                batch = new ArrayList<Entitlement>();
+            }
+        }
+    }
+
+    private int getRevokeBatchSize() {
+        int batchSize = config.getInt(ConfigProperties.REVOKE_BATCH_SIZE, 0);
+        return batchSize > 0 ? batchSize : DEFAULT_REVOKE_BATCH_SIZE;
+    }
+
+    /*
+     * Locks the pools of the given entitlements and the pools derived from them.
+     */
+    private void lockPools(List<Entitlement> ents, List<Pool> derivedPools) {
+        List<Pool> poolsToLock = new ArrayList<Pool>(derivedPools);
+        for (Entitlement ent : ents) {
+            poolsToLock.add(ent.getPool());
+        }
+        poolCurator.lock(poolsToLock);
+    }
+
+    /*
+     * Revokes one batch of entitlements, along with the pools derived from them and the
+     * entitlements of those pools. Returns everything that was revoked and adds the ids of
+     * the deleted pools to deletedPoolIds. The pools are locked first unless the caller
+     * has locked them already.
+     */
+    private List<Entitlement> revokeEntitlementBatch(List<Entitlement> entsToRevoke,
+        boolean regenCertsAndStatuses, boolean lockPools, Set<String> deletedPoolIds) {
         List<Pool> poolsToDelete = poolCurator.listBySourceEntitlements(entsToRevoke);
         if (log.isDebugEnabled()) {
             log.debug("Found additional pools to delete by source entitlements: {}",
                 getPoolIds(poolsToDelete));
         }
 
-        List<Pool> poolsToLock = new ArrayList<Pool>();
-        poolsToLock.addAll(poolsToDelete);
+        if (lockPools) {
+            lockPools(entsToRevoke, poolsToDelete);
+        }
 
         for (Entitlement ent: entsToRevoke) {
-            poolsToLock.add(ent.getPool());
-
             // If we are deleting a developer entitlement, be sure to delete the
             // associated pool as well.
             if (ent.getPool() != null && ent.getPool().isDevelopmentPool()) {
@@ -1745,7 +1903,6 @@ public class CandlepinPoolManager implements PoolManager {
             }
         }
 
-        poolCurator.lock(poolsToLock);
         log.info("Batch revoking {} entitlements ", entsToRevoke.size());
         entsToRevoke =  new ArrayList<Entitlement>(entsToRevoke);
 
@@ -1754,21 +1911,37 @@ public class CandlepinPoolManager implements PoolManager {
         }
 
         log.debug("Adjusting consumed quantities on pools");
+        // Consumed and exported quantity to give back to each pool
+        Map<Pool, long[]> adjustments = new IdentityHashMap<Pool, long[]>();
         for (Entitlement ent : entsToRevoke) {
             //We need to trigger lazy load of provided products
             //to have access to those products later in this method.
             ent.getPool().getProvidedProducts().size();
             Pool pool = ent.getPool();
-            pool.setConsumed(pool.getConsumed() - ent.getQuantity());
             pool.getEntitlements().remove(ent);
+
+            long[] adjustment = adjustments.get(pool);
+            if (adjustment == null) {
+                adjustment = new long[2];
+                adjustments.put(pool, adjustment);
+            }
+            adjustment[0] += ent.getQuantity();
             Consumer consumer = ent.getConsumer();
             if (consumer.getType().isManifest()) {
-                pool.setExported(pool.getExported() - ent.getQuantity());
+                adjustment[1] += ent.getQuantity();
+            }
+        }
+        for (Entry<Pool, long[]> entry : adjustments.entrySet()) {
+            Pool pool = entry.getKey();
+            pool.setConsumed(pool.getConsumed() - entry.getValue()[0]);
+            if (entry.getValue()[1] != 0) {
+                pool.setExported(pool.getExported() - entry.getValue()[1]);
             }
         }
 
         log.info("Starting batch delete of pools");
         poolCurator.batchDelete(poolsToDelete);
+        deletedPoolIds.addAll(getPoolIds(poolsToDelete));
         log.info("Starting batch delete of entitlements");
         entitlementCurator.batchDelete(entsToRevoke);
         log.info("Starting delete flush");
@@ -1789,51 +1962,33 @@ public class CandlepinPoolManager implements PoolManager {
             log.info("Regeneration and status computation was not requested finishing batch revoke");
 
             sendDeletedEvents(entsToRevoke);
-            return;
+            return entsToRevoke;
         }
 
-        List<Entitlement> batch = new ArrayList<Entitlement>();
-        for (int i = 0; i < entsToRevoke.size(); i++) {
-            Entitlement entitlement = entsToRevoke.get(i);
-            batch.add(entitlement);
-
-            // We work in batches of maximum size 1000.
-            if (i % 1000 == 0) {
-                Set<Entitlement> modifiedEnts = entitlementCurator.batchListModifying(batch);
-                if (log.isDebugEnabled() && modifiedEnts.size() > 0) {
-                    log.debug("Found modifying entitlements for which we " +
-                        "need to regenerate certificates: {}", getEntIds(modifiedEnts));
-                }
-
-                this.regenerateCertificatesOf(modifiedEnts, true);
-                batch.clear();
+        // We work in batches of maximum size 1000.
+        for (int from = 0; from < entsToRevoke.size(); from += 1000) {
+            List<Entitlement> batch = entsToRevoke.subList(from,
+                Math.min(from + 1000, entsToRevoke.size()));
+            Set<Entitlement> modifiedEnts = entitlementCurator.batchListModifying(batch);
+            if (log.isDebugEnabled() && modifiedEnts.size() > 0) {
+                log.debug("Found modifying entitlements for which we " +
+                    "need to regenerate certificates: {}", getEntIds(modifiedEnts));
             }
-        }
 
-        if (!batch.isEmpty()) {
-            this.regenerateCertificatesOf(entitlementCurator.batchListModifying(batch), true);
+            this.regenerateCertificatesOf(modifiedEnts, true, false);
         }
 
         log.debug("Modifier entitlements done.");
 
         log.info("Scheduling Compliance status for {} consumers.", consumerSortedEntitlements.size());
         for (Consumer consumer : consumerSortedEntitlements.keySet()) {
-            JobDetail detail = ConsumerComplianceJob.scheduleStatusCheck(consumer, null, false, true);
-            detail.getJobDataMap().put(PinsetterJobListener.PRINCIPAL_KEY, new SystemPrincipal());
-
-            log.info("Triggering ConsumerComplianceJob: {} for consumer: {}", detail.getKey(),
-                consumer.getUuid());
-            try {
-                pinsetterKernel.scheduleSingleJob(detail);
-            }
-            catch (PinsetterException e) {
-                log.error("ConsumerComplianceJob schedule failed", e.getMessage());
-            }
+            complianceQueue.enqueue(consumer, false);
         }
 
         log.info("All statuses recomputation scheduled.");
 
         sendDeletedEvents(entsToRevoke);
+        return entsToRevoke;
     }
 
     private void sendDeletedEvents(List<Entitlement> entsToRevoke) {
@@ -1974,25 +2129,44 @@ public class CandlepinPoolManager implements PoolManager {
             return;
         }
 
+        // Pools are deleted a chunk at a time, a chunk holding about a revoke batch worth of
+        // entitlements. Flushing each chunk drops its deleted pools and entitlements from
+        // the session, so the entitlements of all the pools are never loaded together.
+        int batchSize = getRevokeBatchSize();
+        Set<String> deletedPoolIds = new HashSet<String>();
+        List<Pool> chunk = new ArrayList<Pool>();
         List<Entitlement> entitlementsToRevoke = new ArrayList<Entitlement>();
 
-        for (Pool p : pools) {
-            if (log.isDebugEnabled()) {
-                log.debug("Deletion of pool {} will cause revocation of the following entitlements: {}.",
-                    p.getId(), getEntIds(p.getEntitlements()));
+        for (Iterator<Pool> it = pools.iterator(); it.hasNext();) {
+            Pool p = it.next();
+            // Derived pools go with the entitlement they came from, maybe in an earlier chunk
+            if (!deletedPoolIds.contains(p.getId())) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Deletion of pool {} will cause revocation of the following " +
+                        "entitlements: {}.", p.getId(), getEntIds(p.getEntitlements()));
+                }
+                chunk.add(p);
+                entitlementsToRevoke.addAll(p.getEntitlements());
             }
-            entitlementsToRevoke.addAll(p.getEntitlements());
-        }
 
-        if (!pools.isEmpty()) {
-            revokeEntitlements(entitlementsToRevoke);
-            log.debug("Batch deleting pools after successful revocation");
-            poolCurator.batchDelete(pools);
-        }
+            if (!chunk.isEmpty() && (entitlementsToRevoke.size() >= batchSize || !it.hasNext())) {
+                revokeEntitlements(entitlementsToRevoke, true, deletedPoolIds);
+                List<Event> events = new ArrayList<Event>();
+                for (Pool pool : chunk) {
+                    events.add(eventFactory.poolDeleted(pool));
+                }
 
-        for (Pool pool : pools) {
-            Event event = eventFactory.poolDeleted(pool);
-            sink.queueEvent(event);
+                log.debug("Batch deleting pools after successful revocation");
+                poolCurator.batchDelete(chunk);
+                poolCurator.flush();
+                deletedPoolIds.addAll(getPoolIds(chunk));
+
+                for (Event event : events) {
+                    sink.queueEvent(event);
+                }
+                chunk = new ArrayList<Pool>();
+                entitlementsToRevoke = new ArrayList<Entitlement>();
+            }
         }
     }
 
@@ -2031,17 +2205,124 @@ public class CandlepinPoolManager implements PoolManager {
     }
 
     @Override
+    @Transactional
     public void regenerateDirtyEntitlements(List<Entitlement> entitlements) {
-
-        List<Entitlement> dirtyEntitlements = new ArrayList<Entitlement>();
+        List<String> dirtyIds = new ArrayList<String>();
         for (Entitlement e : entitlements) {
             if (e.getDirty()) {
                 log.info("Found dirty entitlement to regenerate: {}", e);
-                dirtyEntitlements.add(e);
+                dirtyIds.add(e.getId());
+            }
+        }
+
+        if (dirtyIds.isEmpty()) {
+            return;
+        }
+
+        List<Entitlement> locked = entitlementCurator.lockAndLoadBatch(dirtyIds);
+        for (Entitlement e : locked) {
+            // Loaded before we held the lock, the background job may have got to it since
+            entitlementCurator.refresh(e);
+        }
+        regenerateDirty(locked);
+    }
+
+    @Override
+    @Transactional
+    public int regenerateDirtyEntitlementsByIds(Collection<String> entitlementIds) {
+        return regenerateDirty(entitlementCurator.lockAndLoadBatch(entitlementIds));
+    }
+
+    /*
+     * Regenerates the certificates of the locked entitlements that are still dirty,
+     * with one call to the certificate adapter per consumer. Returns how many were
+     * regenerated or found unchanged.
+     */
+    private int regenerateDirty(List<Entitlement> locked) {
+        Map<Consumer, List<Map<String, Entitlement>>> byConsumer =
+            new LinkedHashMap<Consumer, List<Map<String, Entitlement>>>();
+        for (Entitlement e : locked) {
+            // A check in may have beaten us to it
+            if (!e.getDirty()) {
+                continue;
+            }
+
+            List<Map<String, Entitlement>> batches = byConsumer.get(e.getConsumer());
+            if (batches == null) {
+                batches = new ArrayList<Map<String, Entitlement>>();
+                byConsumer.put(e.getConsumer(), batches);
+            }
+
+            // The adapter keys entitlements by pool, a second one from the same pool
+            // goes in a batch of its own
+            Map<String, Entitlement> batch = null;
+            for (Map<String, Entitlement> candidate : batches) {
+                if (!candidate.containsKey(e.getPool().getId())) {
+                    batch = candidate;
+                    break;
+                }
+            }
+            if (batch == null) {
+                batch = new HashMap<String, Entitlement>();
+                batches.add(batch);
+            }
+            batch.put(e.getPool().getId(), e);
+        }
+
+        int handled = 0;
+        int regenerated = 0;
+        for (Entry<Consumer, List<Map<String, Entitlement>>> entry : byConsumer.entrySet()) {
+            for (Map<String, Entitlement> batch : entry.getValue()) {
+                regenerated += regenerateBatch(entry.getKey(), batch);
+                for (Entitlement e : batch.values()) {
+                    if (!e.getDirty()) {
+                        handled++;
+                    }
+                }
+            }
+        }
+
+        log.debug("Regenerated {} dirty entitlement certificates, kept {} unchanged ones",
+            regenerated, handled - regenerated);
+        return handled;
+    }
+
+    /*
+     * Regenerates the certificates of entitlements of one consumer, keyed by pool, in a
+     * single call to the certificate adapter. Returns how many got a new certificate.
+     */
+    private int regenerateBatch(Consumer consumer, Map<String, Entitlement> entitlements) {
+        Map<String, Product> products = new HashMap<String, Product>();
+        Map<String, Set<EntitlementCertificate>> previous =
+            new HashMap<String, Set<EntitlementCertificate>>();
+        for (Entry<String, Entitlement> entry : entitlements.entrySet()) {
+            products.put(entry.getKey(), entry.getValue().getPool().getProduct());
+            previous.put(entry.getKey(),
+                new HashSet<EntitlementCertificate>(entry.getValue().getCertificates()));
+        }
+
+        int regenerated = 0;
+        Map<String, EntitlementCertificate> generated;
+        try {
+            generated = generateEntitlementCertificates(consumer, products, entitlements, false);
+        }
+        catch (CertificateSizeException cse) {
+            // Go one at a time so only the oversized certificate is left dirty
+            for (Entitlement e : entitlements.values()) {
+                if (regenerateIfChanged(e, false, false, false)) {
+                    regenerated++;
+                }
             }
+            return regenerated;
         }
 
-        regenerateCertificatesOf(dirtyEntitlements, false);
+        for (Entry<String, Entitlement> entry : entitlements.entrySet()) {
+            if (replaceCertificates(entry.getValue(), previous.get(entry.getKey()),
+                generated.get(entry.getKey()))) {
+                regenerated++;
+            }
+        }
+        return regenerated;
     }
 
     @Override
@@ -2167,7 +2448,7 @@ public class CandlepinPoolManager implements PoolManager {
         public void handleSelfCertificates(Consumer consumer, Map<String, PoolQuantity> poolQuantities,
             Map<String, Entitlement> entitlements, boolean generateUeberCert) {
             for (Entry<String, Entitlement> entry : entitlements.entrySet()) {
-                regenerateCertificatesOf(entry.getValue(), generateUeberCert, true);
+                regenerateCertificatesOf(entry.getValue(), generateUeberCert, true, false);
             }
         }
         @Override
@@ -2189,6 +2470,12 @@ public class CandlepinPoolManager implements PoolManager {
             filters.addAttributeFilter(Pool.DEVELOPMENT_POOL_ATTRIBUTE, "!true");
         }
 
+        if (postFilter && pageRequest != null && (pageRequest.isSeeking() ||
+            (pageRequest.isPaging() && poolCurator.isSeekable(pageRequest)))) {
+            return listPostFilteredPoolPage(consumer, key, owner, productId, subscriptionId,
+                activeOn, activeOnly, includeWarnings, filters, pageRequest);
+        }
+
         Page<List<Pool>> page = this.poolCurator.listAvailableEntitlementPools(consumer,
             owner, productId, subscriptionId, activeOn, activeOnly, filters, pageRequest, postFilter);
 
@@ -2203,7 +2490,23 @@ public class CandlepinPoolManager implements PoolManager {
         // Note that something could change between the time we list a pool as
         // available, and the consumer requests the actual entitlement, and the
         // request still could fail.
-        List<Pool> resultingPools = page.getPageData();
+        List<Pool> resultingPools = filterPools(consumer, key, page.getPageData(),
+            includeWarnings);
+
+        // Set maxRecords once we are done filtering
+        page.setMaxRecords(resultingPools.size());
+
+        if (pageRequest != null && pageRequest.isPaging()) {
+            resultingPools = poolCurator.takeSubList(pageRequest, resultingPools);
+        }
+
+        page.setPageData(resultingPools);
+        return page;
+    }
+
+    private List<Pool> filterPools(Consumer consumer, ActivationKey key, List<Pool> pools,
+        boolean includeWarnings) {
+        List<Pool> resultingPools = pools;
         if (consumer != null) {
             resultingPools = enforcer.filterPools(
                 consumer, resultingPools, includeWarnings);
@@ -2212,15 +2515,86 @@ public class CandlepinPoolManager implements PoolManager {
             resultingPools = this.filterPoolsForActKey(
                 key, resultingPools, includeWarnings);
         }
+        return resultingPools;
+    }
 
-        // Set maxRecords once we are done filtering
-        page.setMaxRecords(resultingPools.size());
+    /**
+     * Builds one page of pools which have to pass the rules for a consumer or activation
+     * key before they can be listed. Candidates are read in sort order, one seeking batch
+     * at a time, and each batch is filtered before the next is read. Reading stops as soon
+     * as the requested page is full and one more pool is known to pass, so only the pools
+     * leading up to the requested page are ever loaded and run through the rules.
+     * <p/>
+     * Unless an estimated total is enabled (see
+     * {@link ConfigProperties#POOL_LIST_ESTIMATE_TOTAL}) the remaining batches are still
+     * filtered to count the exact total, without keeping their pools. Seeking pages carry
+     * no total.
+     */
+    private Page<List<Pool>> listPostFilteredPoolPage(Consumer consumer, ActivationKey key,
+        Owner owner, String productId, String subscriptionId, Date activeOn, boolean activeOnly,
+        boolean includeWarnings, PoolFilterBuilder filters, PageRequest pageRequest) {
+
+        int perPage = pageRequest.getPerPage();
+        int skip = pageRequest.isSeeking() ? 0 : (pageRequest.getPage() - 1) * perPage;
+
+        PageRequest batchRequest = new PageRequest();
+        batchRequest.setSortBy(pageRequest.getSortBy());
+        batchRequest.setOrder(pageRequest.getOrder());
+        batchRequest.setPerPage(Math.max(1, config.getInt(ConfigProperties.POOL_LIST_BATCH_SIZE,
+            perPage)));
+        batchRequest.setCursor(pageRequest.isSeeking() ? pageRequest.getCursor() : "");
+
+        boolean estimateTotal = config.getBoolean(ConfigProperties.POOL_LIST_ESTIMATE_TOTAL,
+            false);
+        boolean countAll = !pageRequest.isSeeking() && !estimateTotal;
+
+        List<Pool> pagePools = new ArrayList<Pool>(perPage);
+        int passed = 0;
+        int scanned = 0;
+        boolean exhausted = false;
+
+        while (countAll || passed <= skip + perPage) {
+            Page<List<Pool>> batch = poolCurator.listAvailableEntitlementPools(consumer,
+                owner, productId, subscriptionId, activeOn, activeOnly, filters, batchRequest, false);
+            scanned += batch.getPageData().size();
+
+            for (Pool pool : filterPools(consumer, key, batch.getPageData(), includeWarnings)) {
+                if (passed >= skip && pagePools.size() < perPage) {
+                    pagePools.add(pool);
+                }
+                passed++;
+            }
 
-        if (pageRequest != null && pageRequest.isPaging()) {
-            resultingPools = poolCurator.takeSubList(pageRequest, resultingPools);
+            if (batch.getNextCursor() == null) {
+                exhausted = true;
+                break;
+            }
+            batchRequest.setCursor(batch.getNextCursor());
+        }
+
+        log.debug("Listed {} of {} scanned pools, {} passed the rules", pagePools.size(),
+            scanned, passed);
+
+        Page<List<Pool>> page = new Page<List<Pool>>();
+        page.setPageData(pagePools);
+        page.setPageRequest(pageRequest);
+
+        if (pageRequest.isSeeking()) {
+            if (passed > perPage) {
+                page.setNextCursor(poolCurator.createCursor(pagePools.get(perPage - 1),
+                    batchRequest));
+            }
+        }
+        else if (exhausted) {
+            page.setMaxRecords(passed);
+        }
+        else {
+            int candidates = poolCurator.countAvailableEntitlementPools(consumer, owner,
+                productId, subscriptionId, activeOn, activeOnly, filters);
+            long estimate = Math.round((double) passed * candidates / scanned);
+            page.setMaxRecords((int) Math.max(passed, estimate));
         }
 
-        page.setPageData(resultingPools);
         return page;
     }
 
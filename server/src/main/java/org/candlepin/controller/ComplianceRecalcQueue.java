@@ -0,0 +1,421 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.audit.EventSink;
+import org.candlepin.auth.Principal;
+import org.candlepin.auth.SystemPrincipal;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.ComplianceQueueStatus;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.pinsetter.core.PinsetterException;
+import org.candlepin.pinsetter.core.PinsetterJobListener;
+import org.candlepin.pinsetter.core.PinsetterKernel;
+import org.candlepin.pinsetter.tasks.ConsumerComplianceJob;
+import org.candlepin.policy.js.compliance.ComplianceRules;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.persist.Transactional;
+import com.google.inject.persist.UnitOfWork;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+import org.quartz.JobDetail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+/**
+ * Collects consumers whose compliance status needs to be recalculated and
+ * recalculates them in batches on a background thread.
+ *
+ * A consumer queued several times within the delay is only recalculated once.
+ * Consumers queued inside a transaction join the queue when it commits, so the
+ * recalculation reads what the transaction wrote. The queue lives in memory; when it
+ * is full, disabled, or shut down with work still pending, consumers are handed to a
+ * durable ConsumerComplianceJob instead. Consumers lost to a crash get their status
+ * recalculated on their next check-in.
+ */
+@Singleton
+public class ComplianceRecalcQueue {
+    private static Logger log = LoggerFactory.getLogger(ComplianceRecalcQueue.class);
+
+    // How long shutdown waits for a batch that is being recalculated, in seconds
+    private static final long SHUTDOWN_WAIT = 30;
+
+    private final Provider<ConsumerCurator> consumerCuratorProvider;
+    private final Provider<ComplianceRules> complianceRulesProvider;
+    private final PinsetterKernel pinsetterKernel;
+    private final EventSink eventSink;
+    private final UnitOfWork unitOfWork;
+    private final Provider<EntityManager> entityManagerProvider;
+
+    private final boolean enabled;
+    private final long delay;
+    private final int batchSize;
+    private final int maxSize;
+
+    private final LinkedHashMap<String, PendingConsumer> pending =
+        new LinkedHashMap<String, PendingConsumer>();
+    // the batch taken off the queue and being recalculated
+    private List<PendingConsumer> inFlight = new ArrayList<PendingConsumer>();
+    private ScheduledExecutorService executor;
+    private boolean drainScheduled;
+    private boolean shutdown;
+
+    private long queued;
+    private long coalesced;
+    private long recalculated;
+    private long batches;
+    private long overflowed;
+    private long lastLag;
+    private long maxLag;
+
+    @Inject
+    public ComplianceRecalcQueue(Provider<ConsumerCurator> consumerCuratorProvider,
+        Provider<ComplianceRules> complianceRulesProvider, PinsetterKernel pinsetterKernel,
+        EventSink eventSink, UnitOfWork unitOfWork, Provider<EntityManager> entityManagerProvider,
+        Configuration config) {
+        this.consumerCuratorProvider = consumerCuratorProvider;
+        this.complianceRulesProvider = complianceRulesProvider;
+        this.pinsetterKernel = pinsetterKernel;
+        this.eventSink = eventSink;
+        this.unitOfWork = unitOfWork;
+        this.entityManagerProvider = entityManagerProvider;
+
+        this.enabled = config.getBoolean(ConfigProperties.COMPLIANCE_QUEUE_ENABLED, true);
+        this.delay = config.getLong(ConfigProperties.COMPLIANCE_QUEUE_DELAY, 1000L);
+        this.batchSize = Math.max(1, config.getInt(ConfigProperties.COMPLIANCE_QUEUE_BATCH_SIZE, 50));
+        this.maxSize = config.getInt(ConfigProperties.COMPLIANCE_QUEUE_MAX_SIZE, 10000);
+    }
+
+    /**
+     * Queues the consumer for a compliance status recalculation.
+     *
+     * @param consumer the consumer whose entitlements changed
+     * @param forceUpdate whether the consumer should be saved even if its status
+     *  did not change
+     */
+    public void enqueue(Consumer consumer, boolean forceUpdate) {
+        final PendingConsumer entry = new PendingConsumer(consumer.getUuid(),
+            consumer.getOwner().getKey(), forceUpdate);
+
+        boolean accepted;
+        synchronized (this) {
+            accepted = enabled && !shutdown &&
+                (pending.size() < maxSize || pending.containsKey(entry.uuid));
+            if (enabled && !accepted) {
+                overflowed++;
+            }
+        }
+
+        if (!accepted) {
+            schedulePersistentJob(entry);
+            return;
+        }
+
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                add(entry);
+            }
+        });
+    }
+
+    /*
+     * Runs the task once the current transaction has committed, or right away when
+     * there is none. Nothing is run for a transaction that rolls back.
+     */
+    private void afterCommit(final Runnable task) {
+        Transaction transaction =
+            ((Session) entityManagerProvider.get().getDelegate()).getTransaction();
+        if (!transaction.isActive()) {
+            task.run();
+            return;
+        }
+
+        transaction.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do until the outcome is known
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    task.run();
+                }
+            }
+        });
+    }
+
+    private synchronized void add(PendingConsumer entry) {
+        PendingConsumer existing = pending.get(entry.uuid);
+        if (existing != null) {
+            existing.forceUpdate |= entry.forceUpdate;
+            coalesced++;
+            return;
+        }
+
+        if (shutdown) {
+            // Too late to schedule a job from here; the next check-in recalculates it
+            log.warn("Compliance recalculation for {} dropped during shutdown", entry.uuid);
+            return;
+        }
+
+        // The size was checked when the consumer was queued, so transactions committing
+        // together can take the queue slightly past its limit.
+        entry.queuedAt = System.currentTimeMillis();
+        pending.put(entry.uuid, entry);
+        queued++;
+        scheduleDrain(delay);
+    }
+
+    /**
+     * @return the current queue depth, lag and throughput counters
+     */
+    public synchronized ComplianceQueueStatus getStatus() {
+        long oldest = 0;
+        if (!pending.isEmpty()) {
+            oldest = System.currentTimeMillis() - pending.values().iterator().next().queuedAt;
+        }
+
+        return new ComplianceQueueStatus(pending.size(), oldest, lastLag, maxLag, queued,
+            coalesced, recalculated, batches, overflowed);
+    }
+
+    /**
+     * Stops the background thread, letting a batch it is recalculating finish, and
+     * hands whatever is still queued over to durable compliance jobs.
+     */
+    public void shutdown() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            shutdown = true;
+            running = executor;
+        }
+
+        if (running != null) {
+            running.shutdown();
+            try {
+                if (!running.awaitTermination(SHUTDOWN_WAIT, TimeUnit.SECONDS)) {
+                    log.warn("Compliance recalculation still running at shutdown, " +
+                        "scheduling jobs for its batch");
+                    running.shutdownNow();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<PendingConsumer> remaining;
+        synchronized (this) {
+            remaining = new ArrayList<PendingConsumer>(inFlight);
+            remaining.addAll(pending.values());
+            inFlight = new ArrayList<PendingConsumer>();
+            pending.clear();
+        }
+
+        if (!remaining.isEmpty()) {
+            log.info("Persisting {} queued compliance recalculations", remaining.size());
+        }
+
+        for (PendingConsumer entry : remaining) {
+            schedulePersistentJob(entry);
+        }
+    }
+
+    private void scheduleDrain(long wait) {
+        if (drainScheduled || shutdown) {
+            return;
+        }
+
+        if (executor == null) {
+            ScheduledThreadPoolExecutor created = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "compliance-recalc");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            // a drain still waiting for its delay is not run once shutdown has begun
+            created.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            executor = created;
+        }
+
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (ComplianceRecalcQueue.this) {
+                    drainScheduled = false;
+                }
+
+                try {
+                    while (drain(System.currentTimeMillis()) > 0) {
+                        // keep going while there are ready consumers
+                    }
+                }
+                catch (RuntimeException e) {
+                    log.error("Compliance recalculation failed", e);
+                }
+                finally {
+                    synchronized (ComplianceRecalcQueue.this) {
+                        if (!pending.isEmpty()) {
+                            long age = System.currentTimeMillis() -
+                                pending.values().iterator().next().queuedAt;
+                            scheduleDrain(Math.max(0, delay - age));
+                        }
+                    }
+                }
+            }
+        }, wait, TimeUnit.MILLISECONDS);
+        drainScheduled = true;
+    }
+
+    /**
+     * Recalculates one batch of consumers that have waited at least the delay.
+     *
+     * @param now the current time
+     * @return the number of consumers taken off the queue
+     */
+    int drain(long now) {
+        List<PendingConsumer> batch = new ArrayList<PendingConsumer>();
+        synchronized (this) {
+            if (shutdown) {
+                // what is left goes to jobs
+                return 0;
+            }
+
+            Iterator<PendingConsumer> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                PendingConsumer entry = iterator.next();
+                if (now - entry.queuedAt < delay) {
+                    break;
+                }
+
+                batch.add(entry);
+                iterator.remove();
+            }
+            inFlight = batch;
+        }
+
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        ResteasyProviderFactory.pushContext(Principal.class, new SystemPrincipal());
+        unitOfWork.begin();
+        try {
+            recalculate(batch);
+            eventSink.sendEvents();
+        }
+        catch (RuntimeException e) {
+            eventSink.rollback();
+            log.error("Compliance recalculation failed for {} consumers, scheduling jobs instead",
+                batch.size(), e);
+            for (PendingConsumer entry : batch) {
+                schedulePersistentJob(entry);
+            }
+        }
+        finally {
+            unitOfWork.end();
+            ResteasyProviderFactory.popContextData(Principal.class);
+        }
+
+        long lag = System.currentTimeMillis() - batch.get(0).queuedAt;
+        synchronized (this) {
+            if (inFlight == batch) {
+                inFlight = new ArrayList<PendingConsumer>();
+            }
+            recalculated += batch.size();
+            batches++;
+            lastLag = lag;
+            maxLag = Math.max(maxLag, lag);
+        }
+
+        return batch.size();
+    }
+
+    @Transactional
+    protected void recalculate(List<PendingConsumer> batch) {
+        Map<String, PendingConsumer> byUuid = new LinkedHashMap<String, PendingConsumer>();
+        for (PendingConsumer entry : batch) {
+            byUuid.put(entry.uuid, entry);
+        }
+
+        ConsumerCurator consumerCurator = consumerCuratorProvider.get();
+        ComplianceRules complianceRules = complianceRulesProvider.get();
+
+        // Consumers deleted in the meantime are simply not returned
+        for (Consumer consumer : consumerCurator.lockAndLoadBatch(byUuid.keySet())) {
+            boolean forceUpdate = byUuid.get(consumer.getUuid()).forceUpdate;
+            complianceRules.getStatus(consumer, null, false, !forceUpdate);
+            if (forceUpdate) {
+                consumerCurator.update(consumer);
+            }
+        }
+    }
+
+    private void schedulePersistentJob(PendingConsumer entry) {
+        JobDetail detail = ConsumerComplianceJob.scheduleForConsumer(entry.ownerKey, entry.uuid,
+            entry.forceUpdate);
+        detail.getJobDataMap().put(PinsetterJobListener.PRINCIPAL_KEY, new SystemPrincipal());
+
+        log.info("Triggering ConsumerComplianceJob: {} for consumer: {}", detail.getKey(), entry.uuid);
+        try {
+            pinsetterKernel.scheduleSingleJob(detail);
+        }
+        catch (PinsetterException e) {
+            log.error("ConsumerComplianceJob schedule failed", e);
+        }
+    }
+
+    /**
+     * A consumer waiting for its compliance status to be recalculated.
+     */
+    static class PendingConsumer {
+        private final String uuid;
+        private final String ownerKey;
+        private long queuedAt;
+        private boolean forceUpdate;
+
+        PendingConsumer(String uuid, String ownerKey, boolean forceUpdate) {
+            this.uuid = uuid;
+            this.ownerKey = ownerKey;
+            this.forceUpdate = forceUpdate;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.CheckInQueueStatus;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records consumer check ins in memory and writes them to the database in batches.
+ *
+ * Only the latest check in of each consumer is kept. The pending check ins are
+ * written every flush interval, as soon as flush size consumers are waiting, and on
+ * shutdown, so a consumer's last check in as stored in the database may lag behind by
+ * up to the flush interval. Check ins arriving within the staleness tolerance of the
+ * stored value are not written at all. Check ins recorded once the recorder has been
+ * shut down are written straight away.
+ */
+@Singleton
+public class ConsumerCheckInRecorder {
+    private static Logger log = LoggerFactory.getLogger(ConsumerCheckInRecorder.class);
+
+    private final Provider<ConsumerCurator> consumerCuratorProvider;
+    private final UnitOfWork unitOfWork;
+
+    private final boolean enabled;
+    private final long staleness;
+    private final int flushSize;
+
+    private final ConcurrentMap<String, Date> pending = new ConcurrentHashMap<String, Date>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean stopped;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    @Inject
+    public ConsumerCheckInRecorder(Provider<ConsumerCurator> consumerCuratorProvider,
+        UnitOfWork unitOfWork, Configuration config) {
+        this.consumerCuratorProvider = consumerCuratorProvider;
+        this.unitOfWork = unitOfWork;
+
+        this.enabled = config.getBoolean(ConfigProperties.CHECKIN_WRITE_BEHIND_ENABLED, true);
+        this.staleness = config.getLong(ConfigProperties.CHECKIN_STALENESS, 0L) * 1000;
+        this.flushSize = Math.max(1, config.getInt(ConfigProperties.CHECKIN_FLUSH_SIZE, 500));
+        long interval = Math.max(1, config.getLong(ConfigProperties.CHECKIN_FLUSH_INTERVAL, 5L));
+
+        if (enabled) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "consumer-checkin");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+            executor.scheduleWithFixedDelay(new FlushTask(), interval, interval, TimeUnit.SECONDS);
+        }
+        else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Records that the consumer checked in now.
+     *
+     * @param consumer the consumer that checked in
+     */
+    public void record(Consumer consumer) {
+        record(consumer, new Date());
+    }
+
+    /**
+     * Records a check in of the consumer.
+     *
+     * @param consumer the consumer that checked in
+     * @param checkin the time of the check in
+     */
+    public void record(Consumer consumer, Date checkin) {
+        if (!enabled) {
+            consumerCuratorProvider.get().updateLastCheckin(consumer, checkin);
+            return;
+        }
+
+        Date stored = consumer.getLastCheckin();
+        if (stored != null && checkin.getTime() - stored.getTime() < staleness) {
+            skipped.incrementAndGet();
+            return;
+        }
+
+        merge(consumer.getId(), checkin);
+        recorded.incrementAndGet();
+
+        if (stopped) {
+            // The final flush may already be done, nothing else would write this one
+            writeAfterShutdown();
+        }
+        else if (pending.size() >= flushSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(new FlushTask());
+            }
+            catch (RejectedExecutionException e) {
+                // Shut down since the check above, the final flush picks the check in up
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes all pending check ins to the database.
+     *
+     * @return the number of check ins taken off the queue
+     */
+    public int flush() {
+        flushRequested.set(false);
+
+        Map<String, Date> batch = drain();
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        unitOfWork.begin();
+        try {
+            consumerCuratorProvider.get().updateLastCheckins(batch);
+            flushed.addAndGet(batch.size());
+            batches.incrementAndGet();
+        }
+        catch (RuntimeException e) {
+            failures.incrementAndGet();
+            log.error("Unable to write {} consumer check ins, will retry", batch.size(), e);
+            for (Map.Entry<String, Date> entry : batch.entrySet()) {
+                merge(entry.getKey(), entry.getValue());
+            }
+        }
+        finally {
+            unitOfWork.end();
+        }
+
+        return batch.size();
+    }
+
+    /*
+     * Writes the pending check ins within the caller's unit of work. Nothing is retried,
+     * a failure is logged rather than passed on to the request recording the check in.
+     */
+    private void writeAfterShutdown() {
+        Map<String, Date> batch = drain();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            consumerCuratorProvider.get().updateLastCheckins(batch);
+            flushed.addAndGet(batch.size());
+            batches.incrementAndGet();
+        }
+        catch (RuntimeException e) {
+            failures.incrementAndGet();
+            log.warn("Unable to write {} consumer check ins after shutdown", batch.size(), e);
+        }
+    }
+
+    private Map<String, Date> drain() {
+        Map<String, Date> batch = new HashMap<String, Date>();
+        for (String id : pending.keySet()) {
+            Date checkin = pending.remove(id);
+            if (checkin != null) {
+                batch.put(id, checkin);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * @return the number of pending check ins and how many have been written so far
+     */
+    public CheckInQueueStatus getStatus() {
+        return new CheckInQueueStatus(pending.size(), recorded.get(), skipped.get(),
+            flushed.get(), batches.get(), failures.get());
+    }
+
+    /**
+     * Stops the background flushes and writes whatever is still pending. Check ins
+     * recorded from here on are written as they arrive.
+     */
+    public void shutdown() {
+        stopped = true;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        int count = flush();
+        if (count > 0) {
+            log.info("Wrote {} pending consumer check ins", count);
+        }
+    }
+
+    /*
+     * Keeps the most recent check in of the consumer, whatever order concurrent
+     * requests arrive in.
+     */
+    private void merge(String consumerId, Date checkin) {
+        Date previous = pending.putIfAbsent(consumerId, checkin);
+        while (previous != null && previous.before(checkin)) {
+            if (pending.replace(consumerId, previous, checkin)) {
+                return;
+            }
+            previous = pending.putIfAbsent(consumerId, checkin);
+        }
+    }
+
+    private class FlushTask implements Runnable {
+        @Override
+        public void run() {
+            try {
+                flush();
+            }
+            catch (RuntimeException e) {
+                log.error("Consumer check in flush failed", e);
+            }
+        }
+    }
+}
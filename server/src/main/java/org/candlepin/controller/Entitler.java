@@ -112,14 +112,23 @@ public class Entitler {
             return bindByPoolQuantities(consumer, poolMap);
         }
         catch (EntitlementRefusedException e) {
-            // TODO: Could be multiple errors, but we'll just report the first
-            // one for now
-            Pool pool = poolCurator.find(poolId);
-            throw new ForbiddenException(messageTranslator.poolErrorToMessage(pool,
-                    e.getResults().get(poolId).getErrors().get(0)));
+            throw new ForbiddenException(getRefusalMessage(poolId, e));
         }
     }
 
+    /**
+     * @param poolId the pool that was refused
+     * @param e the refusal of a bind including the pool
+     * @return a translated message explaining why the pool was refused
+     */
+    public String getRefusalMessage(String poolId, EntitlementRefusedException e) {
+        // TODO: Could be multiple errors, but we'll just report the first
+        // one for now
+        Pool pool = poolCurator.find(poolId);
+        return messageTranslator.poolErrorToMessage(pool,
+            e.getResults().get(poolId).getErrors().get(0));
+    }
+
     public List<Entitlement> bindByPoolQuantities(Consumer consumer,
         Map<String, Integer> poolIdAndQuantities) throws EntitlementRefusedException {
         // Attempt to create entitlements:
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+/**
+ * What a run of the expired pool cleanup removed.
+ */
+public class ExpiredPoolsResult {
+    private int pages;
+    private int pools;
+    private int entitlements;
+
+    void addPage(int deletedPools, int revokedEntitlements) {
+        pages++;
+        pools += deletedPools;
+        entitlements += revokedEntitlements;
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    public int getPools() {
+        return pools;
+    }
+
+    public int getEntitlements() {
+        return entitlements;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Deleted %d expired pools and revoked %d entitlements in %d pages",
+            pools, entitlements, pages);
+    }
+}
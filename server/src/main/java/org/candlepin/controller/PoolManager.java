@@ -136,14 +136,17 @@ public interface PoolManager {
     /**
      * @param e
      * @param ueberCertificate TODO
+     * @param force issue a new certificate even if its content is unchanged, as an
+     * explicit request to regenerate expects new serials
      */
-    void regenerateCertificatesOf(Entitlement e, boolean ueberCertificate, boolean lazy);
+    void regenerateCertificatesOf(Entitlement e, boolean ueberCertificate, boolean lazy,
+        boolean force);
 
     void regenerateCertificatesOf(Environment env, Set<String> contentIds, boolean lazy);
 
-    void regenerateCertificatesOf(Owner owner, String productId, boolean lazy);
+    void regenerateCertificatesOf(Owner owner, String productId, boolean lazy, boolean force);
 
-    void regenerateEntitlementCertificates(Consumer consumer, boolean lazy);
+    void regenerateEntitlementCertificates(Consumer consumer, boolean lazy, boolean force);
 
     int revokeAllEntitlements(Consumer consumer);
     int revokeAllEntitlements(Consumer consumer, boolean regenCertsAndStatuses);
@@ -155,16 +158,37 @@ public interface PoolManager {
 
     Pool setPoolQuantity(Pool pool, long set);
 
+    /**
+     * Regenerates the certificates of those of the given entitlements that are dirty.
+     * They are locked first, so a check in and the background job never both
+     * regenerate the same entitlement.
+     *
+     * @param entitlements entitlements of a consumer that is checking in
+     */
     void regenerateDirtyEntitlements(List<Entitlement> entitlements);
 
+    /**
+     * Regenerates the certificates of those of the given entitlements that are still
+     * dirty, in one transaction. The entitlements are locked the same way
+     * {@link #regenerateDirtyEntitlements(List)} locks them.
+     *
+     * @param entitlementIds ids of the entitlements to look at
+     * @return the number of entitlements whose certificates were regenerated, or found
+     * unchanged and kept
+     */
+    int regenerateDirtyEntitlementsByIds(Collection<String> entitlementIds);
+
     Entitlement adjustEntitlementQuantity(Consumer consumer, Entitlement entitlement,
         Integer quantity) throws EntitlementRefusedException;
 
     /**
      * Search for any expired pools on the server, cleanup their subscription,
-     * entitlements, and the pool itself.
+     * entitlements, and the pool itself. Pools are handled a page at a time, and
+     * each page is committed before the next is read.
+     *
+     * @return how many pools and entitlements were removed
      */
-    void cleanupExpiredPools();
+    ExpiredPoolsResult cleanupExpiredPools();
 
 
     /**
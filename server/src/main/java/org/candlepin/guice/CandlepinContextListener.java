@@ -24,8 +24,11 @@ import org.candlepin.common.config.EncryptedConfiguration;
 import org.candlepin.common.config.MapConfiguration;
 import org.candlepin.common.logging.LoggingConfigurator;
 import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.ComplianceRecalcQueue;
+import org.candlepin.controller.ConsumerCheckInRecorder;
 import org.candlepin.logging.LoggerContextListener;
 import org.candlepin.pinsetter.core.PinsetterContextListener;
+import org.candlepin.pki.KeyPairPool;
 import org.candlepin.resteasy.ResourceLocatorMap;
 import org.candlepin.util.Util;
 
@@ -135,12 +138,21 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
         pinsetterListener = injector.getInstance(PinsetterContextListener.class);
         pinsetterListener.contextInitialized();
 
+        // Start generating key pairs before the first consumer registers
+        injector.getInstance(KeyPairPool.class);
+
         loggerListener = injector.getInstance(LoggerContextListener.class);
         this.injector = injector;
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent event) {
+        // Finish the batches in flight while the database and messaging are still up,
+        // and hand queued recalculations to pinsetter while it can still store them
+        injector.getInstance(ComplianceRecalcQueue.class).shutdown();
+        injector.getInstance(ConsumerCheckInRecorder.class).shutdown();
+        injector.getInstance(KeyPairPool.class).shutdown();
+
         super.contextDestroyed(event);
         if (config.getBoolean(HORNETQ_ENABLED)) {
             hornetqListener.contextDestroyed();
@@ -16,8 +16,10 @@ package org.candlepin.model;
 
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.permissions.Permission;
+import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.exceptions.ConcurrentModificationException;
 import org.candlepin.common.paging.Page;
+import org.candlepin.common.paging.PageCursor;
 import org.candlepin.common.paging.PageRequest;
 import org.candlepin.guice.PrincipalProvider;
 
@@ -35,6 +37,7 @@ import org.hibernate.criterion.Projection;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.internal.CriteriaImpl;
+import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.transform.ResultTransformer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,8 +45,10 @@ import org.xnap.commons.i18n.I18n;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 
@@ -147,6 +152,8 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     public Page<List<E>> listAll(PageRequest pageRequest, boolean postFilter) {
         Page<List<E>> resultsPage;
         if (postFilter) {
+            rejectSeeking(pageRequest);
+
             // Create a copy of the page request with just the order and sort by values.
             // Since we are filtering after the results are returned, we don't want
             // to send the page or page size values in.
@@ -173,7 +180,10 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     public Page<List<E>> listAll(PageRequest pageRequest) {
         Page<List<E>> page = new Page<List<E>>();
 
-        if (pageRequest != null) {
+        if (pageRequest != null && pageRequest.isSeeking()) {
+            loadSeekPage(createSecureCriteria(), pageRequest, page);
+        }
+        else if (pageRequest != null) {
             Criteria count = createSecureCriteria();
             page.setMaxRecords(findRowCount(count));
 
@@ -201,21 +211,185 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     }
 
     private Order createPagingOrder(PageRequest p) {
-        String sortBy = (p.getSortBy() == null) ?
-            AbstractHibernateObject.DEFAULT_SORT_FIELD : p.getSortBy();
+        return createOrder(getPagingSortBy(p), p);
+    }
+
+    private Order createOrder(String property, PageRequest p) {
         PageRequest.Order order = (p.getOrder() == null) ?
             PageRequest.DEFAULT_ORDER : p.getOrder();
 
         switch (order) {
             case ASCENDING:
-                return Order.asc(sortBy);
+                return Order.asc(property);
             //DESCENDING
             default:
-                return Order.desc(sortBy);
+                return Order.desc(property);
         }
     }
 
-    private Integer findRowCount(Criteria c) {
+    private String getPagingSortBy(PageRequest p) {
+        return (p.getSortBy() == null) ?
+            AbstractHibernateObject.DEFAULT_SORT_FIELD : p.getSortBy();
+    }
+
+    /**
+     * Loads one page of a seek (keyset) paged request. Rather than skipping over
+     * the rows of all preceding pages, the query starts right after the (sort key, id)
+     * position carried by the request cursor, so every page costs the same no matter
+     * how deep into the results it is. No row count is performed.
+     * <p/>
+     * The sort key must be a simple, non-null property of the entity.
+     */
+    @SuppressWarnings("unchecked")
+    private void loadSeekPage(Criteria c, PageRequest pageRequest, Page<List<E>> page) {
+        ClassMetadata metadata = getClassMetadata();
+        String idProperty = metadata.getIdentifierPropertyName();
+        String sortBy = getPagingSortBy(pageRequest);
+        boolean sortById = sortBy.equals(idProperty);
+
+        if (!isSeekable(pageRequest)) {
+            throw new BadRequestException(
+                i18n.tr("Cannot page by cursor when sorting by \"{0}\".", sortBy));
+        }
+
+        if (pageRequest.getCursor().length() > 0) {
+            PageCursor cursor;
+            try {
+                cursor = PageCursor.decode(pageRequest.getCursor());
+            }
+            catch (IllegalArgumentException e) {
+                throw new BadRequestException(i18n.tr("Invalid paging cursor."), e);
+            }
+
+            c.add(createSeekCriterion(metadata, sortBy, sortById, cursor, pageRequest));
+        }
+
+        c.addOrder(createOrder(sortBy, pageRequest));
+        if (!sortById) {
+            c.addOrder(createOrder(idProperty, pageRequest));
+        }
+
+        // Fetch one extra row to find out whether there is a following page.
+        c.setMaxResults(pageRequest.getPerPage() + 1);
+        List<E> results = c.list();
+
+        if (results.size() > pageRequest.getPerPage()) {
+            results = new ArrayList<E>(results.subList(0, pageRequest.getPerPage()));
+            page.setNextCursor(createCursor(results.get(results.size() - 1), pageRequest));
+        }
+
+        page.setPageData(results);
+        page.setPageRequest(pageRequest);
+    }
+
+    /**
+     * @param pageRequest the request to check
+     * @return true if the sort key of the request can be used for seek paging
+     */
+    public boolean isSeekable(PageRequest pageRequest) {
+        ClassMetadata metadata = getClassMetadata();
+        String sortBy = getPagingSortBy(pageRequest);
+        return sortBy.equals(metadata.getIdentifierPropertyName()) ||
+            Arrays.asList(metadata.getPropertyNames()).contains(sortBy);
+    }
+
+    /**
+     * Builds the cursor a seeking request would use to continue right after the given
+     * entity. Useful to callers that assemble their own pages out of seeked results.
+     *
+     * @param entity the last entity handed out
+     * @param pageRequest the seeking request the entity was listed under
+     * @return the encoded cursor
+     */
+    public String createCursor(E entity, PageRequest pageRequest) {
+        ClassMetadata metadata = getClassMetadata();
+        String sortBy = getPagingSortBy(pageRequest);
+
+        String sortValue = null;
+        if (!sortBy.equals(metadata.getIdentifierPropertyName())) {
+            sortValue = encodeSortValue(metadata.getPropertyValue(entity, sortBy));
+        }
+
+        return new PageCursor(entity.getId().toString(), sortValue).encode();
+    }
+
+    private ClassMetadata getClassMetadata() {
+        return currentSession().getSessionFactory().getClassMetadata(entityType);
+    }
+
+    private Criterion createSeekCriterion(ClassMetadata metadata, String sortBy, boolean sortById,
+        PageCursor cursor, PageRequest pageRequest) {
+        String idProperty = metadata.getIdentifierPropertyName();
+        boolean ascending = pageRequest.getOrder() == PageRequest.Order.ASCENDING;
+
+        Criterion pastId = ascending ?
+            Restrictions.gt(idProperty, cursor.getId()) :
+            Restrictions.lt(idProperty, cursor.getId());
+
+        if (sortById) {
+            return pastId;
+        }
+
+        if (cursor.getSortValue() == null) {
+            throw new BadRequestException(i18n.tr("Invalid paging cursor."));
+        }
+
+        Object value = decodeSortValue(metadata.getPropertyType(sortBy).getReturnedClass(),
+            cursor.getSortValue());
+
+        Criterion pastValue = ascending ?
+            Restrictions.gt(sortBy, value) :
+            Restrictions.lt(sortBy, value);
+
+        return Restrictions.or(pastValue,
+            Restrictions.and(Restrictions.eq(sortBy, value), pastId));
+    }
+
+    private String encodeSortValue(Object value) {
+        if (value == null) {
+            throw new IllegalStateException("Cannot page by cursor over a null sort key.");
+        }
+
+        return (value instanceof Date) ? String.valueOf(((Date) value).getTime()) : value.toString();
+    }
+
+    private Object decodeSortValue(Class<?> type, String value) {
+        try {
+            if (Date.class.isAssignableFrom(type)) {
+                return new Date(Long.parseLong(value));
+            }
+            else if (Integer.class.equals(type) || int.class.equals(type)) {
+                return Integer.valueOf(value);
+            }
+            else if (Long.class.equals(type) || long.class.equals(type)) {
+                return Long.valueOf(value);
+            }
+            else if (Boolean.class.equals(type) || boolean.class.equals(type)) {
+                return Boolean.valueOf(value);
+            }
+            else if (String.class.equals(type)) {
+                return value;
+            }
+        }
+        catch (NumberFormatException e) {
+            throw new BadRequestException(i18n.tr("Invalid paging cursor."), e);
+        }
+
+        throw new BadRequestException(i18n.tr("Invalid paging cursor."));
+    }
+
+    /*
+     * Post filtered listings are paged after the filtering, by row number. A cursor
+     * can not be honoured there, so say so rather than silently returning every row.
+     */
+    private void rejectSeeking(PageRequest pageRequest) {
+        if (pageRequest != null && pageRequest.isSeeking()) {
+            throw new BadRequestException(
+                i18n.tr("Cursor paging is not supported for this listing, use page instead."));
+        }
+    }
+
+    protected Integer findRowCount(Criteria c) {
         c.setProjection(Projections.rowCount());
         return ((Long) c.uniqueResult()).intValue();
     }
@@ -232,6 +406,8 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         PageRequest pageRequest, boolean postFilter) {
         Page<List<E>> resultsPage;
         if (postFilter) {
+            rejectSeeking(pageRequest);
+
             // Create a copy of the page request with just the order and sort by values.
             // Since we are filtering after the results are returned, we don't want
             // to send the page or page size values in.
@@ -326,7 +502,10 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         PageRequest pageRequest) {
         Page<List<E>> page = new Page<List<E>>();
 
-        if (pageRequest != null) {
+        if (pageRequest != null && pageRequest.isSeeking()) {
+            loadSeekPage(c, pageRequest, page);
+        }
+        else if (pageRequest != null) {
             // see https://forum.hibernate.org/viewtopic.php?t=974802
 
             // Save original Projection and ResultTransformer
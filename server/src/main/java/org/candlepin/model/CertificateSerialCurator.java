@@ -14,12 +14,17 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.common.config.Configuration;
+import org.candlepin.common.util.BatchDeleter;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.util.Util;
 
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+
 import org.hibernate.criterion.Conjunction;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
-import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
@@ -40,8 +45,12 @@ public class CertificateSerialCurator extends AbstractHibernateCurator<Certifica
     private static final Class[] CERTCLASSES = {IdentityCertificate.class,
         EntitlementCertificate.class, SubscriptionsCertificate.class, CdnCertificate.class};
 
-    public CertificateSerialCurator() {
+    private Configuration config;
+
+    @Inject
+    public CertificateSerialCurator(Configuration config) {
         super(CertificateSerial.class);
+        this.config = config;
     }
 
     /**
@@ -72,34 +81,19 @@ public class CertificateSerialCurator extends AbstractHibernateCurator<Certifica
     public int deleteExpiredSerials() {
         // Some databases don't like to update based on a field that is being updated
         // So we must get expired ids, and then delete them
-        @SuppressWarnings("unchecked")
-        List<String> ids = this.currentSession()
-            .createCriteria(CertificateSerial.class)
-            .add(Restrictions.le("expiration", Util.yesterday()))
-            .add(getRevokedCriteria())
-            .setProjection(Projections.id())
-            .addOrder(Order.asc("id")).list();
-        if (ids.isEmpty()) {
-            return 0;
-        }
-
-        String hql = "DELETE from CertificateSerial " +
-            "WHERE id IN (:expiredids)";
-
-        int batchStart = 0;
-        int batchEnd = inClauseLimit;
-        int removed = 0;
-        while (batchStart < ids.size()) {
-            removed += this.currentSession()
-                    .createQuery(hql)
-                    .setParameterList("expiredids",
-                            ids.subList(batchStart, Math.min(batchEnd, ids.size())))
-                    .executeUpdate();
-            batchStart += inClauseLimit;
-            batchEnd += inClauseLimit;
+        StringBuilder unused = new StringBuilder("e.expiration <= :date");
+        for (Class<?> clazz : CERTCLASSES) {
+            unused.append(" and e.id not in (select c.serial.id from ")
+                .append(clazz.getSimpleName())
+                .append(" c where c.serial is not null)");
         }
 
-        return removed;
+        return new BatchDeleter(getEntityManager(), "CertificateSerial", unused.toString())
+            .setParameter("date", Util.yesterday())
+            .setBatchSize(Math.min(inClauseLimit, config.getInt(ConfigProperties.CLEANUP_BATCH_SIZE,
+                BatchDeleter.DEFAULT_BATCH_SIZE)))
+            .setMaxRowsPerSecond(config.getInt(ConfigProperties.CLEANUP_MAX_ROWS_PER_SECOND, 0))
+            .execute();
     }
 
     @SuppressWarnings("unchecked")
@@ -135,6 +129,20 @@ public class CertificateSerialCurator extends AbstractHibernateCurator<Certifica
         return crit;
     }
 
+    /**
+     * Persists a serial without flushing the session. The serial number is
+     * assigned right away; the insert goes out with the next flush, batched with
+     * the certificate that uses it.
+     *
+     * @param serial the serial to persist
+     * @return the persisted serial, with its id set
+     */
+    @Transactional
+    public CertificateSerial createUnflushed(CertificateSerial serial) {
+        getEntityManager().persist(serial);
+        return serial;
+    }
+
     /*
      * This method is really not necessary, but is probably the cleanest way to
      * unit test.
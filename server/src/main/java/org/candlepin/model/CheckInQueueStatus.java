@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Counters of the consumer check ins waiting to be written to the database.
+ */
+@XmlRootElement(name = "checkinqueuestatus")
+@XmlAccessorType(XmlAccessType.PROPERTY)
+public class CheckInQueueStatus {
+
+    private long pending;
+    private long recorded;
+    private long skipped;
+    private long flushed;
+    private long batches;
+    private long failures;
+
+    /**
+     * default ctor
+     */
+    public CheckInQueueStatus() {
+
+    }
+
+    public CheckInQueueStatus(long pending, long recorded, long skipped, long flushed,
+        long batches, long failures) {
+        this.pending = pending;
+        this.recorded = recorded;
+        this.skipped = skipped;
+        this.flushed = flushed;
+        this.batches = batches;
+        this.failures = failures;
+    }
+
+    public long getPending() {
+        return pending;
+    }
+
+    public void setPending(long pending) {
+        this.pending = pending;
+    }
+
+    public long getRecorded() {
+        return recorded;
+    }
+
+    public void setRecorded(long recorded) {
+        this.recorded = recorded;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(long skipped) {
+        this.skipped = skipped;
+    }
+
+    public long getFlushed() {
+        return flushed;
+    }
+
+    public void setFlushed(long flushed) {
+        this.flushed = flushed;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public void setBatches(long batches) {
+        this.batches = batches;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Depth, lag and throughput of the in-memory compliance recalculation queue. Ages
+ * and lags are in milliseconds.
+ */
+@XmlRootElement(name = "compliancequeuestatus")
+@XmlAccessorType(XmlAccessType.PROPERTY)
+public class ComplianceQueueStatus {
+
+    private long depth;
+    private long oldestAge;
+    private long lastLag;
+    private long maxLag;
+    private long queued;
+    private long coalesced;
+    private long recalculated;
+    private long batches;
+    private long overflowed;
+
+    /**
+     * default ctor
+     */
+    public ComplianceQueueStatus() {
+
+    }
+
+    public ComplianceQueueStatus(long depth, long oldestAge, long lastLag, long maxLag,
+        long queued, long coalesced, long recalculated, long batches, long overflowed) {
+        this.depth = depth;
+        this.oldestAge = oldestAge;
+        this.lastLag = lastLag;
+        this.maxLag = maxLag;
+        this.queued = queued;
+        this.coalesced = coalesced;
+        this.recalculated = recalculated;
+        this.batches = batches;
+        this.overflowed = overflowed;
+    }
+
+    public long getDepth() {
+        return depth;
+    }
+
+    public void setDepth(long depth) {
+        this.depth = depth;
+    }
+
+    public long getOldestAge() {
+        return oldestAge;
+    }
+
+    public void setOldestAge(long oldestAge) {
+        this.oldestAge = oldestAge;
+    }
+
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    public void setLastLag(long lastLag) {
+        this.lastLag = lastLag;
+    }
+
+    public long getMaxLag() {
+        return maxLag;
+    }
+
+    public void setMaxLag(long maxLag) {
+        this.maxLag = maxLag;
+    }
+
+    public long getQueued() {
+        return queued;
+    }
+
+    public void setQueued(long queued) {
+        this.queued = queued;
+    }
+
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    public void setCoalesced(long coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    public long getRecalculated() {
+        return recalculated;
+    }
+
+    public void setRecalculated(long recalculated) {
+        this.recalculated = recalculated;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public void setBatches(long batches) {
+        this.batches = batches;
+    }
+
+    public long getOverflowed() {
+        return overflowed;
+    }
+
+    public void setOverflowed(long overflowed) {
+        this.overflowed = overflowed;
+    }
+}
@@ -29,11 +29,15 @@ import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Index;
 import org.hibernate.annotations.Type;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -170,6 +174,17 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
     @Cascade({org.hibernate.annotations.CascadeType.ALL})
     private Map<String, String> facts;
 
+    // Searchable copy of the facts with lower cased values, kept in step with the
+    // facts by setFacts/setFact and the map returned by getFacts. Consumer searches
+    // filter on this table so that the fact value index can be used instead of lower()
+    // on every row.
+    @ElementCollection
+    @CollectionTable(name = "cp_consumer_fact_index", joinColumns = @JoinColumn(name = "cp_consumer_id"))
+    @MapKeyColumn(name = "fact_key")
+    @Column(name = "fact_value")
+    @Cascade({org.hibernate.annotations.CascadeType.ALL})
+    private Map<String, String> searchFacts;
+
     @OneToOne(cascade = CascadeType.ALL)
     private KeyPair keyPair;
 
@@ -349,11 +364,12 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
 
 
     /**
-     * @return all facts about this consumer.
+     * @return all facts about this consumer. Changes made through the returned map are
+     * written through to the consumer.
      */
     @HateoasArrayExclude
     public Map<String, String> getFacts() {
-        return facts;
+        return facts == null ? null : new IndexedFacts(facts);
     }
 
     public boolean hasFact(String fact) {
@@ -376,7 +392,9 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
      * @param factsIn facts about this consumer.
      */
     public void setFacts(Map<String, String> factsIn) {
-        facts = factsIn;
+        // never hold on to another consumer's view of its facts
+        facts = factsIn instanceof IndexedFacts ? new HashMap<String, String>(factsIn) : factsIn;
+        updateSearchFacts();
     }
 
     /**
@@ -429,6 +447,166 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
             facts = new HashMap<String, String>();
         }
         this.facts.put(name, value);
+        updateSearchFacts();
+    }
+
+    /*
+     * Facts put straight into a map later handed to setFacts may have changed since,
+     * catch up with them before the consumer is first written.
+     */
+    @Override
+    protected void onCreate() {
+        super.onCreate();
+        updateSearchFacts();
+    }
+
+    /*
+     * Rebuilds the searchable facts in place so hibernate only writes the entries
+     * that actually changed.
+     */
+    private void updateSearchFacts() {
+        if (searchFacts == null) {
+            searchFacts = new HashMap<String, String>();
+        }
+        searchFacts.clear();
+
+        if (facts != null) {
+            for (Entry<String, String> entry : facts.entrySet()) {
+                searchFacts.put(entry.getKey(), toSearchValue(entry.getValue()));
+            }
+        }
+    }
+
+    /*
+     * The facts as handed out by getFacts. Hibernate reads and writes the facts field
+     * directly, callers changing facts through this view keep the searchable facts in
+     * step without having to go through setFact. Once the consumer's facts have been
+     * replaced the view only changes the map it was handed out for.
+     */
+    private class IndexedFacts extends AbstractMap<String, String> {
+        private final Map<String, String> target;
+
+        IndexedFacts(Map<String, String> target) {
+            this.target = target;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new IndexedFactIterator(IndexedFacts.this,
+                        target.entrySet().iterator());
+                }
+
+                @Override
+                public int size() {
+                    return target.size();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return target.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return target.containsKey(key);
+        }
+
+        @Override
+        public String get(Object key) {
+            return target.get(key);
+        }
+
+        @Override
+        public String put(String key, String value) {
+            String previous = target.put(key, value);
+            index(key, value);
+            return previous;
+        }
+
+        @Override
+        public String remove(Object key) {
+            String previous = target.remove(key);
+            unindex(key);
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            target.clear();
+            if (target == facts) {
+                updateSearchFacts();
+            }
+        }
+
+        private void index(String name, String value) {
+            if (target != facts) {
+                return;
+            }
+
+            if (searchFacts == null) {
+                updateSearchFacts();
+            }
+            else {
+                searchFacts.put(name, toSearchValue(value));
+            }
+        }
+
+        private void unindex(Object name) {
+            if (target == facts && searchFacts != null) {
+                searchFacts.remove(name);
+            }
+        }
+    }
+
+    private class IndexedFactIterator implements Iterator<Entry<String, String>> {
+        private final IndexedFacts view;
+        private final Iterator<Entry<String, String>> entries;
+        private Entry<String, String> current;
+
+        IndexedFactIterator(IndexedFacts view, Iterator<Entry<String, String>> entries) {
+            this.view = view;
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return entries.hasNext();
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            current = entries.next();
+            final Entry<String, String> entry = current;
+
+            return new AbstractMap.SimpleEntry<String, String>(entry) {
+                @Override
+                public String setValue(String value) {
+                    super.setValue(value);
+                    String previous = entry.setValue(value);
+                    view.index(entry.getKey(), value);
+                    return previous;
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            entries.remove();
+            view.unindex(current.getKey());
+        }
+    }
+
+    /**
+     * @param value a fact value
+     * @return the value as stored in the searchable fact index
+     */
+    public static String toSearchValue(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ENGLISH);
     }
 
     public long getEntitlementCount() {
@@ -42,12 +42,18 @@ import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
 import org.hibernate.engine.spi.TypedValue;
+import org.hibernate.jdbc.Work;
 import org.hibernate.internal.util.StringHelper;
 import org.hibernate.type.CompositeType;
 import org.hibernate.type.Type;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -59,6 +65,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 
 import javax.persistence.LockModeType;
 
@@ -84,11 +91,27 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
     @Transactional
     @Override
     public Consumer create(Consumer entity) {
+        return create(entity, true);
+    }
+
+    /**
+     * @param entity the consumer to persist
+     * @param flush whether to flush the session now. Callers creating many consumers
+     * can leave the inserts to a single flush once they are done.
+     * @return the persisted consumer
+     */
+    @Transactional
+    public Consumer create(Consumer entity, boolean flush) {
         entity.ensureUUID();
         if (entity.getFacts() != null) {
             entity.setFacts(filterAndVerifyFacts(entity));
         }
-        return super.create(entity);
+
+        getEntityManager().persist(entity);
+        if (flush) {
+            flush();
+        }
+        return entity;
     }
 
     @Transactional
@@ -160,10 +183,10 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
         List<String> possibleGuestIds = Util.getPossibleUuids(uuid);
 
         String sql = "select cp_consumer.id from cp_consumer " +
-            "inner join cp_consumer_facts " +
-            "on cp_consumer.id = cp_consumer_facts.cp_consumer_id " +
-            "where cp_consumer_facts.mapkey = 'virt.uuid' and " +
-            "lower(cp_consumer_facts.element) in (:guestids) " +
+            "inner join cp_consumer_fact_index " +
+            "on cp_consumer.id = cp_consumer_fact_index.cp_consumer_id " +
+            "where cp_consumer_fact_index.fact_key = 'virt.uuid' and " +
+            "cp_consumer_fact_index.fact_value in (:guestids) " +
             "and cp_consumer.owner_id = :ownerid " +
             "order by cp_consumer.updated desc";
 
@@ -203,10 +226,10 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
         List<String> possibleGuestIds = Util.getPossibleUuids(guestIds.toArray(new String [guestIds.size()]));
 
         String sql = "select cp_consumer.uuid from cp_consumer " +
-            "inner join cp_consumer_facts " +
-            "on cp_consumer.id = cp_consumer_facts.cp_consumer_id " +
-            "where cp_consumer_facts.mapkey = 'virt.uuid' and " +
-            "lower(cp_consumer_facts.element) in (:guestids) " +
+            "inner join cp_consumer_fact_index " +
+            "on cp_consumer.id = cp_consumer_fact_index.cp_consumer_id " +
+            "where cp_consumer_fact_index.fact_key = 'virt.uuid' and " +
+            "cp_consumer_fact_index.fact_value in (:guestids) " +
             "and cp_consumer.owner_id = :ownerid " +
             "order by cp_consumer.updated desc";
 
@@ -426,6 +449,59 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
                 .executeUpdate();
     }
 
+    /**
+     * Writes the given check in times with a single JDBC batch. Rows are updated in
+     * id order so concurrent flushes cannot deadlock each other. Check ins are written
+     * after the fact, so neither the last check in nor the updated time of a consumer
+     * is ever moved back by an older one.
+     *
+     * @param checkins check in times keyed by consumer id
+     * @return the number of consumer rows updated
+     */
+    @Transactional
+    public int updateLastCheckins(Map<String, Date> checkins) {
+        if (checkins.isEmpty()) {
+            return 0;
+        }
+
+        final Map<String, Date> sorted = new TreeMap<String, Date>(checkins);
+        final int[] updated = new int[1];
+
+        currentSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE cp_consumer SET " +
+                    "lastcheckin = CASE WHEN lastcheckin IS NULL OR lastcheckin < ? " +
+                    "THEN ? ELSE lastcheckin END, " +
+                    "updated = CASE WHEN updated IS NULL OR updated < ? " +
+                    "THEN ? ELSE updated END " +
+                    "WHERE id = ?");
+
+                try {
+                    for (Entry<String, Date> entry : sorted.entrySet()) {
+                        Timestamp date = new Timestamp(entry.getValue().getTime());
+                        for (int i = 1; i <= 4; i++) {
+                            statement.setTimestamp(i, date);
+                        }
+                        statement.setString(5, entry.getKey());
+                        statement.addBatch();
+                    }
+
+                    for (int count : statement.executeBatch()) {
+                        // Some drivers only report that the statement succeeded
+                        updated[0] += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+                    }
+                }
+                finally {
+                    statement.close();
+                }
+            }
+        });
+
+        return updated[0];
+    }
+
     private boolean factsChanged(Map<String, String> updatedFacts,
         Map<String, String> existingFacts) {
         return !existingFacts.equals(updatedFacts);
@@ -60,6 +60,9 @@ public class EntitlementCertificate extends AbstractCertificate {
     @NotNull
     private Entitlement entitlement;
 
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     public CertificateSerial getSerial() {
         return serial;
     }
@@ -86,6 +89,19 @@ public class EntitlementCertificate extends AbstractCertificate {
         this.entitlement = entitlement;
     }
 
+    /**
+     * @return the hash of everything this certificate says apart from its serial and
+     * signature, or null for certificates issued before it was recorded
+     */
+    @XmlTransient
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     @Override
     public int hashCode() {
         return this.id == null ? 0 : id.hashCode();
@@ -23,9 +23,12 @@ import com.google.inject.persist.Transactional;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
+import org.hibernate.NullPrecedence;
 import org.hibernate.ReplicationMode;
 import org.hibernate.criterion.CriteriaSpecification;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.sql.JoinType;
 import org.slf4j.Logger;
@@ -178,6 +181,34 @@ public class EntitlementCurator extends AbstractHibernateCurator<Entitlement> {
         return criteria.list();
     }
 
+    /**
+     * Finds the entitlements in an environment whose certificates carry any of the
+     * given content sets, through the pool's product or one of its provided products.
+     *
+     * @param environment the environment to look in
+     * @param contentIds ids of the content sets promoted or demoted
+     * @return ids of the affected entitlements
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> listIdsByEnvironmentAndContent(Environment environment,
+        Collection<String> contentIds) {
+        if (contentIds == null || contentIds.isEmpty()) {
+            return new ArrayList<String>();
+        }
+
+        String withContent = "select prod.uuid from Product prod join prod.productContent pc " +
+            "where pc.content.id in (:contentIds)";
+        return currentSession().createQuery(
+            "select distinct e.id from Entitlement e " +
+            "join e.pool p left join p.providedProducts provided " +
+            "where e.consumer.environment = :environment " +
+            "and (p.product.uuid in (" + withContent + ") " +
+            "or provided.uuid in (" + withContent + "))")
+            .setParameter("environment", environment)
+            .setParameterList("contentIds", contentIds)
+            .list();
+    }
+
     /**
      * List entitlements for a consumer which are valid for a specific date.
      *
@@ -514,10 +545,14 @@ public class EntitlementCurator extends AbstractHibernateCurator<Entitlement> {
             getEntityManager().remove(ent);
         }
 
-        // Maintain runtime consistency.
+        // Maintain runtime consistency. A consumer's entitlements that were never loaded
+        // need not be, they will be read without the deleted ones.
         for (Entitlement ent : entitlements) {
             ent.getCertificates().clear();
-            ent.getConsumer().getEntitlements().remove(ent);
+            Set<Entitlement> consumerEnts = ent.getConsumer().getEntitlements();
+            if (Hibernate.isInitialized(consumerEnts)) {
+                consumerEnts.remove(ent);
+            }
         }
     }
 
@@ -526,6 +561,29 @@ public class EntitlementCurator extends AbstractHibernateCurator<Entitlement> {
         return findByPoolAttribute(null, attributeName, value);
     }
 
+    /**
+     * Lists entitlements whose certificates are waiting to be regenerated, those of the
+     * consumers that checked in most recently first.
+     *
+     * @param max the most entitlement ids to return
+     * @return ids of dirty entitlements
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> listDirtyIds(int max) {
+        return currentSession().createCriteria(Entitlement.class)
+            .createAlias("consumer", "c")
+            .add(Restrictions.eq("dirty", true))
+            .setProjection(Projections.id())
+            .addOrder(Order.desc("c.lastCheckin").nulls(NullPrecedence.LAST))
+            .addOrder(Order.asc("id"))
+            .setMaxResults(max)
+            .list();
+    }
+
+    public List<Entitlement> lockAndLoadBatch(Collection<String> ids) {
+        return lockAndLoadBatch(ids, "Entitlement", "id");
+    }
+
     /**
      * For a given stack, find the eldest active entitlement with a subscription ID.
      * This is used to look up the upstream subscription certificate to use to talk to
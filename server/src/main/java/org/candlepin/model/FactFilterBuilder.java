@@ -27,7 +27,9 @@ import java.util.List;
 /**
  * FactFilterBuilder
  *
- * Builds criteria to find consumers based upon their facts
+ * Builds criteria to find consumers based upon their facts. Filters run against the
+ * searchable fact index, where values are stored lower cased, so plain values become
+ * indexed equality lookups and only wildcard filters fall back to a like match.
  */
 public class FactFilterBuilder extends FilterBuilder {
 
@@ -40,19 +42,28 @@ public class FactFilterBuilder extends FilterBuilder {
                 valuesCriteria.add(Restrictions.eq("cfacts.elements", ""));
             }
             else {
-                valuesCriteria.add(new FilterLikeExpression("cfacts.elements", value, true));
+                // Match values, case insensitive
+                valuesCriteria.add(matches("cfacts.elements", Consumer.toSearchValue(value)));
             }
         }
 
         DetachedCriteria dc = DetachedCriteria.forClass(Consumer.class, "subcons")
-            .add(Restrictions.eqProperty("this.id", "subcons.id"))
-            .createAlias("subcons.facts", "cfacts")
+            .createAlias("subcons.searchFacts", "cfacts")
             // Match the key, case sensitive
-            .add(new FilterLikeExpression("cfacts.indices", key, false))
-            // Match values, case insensitive
+            .add(matches("cfacts.indices", key))
             .add(valuesCriteria)
             .setProjection(Projections.property("subcons.id"));
 
-        return Subqueries.exists(dc);
+        // Uncorrelated, so the database can resolve the matching consumers once from
+        // the fact index rather than probing it for every candidate row.
+        return Subqueries.propertyIn("id", dc);
+    }
+
+    private static Criterion matches(String property, String value) {
+        if (StringUtils.containsNone(value, WILDCARD_CHARS)) {
+            return Restrictions.eq(property, value);
+        }
+
+        return new FilterLikeExpression(property, value, false);
     }
 }
@@ -41,6 +41,8 @@ public abstract class FilterBuilder {
     private static Logger log = LoggerFactory.getLogger(FilterBuilder.class);
     public static final String WILDCARD_REGEX = "((?:[^*?\\\\]*(?:\\\\.?)*)*)([*?]|\\z)";
     public static final Pattern WILDCARD_PATTERN = Pattern.compile(WILDCARD_REGEX);
+    /** Characters with a special meaning in filter values: both wildcards and the escape. */
+    public static final String WILDCARD_CHARS = "*?\\";
 
 
     private Map<String, List<String>> attributeFilters;
@@ -26,6 +26,7 @@ import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Index;
 
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.persistence.CollectionTable;
@@ -158,8 +159,10 @@ public class GuestId extends AbstractHibernateObject implements Owned, Named, Co
 
     @Override
     public int hashCode() {
+        // equals ignores case, so must the hash
+        String id = getGuestId() == null ? null : getGuestId().toLowerCase(Locale.ENGLISH);
         return new HashCodeBuilder(7, 23)
-            .append(getGuestId()).toHashCode();
+            .append(id).toHashCode();
     }
 
     @Override
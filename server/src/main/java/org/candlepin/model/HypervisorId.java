@@ -72,6 +72,9 @@ public class HypervisorId extends AbstractHibernateObject {
     @Size(max = 255)
     private String reporterId;
 
+    @Column(name = "guest_digest", length = 64)
+    private String guestDigest;
+
     @OneToOne(fetch = FetchType.LAZY)
     @ForeignKey(name = "fk_hypervisor_consumer")
     @JoinColumn(nullable = false, unique = true)
@@ -144,6 +147,22 @@ public class HypervisorId extends AbstractHibernateObject {
         this.reporterId = reporterId;
     }
 
+    /**
+     * @return the digest of the last hypervisor report applied to this host, or null
+     * if the host has changed since
+     */
+    @XmlTransient
+    public String getGuestDigest() {
+        return guestDigest;
+    }
+
+    /**
+     * @param guestDigest the guestDigest to set
+     */
+    public void setGuestDigest(String guestDigest) {
+        this.guestDigest = guestDigest;
+    }
+
     /**
      * @return the consumer
      */
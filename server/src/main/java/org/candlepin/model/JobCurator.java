@@ -16,6 +16,7 @@ package org.candlepin.model;
 
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.NotFoundException;
+import org.candlepin.common.util.BatchDeleter;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.pinsetter.core.PinsetterKernel;
 import org.candlepin.pinsetter.core.model.JobStatus;
@@ -24,6 +25,7 @@ import org.candlepin.pinsetter.core.model.JobStatus.TargetType;
 import org.candlepin.pinsetter.tasks.KingpinJob;
 
 import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
 
 import org.hibernate.Criteria;
 import org.hibernate.Query;
@@ -32,6 +34,7 @@ import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -72,6 +75,26 @@ public class JobCurator extends AbstractHibernateCurator<JobStatus> {
         }
     }
 
+    /**
+     * Moves a waiting job to the given state, unless something else, such as the
+     * UnpauseJob of another node, has moved it out of WAITING already.
+     *
+     * @param jobId the id of the job
+     * @param state the state to move it to
+     * @return true if this call moved the job
+     */
+    @Transactional
+    public boolean updateWaitingState(String jobId, JobState state) {
+        String hql = "update JobStatus j " +
+            "set j.state = :state " +
+            "where j.id = :jobid and j.state = :waiting";
+        return this.currentSession().createQuery(hql)
+            .setParameter("jobid", jobId)
+            .setInteger("state", state.ordinal())
+            .setInteger("waiting", JobState.WAITING.ordinal())
+            .executeUpdate() == 1;
+    }
+
     public int deleteJobNoStatusReturn(String jobId) {
         return this.currentSession().createQuery(
             "delete from JobStatus where id = :jobid")
@@ -80,20 +103,25 @@ public class JobCurator extends AbstractHibernateCurator<JobStatus> {
     }
 
     public int cleanupAllOldJobs(Date deadline) {
-        return this.currentSession().createQuery(
-            "delete from JobStatus where updated <= :date")
-               .setTimestamp("date", deadline)
-               .executeUpdate();
+        return batchDeleter("e.updated <= :date")
+            .setParameter("date", deadline)
+            .execute();
     }
 
     public int cleanUpOldCompletedJobs(Date deadLineDt) {
-        return this.currentSession().createQuery(
-            "delete from JobStatus where updated <= :date and " +
-            "(state = :completed or state = :canceled)")
-               .setTimestamp("date", deadLineDt)
-               .setInteger("completed", JobState.FINISHED.ordinal())
-               .setInteger("canceled", JobState.CANCELED.ordinal())
-               .executeUpdate();
+        return batchDeleter("e.updated <= :date and " +
+            "(e.state = :completed or e.state = :canceled)")
+            .setParameter("date", deadLineDt)
+            .setParameter("completed", JobState.FINISHED)
+            .setParameter("canceled", JobState.CANCELED)
+            .execute();
+    }
+
+    private BatchDeleter batchDeleter(String condition) {
+        return new BatchDeleter(getEntityManager(), "JobStatus", condition)
+            .setBatchSize(config.getInt(ConfigProperties.CLEANUP_BATCH_SIZE,
+                BatchDeleter.DEFAULT_BATCH_SIZE))
+            .setMaxRowsPerSecond(config.getInt(ConfigProperties.CLEANUP_MAX_ROWS_PER_SECOND, 0));
     }
 
     public List<JobStatus> findByOwnerKey(String ownerKey) {
@@ -141,7 +169,18 @@ public class JobCurator extends AbstractHibernateCurator<JobStatus> {
         // Perhaps unique jobClass/target combinations, However
         // we're already in a weird state if that makes a difference
         return this.currentSession().createCriteria(JobStatus.class)
-        .add(Restrictions.eq("state", JobState.WAITING)).list();
+        .add(Restrictions.eq("state", JobState.WAITING))
+        .addOrder(Order.asc("created")).list();
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<JobStatus> findWaitingByClassAndTarget(String target,
+        Class<? extends KingpinJob> jobClass) {
+        return this.currentSession().createCriteria(JobStatus.class)
+            .add(Restrictions.eq("state", JobState.WAITING))
+            .add(Restrictions.eq("targetId", target))
+            .add(Restrictions.eq("jobClass", jobClass))
+            .addOrder(Order.asc("created")).list();
     }
 
     public long findNumRunningByClassAndTarget(String target, Class<? extends KingpinJob> jobClass) {
@@ -154,6 +193,27 @@ public class JobCurator extends AbstractHibernateCurator<JobStatus> {
             .uniqueResult();
     }
 
+    /**
+     * Counts the jobs of the given classes that hold, or are queued for, a
+     * scheduler thread.
+     *
+     * @param jobClasses the job classes to count
+     * @return the number of created, pending and running jobs of those classes
+     */
+    public long findNumActiveByClasses(Collection<Class<? extends KingpinJob>> jobClasses) {
+        if (jobClasses.isEmpty()) {
+            return 0;
+        }
+
+        return (Long) this.currentSession().createCriteria(JobStatus.class)
+            .add(Restrictions.ge("updated", getBlockingCutoff()))
+            .add(Restrictions.in("state",
+                new JobState[] {JobState.CREATED, JobState.PENDING, JobState.RUNNING}))
+            .add(Restrictions.in("jobClass", jobClasses))
+            .setProjection(Projections.count("id"))
+            .uniqueResult();
+    }
+
     public JobStatus getByClassAndTarget(String target, Class<? extends KingpinJob> jobClass) {
 
         return (JobStatus) this.currentSession().createCriteria(JobStatus.class)
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.common.filter.TimingHistogram;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * What this node has run of one job class since it started: how many runs started,
+ * how they ended, how long they waited to start and how long they ran.
+ */
+@XmlRootElement(name = "jobmetrics")
+@XmlAccessorType(XmlAccessType.PROPERTY)
+public class JobMetrics {
+
+    private String jobClass;
+    private long started;
+    private long succeeded;
+    private long failed;
+    private long retried;
+    private long running;
+    private long completedLastMinute;
+    private TimingHistogram queueWait;
+    private TimingHistogram runTime;
+
+    /**
+     * default ctor
+     */
+    public JobMetrics() {
+
+    }
+
+    public String getJobClass() {
+        return jobClass;
+    }
+
+    public void setJobClass(String jobClass) {
+        this.jobClass = jobClass;
+    }
+
+    public long getStarted() {
+        return started;
+    }
+
+    public void setStarted(long started) {
+        this.started = started;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(long succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getRetried() {
+        return retried;
+    }
+
+    public void setRetried(long retried) {
+        this.retried = retried;
+    }
+
+    public long getRunning() {
+        return running;
+    }
+
+    public void setRunning(long running) {
+        this.running = running;
+    }
+
+    public long getCompletedLastMinute() {
+        return completedLastMinute;
+    }
+
+    public void setCompletedLastMinute(long completedLastMinute) {
+        this.completedLastMinute = completedLastMinute;
+    }
+
+    public TimingHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    public void setQueueWait(TimingHistogram queueWait) {
+        this.queueWait = queueWait;
+    }
+
+    public TimingHistogram getRunTime() {
+        return runTime;
+    }
+
+    public void setRunTime(TimingHistogram runTime) {
+        this.runTime = runTime;
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.pinsetter.core.model.JobStatus;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the statuses of recently finished jobs around, so that clients polling a
+ * job do not read it again once it can no longer change, and lets status requests
+ * wait for a job running on this node to finish.
+ *
+ * Jobs finishing on other nodes are not seen here; callers waiting on a job have
+ * to recheck the database now and then.
+ */
+@Singleton
+public class JobStatusCache {
+    // past this many entries, expired ones are purged and new ones are not cached
+    private static final int MAX_ENTRIES = 5000;
+
+    private final long ttl;
+    private final ConcurrentMap<String, CachedStatus> statuses =
+        new ConcurrentHashMap<String, CachedStatus>();
+    // guarded by itself; an entry stays until the job finishes or its last waiter leaves
+    private final Map<String, Waiter> waiters = new HashMap<String, Waiter>();
+
+    @Inject
+    public JobStatusCache(Configuration config) {
+        this.ttl = config.getInt(ConfigProperties.JOB_STATUS_CACHE_TTL, 0) * 1000L;
+    }
+
+    /**
+     * @param jobId the job to look up
+     * @return a copy of the job's final status, or null if it is not known to be done
+     */
+    public JobStatus get(String jobId) {
+        CachedStatus entry = statuses.get(jobId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expires <= System.currentTimeMillis()) {
+            statuses.remove(jobId, entry);
+            return null;
+        }
+        return entry.status.copy();
+    }
+
+    /**
+     * Records a job status once it is done and wakes up any requests waiting on it.
+     * A status of a job that is still going, for example one refired after a failure,
+     * drops whatever was recorded for the job before.
+     *
+     * @param status the stored status of the job
+     */
+    public void finished(JobStatus status) {
+        if (status == null || status.getId() == null) {
+            return;
+        }
+        if (!status.isDone()) {
+            statuses.remove(status.getId());
+            return;
+        }
+
+        if (ttl > 0) {
+            long now = System.currentTimeMillis();
+            if (statuses.size() >= MAX_ENTRIES) {
+                purge(now);
+            }
+            if (statuses.size() < MAX_ENTRIES) {
+                statuses.put(status.getId(), new CachedStatus(status.copy(), now + ttl));
+            }
+        }
+
+        Waiter waiter;
+        synchronized (waiters) {
+            waiter = waiters.remove(status.getId());
+        }
+        if (waiter != null) {
+            waiter.finished(status.copy());
+        }
+    }
+
+    /**
+     * Waits until the job is reported finished on this node, or the timeout passes.
+     *
+     * @param jobId the job to wait for
+     * @param timeout how long to wait, in milliseconds
+     * @return the final status, or null if the job did not finish here in time
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public JobStatus await(String jobId, long timeout) throws InterruptedException {
+        Waiter waiter;
+        synchronized (waiters) {
+            waiter = waiters.get(jobId);
+            if (waiter == null) {
+                waiter = new Waiter();
+                waiters.put(jobId, waiter);
+            }
+            waiter.count++;
+        }
+
+        try {
+            // it may have finished before we started waiting
+            JobStatus status = get(jobId);
+            if (status == null && waiter.latch.await(timeout, TimeUnit.MILLISECONDS)) {
+                status = waiter.status.copy();
+            }
+            return status;
+        }
+        finally {
+            synchronized (waiters) {
+                // other requests may still be waiting on the same job
+                if (--waiter.count == 0 && waiters.get(jobId) == waiter) {
+                    waiters.remove(jobId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the status of a job, for example because it was deleted.
+     *
+     * @param jobId the id of the job
+     */
+    public void remove(String jobId) {
+        statuses.remove(jobId);
+    }
+
+    private void purge(long now) {
+        Iterator<CachedStatus> iterator = statuses.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expires <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class CachedStatus {
+        private final JobStatus status;
+        private final long expires;
+
+        CachedStatus(JobStatus status, long expires) {
+            this.status = status;
+            this.expires = expires;
+        }
+    }
+
+    /*
+     * The requests waiting on one job. The count is guarded by the waiters map.
+     */
+    private static class Waiter {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile JobStatus status;
+        private int count;
+
+        void finished(JobStatus status) {
+            this.status = status;
+            latch.countDown();
+        }
+    }
+}
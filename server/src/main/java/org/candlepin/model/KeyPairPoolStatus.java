@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Counters of the pre-generated key pair pool. Wait times are in milliseconds and
+ * cover both key pairs taken from the pool and those generated on demand.
+ */
+@XmlRootElement(name = "keypairpoolstatus")
+@XmlAccessorType(XmlAccessType.PROPERTY)
+public class KeyPairPoolStatus {
+
+    private long available;
+    private long capacity;
+    private long hits;
+    private long misses;
+    private long generated;
+    private long failures;
+    private long totalWait;
+    private long maxWait;
+
+    /**
+     * default ctor
+     */
+    public KeyPairPoolStatus() {
+
+    }
+
+    public KeyPairPoolStatus(long available, long capacity, long hits, long misses,
+        long generated, long failures, long totalWait, long maxWait) {
+        this.available = available;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.generated = generated;
+        this.failures = failures;
+        this.totalWait = totalWait;
+        this.maxWait = maxWait;
+    }
+
+    public long getAvailable() {
+        return available;
+    }
+
+    public void setAvailable(long available) {
+        this.available = available;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(long capacity) {
+        this.capacity = capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getGenerated() {
+        return generated;
+    }
+
+    public void setGenerated(long generated) {
+        this.generated = generated;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+
+    public long getTotalWait() {
+        return totalWait;
+    }
+
+    public void setTotalWait(long totalWait) {
+        this.totalWait = totalWait;
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+}
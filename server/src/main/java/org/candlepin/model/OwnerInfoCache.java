@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.auth.Principal;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps recently built {@link OwnerInfo}s around for a short time, so that clients
+ * polling an owner's info do not rebuild it on every request.
+ *
+ * Results depend on what the requesting principal is allowed to see, so they are
+ * cached per owner and principal. All of an owner's results are dropped whenever
+ * one of its consumers, entitlements or pools changes; see OwnerInfoListener.
+ */
+@Singleton
+public class OwnerInfoCache {
+    private final Provider<OwnerInfoCurator> ownerInfoCuratorProvider;
+    private final long ttl;
+    private final ConcurrentMap<String, ConcurrentMap<String, CachedInfo>> owners =
+        new ConcurrentHashMap<String, ConcurrentMap<String, CachedInfo>>();
+
+    @Inject
+    public OwnerInfoCache(Provider<OwnerInfoCurator> ownerInfoCuratorProvider, Configuration config) {
+        this.ownerInfoCuratorProvider = ownerInfoCuratorProvider;
+        this.ttl = config.getInt(ConfigProperties.OWNER_INFO_CACHE_TTL, 0) * 1000L;
+    }
+
+    /**
+     * @param owner the owner to look up
+     * @param principal the principal the info is built for
+     * @return the owner's info, at most the configured time to live old
+     */
+    public OwnerInfo lookupByOwner(Owner owner, Principal principal) {
+        if (ttl <= 0) {
+            return ownerInfoCuratorProvider.get().lookupByOwner(owner);
+        }
+
+        String key = principal == null ? "" : principal.getType() + ":" + principal.getName();
+        long now = System.currentTimeMillis();
+
+        ConcurrentMap<String, CachedInfo> cached = owners.get(owner.getId());
+        if (cached == null) {
+            cached = new ConcurrentHashMap<String, CachedInfo>();
+            ConcurrentMap<String, CachedInfo> existing = owners.putIfAbsent(owner.getId(), cached);
+            cached = existing != null ? existing : cached;
+        }
+
+        CachedInfo entry = cached.get(key);
+        if (entry != null && entry.expires > now) {
+            return entry.info;
+        }
+
+        OwnerInfo info = ownerInfoCuratorProvider.get().lookupByOwner(owner);
+
+        // If the owner was invalidated meanwhile this map is no longer reachable
+        purge(cached, now);
+        cached.put(key, new CachedInfo(info, now + ttl));
+        return info;
+    }
+
+    /**
+     * Drops all cached info for the given owner.
+     *
+     * @param ownerId the id of the owner
+     */
+    public void invalidate(String ownerId) {
+        if (ownerId != null) {
+            owners.remove(ownerId);
+        }
+    }
+
+    private static void purge(ConcurrentMap<String, CachedInfo> cached, long now) {
+        Iterator<CachedInfo> iterator = cached.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expires <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class CachedInfo {
+        private final OwnerInfo info;
+        private final long expires;
+
+        CachedInfo(OwnerInfo info, long expires) {
+            this.info = info;
+            this.expires = expires;
+        }
+    }
+}
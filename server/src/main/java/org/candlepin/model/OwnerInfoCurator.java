@@ -18,17 +18,16 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 
 import org.hibernate.Criteria;
-import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
-import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.persistence.EntityManager;
@@ -38,6 +37,14 @@ import javax.persistence.EntityManager;
  */
 
 public class OwnerInfoCurator {
+    private static final String REQUIRES_CONSUMER_TYPE = "requires_consumer_type";
+    private static final String ENABLED_CONSUMER_TYPES = "enabled_consumer_types";
+    private static final String PRODUCT_FAMILY = "product_family";
+    private static final String VIRT_ONLY = "virt_only";
+    private static final String[] SUMMARY_ATTRIBUTES = new String[] {
+        REQUIRES_CONSUMER_TYPE, ENABLED_CONSUMER_TYPES, PRODUCT_FAMILY, VIRT_ONLY
+    };
+
     private Provider<EntityManager> entityManager;
     private ConsumerTypeCurator consumerTypeCurator;
     private ConsumerCurator consumerCurator;
@@ -58,39 +65,61 @@ public class OwnerInfoCurator {
         Date now = new Date();
 
         List<ConsumerType> types = consumerTypeCurator.listAll();
-        HashMap<String, ConsumerType> typeHash = new HashMap<String, ConsumerType>();
+        Map<String, Integer> consumerCounts = getConsumerCountsByType(owner);
+        Map<String, Integer> entitlementCounts = getEntitlementCountsByType(owner);
+        Map<String, PoolSummary> pools = getActivePools(owner, now);
+
         for (ConsumerType type : types) {
-            // Store off the type for later use
-            typeHash.put(type.getLabel(), type);
+            info.addTypeTotal(type, countFor(consumerCounts, type), countFor(entitlementCounts, type));
+
+            int requiresCount = 0;
+            int enabledCount = 0;
+            for (PoolSummary pool : pools.values()) {
+                if (pool.requiresConsumerType(type.getLabel())) {
+                    requiresCount++;
+                }
+
+                if (pool.enablesConsumerType(type.getLabel())) {
+                    enabledCount++;
+                }
+            }
 
-            // Do the real work
-            int consumers = consumerCurator.getConsumerCount(owner, type);
-            int entCount = consumerCurator.getConsumerEntitlementCount(owner, type);
-            info.addTypeTotal(type, consumers, entCount);
+            info.addToConsumerTypeCountByPool(type, requiresCount);
+            if (enabledCount > 0) {
+                info.addToEnabledConsumerTypeCountByPool(type, enabledCount);
+            }
+        }
 
-            int count = getRequiresConsumerTypeCount(type, owner, now);
-            info.addToConsumerTypeCountByPool(type, count);
+        info.addDefaultEnabledConsumerTypeCount(pools.size());
 
-            count = getEnabledConsumerTypeCount(type, owner, now);
-            if (count > 0) {
-                info.addToEnabledConsumerTypeCountByPool(type, count);
+        Map<String, int[]> familyCounts = new HashMap<String, int[]>();
+        int totalEntitlements = 0;
+        int virtTotalEntitlements = 0;
+        for (PoolSummary pool : pools.values()) {
+            // Product families only consider pools strictly inside their validity period
+            if (!pool.startDate.before(now) || !pool.endDate.after(now)) {
+                continue;
             }
-        }
 
-        int activePools = getActivePoolCount(owner, now);
-        info.addDefaultEnabledConsumerTypeCount(activePools);
+            for (String family : pool.getEffectiveValues(PRODUCT_FAMILY)) {
+                int[] counts = familyCounts.get(family);
+                if (counts == null) {
+                    counts = new int[2];
+                    familyCounts.put(family, counts);
+                }
 
-        Collection<String> families = getProductFamilies(owner, now);
+                counts[0] += pool.consumed;
+                counts[1] += pool.isVirtOnly() ? pool.consumed : 0;
+            }
 
-        for (String family : families) {
-            int virtualCount = getProductFamilyCount(owner, now, family, true);
-            int totalCount = getProductFamilyCount(owner, now, family, false);
-            info.addToEntitlementsConsumedByFamily(family, totalCount - virtualCount,
-                virtualCount);
+            totalEntitlements += pool.consumed;
+            virtTotalEntitlements += pool.isVirtOnly() ? pool.consumed : 0;
         }
 
-        int virtTotalEntitlements = getProductFamilyCount(owner, now, null, true);
-        int totalEntitlements = getProductFamilyCount(owner, now, null, false);
+        for (Map.Entry<String, int[]> entry : familyCounts.entrySet()) {
+            int[] counts = entry.getValue();
+            info.addToEntitlementsConsumedByFamily(entry.getKey(), counts[0] - counts[1], counts[1]);
+        }
 
         info.addDefaultEntitlementsConsumedByFamily(
             totalEntitlements - virtTotalEntitlements,
@@ -102,6 +131,123 @@ public class OwnerInfoCurator {
         return info;
     }
 
+    private static int countFor(Map<String, Integer> counts, ConsumerType type) {
+        Integer count = counts.get(type.getId());
+        return count == null ? 0 : count;
+    }
+
+    @SuppressWarnings({"unchecked", "checkstyle:indentation"})
+    private Map<String, Integer> getConsumerCountsByType(Owner owner) {
+        Criteria c = consumerCurator.createSecureCriteria()
+            .add(Restrictions.eq("owner", owner))
+            .setProjection(Projections.projectionList()
+                .add(Projections.groupProperty("type.id"))
+                .add(Projections.rowCount()));
+
+        return toCounts(c.list());
+    }
+
+    @SuppressWarnings({"unchecked", "checkstyle:indentation"})
+    private Map<String, Integer> getEntitlementCountsByType(Owner owner) {
+        Criteria c = consumerCurator.createSecureCriteria()
+            .add(Restrictions.eq("owner", owner))
+            .createAlias("entitlements", "ent")
+            .setProjection(Projections.projectionList()
+                .add(Projections.groupProperty("type.id"))
+                .add(Projections.sum("ent.quantity")));
+
+        return toCounts(c.list());
+    }
+
+    private static Map<String, Integer> toCounts(List<Object[]> rows) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (Object[] row : rows) {
+            counts.put((String) row[0], row[1] == null ? 0 : ((Number) row[1]).intValue());
+        }
+
+        return counts;
+    }
+
+    /*
+     * Loads the owner's currently active pools along with the attributes the info
+     * is broken down by, and the quantity consumed from each pool. Pool attributes
+     * override product attributes of the same name.
+     */
+    @SuppressWarnings({"unchecked", "checkstyle:indentation"})
+    private Map<String, PoolSummary> getActivePools(Owner owner, Date date) {
+        Map<String, PoolSummary> pools = new HashMap<String, PoolSummary>();
+
+        List<Object[]> rows = activePoolCriteria(owner, date)
+            .setProjection(Projections.projectionList()
+                .add(Projections.id())
+                .add(Projections.property("startDate"))
+                .add(Projections.property("endDate")))
+            .list();
+
+        for (Object[] row : rows) {
+            pools.put((String) row[0], new PoolSummary((Date) row[1], (Date) row[2]));
+        }
+
+        rows = activePoolCriteria(owner, date)
+            .createAlias("attributes", "attr")
+            .add(Restrictions.in("attr.name", SUMMARY_ATTRIBUTES))
+            .setProjection(Projections.projectionList()
+                .add(Projections.id())
+                .add(Projections.property("attr.name"))
+                .add(Projections.property("attr.value")))
+            .list();
+
+        for (Object[] row : rows) {
+            // Pools created since the first query are left out of the totals
+            PoolSummary pool = pools.get(row[0]);
+            if (pool != null) {
+                pool.addPoolAttribute((String) row[1], (String) row[2]);
+            }
+        }
+
+        rows = activePoolCriteria(owner, date)
+            .createAlias("product", "prod")
+            .createAlias("prod.attributes", "prodAttr")
+            .add(Restrictions.in("prodAttr.name", SUMMARY_ATTRIBUTES))
+            .setProjection(Projections.projectionList()
+                .add(Projections.id())
+                .add(Projections.property("prodAttr.name"))
+                .add(Projections.property("prodAttr.value")))
+            .list();
+
+        for (Object[] row : rows) {
+            // Pools created since the first query are left out of the totals
+            PoolSummary pool = pools.get(row[0]);
+            if (pool != null) {
+                pool.addProductAttribute((String) row[1], (String) row[2]);
+            }
+        }
+
+        rows = activePoolCriteria(owner, date)
+            .createAlias("entitlements", "ent")
+            .setProjection(Projections.projectionList()
+                .add(Projections.groupProperty("id"))
+                .add(Projections.sum("ent.quantity")))
+            .list();
+
+        for (Object[] row : rows) {
+            // Pools created since the first query are left out of the totals
+            PoolSummary pool = pools.get(row[0]);
+            if (pool != null) {
+                pool.consumed = row[1] == null ? 0 : ((Number) row[1]).intValue();
+            }
+        }
+
+        return pools;
+    }
+
+    private Criteria activePoolCriteria(Owner owner, Date date) {
+        return poolCurator.createSecureCriteria()
+            .add(Restrictions.eq("owner", owner))
+            .add(Restrictions.le("startDate", date))
+            .add(Restrictions.ge("endDate", date));
+    }
+
     @SuppressWarnings("unchecked")
     private void setConsumerGuestCounts(Owner owner, OwnerInfo info) {
         Criteria cr = consumerCurator.createSecureCriteria()
@@ -147,143 +293,79 @@ public class OwnerInfoCurator {
         }
     }
 
-    private int getActivePoolCount(Owner owner, Date date) {
-        Criteria activePoolCountCrit = poolCurator.createSecureCriteria()
-            .add(Restrictions.eq("owner", owner))
-            .add(Restrictions.le("startDate", date))
-            .add(Restrictions.ge("endDate", date))
-            .setProjection(Projections.count("id"));
-        return ((Long) activePoolCountCrit.uniqueResult()).intValue();
+    protected Session currentSession() {
+        Session sess = (Session) entityManager.get().getDelegate();
+        return sess;
     }
 
-    private int getRequiresConsumerTypeCount(ConsumerType type, Owner owner, Date date) {
-        PoolFilterBuilder filterBuilder = new PoolFilterBuilder();
-        filterBuilder.addAttributeFilter("requires_consumer_type", type.getLabel());
-        Criteria typeCountCrit = poolCurator.createSecureCriteria()
-            .add(Restrictions.eq("owner", owner))
-            .add(Restrictions.le("startDate", date))
-            .add(Restrictions.ge("endDate", date))
-            .setProjection(Projections.count("id"));
-        filterBuilder.applyTo(typeCountCrit);
+    /**
+     * The parts of an active pool that the owner info is built from.
+     */
+    private static class PoolSummary {
+        private final Date startDate;
+        private final Date endDate;
+        private final Map<String, Set<String>> poolAttributes = new HashMap<String, Set<String>>();
+        private final Map<String, Set<String>> productAttributes = new HashMap<String, Set<String>>();
+        private int consumed;
+
+        PoolSummary(Date startDate, Date endDate) {
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
 
-        return ((Long) typeCountCrit.uniqueResult()).intValue();
-    }
+        void addPoolAttribute(String name, String value) {
+            add(poolAttributes, name, value);
+        }
 
-    private int getEnabledConsumerTypeCount(ConsumerType type, Owner owner, Date date) {
-        PoolFilterBuilder filterBuilder = new PoolFilterBuilder();
-        filterBuilder.addAttributeFilter("enabled_consumer_types", type.getLabel() + ",*");
-        filterBuilder.addAttributeFilter("enabled_consumer_types", "*," + type.getLabel() + ",*");
-        filterBuilder.addAttributeFilter("enabled_consumer_types", "*," + type.getLabel());
-        filterBuilder.addAttributeFilter("enabled_consumer_types", type.getLabel());
-        Criteria enabledCountCrit = poolCurator.createSecureCriteria()
-            .add(Restrictions.eq("owner", owner))
-            .add(Restrictions.le("startDate", date))
-            .add(Restrictions.ge("endDate", date))
-            .setProjection(Projections.countDistinct("id"));
-        filterBuilder.applyTo(enabledCountCrit);
+        void addProductAttribute(String name, String value) {
+            add(productAttributes, name, value);
+        }
 
-        return ((Long) enabledCountCrit.uniqueResult()).intValue();
-    }
+        private static void add(Map<String, Set<String>> attributes, String name, String value) {
+            Set<String> values = attributes.get(name);
+            if (values == null) {
+                values = new HashSet<String>();
+                attributes.put(name, values);
+            }
 
-    private Collection<String> getProductFamilies(Owner owner, Date date) {
-        Set<String> families = new HashSet<String>();
-
-        String queryStr = "select distinct attr.value from Pool p " +
-            "join p.attributes as attr " +
-            "where p.owner = :owner " +
-            "and p.startDate < :date and p.endDate > :date " +
-            "and attr.name = 'product_family'";
-        Query query = currentSession().createQuery(queryStr)
-            .setEntity("owner", owner)
-            .setParameter("date", date);
-
-        Iterator iter = query.iterate();
-        while (iter.hasNext()) {
-            String family = (String) iter.next();
-            families.add(family);
+            if (value != null) {
+                values.add(value);
+            }
         }
 
-        queryStr = "select distinct prod.value from Pool p " +
-            "join p.product.attributes as prod " +
-            "where p.owner = :owner " +
-            "and p.startDate < :date and p.endDate > :date " +
-            "and prod.name = 'product_family' " +
-            "and p not in (select distinct pa.pool from PoolAttribute pa" +
-            "              where pa.name = 'product_family')";
-        query = currentSession().createQuery(queryStr)
-            .setEntity("owner", owner)
-            .setParameter("date", date);
-
-        iter = query.iterate();
-        while (iter.hasNext()) {
-            String family = (String) iter.next();
-            families.add(family);
+        Set<String> getEffectiveValues(String name) {
+            Set<String> values = poolAttributes.get(name);
+            if (values == null) {
+                values = productAttributes.get(name);
+            }
+
+            return values == null ? Collections.<String>emptySet() : values;
         }
 
-        return families;
-    }
+        boolean requiresConsumerType(String label) {
+            for (String value : getEffectiveValues(REQUIRES_CONSUMER_TYPE)) {
+                if (value.equalsIgnoreCase(label)) {
+                    return true;
+                }
+            }
 
-    /*
-     * If called with virt = false, returns the total number of all entitlements in
-     * that family for that owner. So you probably want to subtract  the result of
-     * virt=true from that.
-     *
-     * use family = null to get counts for all pools.
-     */
-    private int getProductFamilyCount(Owner owner, Date date, String family, boolean virt) {
-        String queryStr = "select sum(ent.quantity) from Pool p" +
-            "              join p.entitlements as ent " +
-            "              where p.owner = :owner " +
-            "              and p.startDate < :date and p.endDate > :date ";
-
-        if (family != null) {
-            queryStr +=
-                "and (p in (select p from Pool p join p.attributes as attr " +
-                "           where p.owner = :owner " +
-                "           and attr.name = 'product_family' and attr.value = :family)" +
-                "     or (p in (select p from Pool p join p.product.attributes as prod " +
-                "              where p.owner = :owner " +
-                "              and prod.name = 'product_family' " +
-                "              and prod.value = :family) " +
-                "         and p not in (select p from Pool p join p.attributes as attr " +
-                "                       where p.owner = :owner " +
-                "                       and attr.name = 'product_family')" +
-                "        )" +
-                ")";
+            return false;
         }
 
-        if (virt) {
-            queryStr += "and (p in (select p from Pool p join p.attributes as attr " +
-                        "           where attr.name = 'virt_only' " +
-                        "           and attr.value = 'true') " +
-                        "     or (p in (select p from Pool p " +
-                        "               join p.product.attributes as prod " +
-                        "               where p.owner = :owner " +
-                        "               and prod.name = 'virt_only' " +
-                        "               and prod.value = 'true')" +
-                        "         and p not in (select p from Pool p " +
-                        "                       join p.attributes as attr " +
-                        "                       where p.owner = :owner " +
-                        "                       and attr.name = 'virt_only')" +
-                        "     )" +
-                        ")";
-        }
-        Query query = currentSession().createQuery(queryStr)
-            .setEntity("owner", owner)
-            .setParameter("date", date);
-        if (family != null) {
-            query.setParameter("family", family);
-        }
-        Long res = (Long) query.uniqueResult();
-        if (res == null) {
-            return 0;
-        }
+        boolean enablesConsumerType(String label) {
+            for (String value : getEffectiveValues(ENABLED_CONSUMER_TYPES)) {
+                for (String enabled : value.split(",")) {
+                    if (enabled.equalsIgnoreCase(label)) {
+                        return true;
+                    }
+                }
+            }
 
-        return res.intValue();
-    }
+            return false;
+        }
 
-    protected Session currentSession() {
-        Session sess = (Session) entityManager.get().getDelegate();
-        return sess;
+        boolean isVirtOnly() {
+            return getEffectiveValues(VIRT_ONLY).contains("true");
+        }
     }
 }
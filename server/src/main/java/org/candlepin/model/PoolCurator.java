@@ -196,16 +196,32 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         return listAvailableEntitlementPools(null, owner, productId, null, false);
     }
 
+    /**
+     * Lists one page of the pools that expired before the given date, ordered by end
+     * date and id. A page continues after the last pool of the previous one, so pools
+     * that are skipped rather than deleted do not come back.
+     *
+     * @param before pools ending before this date are expired
+     * @param afterEndDate end date of the last pool of the previous page, or null for
+     * the first page
+     * @param afterId id of the last pool of the previous page
+     * @param pageSize the most pools to return
+     * @return the next page of expired pools
+     */
     @SuppressWarnings("unchecked")
-    public List<Pool> listExpiredPools() {
-        Date today = new Date();
-        Criteria crit = createSecureCriteria().add(
-            Restrictions.lt("endDate", today));
-        List<Pool> results = crit.list();
-        if (results == null) {
-            results = new LinkedList<Pool>();
-        }
-        return results;
+    public List<Pool> listExpiredPools(Date before, Date afterEndDate, String afterId, int pageSize) {
+        Criteria crit = createSecureCriteria().add(Restrictions.lt("endDate", before));
+        if (afterEndDate != null) {
+            crit.add(Restrictions.or(
+                Restrictions.gt("endDate", afterEndDate),
+                Restrictions.and(
+                Restrictions.eq("endDate", afterEndDate),
+                Restrictions.gt("id", afterId))));
+        }
+        return crit.addOrder(Order.asc("endDate"))
+            .addOrder(Order.asc("id"))
+            .setMaxResults(pageSize)
+            .list();
     }
 
     @SuppressWarnings("unchecked")
@@ -245,6 +261,30 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         String subscriptionId, Date activeOn, boolean activeOnly, PoolFilterBuilder filters,
         PageRequest pageRequest, boolean postFilter) {
 
+        Criteria crit = createAvailableEntitlementPoolsCriteria(c, o, productId, subscriptionId,
+            activeOn, activeOnly, filters);
+
+        return listByCriteria(crit, pageRequest, postFilter);
+    }
+
+    /**
+     * Counts the entitlement pools {@link #listAvailableEntitlementPools} would list for the
+     * same arguments, before any filtering done in java.
+     *
+     * @return the number of matching pools
+     */
+    @Transactional
+    public int countAvailableEntitlementPools(Consumer c, Owner o, String productId,
+        String subscriptionId, Date activeOn, boolean activeOnly, PoolFilterBuilder filters) {
+
+        return findRowCount(createAvailableEntitlementPoolsCriteria(c, o, productId,
+            subscriptionId, activeOn, activeOnly, filters));
+    }
+
+    private Criteria createAvailableEntitlementPoolsCriteria(Consumer c, Owner o,
+        String productId, String subscriptionId, Date activeOn, boolean activeOnly,
+        PoolFilterBuilder filters) {
+
         if (o == null && c != null) {
             o = c.getOwner();
         }
@@ -302,7 +342,7 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
             filters.applyTo(crit);
         }
 
-        return listByCriteria(crit, pageRequest, postFilter);
+        return crit;
     }
 
     /**
@@ -549,7 +589,7 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
             log.debug("Nothing to lock");
             return;
         }
-        List<String> ids = new ArrayList<String>();
+        Set<String> ids = new HashSet<String>();
         for (Pool p : poolsToLock) {
             ids.add(p.getId());
         }
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.core;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.JobCurator;
+import org.candlepin.pinsetter.tasks.KingpinJob;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.quartz.Trigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorts async jobs into the lanes named in the configuration. All lanes share the
+ * scheduler thread pool; a lane decides the priority its triggers are queued with
+ * and how many of its jobs may be active at once, so that a burst of batch work
+ * cannot take every thread away from interactive requests.
+ */
+@Singleton
+public class JobLanes {
+    private static Logger log = LoggerFactory.getLogger(JobLanes.class);
+
+    private final Configuration config;
+    private final JobCurator jobCurator;
+    private final Map<Class<?>, Lane> lanes = new HashMap<Class<?>, Lane>();
+
+    @Inject
+    public JobLanes(Configuration config, JobCurator jobCurator) {
+        this.config = config;
+        this.jobCurator = jobCurator;
+
+        List<String> names = config.getList(ConfigProperties.PINSETTER_LANES,
+            Collections.<String>emptyList());
+        for (String name : names) {
+            String prefix = ConfigProperties.PINSETTER_LANE_PREFIX + name;
+            int priority = config.getInt(prefix + ConfigProperties.PINSETTER_LANE_PRIORITY,
+                Trigger.DEFAULT_PRIORITY);
+            int maxRunning = config.getInt(prefix + ConfigProperties.PINSETTER_LANE_MAX_RUNNING, 0);
+            Lane lane = new Lane(name, priority, maxRunning);
+
+            List<String> jobs = config.getList(prefix + ConfigProperties.PINSETTER_LANE_JOBS,
+                Collections.<String>emptyList());
+            for (String className : jobs) {
+                Class<? extends KingpinJob> jobClass = loadJobClass(className);
+                if (jobClass == null) {
+                    continue;
+                }
+                if (lanes.containsKey(jobClass)) {
+                    log.warn(className + " is already in lane " +
+                        lanes.get(jobClass).name + ", ignoring it for lane " + name);
+                    continue;
+                }
+                lane.jobClasses.add(jobClass);
+                lanes.put(jobClass, lane);
+            }
+        }
+    }
+
+    /**
+     * @return the lane the job class runs in, or null if it is not in one
+     */
+    public String getLane(Class<?> jobClass) {
+        Lane lane = lanes.get(jobClass);
+        return lane == null ? null : lane.name;
+    }
+
+    /**
+     * @return the priority to give triggers of the job class
+     */
+    public int getPriority(Class<?> jobClass) {
+        Lane lane = lanes.get(jobClass);
+        return lane == null ? Trigger.DEFAULT_PRIORITY : lane.priority;
+    }
+
+    /**
+     * Whether another job of the given class may be queued now, or should be
+     * left waiting until its lane, and the class itself, are under their limits.
+     *
+     * @param jobClass the job about to be queued
+     * @return true if it can be given a trigger
+     */
+    public boolean hasCapacity(Class<? extends KingpinJob> jobClass) {
+        Lane lane = lanes.get(jobClass);
+        if (lane != null && lane.maxRunning > 0 &&
+            jobCurator.findNumActiveByClasses(lane.jobClasses) >= lane.maxRunning) {
+            log.debug("Lane " + lane.name + " is full, " + jobClass.getName() + " will wait");
+            return false;
+        }
+
+        int classMax = config.getInt("pinsetter." + jobClass.getName() +
+            ConfigProperties.PINSETTER_JOB_MAX_RUNNING, 0);
+        if (classMax > 0) {
+            List<Class<? extends KingpinJob>> classes = new ArrayList<Class<? extends KingpinJob>>();
+            classes.add(jobClass);
+            if (jobCurator.findNumActiveByClasses(classes) >= classMax) {
+                log.debug(jobClass.getName() + " is at its limit and will wait");
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<? extends KingpinJob> loadJobClass(String className) {
+        try {
+            Class<?> clazz = Class.forName(className);
+            if (KingpinJob.class.isAssignableFrom(clazz)) {
+                return (Class<? extends KingpinJob>) clazz;
+            }
+            log.warn(className + " is not a job, leaving it out of the job lanes");
+        }
+        catch (ClassNotFoundException e) {
+            log.warn("Unknown job class " + className + ", leaving it out of the job lanes");
+        }
+        return null;
+    }
+
+    private static class Lane {
+        private final String name;
+        private final int priority;
+        private final int maxRunning;
+        private final List<Class<? extends KingpinJob>> jobClasses =
+            new ArrayList<Class<? extends KingpinJob>>();
+
+        Lane(String name, int priority, int maxRunning) {
+            this.name = name;
+            this.priority = priority;
+            this.maxRunning = maxRunning;
+        }
+    }
+}
@@ -16,6 +16,7 @@ package org.candlepin.pinsetter.core;
 
 import org.candlepin.auth.Principal;
 import org.candlepin.model.JobCurator;
+import org.candlepin.model.JobStatusCache;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 import org.candlepin.pinsetter.tasks.UniqueByEntityJob;
@@ -45,6 +46,7 @@ public class PinsetterJobListener implements JobListener {
     public static final String PRINCIPAL_KEY = "principal_key";
 
     private JobCurator curator;
+    private JobStatusCache statusCache;
 
     // this is a separate unitOfWork and units of work from the actual pinsetter
     // job because we want to tie this closer to the quartz execution, rather than
@@ -52,9 +54,11 @@ public class PinsetterJobListener implements JobListener {
     private UnitOfWork unitOfWork;
 
     @Inject
-    public PinsetterJobListener(JobCurator curator, UnitOfWork unitOfWork) {
+    public PinsetterJobListener(JobCurator curator, UnitOfWork unitOfWork,
+        JobStatusCache statusCache) {
         this.curator = curator;
         this.unitOfWork = unitOfWork;
+        this.statusCache = statusCache;
     }
 
     @Override
@@ -134,6 +138,13 @@ public class PinsetterJobListener implements JobListener {
                 status.update(ctx);
             }
             curator.merge(status);
+            if (exc != null && exc.refireImmediately()) {
+                // Not done yet, waiters hear about the refired run instead
+                statusCache.remove(status.getId());
+            }
+            else {
+                statusCache.finished(status);
+            }
         }
         else {
             log.debug("No jobinfo found for job: " + ctx);
@@ -28,6 +28,7 @@ import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.JobCurator;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.tasks.CancelJobJob;
+import org.candlepin.pinsetter.tasks.KingpinJob;
 import org.candlepin.util.PropertyUtil;
 import org.candlepin.util.Util;
 
@@ -74,6 +75,7 @@ public class PinsetterKernel {
     private Scheduler scheduler;
     private Configuration config;
     private JobCurator jobCurator;
+    private JobLanes lanes;
 
     /**
      * Kernel main driver behind Pinsetter
@@ -84,10 +86,11 @@ public class PinsetterKernel {
     @Inject
     public PinsetterKernel(Configuration conf, JobFactory jobFactory,
         JobListener listener, JobCurator jobCurator,
-        StdSchedulerFactory fact) throws InstantiationException {
+        StdSchedulerFactory fact, JobLanes lanes) throws InstantiationException {
 
         this.config = conf;
         this.jobCurator = jobCurator;
+        this.lanes = lanes;
 
         /*
          * Did your unit test get an NPE here?
@@ -393,13 +396,27 @@ public class PinsetterKernel {
      *
      * @param jobDetail the long-running job to perform - assumed to be
      *     prepopulated with a valid job task and name
+     * If the lane of the job is full it is stored durably, without a trigger, and
+     * left waiting for the UnpauseJob.
+     *
      * @return the initial status of the submitted job
      * @throws PinsetterException if there is an error scheduling the job
      */
+    @SuppressWarnings("unchecked")
     public JobStatus scheduleSingleJob(JobDetail jobDetail) throws PinsetterException {
-        Trigger trigger = newTrigger()
-            .withIdentity(jobDetail.getKey().getName() + " trigger", SINGLE_JOB_GROUP)
-            .build();
+        Class<? extends KingpinJob> jobClass = (Class<? extends KingpinJob>) jobDetail.getJobClass();
+        Trigger trigger = null;
+        if (lanes.hasCapacity(jobClass)) {
+            trigger = newTrigger()
+                .withIdentity(jobDetail.getKey().getName() + " trigger", SINGLE_JOB_GROUP)
+                .withPriority(lanes.getPriority(jobClass))
+                .build();
+        }
+        else if (!jobDetail.isDurable()) {
+            // Quartz only stores jobs without a trigger if they are durable; the
+            // listener deletes the detail once the job has run.
+            jobDetail = jobDetail.getJobBuilder().storeDurably().build();
+        }
 
         return scheduleJob(jobDetail, SINGLE_JOB_GROUP, trigger);
     }
@@ -408,6 +425,7 @@ public class PinsetterKernel {
         Trigger trigger = newTrigger()
             .withIdentity(status.getId() + " trigger", SINGLE_JOB_GROUP)
             .forJob(status.getJobKey())
+            .withPriority(lanes.getPriority(status.getJobClass()))
             .build();
         scheduler.scheduleJob(trigger);
     }
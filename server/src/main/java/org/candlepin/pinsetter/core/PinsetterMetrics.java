@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.core;
+
+import org.candlepin.common.filter.TimingHistogram;
+import org.candlepin.model.JobMetrics;
+
+import com.google.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the jobs this node runs, per job class, and keeps histograms of how long
+ * they waited to start and how long they ran. Nothing is persisted; the numbers
+ * cover the time since this node started.
+ */
+@Singleton
+public class PinsetterMetrics {
+
+    /**
+     * How a single run of a job ended.
+     */
+    public enum Outcome {
+        SUCCEEDED("Job runs that completed."),
+        RETRIED("Job runs that failed and were fired again."),
+        FAILED("Job runs that failed and were not retried.");
+
+        private final String help;
+
+        Outcome(String help) {
+            this.help = help;
+        }
+    }
+
+    // Upper bounds of the histogram buckets, in milliseconds
+    private static final long[] BOUNDS = {
+        10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000, 900000, 3600000
+    };
+
+    private static final long MINUTE = 60 * 1000;
+
+    private final ConcurrentMap<String, ClassMetrics> metrics =
+        new ConcurrentHashMap<String, ClassMetrics>();
+
+    /**
+     * @param jobClass the job starting
+     * @param queueWait how long it waited to start, in milliseconds, or a negative
+     * value when not known
+     */
+    public void jobStarted(Class<?> jobClass, long queueWait) {
+        ClassMetrics cm = forClass(jobClass);
+        cm.started.incrementAndGet();
+        if (queueWait >= 0) {
+            cm.queueWait.record(queueWait);
+        }
+    }
+
+    public void jobFinished(Class<?> jobClass, long runTime, Outcome outcome) {
+        ClassMetrics cm = forClass(jobClass);
+        cm.runTime.record(runTime);
+        cm.outcomes.incrementAndGet(outcome.ordinal());
+        cm.completed(System.currentTimeMillis());
+    }
+
+    /**
+     * @return the metrics of every job class run so far, ordered by class name
+     */
+    public List<JobMetrics> getMetrics() {
+        long now = System.currentTimeMillis();
+        List<JobMetrics> result = new ArrayList<JobMetrics>();
+        for (Map.Entry<String, ClassMetrics> entry : sorted().entrySet()) {
+            ClassMetrics cm = entry.getValue();
+            JobMetrics jm = new JobMetrics();
+            jm.setJobClass(entry.getKey());
+            jm.setStarted(cm.started.get());
+            jm.setSucceeded(cm.outcomes.get(Outcome.SUCCEEDED.ordinal()));
+            jm.setFailed(cm.outcomes.get(Outcome.FAILED.ordinal()));
+            jm.setRetried(cm.outcomes.get(Outcome.RETRIED.ordinal()));
+            jm.setRunning(Math.max(0, jm.getStarted() - jm.getSucceeded() - jm.getFailed() -
+                jm.getRetried()));
+            jm.setCompletedLastMinute(cm.completedLastMinute(now));
+            jm.setQueueWait(cm.queueWait);
+            jm.setRunTime(cm.runTime);
+            result.add(jm);
+        }
+        return result;
+    }
+
+    /**
+     * @return the same metrics in the Prometheus text exposition format, with
+     * durations in seconds
+     */
+    public String toPrometheus() {
+        Map<String, ClassMetrics> sorted = sorted();
+        StringBuilder out = new StringBuilder();
+
+        counter(out, sorted, "started", "Job runs started.", null);
+        for (Outcome outcome : Outcome.values()) {
+            counter(out, sorted, outcome.name().toLowerCase(Locale.ENGLISH), outcome.help, outcome);
+        }
+        histogram(out, sorted, "queue_wait", "Time jobs waited before they started.", true);
+        histogram(out, sorted, "run", "Time jobs took to run.", false);
+        return out.toString();
+    }
+
+    private void counter(StringBuilder out, Map<String, ClassMetrics> sorted, String name,
+        String help, Outcome outcome) {
+        String metric = "candlepin_job_" + name + "_total";
+        out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(metric).append(" counter\n");
+        for (Map.Entry<String, ClassMetrics> entry : sorted.entrySet()) {
+            ClassMetrics cm = entry.getValue();
+            long value = outcome == null ? cm.started.get() : cm.outcomes.get(outcome.ordinal());
+            out.append(metric).append("{job=\"").append(entry.getKey()).append("\"} ")
+                .append(value).append('\n');
+        }
+    }
+
+    private void histogram(StringBuilder out, Map<String, ClassMetrics> sorted, String name,
+        String help, boolean queueWait) {
+        String metric = "candlepin_job_" + name + "_seconds";
+        out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(metric).append(" histogram\n");
+        for (Map.Entry<String, ClassMetrics> entry : sorted.entrySet()) {
+            TimingHistogram histogram = queueWait ?
+                entry.getValue().queueWait : entry.getValue().runTime;
+            String job = "job=\"" + entry.getKey() + "\"";
+            long cumulative = 0;
+            for (int i = 0; i <= BOUNDS.length; i++) {
+                cumulative += histogram.getBucket(i);
+                String le = i < BOUNDS.length ? seconds(BOUNDS[i]) : "+Inf";
+                out.append(metric).append("_bucket{").append(job).append(",le=\"").append(le)
+                    .append("\"} ").append(cumulative).append('\n');
+            }
+            out.append(metric).append("_sum{").append(job).append("} ")
+                .append(seconds(histogram.getTotal())).append('\n');
+            out.append(metric).append("_count{").append(job).append("} ")
+                .append(histogram.getCount()).append('\n');
+        }
+    }
+
+    private static String seconds(long millis) {
+        return String.valueOf(millis / 1000.0);
+    }
+
+    private Map<String, ClassMetrics> sorted() {
+        return new TreeMap<String, ClassMetrics>(metrics);
+    }
+
+    private ClassMetrics forClass(Class<?> jobClass) {
+        String name = jobClass.getSimpleName();
+        ClassMetrics cm = metrics.get(name);
+        if (cm == null) {
+            metrics.putIfAbsent(name, new ClassMetrics());
+            cm = metrics.get(name);
+        }
+        return cm;
+    }
+
+    /*
+     * Counters of a single job class.
+     */
+    private static class ClassMetrics {
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLongArray outcomes = new AtomicLongArray(Outcome.values().length);
+        private final TimingHistogram queueWait = new TimingHistogram(BOUNDS);
+        private final TimingHistogram runTime = new TimingHistogram(BOUNDS);
+
+        // Completions in the current and the previous minute
+        private long minute;
+        private long thisMinute;
+        private long lastMinute;
+
+        synchronized void completed(long now) {
+            roll(now / MINUTE);
+            thisMinute++;
+        }
+
+        synchronized long completedLastMinute(long now) {
+            roll(now / MINUTE);
+            return lastMinute;
+        }
+
+        private void roll(long current) {
+            if (current != minute) {
+                lastMinute = current == minute + 1 ? thisMinute : 0;
+                thisMinute = 0;
+                minute = current;
+            }
+        }
+    }
+}
@@ -325,4 +325,27 @@ public class JobStatus extends AbstractHibernateObject {
     public void cloakResultData(boolean cloak) {
         this.cloakData = cloak;
     }
+
+    /**
+     * @return a detached copy of this status, which can be cloaked independently
+     */
+    public JobStatus copy() {
+        JobStatus copy = new JobStatus();
+        copy.id = this.id;
+        copy.jobGroup = this.jobGroup;
+        copy.state = this.state;
+        copy.startTime = this.startTime;
+        copy.finishTime = this.finishTime;
+        copy.result = this.result;
+        copy.principalName = this.principalName;
+        copy.targetType = this.targetType;
+        copy.targetId = this.targetId;
+        copy.ownerId = this.ownerId;
+        copy.jobClass = this.jobClass;
+        copy.resultData = this.resultData;
+        copy.cloakData = this.cloakData;
+        copy.setCreated(getCreated());
+        copy.setUpdated(getUpdated());
+        return copy;
+    }
 }
@@ -100,7 +100,7 @@ public class ConsumerComplianceJob extends UniqueByEntityJob {
         map.put("calculate_compliance_until", calculateCompliantUntil);
         map.put("update", updateConsumer);
         map.put("force_update", false);
-        return scheduleUsingMap(consumer, map);
+        return scheduleUsingMap(consumer.getOwner().getKey(), consumer.getUuid(), map);
 
     }
 
@@ -113,14 +113,27 @@ public class ConsumerComplianceJob extends UniqueByEntityJob {
         map.put("calculate_compliance_until", false);
         map.put("update", false);
         map.put("force_update", true);
-        return scheduleUsingMap(consumer, map);
+        return scheduleUsingMap(consumer.getOwner().getKey(), consumer.getUuid(), map);
 
     }
 
-    private static JobDetail scheduleUsingMap(Consumer consumer, JobDataMap map) {
-        map.put(JobStatus.OWNER_ID, consumer.getOwner().getKey());
+    /*
+     * Recalculates the current status of a consumer that is only known by uuid,
+     * saving it when it changed, or unconditionally when forced.
+     */
+    public static JobDetail scheduleForConsumer(String ownerKey, String consumerUuid,
+        boolean forceUpdate) {
+        JobDataMap map = new JobDataMap();
+        map.put("calculate_compliance_until", false);
+        map.put("update", !forceUpdate);
+        map.put("force_update", forceUpdate);
+        return scheduleUsingMap(ownerKey, consumerUuid, map);
+    }
+
+    private static JobDetail scheduleUsingMap(String ownerKey, String consumerUuid, JobDataMap map) {
+        map.put(JobStatus.OWNER_ID, ownerKey);
         map.put(JobStatus.TARGET_TYPE, JobStatus.TargetType.CONSUMER);
-        map.put(JobStatus.TARGET_ID, consumer.getUuid());
+        map.put(JobStatus.TARGET_ID, consumerUuid);
 
         JobDetail detail = newJob(ConsumerComplianceJob.class).withIdentity(prefix + Util.generateUUID())
             .usingJobData(map).storeDurably(true) // required if we have to postpone the job
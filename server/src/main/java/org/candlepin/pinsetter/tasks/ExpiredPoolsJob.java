@@ -14,6 +14,7 @@
  */
 package org.candlepin.pinsetter.tasks;
 
+import org.candlepin.controller.ExpiredPoolsResult;
 import org.candlepin.controller.PoolManager;
 
 import com.google.inject.Inject;
@@ -46,6 +47,7 @@ public class ExpiredPoolsJob extends KingpinJob {
     }
 
     public void toExecute(JobExecutionContext ctx) throws JobExecutionException {
-        poolManager.cleanupExpiredPools();
+        ExpiredPoolsResult result = poolManager.cleanupExpiredPools();
+        ctx.setResult(result.toString());
     }
 }
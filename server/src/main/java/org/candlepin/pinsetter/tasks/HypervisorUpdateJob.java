@@ -28,8 +28,10 @@ import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
 import org.candlepin.model.VirtConsumerMap;
 import org.candlepin.pinsetter.core.model.JobStatus;
+import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 import org.candlepin.resource.ConsumerResource;
 import org.candlepin.resource.dto.HypervisorUpdateResult;
+import org.candlepin.resource.util.HypervisorHasher;
 import org.candlepin.util.Util;
 
 import com.google.inject.Inject;
@@ -72,6 +74,7 @@ public class HypervisorUpdateJob extends KingpinJob {
     private OwnerCurator ownerCurator;
     private ConsumerCurator consumerCurator;
     private ConsumerResource consumerResource;
+    private JobCurator jobCurator;
 
     public static final String CREATE = "create";
     public static final String REPORTER_ID = "reporter_id";
@@ -81,18 +84,21 @@ public class HypervisorUpdateJob extends KingpinJob {
 
     @Inject
     public HypervisorUpdateJob(OwnerCurator ownerCurator, ConsumerCurator consumerCurator,
-        ConsumerResource consumerResource) {
+        ConsumerResource consumerResource, JobCurator jobCurator) {
         this.ownerCurator = ownerCurator;
         this.consumerCurator = consumerCurator;
         this.consumerResource = consumerResource;
+        this.jobCurator = jobCurator;
     }
 
     public static JobStatus scheduleJob(JobCurator jobCurator,
         Scheduler scheduler, JobDetail detail,
         Trigger trigger) throws SchedulerException {
-        JobStatus result = jobCurator.getByClassAndTarget(
-            detail.getJobDataMap().getString(JobStatus.TARGET_ID),
-            HypervisorUpdateJob.class);
+        String ownerKey = detail.getJobDataMap().getString(JobStatus.TARGET_ID);
+        supersedeWaitingReports(jobCurator, scheduler, ownerKey,
+            detail.getJobDataMap().getString(REPORTER_ID), detail.getKey().getName());
+
+        JobStatus result = jobCurator.getByClassAndTarget(ownerKey, HypervisorUpdateJob.class);
         if (result == null) {
             return KingpinJob.scheduleJob(jobCurator, scheduler, detail, trigger);
         }
@@ -101,6 +107,36 @@ public class HypervisorUpdateJob extends KingpinJob {
         return status;
     }
 
+    /*
+     * A reporter sends its complete view every time, so a report still waiting to run
+     * is replaced by a newer one from the same reporter rather than run ahead of it.
+     * Only the job status is changed here, claimed atomically so that an UnpauseJob on
+     * another node cannot start the job meanwhile; CancelJobJob removes the scheduler
+     * entry once the cancellation has committed.
+     */
+    private static void supersedeWaitingReports(JobCurator jobCurator, Scheduler scheduler,
+        String ownerKey, String reporterId, String newJobId) throws SchedulerException {
+        if (reporterId == null) {
+            return;
+        }
+
+        for (JobStatus status : jobCurator.findWaitingByClassAndTarget(ownerKey,
+            HypervisorUpdateJob.class)) {
+            JobDetail waiting = scheduler.getJobDetail(status.getJobKey());
+            if (waiting == null || !reporterId.equals(waiting.getJobDataMap().getString(REPORTER_ID))) {
+                continue;
+            }
+
+            if (!jobCurator.updateWaitingState(status.getId(), JobState.CANCELED)) {
+                continue;
+            }
+            log.debug("Job {} superseded by {}", status.getId(), newJobId);
+            status.setState(JobState.CANCELED);
+            status.setResult("Superseded by job " + newJobId);
+            jobCurator.merge(status);
+        }
+    }
+
     public static boolean isSchedulable(JobCurator jobCurator, JobStatus status) {
         long running = jobCurator.findNumRunningByClassAndTarget(
             status.getTargetId(), HypervisorUpdateJob.class);
@@ -108,7 +144,7 @@ public class HypervisorUpdateJob extends KingpinJob {
     }
 
     private void parseHypervisorList(HypervisorList hypervisorList, Set<String> hosts,
-        Set<String> guests, Map<String, Consumer> incomingHosts) {
+        Map<String, Consumer> incomingHosts) {
         int emptyGuestIdCount = 0;
         int emptyHypervisorIdCount = 0;
 
@@ -149,9 +185,6 @@ public class HypervisorUpdateJob extends KingpinJob {
                     guestIds.remove();
                     emptyGuestIdCount++;
                 }
-                else {
-                    guests.add(guestId.getGuestId());
-                }
             }
         }
 
@@ -174,99 +207,257 @@ public class HypervisorUpdateJob extends KingpinJob {
      *
      * @param context the job's execution context
      */
-    @Transactional
-    @SuppressWarnings("checkstyle:indentation")
     public void toExecute(JobExecutionContext context) throws JobExecutionException {
+        JobDataMap map = context.getMergedJobDataMap();
+        String ownerKey = map.getString(JobStatus.TARGET_ID);
         try {
-            JobDataMap map = context.getMergedJobDataMap();
-            String ownerKey = map.getString(JobStatus.TARGET_ID);
-            Boolean create = map.getBoolean(CREATE);
-            Principal principal = (Principal) map.get(PRINCIPAL);
-            String jobReporterId = map.getString(REPORTER_ID);
-
-            HypervisorUpdateResult result = new HypervisorUpdateResult();
-
-            Owner owner = ownerCurator.lookupByKey(ownerKey);
-            if (owner == null) {
+            HypervisorUpdateResult result = applyReport(ownerKey, map);
+            if (result == null) {
                 context.setResult("Nothing to do. Owner does not exist");
                 log.warn("Hypervisor update attempted against non-existent org id ''{0}''", ownerKey);
                 return;
             }
-            byte[] data = (byte[]) map.get(DATA);
-            String json = decompress(data);
-            HypervisorList hypervisors = (HypervisorList) Util.fromJson(json, HypervisorList.class);
-            log.debug("Hypervisor consumers for create/update: {}", hypervisors.getHypervisors().size());
-            log.debug("Updating hypervisor consumers for org {0}", ownerKey);
-
-            Set<String> hosts = new HashSet<String>();
-            Set<String> guests = new HashSet<String>();
-            Map<String, Consumer> incomingHosts = new HashMap<String, Consumer>();
-            parseHypervisorList(hypervisors, hosts, guests, incomingHosts);
-
-            // Maps virt hypervisor ID to registered consumer for that hypervisor, should one exist:
-            VirtConsumerMap hypervisorConsumersMap = consumerCurator.getHostConsumersMap(owner, hosts);
-
-            // Maps virt guest ID to registered consumer for guest, if one exists:
-            VirtConsumerMap guestConsumersMap = consumerCurator.getGuestConsumersMap(owner, guests);
-
-            for (String hypervisorId : hosts) {
-                Consumer knownHost = hypervisorConsumersMap.get(hypervisorId);
-                Consumer incoming = incomingHosts.get(hypervisorId);
-                Consumer reportedOnConsumer = null;
-                if (knownHost == null) {
-                    if (!create) {
-                        result.failed(hypervisorId, "Unable to find hypervisor with id " +
-                            hypervisorId + " in org " + ownerKey);
-                    }
-                    else {
-                        log.debug("Registering new host consumer for hypervisor ID: {}", hypervisorId);
-                        Consumer newHost = createConsumerForHypervisorId(hypervisorId, owner, principal);
-                        consumerResource.performConsumerUpdates(incoming, newHost, guestConsumersMap, false);
-                        consumerResource.create(newHost, principal, null, owner.getKey(), null, false);
-                        hypervisorConsumersMap.add(hypervisorId, newHost);
-                        result.created(newHost);
-                        reportedOnConsumer = newHost;
-                    }
+
+            log.info("Summary for report from {} by principal {}\n {}", map.getString(REPORTER_ID),
+                map.get(PRINCIPAL), result);
+            context.setResult(result);
+        }
+        catch (Exception e) {
+            log.error("HypervisorUpdateJob encountered a problem.", e);
+            context.setResult(e.getMessage());
+            throw new JobExecutionException(e.getMessage(), e, false);
+        }
+
+        // Reports queued for this owner behind us are applied in the same run
+        absorbWaitingReports(context, ownerKey);
+    }
+
+    /*
+     * Applies one report in a transaction of its own.
+     * Returns null if the owner does not exist.
+     */
+    @Transactional
+    protected HypervisorUpdateResult applyReport(String ownerKey, JobDataMap map) {
+        Owner owner = ownerCurator.lookupByKey(ownerKey);
+        if (owner == null) {
+            return null;
+        }
+
+        return applyReport(owner, (byte[]) map.get(DATA), map.getBoolean(CREATE),
+            (Principal) map.get(PRINCIPAL), map.getString(REPORTER_ID));
+    }
+
+    /*
+     * Applies the waiting reports for the owner in the order they were received, and
+     * finishes their jobs with the result of doing so. Each report is committed on its
+     * own, so one that fails fails only its own job.
+     */
+    private void absorbWaitingReports(JobExecutionContext context, String ownerKey) {
+        Scheduler scheduler = context.getScheduler();
+        if (scheduler == null) {
+            return;
+        }
+
+        List<JobStatus> waiting = jobCurator.findWaitingByClassAndTarget(ownerKey,
+            HypervisorUpdateJob.class);
+        for (JobStatus status : waiting) {
+            try {
+                absorbWaitingReport(scheduler, ownerKey, status);
+            }
+            catch (Exception e) {
+                log.error("Unable to apply waiting report " + status.getId(), e);
+            }
+        }
+    }
+
+    private void absorbWaitingReport(Scheduler scheduler, String ownerKey, JobStatus status)
+        throws SchedulerException {
+        JobDetail detail = scheduler.getJobDetail(status.getJobKey());
+
+        // Claimed first, so that an UnpauseJob on another node cannot start it as well
+        if (detail == null || !jobCurator.updateWaitingState(status.getId(), JobState.RUNNING)) {
+            return;
+        }
+
+        JobDataMap map = detail.getJobDataMap();
+        try {
+            HypervisorUpdateResult result = applyReport(ownerKey, map);
+            if (result == null) {
+                status.setResult("Nothing to do. Owner does not exist");
+            }
+            else {
+                log.info("Summary for merged report {} from {} by principal {}\n {}", status.getId(),
+                    map.getString(REPORTER_ID), map.get(PRINCIPAL), result);
+                status.setResult(result.toString());
+                status.setResultData(result);
+            }
+            status.setState(JobState.FINISHED);
+        }
+        catch (RuntimeException e) {
+            log.error("Merged report " + status.getId() + " failed", e);
+            // the rolled back changes must not go out with the next flush
+            consumerCurator.clear();
+            status.setState(JobState.FAILED);
+            status.setResult(e.getMessage());
+        }
+
+        jobCurator.merge(status);
+        // Only now that the outcome of the report is committed
+        scheduler.deleteJob(status.getJobKey());
+    }
+
+    /*
+     * Creates or updates the hypervisor consumers of one report. Known hosts are updated
+     * in memory and written with one flush, new hosts are registered together at the
+     * end, and the time spent in each phase is recorded on the result.
+     */
+    @SuppressWarnings("checkstyle:indentation")
+    private HypervisorUpdateResult applyReport(Owner owner, byte[] data, boolean create,
+        Principal principal, String jobReporterId) {
+        String ownerKey = owner.getKey();
+        HypervisorUpdateResult result = new HypervisorUpdateResult();
+        long start = System.currentTimeMillis();
+
+        String json = decompress(data);
+        HypervisorList hypervisors = (HypervisorList) Util.fromJson(json, HypervisorList.class);
+        log.debug("Hypervisor consumers for create/update: {}", hypervisors.getHypervisors().size());
+        log.debug("Updating hypervisor consumers for org {0}", ownerKey);
+
+        Set<String> hosts = new HashSet<String>();
+        Map<String, Consumer> incomingHosts = new HashMap<String, Consumer>();
+        parseHypervisorList(hypervisors, hosts, incomingHosts);
+
+        // Maps virt hypervisor ID to registered consumer for that hypervisor, should one exist:
+        VirtConsumerMap hypervisorConsumersMap = consumerCurator.getHostConsumersMap(owner, hosts);
+
+        // Hosts reported exactly as they were last time need no further work
+        Map<String, String> digests = new HashMap<String, String>();
+        Set<String> guests = skipUnchangedHosts(hosts, incomingHosts, hypervisorConsumersMap,
+            jobReporterId, digests, result);
+
+        // Maps virt guest ID to registered consumer for guest, if one exists:
+        VirtConsumerMap guestConsumersMap = consumerCurator.getGuestConsumersMap(owner, guests);
+        start = timed(result, "lookup", start);
+
+        List<Consumer> newHosts = new ArrayList<Consumer>();
+        for (String hypervisorId : hosts) {
+            Consumer knownHost = hypervisorConsumersMap.get(hypervisorId);
+            Consumer incoming = incomingHosts.get(hypervisorId);
+            Consumer reportedOnConsumer = null;
+            if (knownHost == null) {
+                if (!create) {
+                    result.failed(hypervisorId, "Unable to find hypervisor with id " +
+                        hypervisorId + " in org " + ownerKey);
                 }
                 else {
-                    reportedOnConsumer = knownHost;
-                    if (jobReporterId != null && knownHost.getHypervisorId() != null &&
-                        hypervisorId.equalsIgnoreCase(knownHost.getHypervisorId().getHypervisorId()) &&
-                        knownHost.getHypervisorId().getReporterId() != null &&
-                        !jobReporterId.equalsIgnoreCase(knownHost.getHypervisorId().getReporterId())) {
-                        log.warn("Reporter changed for Hypervisor {} of Owner {} from {} to {}",
-                            hypervisorId, ownerKey, knownHost.getHypervisorId().getReporterId(),
-                            jobReporterId);
-                    }
-                    if (consumerResource.performConsumerUpdates(incoming, knownHost, guestConsumersMap,
-                        false)) {
-                        consumerCurator.update(knownHost);
-                        result.updated(knownHost);
-                    }
-                    else {
-                        result.unchanged(knownHost);
-                    }
+                    log.debug("Registering new host consumer for hypervisor ID: {}", hypervisorId);
+                    Consumer newHost = createConsumerForHypervisorId(hypervisorId, owner, principal);
+                    consumerResource.performConsumerUpdates(incoming, newHost, guestConsumersMap, false);
+                    hypervisorConsumersMap.add(hypervisorId, newHost);
+                    newHosts.add(newHost);
+                    reportedOnConsumer = newHost;
+                }
+            }
+            else {
+                reportedOnConsumer = knownHost;
+                if (jobReporterId != null && knownHost.getHypervisorId() != null &&
+                    hypervisorId.equalsIgnoreCase(knownHost.getHypervisorId().getHypervisorId()) &&
+                    knownHost.getHypervisorId().getReporterId() != null &&
+                    !jobReporterId.equalsIgnoreCase(knownHost.getHypervisorId().getReporterId())) {
+                    log.warn("Reporter changed for Hypervisor {} of Owner {} from {} to {}",
+                        hypervisorId, ownerKey, knownHost.getHypervisorId().getReporterId(),
+                        jobReporterId);
                 }
-                // update reporter id if it changed
-                if (jobReporterId != null && reportedOnConsumer != null &&
-                    reportedOnConsumer.getHypervisorId() != null &&
-                    (reportedOnConsumer.getHypervisorId().getReporterId() == null ||
-                    !jobReporterId.contentEquals(reportedOnConsumer.getHypervisorId().getReporterId()))) {
-                    reportedOnConsumer.getHypervisorId().setReporterId(jobReporterId);
+                if (consumerResource.performConsumerUpdates(incoming, knownHost, guestConsumersMap,
+                    false)) {
+                    // Written by the flush below, together with every other host
+                    consumerCurator.updateWithOptionalFlush(knownHost, false);
+                    result.updated(knownHost);
                 }
-                else if (jobReporterId == null) {
-                    log.debug("hypervisor checkin reported asynchronously without reporter id " +
-                        "for hypervisor:{} of owner:{}", hypervisorId, ownerKey);
+                else {
+                    result.unchanged(knownHost);
                 }
             }
-            log.info("Summary for report from {} by principal {}\n {}", jobReporterId, principal, result);
-            context.setResult(result);
+            // update reporter id if it changed
+            if (jobReporterId != null && reportedOnConsumer != null &&
+                reportedOnConsumer.getHypervisorId() != null &&
+                (reportedOnConsumer.getHypervisorId().getReporterId() == null ||
+                !jobReporterId.contentEquals(reportedOnConsumer.getHypervisorId().getReporterId()))) {
+                reportedOnConsumer.getHypervisorId().setReporterId(jobReporterId);
+            }
+            else if (jobReporterId == null) {
+                log.debug("hypervisor checkin reported asynchronously without reporter id " +
+                    "for hypervisor:{} of owner:{}", hypervisorId, ownerKey);
+            }
+
+            if (reportedOnConsumer != null && reportedOnConsumer.getHypervisorId() != null) {
+                reportedOnConsumer.getHypervisorId().setGuestDigest(digests.get(hypervisorId));
+            }
         }
-        catch (Exception e) {
-            log.error("HypervisorUpdateJob encountered a problem.", e);
-            context.setResult(e.getMessage());
-            throw new JobExecutionException(e.getMessage(), e, false);
+        start = timed(result, "update", start);
+
+        consumerCurator.flush();
+        start = timed(result, "flush", start);
+
+        consumerResource.createHypervisors(newHosts, owner, principal);
+        for (Consumer newHost : newHosts) {
+            result.created(newHost);
+        }
+        timed(result, "create", start);
+
+        return result;
+    }
+
+    private long timed(HypervisorUpdateResult result, String phase, long start) {
+        long now = System.currentTimeMillis();
+        result.timed(phase, now - start);
+        return now;
+    }
+
+    /*
+     * Reports hosts whose digest matches as unchanged and removes them from hosts.
+     * Records the digests of the remaining hosts and returns the guests they report.
+     */
+    private Set<String> skipUnchangedHosts(Set<String> hosts, Map<String, Consumer> incomingHosts,
+        VirtConsumerMap hypervisorConsumersMap, String reporterId, Map<String, String> digests,
+        HypervisorUpdateResult result) {
+        Set<String> guests = new HashSet<String>();
+        for (Iterator<String> hostIds = hosts.iterator(); hostIds.hasNext();) {
+            String hypervisorId = hostIds.next();
+            Consumer incoming = incomingHosts.get(hypervisorId);
+            Consumer knownHost = hypervisorConsumersMap.get(hypervisorId);
+            String digest = HypervisorHasher.hash(incoming);
+
+            if (isUnchanged(knownHost, digest, reporterId)) {
+                result.unchanged(knownHost);
+                hostIds.remove();
+                continue;
+            }
+
+            digests.put(hypervisorId, digest);
+            if (incoming.getGuestIds() != null) {
+                for (GuestId guestId : incoming.getGuestIds()) {
+                    guests.add(guestId.getGuestId());
+                }
+            }
+        }
+
+        log.debug("Skipping {} unchanged hypervisors", result.getUnchanged().size());
+        return guests;
+    }
+
+    /*
+     * A known host is unchanged if the report matches the last one applied to it
+     * and comes from the same reporter.
+     */
+    private boolean isUnchanged(Consumer knownHost, String digest, String reporterId) {
+        if (knownHost == null || digest == null || knownHost.getHypervisorId() == null) {
+            return false;
         }
+
+        HypervisorId stored = knownHost.getHypervisorId();
+        return digest.equals(stored.getGuestDigest()) &&
+            (reporterId == null || reporterId.equals(stored.getReporterId()));
     }
 
     /**
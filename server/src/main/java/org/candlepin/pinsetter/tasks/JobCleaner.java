@@ -21,6 +21,8 @@ import com.google.inject.Inject;
 
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Date;
 
@@ -29,6 +31,7 @@ import java.util.Date;
  * jobs from 4 days ago.
  */
 public class JobCleaner extends KingpinJob {
+    private static Logger log = LoggerFactory.getLogger(JobCleaner.class);
 
     private JobCurator jobCurator;
     public static final String DEFAULT_SCHEDULE = "0 0 12 * * ?";
@@ -44,9 +47,10 @@ public class JobCleaner extends KingpinJob {
         // CAUTION: jobCurator uses setDate on the delete query,
         // so all time info is stripped off
         Date deadLineDt = Util.yesterday();
-        this.jobCurator.cleanUpOldCompletedJobs(deadLineDt);
+        int completed = this.jobCurator.cleanUpOldCompletedJobs(deadLineDt);
         Date failedJobDeadLineDt = Util.addDaysToDt(-4);
-        this.jobCurator.cleanupAllOldJobs(failedJobDeadLineDt);
+        int old = this.jobCurator.cleanupAllOldJobs(failedJobDeadLineDt);
+        log.info("Removed {} completed and {} other old job statuses", completed, old);
     }
 
     @Override
@@ -21,6 +21,8 @@ import org.candlepin.common.config.Configuration;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.JobCurator;
 import org.candlepin.pinsetter.core.PinsetterJobListener;
+import org.candlepin.pinsetter.core.PinsetterMetrics;
+import org.candlepin.pinsetter.core.PinsetterMetrics.Outcome;
 import org.candlepin.pinsetter.core.RetryJobException;
 import org.candlepin.pinsetter.core.model.JobStatus;
 
@@ -28,6 +30,7 @@ import com.google.inject.Inject;
 import com.google.inject.persist.UnitOfWork;
 
 import org.quartz.Job;
+import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -53,6 +56,10 @@ public abstract class KingpinJob implements Job {
     @Inject protected UnitOfWork unitOfWork;
     @Inject protected Configuration config;
     @Inject private EventSink eventSink;
+    @Inject private PinsetterMetrics metrics;
+
+    // When the job was handed to the scheduler, used to tell how long it was queued
+    public static final String QUEUED_AT = "queued_at";
 
     protected static String prefix = "job";
 
@@ -75,6 +82,11 @@ public abstract class KingpinJob implements Job {
             log.info("Starting job: {}", getClass().getName());
         }
 
+        if (metrics != null) {
+            metrics.jobStarted(getClass(), queueWait(context, startTime));
+        }
+        Outcome outcome = Outcome.FAILED;
+
         /*
          * Execute our 'real' job inside a custom unit of work scope, instead
          * of the guice provided one, which is HTTP request scoped.
@@ -85,6 +97,7 @@ public abstract class KingpinJob implements Job {
             if (eventSink != null) {
                 eventSink.sendEvents();
             }
+            outcome = Outcome.SUCCEEDED;
         }
         /*
          * Very important exception handling here, in some cases we want to allow the
@@ -101,12 +114,14 @@ public abstract class KingpinJob implements Job {
          *  sort this out and throw a specific exception to indicate a retry is an option.
          */
         catch (PersistenceException e) {
+            outcome = shouldRefire(context) ? Outcome.RETRIED : Outcome.FAILED;
             refireCheck(context, e);
             if (eventSink != null) {
                 eventSink.rollback();
             }
         }
         catch (RetryJobException e) {
+            outcome = shouldRefire(context) ? Outcome.RETRIED : Outcome.FAILED;
             refireCheck(context, e);
             if (eventSink != null) {
                 eventSink.rollback();
@@ -116,19 +131,26 @@ public abstract class KingpinJob implements Job {
             if (startedUow) {
                 endUnitOfWork();
             }
+            long executionTime = System.currentTimeMillis() - startTime;
+            if (metrics != null) {
+                metrics.jobFinished(getClass(), executionTime, outcome);
+            }
             if (logExecutionTime()) {
-                long executionTime = System.currentTimeMillis() - startTime;
                 log.info("Job completed: time={}", executionTime);
             }
         }
     }
 
+    private boolean shouldRefire(JobExecutionContext context) {
+        int maxRefires = getMaxRetries();
+        // If the maximum is sub-zero, do not enforce any limit
+        return maxRefires < 0 || context.getRefireCount() < maxRefires;
+    }
+
     private void refireCheck(JobExecutionContext context, Exception e)
         throws JobExecutionException {
 
-        int maxRefires = getMaxRetries();
-        // If the maximum is sub-zero, do not enforce any limit
-        boolean refire = maxRefires < 0 || context.getRefireCount() < maxRefires;
+        boolean refire = shouldRefire(context);
         log.error("Persistence exception caught running pinsetter task. Attempt: " +
             context.getRefireCount() + ", Refire: " + refire, e);
         throw new JobExecutionException(e, refire);
@@ -144,6 +166,7 @@ public abstract class KingpinJob implements Job {
 
     public static JobStatus scheduleJob(JobCurator jobCurator,
         Scheduler scheduler, JobDetail detail, Trigger trigger) throws SchedulerException {
+        detail.getJobDataMap().put(QUEUED_AT, System.currentTimeMillis());
 
         scheduler.getListenerManager().addJobListenerMatcher(
             PinsetterJobListener.LISTENER_NAME,
@@ -173,6 +196,27 @@ public abstract class KingpinJob implements Job {
         return true;
     }
 
+    /*
+     * How long the job waited between being queued and starting: since it was handed
+     * to the scheduler for one-off jobs, and since it was due for scheduled tasks.
+     * Refires are not counted again.
+     */
+    private long queueWait(JobExecutionContext context, long now) {
+        // the context can be missing in testing
+        if (context == null || context.getRefireCount() > 0) {
+            return -1;
+        }
+
+        JobDataMap map = context.getMergedJobDataMap();
+        if (map != null && map.get(QUEUED_AT) instanceof Long) {
+            return now - (Long) map.get(QUEUED_AT);
+        }
+        if (context.getScheduledFireTime() != null) {
+            return now - context.getScheduledFireTime().getTime();
+        }
+        return -1;
+    }
+
     protected boolean startUnitOfWork() {
         if (unitOfWork != null) {
             try {
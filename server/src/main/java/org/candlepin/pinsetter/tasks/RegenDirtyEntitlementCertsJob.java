@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.common.util.Throttle;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.PoolManager;
+import org.candlepin.model.EntitlementCurator;
+
+import com.google.inject.Inject;
+
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * RegenDirtyEntitlementCertsJob: regenerates certificates that lazy regeneration has
+ * marked dirty, so that consumers find them up to date when they next check in instead
+ * of waiting for them to be regenerated.
+ *
+ * Entitlements of the consumers that checked in most recently go first. Work is done in
+ * small batches and rate limited, see {@link ConfigProperties#DIRTY_CERTS_BATCH_SIZE}.
+ * Whatever a run does not get to is left to the next run, or to the check in itself.
+ */
+@DisallowConcurrentExecution
+public class RegenDirtyEntitlementCertsJob extends KingpinJob {
+    private static Logger log = LoggerFactory.getLogger(RegenDirtyEntitlementCertsJob.class);
+
+    // Every five minutes:
+    public static final String DEFAULT_SCHEDULE = "0 0/5 * * * ?";
+
+    private PoolManager poolManager;
+    private EntitlementCurator entitlementCurator;
+    private Configuration config;
+
+    @Inject
+    public RegenDirtyEntitlementCertsJob(PoolManager poolManager,
+        EntitlementCurator entitlementCurator, Configuration config) {
+        this.poolManager = poolManager;
+        this.entitlementCurator = entitlementCurator;
+        this.config = config;
+    }
+
+    @Override
+    public void toExecute(JobExecutionContext ctx) throws JobExecutionException {
+        int batchSize = Math.max(1, config.getInt(ConfigProperties.DIRTY_CERTS_BATCH_SIZE, 50));
+        int maxPerRun = Math.max(1, config.getInt(ConfigProperties.DIRTY_CERTS_MAX_PER_RUN, 5000));
+        int maxPerSecond = config.getInt(ConfigProperties.DIRTY_CERTS_MAX_PER_SECOND, 0);
+
+        List<String> ids = entitlementCurator.listDirtyIds(maxPerRun);
+        Throttle throttle = new Throttle(maxPerSecond);
+        int regenerated = 0;
+        int batches = 0;
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            regenerated += poolManager.regenerateDirtyEntitlementsByIds(batch);
+            batches++;
+
+            // Certificates are big, don't hold on to them between batches
+            entitlementCurator.clear();
+            if (!throttle.pause(from + batch.size())) {
+                log.warn("Interrupted after {} dirty entitlements", from + batch.size());
+                break;
+            }
+        }
+
+        String result = String.format(
+            "Regenerated certificates of %d of %d dirty entitlements in %d batches",
+            regenerated, ids.size(), batches);
+        if (!ids.isEmpty()) {
+            log.info(result);
+        }
+        ctx.setResult(result);
+    }
+}
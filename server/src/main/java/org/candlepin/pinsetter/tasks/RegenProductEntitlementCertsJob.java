@@ -48,7 +48,7 @@ public class RegenProductEntitlementCertsJob extends KingpinJob {
 
         // Regenerate entitlement for every owner
         for (Owner owner : this.ownerCurator.listAll()) {
-            this.poolManager.regenerateCertificatesOf(owner, productId, lazy);
+            this.poolManager.regenerateCertificatesOf(owner, productId, lazy, true);
         }
     }
 }
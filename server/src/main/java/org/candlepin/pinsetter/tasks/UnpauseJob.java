@@ -15,6 +15,7 @@
 package org.candlepin.pinsetter.tasks;
 
 import org.candlepin.model.JobCurator;
+import org.candlepin.pinsetter.core.JobLanes;
 import org.candlepin.pinsetter.core.PinsetterKernel;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
@@ -28,6 +29,8 @@ import org.quartz.JobExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -35,7 +38,10 @@ import java.util.List;
  * is safe to continue executing every 5 seconds.  The polling
  * approach isn't as fast or efficient as allowing blocking jobs
  * to trigger the next in line, but this avoids concurrency
- * and locking problems
+ * and locking problems.
+ *
+ * Waiting jobs are released in order of their lane priority, oldest first,
+ * and only while their lane has room for them.
  */
 @DisallowConcurrentExecution
 public class UnpauseJob extends KingpinJob {
@@ -43,11 +49,13 @@ public class UnpauseJob extends KingpinJob {
     public static final String DEFAULT_SCHEDULE = "0/5 * * * * ?"; //every five seconds
     private JobCurator jobCurator;
     private PinsetterKernel pinsetterKernel;
+    private JobLanes lanes;
 
     @Inject
-    public UnpauseJob(JobCurator jobCurator, PinsetterKernel pinsetterKernel) {
+    public UnpauseJob(JobCurator jobCurator, PinsetterKernel pinsetterKernel, JobLanes lanes) {
         this.jobCurator = jobCurator;
         this.pinsetterKernel = pinsetterKernel;
+        this.lanes = lanes;
     }
 
     @Override
@@ -61,16 +69,38 @@ public class UnpauseJob extends KingpinJob {
             log.error("Cannot execute query: ", e);
             throw new JobExecutionException(e);
         }
+
+        // stable, so jobs of the same priority keep their creation order
+        Collections.sort(waitingJobs, new Comparator<JobStatus>() {
+            @Override
+            public int compare(JobStatus a, JobStatus b) {
+                return lanes.getPriority(b.getJobClass()) - lanes.getPriority(a.getJobClass());
+            }
+        });
+
         for (JobStatus j : waitingJobs) {
             try {
+                if (!lanes.hasCapacity(j.getJobClass())) {
+                    continue;
+                }
                 boolean schedule = (Boolean) j.getJobClass()
                     .getMethod("isSchedulable", JobCurator.class, JobStatus.class)
                     .invoke(null, jobCurator, j);
-                if (schedule) {
+                // Claimed first, so that it is triggered only once, however many nodes
+                // look, and not while another job takes it over
+                if (schedule && jobCurator.updateWaitingState(j.getId(), JobState.CREATED)) {
                     log.debug("Triggering waiting job: " + j.getId());
-                    pinsetterKernel.addTrigger(j);
                     j.setState(JobState.CREATED);
-                    jobCurator.merge(j);
+                    try {
+                        pinsetterKernel.addTrigger(j);
+                    }
+                    catch (Exception e) {
+                        j.setState(JobState.WAITING);
+                        throw e;
+                    }
+                    finally {
+                        jobCurator.merge(j);
+                    }
                 }
             }
             catch (Exception e) {
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.KeyPairPoolStatus;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a bounded supply of RSA key pairs generated ahead of time, so that consumer
+ * registration does not have to wait for key generation.
+ *
+ * The pool is filled by low priority background threads. When it runs dry the key pair
+ * is generated on the calling thread instead. Pooled key pairs only ever live in memory
+ * and are lost on restart.
+ */
+@Singleton
+public class KeyPairPool {
+    private static Logger log = LoggerFactory.getLogger(KeyPairPool.class);
+
+    private final PKIUtility pki;
+    private final int capacity;
+    private final BlockingQueue<KeyPair> pool;
+    private final ExecutorService executor;
+    private volatile boolean running;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalWait = new AtomicLong();
+    private final AtomicLong maxWait = new AtomicLong();
+
+    @Inject
+    public KeyPairPool(PKIUtility pki, Configuration config) {
+        this.pki = pki;
+        this.capacity = Math.max(0, config.getInt(ConfigProperties.KEYPAIR_POOL_SIZE, 0));
+        int threads = Math.max(1, config.getInt(ConfigProperties.KEYPAIR_POOL_THREADS, 1));
+
+        if (capacity > 0) {
+            pool = new LinkedBlockingQueue<KeyPair>(capacity);
+            running = true;
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "keypair-pool-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+
+            for (int i = 0; i < threads; i++) {
+                executor.execute(new RefillTask());
+            }
+        }
+        else {
+            pool = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * Hands out a pooled key pair, or generates one right away if none is ready.
+     * Each key pair is handed out only once.
+     *
+     * @return a new RSA key pair
+     * @throws NoSuchAlgorithmException if RSA keys cannot be generated
+     */
+    public KeyPair take() throws NoSuchAlgorithmException {
+        long start = System.currentTimeMillis();
+        KeyPair pair = pool == null ? null : pool.poll();
+        if (pair != null) {
+            hits.incrementAndGet();
+        }
+        else {
+            pair = pki.generateNewKeyPair();
+            misses.incrementAndGet();
+        }
+
+        recordWait(System.currentTimeMillis() - start);
+        return pair;
+    }
+
+    /**
+     * @return how many key pairs are ready, and how often requests had to wait for one
+     */
+    public KeyPairPoolStatus getStatus() {
+        return new KeyPairPoolStatus(pool == null ? 0 : pool.size(), capacity, hits.get(),
+            misses.get(), generated.get(), failures.get(), totalWait.get(), maxWait.get());
+    }
+
+    /**
+     * Stops the background threads. Key pairs still in the pool are dropped.
+     */
+    public void shutdown() {
+        running = false;
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pool.clear();
+        }
+    }
+
+    private void recordWait(long millis) {
+        totalWait.addAndGet(millis);
+        long max = maxWait.get();
+        while (millis > max && !maxWait.compareAndSet(max, millis)) {
+            max = maxWait.get();
+        }
+    }
+
+    private class RefillTask implements Runnable {
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    // Blocks while the pool is full
+                    pool.put(pki.generateNewKeyPair());
+                    generated.incrementAndGet();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                catch (Exception e) {
+                    // Requests fall back to generating their own key pairs
+                    failures.incrementAndGet();
+                    log.error("Unable to pre-generate a key pair, stopping", e);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -171,6 +171,15 @@ public abstract class PKIUtility {
         }
     }
 
+    /**
+     * @return the certificate of the CA that signs the certificates created here
+     * @throws IOException if the CA certificate can not be read
+     * @throws CertificateException if the CA certificate can not be parsed
+     */
+    public X509Certificate getCACert() throws IOException, CertificateException {
+        return reader.getCACert();
+    }
+
     public byte[] getSHA256WithRSAHash(InputStream input) {
         try {
             Signature signature = Signature.getInstance("SHA256withRSA");
@@ -20,8 +20,14 @@ import org.candlepin.auth.Principal;
 import org.candlepin.auth.SystemPrincipal;
 import org.candlepin.common.auth.SecurityHole;
 import org.candlepin.common.config.Configuration;
+import org.candlepin.controller.ComplianceRecalcQueue;
+import org.candlepin.controller.ConsumerCheckInRecorder;
+import org.candlepin.model.CheckInQueueStatus;
+import org.candlepin.model.ComplianceQueueStatus;
+import org.candlepin.model.KeyPairPoolStatus;
 import org.candlepin.model.User;
 import org.candlepin.model.UserCurator;
+import org.candlepin.pki.KeyPairPool;
 import org.candlepin.service.UserServiceAdapter;
 import org.candlepin.service.impl.DefaultUserServiceAdapter;
 
@@ -50,14 +56,21 @@ public class AdminResource {
     private UserCurator userCurator;
     private EventSink sink;
     private Configuration config;
+    private ComplianceRecalcQueue complianceQueue;
+    private ConsumerCheckInRecorder checkInRecorder;
+    private KeyPairPool keyPairPool;
 
     @Inject
     public AdminResource(UserServiceAdapter userService, UserCurator userCurator,
-        EventSink dispatcher, Configuration config) {
+        EventSink dispatcher, Configuration config, ComplianceRecalcQueue complianceQueue,
+        ConsumerCheckInRecorder checkInRecorder, KeyPairPool keyPairPool) {
         this.userService = userService;
         this.userCurator = userCurator;
         this.sink = dispatcher;
         this.config = config;
+        this.complianceQueue = complianceQueue;
+        this.checkInRecorder = checkInRecorder;
+        this.keyPairPool = keyPairPool;
     }
 
     /**
@@ -115,4 +128,43 @@ public class AdminResource {
         return sink.getQueueInfo();
     }
 
+    /**
+     * @return The number of consumers waiting for a compliance status recalculation,
+     * how long the oldest has been waiting, and how many have been processed so far.
+     *
+     * @httpcode 200
+     */
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    @Path("queues/compliance")
+    public ComplianceQueueStatus getComplianceQueueStats() {
+        return complianceQueue.getStatus();
+    }
+
+    /**
+     * @return The number of consumer check ins not yet written to the database, and
+     * how many have been written so far.
+     *
+     * @httpcode 200
+     */
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    @Path("queues/checkin")
+    public CheckInQueueStatus getCheckInQueueStats() {
+        return checkInRecorder.getStatus();
+    }
+
+    /**
+     * @return The number of pre-generated key pairs ready for new consumers, how often
+     * one had to be generated on demand, and how long callers waited in milliseconds.
+     *
+     * @httpcode 200
+     */
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    @Path("queues/keypairs")
+    public KeyPairPoolStatus getKeyPairPoolStats() {
+        return keyPairPool.getStatus();
+    }
+
 }
@@ -117,6 +117,7 @@ import java.io.File;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -533,6 +534,64 @@ public class ConsumerResource {
         }
     }
 
+    /**
+     * Registers the hypervisor consumers reported for an owner by a host/guest mapping
+     * check in. This is what {@link #create} does for each of them, without identity
+     * certificates, but the owner, type and each distinct service level are checked once
+     * for the lot and the session is flushed once at the end rather than for every
+     * consumer.
+     *
+     * @param consumers the new hypervisor consumers
+     * @param owner the owner the report is for
+     * @param principal the principal that sent the report
+     */
+    @Transactional
+    public void createHypervisors(Collection<Consumer> consumers, Owner owner, Principal principal) {
+        if (consumers.isEmpty()) {
+            return;
+        }
+
+        setupOwner(principal, owner.getKey());
+        ConsumerType type = lookupConsumerType(ConsumerTypeEnum.HYPERVISOR.getLabel());
+        String defaultLevel = owner.getDefaultServiceLevel() != null ?
+            owner.getDefaultServiceLevel() : "";
+        Set<String> validLevels = new HashSet<String>();
+
+        for (Consumer consumer : consumers) {
+            setUserName(consumer, principal, null);
+            checkConsumerName(consumer);
+            consumer.setOwner(owner);
+            consumer.setType(type);
+            consumer.setCanActivate(subAdapter.canActivateSubscription(consumer));
+            consumer.setAutoheal(true);
+
+            // Like create, only fall back on the owner's default when no level was given
+            if (consumer.getServiceLevel() == null || consumer.getServiceLevel().equals("")) {
+                consumer.setServiceLevel(defaultLevel);
+            }
+            if (validLevels.add(consumer.getServiceLevel())) {
+                consumerBindUtil.validateServiceLevel(owner, consumer.getServiceLevel());
+            }
+            updateCapabilities(consumer, null);
+
+            if (consumer.getGuestIds() != null) {
+                for (GuestId g : consumer.getGuestIds()) {
+                    g.setConsumer(consumer);
+                }
+            }
+            if (consumer.getHypervisorId() != null) {
+                consumer.getHypervisorId().setConsumer(consumer);
+            }
+
+            consumerCurator.create(consumer, false);
+            sink.emitConsumerCreated(consumer);
+            complianceRules.getStatus(consumer, null, false, false);
+        }
+
+        consumerCurator.flush();
+        log.info("{} hypervisor consumers created in org {}", consumers.size(), owner.getKey());
+    }
+
     private List<ActivationKey>  checkActivationKeys(Principal principal, Owner owner,
         Set<String> keyStrings) throws BadRequestException {
         List<ActivationKey> keys = new ArrayList<ActivationKey>();
@@ -925,7 +984,7 @@ public class ConsumerResource {
             toUpdate.setEnvironment(e);
 
             // lazily regenerate certs, so the client can still work
-            poolManager.regenerateEntitlementCertificates(toUpdate, true);
+            poolManager.regenerateEntitlementCertificates(toUpdate, true, false);
             changesMade = true;
         }
 
@@ -957,6 +1016,11 @@ public class ConsumerResource {
             // since only the facts table will receive the update.
             toUpdate.setUpdated(new Date());
 
+            // The next hypervisor report has to be applied in full
+            if (toUpdate.getHypervisorId() != null) {
+                toUpdate.getHypervisorId().setGuestDigest(null);
+            }
+
             // this should update compliance on toUpdate, but not call the curator
             complianceRules.getStatus(toUpdate, null, false, false);
 
@@ -1129,8 +1193,9 @@ public class ConsumerResource {
         List<GuestId> ids2 = c2.getGuestIds() == null ?
             new ArrayList<GuestId>() : new ArrayList<GuestId>(c2.getGuestIds());
 
+        // Hypervisors can report thousands of guests, so test membership against a set
         List<GuestId> removedGuests = new ArrayList<GuestId>(ids1);
-        removedGuests.removeAll(ids2);
+        removedGuests.removeAll(new HashSet<GuestId>(ids2));
         return removedGuests;
     }
 
@@ -1888,11 +1953,11 @@ public class ConsumerResource {
         @QueryParam("lazy_regen") @DefaultValue("true") Boolean lazyRegen) {
         if (entitlementId != null) {
             Entitlement e = verifyAndLookupEntitlement(entitlementId);
-            poolManager.regenerateCertificatesOf(e, false, lazyRegen);
+            poolManager.regenerateCertificatesOf(e, false, lazyRegen, true);
         }
         else {
             Consumer c = consumerCurator.verifyAndLookupConsumer(consumerUuid);
-            poolManager.regenerateEntitlementCertificates(c, lazyRegen);
+            poolManager.regenerateEntitlementCertificates(c, lazyRegen, true);
         }
     }
 
@@ -203,7 +203,9 @@ public class GuestIdResource {
         // If this guest has a consumer, we want to remove host-specific entitlements
         if (toUpdate != null) {
             updated.setId(toUpdate.getId());
+            invalidateGuestDigest(toUpdate.getConsumer());
         }
+        invalidateGuestDigest(consumer);
         guestIdCurator.merge(updated);
     }
 
@@ -232,9 +234,20 @@ public class GuestIdResource {
         }
 
         sink.queueEvent(eventFactory.guestIdDeleted(toDelete));
+        invalidateGuestDigest(consumer);
         guestIdCurator.delete(toDelete);
     }
 
+    /*
+     * The host's guests no longer match the last hypervisor report, so the next
+     * one has to be applied in full.
+     */
+    private void invalidateGuestDigest(Consumer host) {
+        if (host != null && host.getHypervisorId() != null) {
+            host.getHypervisorId().setGuestDigest(null);
+        }
+    }
+
     private GuestId validateGuestId(GuestId guest, String guestUuid) {
         if (guest == null) {
             throw new NotFoundException(i18n.tr(
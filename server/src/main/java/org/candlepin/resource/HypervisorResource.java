@@ -31,6 +31,7 @@ import org.candlepin.model.OwnerCurator;
 import org.candlepin.model.VirtConsumerMap;
 import org.candlepin.pinsetter.tasks.HypervisorUpdateJob;
 import org.candlepin.resource.dto.HypervisorCheckInResult;
+import org.candlepin.resource.util.HypervisorHasher;
 
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
@@ -42,7 +43,7 @@ import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -137,19 +138,32 @@ public class HypervisorResource {
 
         int emptyGuestIdCount = 0;
         Set<String> allGuestIds = new HashSet<String>();
+        Map<String, String> digests = new HashMap<String, String>();
+        HypervisorCheckInResult result = new HypervisorCheckInResult();
 
-        Collection<List<GuestId>> idsLists = hostGuestMap.values();
-        for (List<GuestId> guestIds : idsLists) {
-            for (Iterator<GuestId> guestIdsItr = guestIds.iterator(); guestIdsItr.hasNext();) {
-                String id = guestIdsItr.next().getGuestId();
-
-                if (StringUtils.isEmpty(id)) {
+        for (Iterator<Entry<String, List<GuestId>>> hostItr = hostGuestMap.entrySet().iterator();
+            hostItr.hasNext();) {
+            Entry<String, List<GuestId>> hostEntry = hostItr.next();
+            for (Iterator<GuestId> guestIdsItr = hostEntry.getValue().iterator(); guestIdsItr.hasNext();) {
+                if (StringUtils.isEmpty(guestIdsItr.next().getGuestId())) {
                     emptyGuestIdCount++;
                     guestIdsItr.remove();
                 }
-                else {
-                    allGuestIds.add(id);
-                }
+            }
+
+            // Hosts reported exactly as they were last time need no further work
+            String digest = guestDigest(hostEntry.getValue());
+            Consumer knownHost = hypervisorConsumersMap.get(hostEntry.getKey());
+            if (knownHost != null && knownHost.getHypervisorId() != null &&
+                digest.equals(knownHost.getHypervisorId().getGuestDigest())) {
+                result.unchanged(knownHost);
+                hostItr.remove();
+                continue;
+            }
+
+            digests.put(hostEntry.getKey(), digest);
+            for (GuestId guestId : hostEntry.getValue()) {
+                allGuestIds.add(guestId.getGuestId());
             }
         }
 
@@ -161,7 +175,6 @@ public class HypervisorResource {
         VirtConsumerMap guestConsumersMap = consumerCurator.getGuestConsumersMap(
             owner, allGuestIds);
 
-        HypervisorCheckInResult result = new HypervisorCheckInResult();
         for (Entry<String, List<GuestId>> hostEntry : hostGuestMap.entrySet()) {
             String hypervisorId = hostEntry.getKey();
             try {
@@ -186,6 +199,9 @@ public class HypervisorResource {
                 }
 
                 boolean guestIdsUpdated = addGuestIds(consumer, hostEntry.getValue(), guestConsumersMap);
+                if (consumer.getHypervisorId() != null) {
+                    consumer.getHypervisorId().setGuestDigest(digests.get(hypervisorId));
+                }
 
                 // Populate the result with the processed consumer.
                 if (hostConsumerCreated) {
@@ -268,6 +284,15 @@ public class HypervisorResource {
         return owner;
     }
 
+    /*
+     * Hash of the host as addGuestIds reports it
+     */
+    private String guestDigest(List<GuestId> guestIds) {
+        Consumer reported = new Consumer();
+        reported.setGuestIds(guestIds);
+        return HypervisorHasher.hash(reported);
+    }
+
     /*
      * Add a list of guestIds to the given consumer,
      * return whether or not there was any change
@@ -15,19 +15,26 @@
 package org.candlepin.resource;
 
 import org.candlepin.auth.Verify;
+import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.exceptions.IseException;
 import org.candlepin.common.exceptions.NotFoundException;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.JobCurator;
+import org.candlepin.model.JobMetrics;
+import org.candlepin.model.JobStatusCache;
 import org.candlepin.model.SchedulerStatus;
 import org.candlepin.pinsetter.core.PinsetterException;
 import org.candlepin.pinsetter.core.PinsetterKernel;
+import org.candlepin.pinsetter.core.PinsetterMetrics;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 
 import com.google.inject.Inject;
 
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
 
 import java.util.Collection;
@@ -48,16 +55,24 @@ import javax.ws.rs.core.MediaType;
  */
 @Path("/jobs")
 public class JobResource {
+    private static Logger log = LoggerFactory.getLogger(JobResource.class);
 
     private JobCurator curator;
     private PinsetterKernel pk;
     private I18n i18n;
+    private PinsetterMetrics metrics;
+    private JobStatusCache statusCache;
+    private Configuration config;
 
     @Inject
-    public JobResource(JobCurator curator, PinsetterKernel pk, I18n i18n) {
+    public JobResource(JobCurator curator, PinsetterKernel pk, I18n i18n, PinsetterMetrics metrics,
+        JobStatusCache statusCache, Configuration config) {
         this.curator = curator;
         this.pk = pk;
         this.i18n = i18n;
+        this.metrics = metrics;
+        this.statusCache = statusCache;
+        this.config = config;
     }
 
 
@@ -157,6 +172,51 @@ public class JobResource {
         return ss;
     }
 
+    /**
+     * Retrieves what this node has run of each job class since it started
+     * <p>
+     * <pre>
+     * [
+     *   {
+     *     "jobClass" : "RefreshPoolsJob",
+     *     "started" : 12,
+     *     "succeeded" : 10,
+     *     "failed" : 0,
+     *     "retried" : 1,
+     *     "running" : 1,
+     *     "completedLastMinute" : 2,
+     *     "queueWait" : { "count" : 11, "total" : 840, "max" : 310, "buckets" : { ... } },
+     *     "runTime" : { "count" : 11, "total" : 52110, "max" : 9800, "buckets" : { ... } }
+     *   }
+     * ]
+     * </pre>
+     * <p>
+     * Times are in milliseconds. Histogram buckets are cumulative and keyed by their
+     * upper bound.
+     *
+     * @return a list of JobMetrics objects, one per job class
+     * @httpcode 200
+     */
+    @GET
+    @Path("metrics")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<JobMetrics> getMetrics() {
+        return metrics.getMetrics();
+    }
+
+    /**
+     * Retrieves the job metrics of this node in the Prometheus text format
+     *
+     * @return the metrics as text
+     * @httpcode 200
+     */
+    @GET
+    @Path("metrics/prometheus")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String getPrometheusMetrics() {
+        return metrics.toPrometheus();
+    }
+
     /**
      * Updates the Scheduler Status
      *
@@ -202,6 +262,9 @@ public class JobResource {
      *   "updated" : [date]
      * } *
      * </pre>
+     * <p>
+     * With a wait of N seconds the request is held until the job is done or the
+     * time is up, whichever comes first, and the status at that point is returned.
      *
      * @return a JobStatus object
      * @httpcode 200
@@ -210,12 +273,55 @@ public class JobResource {
     @Path("/{job_id}")
     @Produces(MediaType.APPLICATION_JSON)
     public JobStatus getStatus(@PathParam("job_id") @Verify(JobStatus.class) String jobId,
-        @QueryParam("result_data") @DefaultValue("false") boolean resultData) {
-        JobStatus js = curator.find(jobId);
+        @QueryParam("result_data") @DefaultValue("false") boolean resultData,
+        @QueryParam("wait") @DefaultValue("0") int wait) {
+        JobStatus js = statusCache.get(jobId);
+        if (js == null) {
+            js = curator.find(jobId);
+            if (js.isDone()) {
+                statusCache.finished(js);
+            }
+            else if (wait > 0) {
+                js = waitUntilDone(js, wait);
+            }
+        }
         js.cloakResultData(!resultData);
         return js;
     }
 
+    /*
+     * Jobs finishing on this node wake us up right away; for those running
+     * elsewhere the status is reread every few seconds.
+     */
+    private JobStatus waitUntilDone(JobStatus js, int wait) {
+        int maxWait = config.getInt(ConfigProperties.JOB_STATUS_MAX_WAIT, 0);
+        long recheck = Math.max(1, config.getInt(ConfigProperties.JOB_STATUS_WAIT_RECHECK, 1)) * 1000L;
+        long deadline = System.currentTimeMillis() + Math.min(wait, maxWait) * 1000L;
+
+        long remaining = deadline - System.currentTimeMillis();
+        while (remaining > 0) {
+            try {
+                JobStatus done = statusCache.await(js.getId(), Math.min(remaining, recheck));
+                if (done != null) {
+                    return done;
+                }
+            }
+            catch (InterruptedException e) {
+                log.debug("Interrupted while waiting for job " + js.getId());
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            curator.refresh(js);
+            if (js.isDone()) {
+                statusCache.finished(js);
+                break;
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return js;
+    }
+
     /**
      * Cancels a Job Status
      *
@@ -236,7 +342,9 @@ public class JobResource {
             throw new BadRequestException(i18n.tr("cannot cancel a job that " +
                 "is in a finished state"));
         }
-        return curator.cancel(jobId);
+        JobStatus canceled = curator.cancel(jobId);
+        statusCache.finished(canceled);
+        return canceled;
     }
 
     /**
@@ -254,6 +362,7 @@ public class JobResource {
 
         if (status != null && status.getState() == JobState.FINISHED) {
             curator.delete(status);
+            statusCache.remove(jobId);
         }
 
         return status;
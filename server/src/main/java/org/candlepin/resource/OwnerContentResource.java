@@ -255,7 +255,7 @@ public class OwnerContentResource {
             this.productCurator.getProductsWithContent(owner, Arrays.asList(contentId));
 
         for (Product product : affectedProducts) {
-            poolManager.regenerateCertificatesOf(owner, product.getId(), true);
+            poolManager.regenerateCertificatesOf(owner, product.getId(), true, false);
         }
 
         return content;
@@ -283,7 +283,7 @@ public class OwnerContentResource {
 
         // Regenerate affected product certs as dirty...
         for (Product product : affectedProducts) {
-            poolManager.regenerateCertificatesOf(owner, product.getId(), true);
+            poolManager.regenerateCertificatesOf(owner, product.getId(), true, false);
         }
     }
 }
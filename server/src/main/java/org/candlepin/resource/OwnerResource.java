@@ -58,7 +58,7 @@ import org.candlepin.model.ImportUpstreamConsumer;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
 import org.candlepin.model.OwnerInfo;
-import org.candlepin.model.OwnerInfoCurator;
+import org.candlepin.model.OwnerInfoCache;
 import org.candlepin.model.Pool;
 import org.candlepin.model.Pool.PoolType;
 import org.candlepin.model.PoolFilterBuilder;
@@ -143,7 +143,7 @@ public class OwnerResource {
     private static final int FEED_LIMIT = 1000;
 
     private OwnerCurator ownerCurator;
-    private OwnerInfoCurator ownerInfoCurator;
+    private OwnerInfoCache ownerInfoCache;
     private ActivationKeyCurator activationKeyCurator;
     private OwnerServiceAdapter ownerService;
     private ConsumerCurator consumerCurator;
@@ -181,7 +181,7 @@ public class OwnerResource {
         PoolManager poolManager,
         OwnerManager ownerManager,
         ExporterMetadataCurator exportCurator,
-        OwnerInfoCurator ownerInfoCurator,
+        OwnerInfoCache ownerInfoCache,
         ImportRecordCurator importRecordCurator,
         ConsumerTypeCurator consumerTypeCurator,
         EntitlementCertificateCurator entitlementCertCurator,
@@ -196,7 +196,7 @@ public class OwnerResource {
         ResolverUtil resolverUtil) {
 
         this.ownerCurator = ownerCurator;
-        this.ownerInfoCurator = ownerInfoCurator;
+        this.ownerInfoCache = ownerInfoCache;
         this.activationKeyCurator = activationKeyCurator;
         this.consumerCurator = consumerCurator;
         this.i18n = i18n;
@@ -289,9 +289,10 @@ public class OwnerResource {
     @Path("/{owner_key}/info")
     @Produces(MediaType.APPLICATION_JSON)
     public OwnerInfo getOwnerInfo(@PathParam("owner_key")
-        @Verify(value = Owner.class, subResource = SubResource.CONSUMERS) String ownerKey) {
+        @Verify(value = Owner.class, subResource = SubResource.CONSUMERS) String ownerKey,
+        @Context Principal principal) {
         Owner owner = findOwner(ownerKey);
-        return ownerInfoCurator.lookupByOwner(owner);
+        return ownerInfoCache.lookupByOwner(owner, principal);
     }
 
     /**
@@ -1212,7 +1213,7 @@ public class OwnerResource {
 
                 if (ueberEntitlements.size() > 0) {
                     // Immediately revoke and regenerate ueber certificates:
-                    poolManager.regenerateCertificatesOf(ueberEntitlements.get(0), true, false);
+                    poolManager.regenerateCertificatesOf(ueberEntitlements.get(0), true, false, true);
                     return entitlementCertCurator.listForConsumer(ueberConsumer).get(0);
                 }
             }
@@ -18,6 +18,8 @@ import org.candlepin.model.Consumer;
 
 import java.io.Serializable;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -29,6 +31,7 @@ import java.util.Set;
  *     updated: the host consumers that have had their guest IDs updated.
  *     unchanged: the host consumers that have not been changed.
  *     failed: a list of strings formated as '{host_virt_id}: Error message'.
+ *     timings: milliseconds spent in each phase of applying the report, in order.
  * </pre>
  */
 public class HypervisorUpdateResult implements Serializable {
@@ -38,12 +41,14 @@ public class HypervisorUpdateResult implements Serializable {
     private Set<Consumer> updated;
     private Set<Consumer> unchanged;
     private Set<String> failed;
+    private Map<String, Long> timings;
 
     public HypervisorUpdateResult() {
         this.created = new HashSet<Consumer>();
         this.updated = new HashSet<Consumer>();
         this.unchanged = new HashSet<Consumer>();
         this.failed = new HashSet<String>();
+        this.timings = new LinkedHashMap<String, Long>();
     }
 
     public void created(Consumer c) {
@@ -63,6 +68,11 @@ public class HypervisorUpdateResult implements Serializable {
         this.failed.add(hostVirtId + ": " + error);
     }
 
+    public void timed(String phase, long millis) {
+        Long previous = this.timings.get(phase);
+        this.timings.put(phase, previous == null ? millis : previous + millis);
+    }
+
     public Set<Consumer> getCreated() {
         return created;
     }
@@ -79,6 +89,10 @@ public class HypervisorUpdateResult implements Serializable {
         return failed;
     }
 
+    public Map<String, Long> getTimings() {
+        return timings;
+    }
+
     @Override
     public String toString() {
         return "Created: " + created.size() + ", Updated: " + updated.size() +
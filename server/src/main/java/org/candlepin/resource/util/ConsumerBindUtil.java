@@ -29,6 +29,8 @@ import org.candlepin.model.Release;
 import org.candlepin.model.activationkeys.ActivationKey;
 import org.candlepin.model.activationkeys.ActivationKeyContentOverride;
 import org.candlepin.model.activationkeys.ActivationKeyPool;
+import org.candlepin.policy.EntitlementRefusedException;
+import org.candlepin.policy.ValidationResult;
 import org.candlepin.policy.js.quantity.QuantityRules;
 import org.candlepin.policy.js.quantity.SuggestedQuantity;
 import org.candlepin.resource.dto.AutobindData;
@@ -45,9 +47,13 @@ import org.xnap.commons.i18n.I18n;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 /**
@@ -75,6 +81,7 @@ public class ConsumerBindUtil {
 
     public void handleActivationKeys(Consumer consumer, List<ActivationKey> keys) {
         // Process activation keys.
+        Set<ActivationKeyPool> bound = bindActivationKeyPools(consumer, keys);
 
         boolean listSuccess = false;
         for (ActivationKey key : keys) {
@@ -82,11 +89,11 @@ public class ConsumerBindUtil {
             handleActivationKeyOverrides(consumer, key.getContentOverrides());
             handleActivationKeyRelease(consumer, key.getReleaseVer());
             keySuccess &= handleActivationKeyServiceLevel(consumer, key.getServiceLevel(), key.getOwner());
-            if (key.isAutoAttach() != null && key.isAutoAttach()) {
+            if (isAutoAttach(key)) {
                 handleActivationKeyAutoBind(consumer, key);
             }
             else {
-                keySuccess &= handleActivationKeyPools(consumer, key);
+                keySuccess &= handleActivationKeyPools(key, bound);
             }
             listSuccess |= keySuccess;
         }
@@ -95,35 +102,105 @@ public class ConsumerBindUtil {
         }
     }
 
-    private boolean handleActivationKeyPools(Consumer consumer,
-        ActivationKey key) {
+    private static boolean isAutoAttach(ActivationKey key) {
+        return key.isAutoAttach() != null && key.isAutoAttach();
+    }
+
+    private boolean handleActivationKeyPools(ActivationKey key, Set<ActivationKeyPool> bound) {
         if (key.getPools().size() == 0) {
             return true;
         }
-        boolean onePassed = false;
-        List<ActivationKeyPool> toBind = new LinkedList<ActivationKeyPool>();
         for (ActivationKeyPool akp : key.getPools()) {
-            if (akp.getPool().getId() != null) {
-                toBind.add(akp);
+            if (bound.contains(akp)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Binds the pools of all keys that do not auto attach at once, so the pools are
+     * locked, validated and certified in one pass. A pool listed by several keys is
+     * bound once for each of them, in later passes.
+     */
+    private Set<ActivationKeyPool> bindActivationKeyPools(Consumer consumer,
+        List<ActivationKey> keys) {
+        List<ActivationKeyPool> toBind = new LinkedList<ActivationKeyPool>();
+        for (ActivationKey key : keys) {
+            if (isAutoAttach(key)) {
+                continue;
+            }
+            for (ActivationKeyPool akp : key.getPools()) {
+                if (akp.getPool().getId() != null) {
+                    toBind.add(akp);
+                }
             }
         }
 
         // Sort pools before binding to avoid deadlocks
         Collections.sort(toBind);
-        for (ActivationKeyPool akp : toBind) {
-            int quantity = (akp.getQuantity() == null) ?
-                getQuantityToBind(akp.getPool(), consumer) :
-                akp.getQuantity().intValue();
+        Set<ActivationKeyPool> bound = Collections.newSetFromMap(
+            new IdentityHashMap<ActivationKeyPool, Boolean>());
+        while (!toBind.isEmpty()) {
+            Map<String, ActivationKeyPool> pass = new HashMap<String, ActivationKeyPool>();
+            Map<String, Integer> quantities = new HashMap<String, Integer>();
+            List<ActivationKeyPool> later = new LinkedList<ActivationKeyPool>();
+            for (ActivationKeyPool akp : toBind) {
+                String poolId = akp.getPool().getId();
+                if (pass.containsKey(poolId)) {
+                    later.add(akp);
+                    continue;
+                }
+                int quantity = (akp.getQuantity() == null) ?
+                    getQuantityToBind(akp.getPool(), consumer) :
+                    akp.getQuantity().intValue();
+                pass.put(poolId, akp);
+                quantities.put(poolId, quantity);
+            }
+
+            for (String poolId : bindSkippingRefused(consumer, quantities, pass)) {
+                bound.add(pass.get(poolId));
+            }
+            toBind = later;
+        }
+        return bound;
+    }
+
+    /*
+     * A refusal of any pool fails the whole bind, so refused pools are left out and the
+     * rest is bound again until it goes through.
+     */
+    private Set<String> bindSkippingRefused(Consumer consumer, Map<String, Integer> quantities,
+        Map<String, ActivationKeyPool> keyPools) {
+        Map<String, Integer> remaining = new HashMap<String, Integer>(quantities);
+        while (!remaining.isEmpty()) {
             try {
-                entitler.sendEvents(entitler.bindByPoolQuantity(consumer, akp.getPool().getId(), quantity));
-                onePassed = true;
+                // The pool manager empties the map it is given
+                entitler.sendEvents(entitler.bindByPoolQuantities(consumer,
+                    new HashMap<String, Integer>(remaining)));
+                return remaining.keySet();
             }
-            catch (ForbiddenException e) {
-                log.warn(i18n.tr("Cannot bind to pool ''{0}'' in activation key ''{1}'': {2}",
-                    akp.getPool().getId(), akp.getKey().getName(), e.getMessage()));
+            catch (EntitlementRefusedException e) {
+                Set<String> refused = new HashSet<String>();
+                for (Entry<String, ValidationResult> entry : e.getResults().entrySet()) {
+                    if (!entry.getValue().isSuccessful() && remaining.containsKey(entry.getKey())) {
+                        refused.add(entry.getKey());
+                    }
+                }
+                if (refused.isEmpty()) {
+                    log.warn("Cannot bind to pools {}: {}", remaining.keySet(), e.getResults());
+                    return Collections.emptySet();
+                }
+
+                for (String poolId : refused) {
+                    remaining.remove(poolId);
+                    log.warn(i18n.tr("Cannot bind to pool ''{0}'' in activation key ''{1}'': {2}",
+                        poolId, keyPools.get(poolId).getKey().getName(),
+                        entitler.getRefusalMessage(poolId, e)));
+                }
             }
         }
-        return onePassed;
+        return remaining.keySet();
     }
 
     private void handleActivationKeyAutoBind(Consumer consumer, ActivationKey key) {
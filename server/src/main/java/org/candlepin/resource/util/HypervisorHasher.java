@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.resource.util;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.GuestId;
+import org.candlepin.policy.js.compliance.hash.HashableStringGenerator;
+import org.candlepin.policy.js.compliance.hash.Hasher;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Creates an SHA256 hash of a host as reported by a hypervisor check in: its name,
+ * facts and guests. Storing the hash of the last report applied to a host lets an
+ * identical report skip the host entirely.
+ *
+ * Every value is length prefixed so that differently split lists of ids can not
+ * produce the same hash.
+ */
+public class HypervisorHasher extends Hasher {
+
+    private static final HashableStringGenerator<Entry<String, String>> ENTRY =
+        new HashableStringGenerator<Entry<String, String>>() {
+            @Override
+            public String generate(Entry<String, String> target) {
+                return quote(target.getKey()) + quote(target.getValue());
+            }
+        };
+
+    private static final HashableStringGenerator<GuestId> GUEST =
+        new HashableStringGenerator<GuestId>() {
+            @Override
+            public String generate(GuestId target) {
+                return quote(quote(target.getGuestId()) + entries(target.getAttributes()));
+            }
+        };
+
+    private static final HashableStringGenerator<String> VALUE =
+        new HashableStringGenerator<String>() {
+            @Override
+            public String generate(String target) {
+                return quote(target);
+            }
+        };
+
+    private HypervisorHasher(Consumer reported) {
+        putObject(reported.getName(), VALUE);
+        putObject(entries(reported.getFacts()), VALUE);
+        putObject(reported.getGuestIds() == null ? null : "guests", VALUE);
+        if (reported.getGuestIds() != null) {
+            putCollection(reported.getGuestIds(), GUEST);
+        }
+    }
+
+    /**
+     * Hashes the host as reported. Hosts reporting anything besides a name, facts and
+     * guests can not be hashed, as applying those updates is not always idempotent.
+     *
+     * @param reported the host as sent by the hypervisor check in
+     * @return the hash of the reported host, or null if it can not be hashed
+     */
+    public static String hash(Consumer reported) {
+        if (reported.getCapabilities() != null ||
+            reported.getInstalledProducts() != null ||
+            reported.getContentTags() != null ||
+            reported.isAutoheal() != null ||
+            reported.getReleaseVer().getReleaseVer() != null ||
+            reported.getServiceLevel() != null ||
+            reported.getEnvironment() != null ||
+            reported.getLastCheckin() != null ||
+            reported.getFact("distributor_version") != null) {
+            return null;
+        }
+
+        return new HypervisorHasher(reported).hash();
+    }
+
+    private static String entries(Map<String, String> map) {
+        if (map == null) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(map.size()).append('{');
+        for (Entry<String, String> entry : new TreeMap<String, String>(map).entrySet()) {
+            builder.append(ENTRY.generate(entry));
+        }
+        return builder.append('}').toString();
+    }
+
+    private static String quote(String value) {
+        return value == null ? "-" : value.length() + ":" + value;
+    }
+}
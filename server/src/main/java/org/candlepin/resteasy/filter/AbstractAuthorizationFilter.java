@@ -73,14 +73,19 @@ public abstract class AbstractAuthorizationFilter
                 Marker m =
                     (LoggerFactory.getLogger(LoggingFilter.class).isDebugEnabled()) ?
                     duplicate : null;
-                try {
-                    TeeHttpServletRequest teeRequest = new TeeHttpServletRequest(
-                        ResteasyProviderFactory.getContextData(HttpServletRequest.class));
-                    log.debug(m, "{}", ServletLogger.logBasicRequestInfo(teeRequest));
-                    log.debug(m, "{}", ServletLogger.logRequest(teeRequest));
-                }
-                catch (IOException e) {
-                    log.info("Couldn't log request information", e);
+                HttpServletRequest request =
+                    ResteasyProviderFactory.getContextData(HttpServletRequest.class);
+                log.debug(m, "{}", ServletLogger.logBasicRequestInfo(request));
+
+                // Only re-read the body if the LoggingFilter buffered it, otherwise we
+                // would consume the stream before the resource gets to it.
+                if (TeeHttpServletRequest.isBuffered(request)) {
+                    try {
+                        log.debug(m, "{}", ServletLogger.logRequest(new TeeHttpServletRequest(request)));
+                    }
+                    catch (IOException e) {
+                        log.info("Couldn't log request information", e);
+                    }
                 }
             }
         }
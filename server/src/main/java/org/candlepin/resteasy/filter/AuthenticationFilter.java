@@ -27,7 +27,7 @@ import org.candlepin.common.auth.SecurityHole;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.NotAuthorizedException;
 import org.candlepin.config.ConfigProperties;
-import org.candlepin.model.ConsumerCurator;
+import org.candlepin.controller.ConsumerCheckInRecorder;
 import org.candlepin.model.DeletedConsumerCurator;
 
 import com.google.inject.Inject;
@@ -60,16 +60,16 @@ import javax.ws.rs.ext.Provider;
 public class AuthenticationFilter implements ContainerRequestFilter {
     private static Logger log = LoggerFactory.getLogger(AuthenticationFilter.class);
 
-    private ConsumerCurator consumerCurator;
+    private ConsumerCheckInRecorder checkInRecorder;
     private Injector injector;
     private Configuration config;
     private List<AuthProvider> providers = new ArrayList<AuthProvider>();
 
     @Inject
     public AuthenticationFilter(Configuration config,
-        ConsumerCurator consumerCurator,
+        ConsumerCheckInRecorder checkInRecorder,
         DeletedConsumerCurator deletedConsumerCurator, Injector injector) {
-        this.consumerCurator = consumerCurator;
+        this.checkInRecorder = checkInRecorder;
         this.injector = injector;
         this.config = config;
 
@@ -139,7 +139,7 @@ public class AuthenticationFilter implements ContainerRequestFilter {
             // lest our security settings start getting upset when we try to
             // update a consumer without any roles:
             ConsumerPrincipal p = (ConsumerPrincipal) principal;
-            consumerCurator.updateLastCheckin(p.getConsumer());
+            checkInRecorder.record(p.getConsumer());
         }
 
         SecurityContext securityContext = new CandlepinSecurityContext(principal);
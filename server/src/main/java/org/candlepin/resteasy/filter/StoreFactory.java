@@ -23,6 +23,7 @@ import org.candlepin.model.EntitlementCurator;
 import org.candlepin.model.Environment;
 import org.candlepin.model.EnvironmentCurator;
 import org.candlepin.model.JobCurator;
+import org.candlepin.model.JobStatusCache;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
 import org.candlepin.model.Persisted;
@@ -195,10 +196,12 @@ public class StoreFactory {
 
     private class JobStatusStore implements EntityStore<JobStatus> {
         @Inject private JobCurator jobCurator;
+        @Inject private JobStatusCache statusCache;
 
         @Override
         public JobStatus lookup(String jobId, Owner owner) {
-            return jobCurator.find(jobId);
+            JobStatus status = statusCache.get(jobId);
+            return status != null ? status : jobCurator.find(jobId);
         }
 
         @Override
@@ -34,6 +34,7 @@ import org.candlepin.pki.X509ByteExtensionWrapper;
 import org.candlepin.pki.X509ExtensionWrapper;
 import org.candlepin.service.BaseEntitlementCertServiceAdapter;
 import org.candlepin.util.CertificateSizeException;
+import org.candlepin.util.EntitlementCertificateHasher;
 import org.candlepin.util.Util;
 import org.candlepin.util.X509ExtensionUtil;
 import org.candlepin.util.X509Util;
@@ -54,6 +55,7 @@ import java.net.URLEncoder;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -163,6 +165,27 @@ public class DefaultEntitlementCertServiceAdapter extends
         BigInteger serialNumber,
         KeyPair keyPair, boolean useContentPrefix)
         throws GeneralSecurityException, IOException {
+        CertificateExtensions extensions = prepareExtensions(ent, product, products,
+            productModels, useContentPrefix);
+        return createX509Certificate(ent, extensions, serialNumber, keyPair);
+    }
+
+    private X509Certificate createX509Certificate(Entitlement ent,
+        CertificateExtensions extensions, BigInteger serialNumber, KeyPair keyPair)
+        throws GeneralSecurityException, IOException {
+        return this.pki.createX509Certificate(
+            createDN(ent), extensions.extensions, extensions.byteExtensions, ent.getStartDate(),
+            ent.getEndDate(), keyPair, serialNumber, null);
+    }
+
+    /*
+     * Everything that goes into the certificate besides its serial. Also settles the
+     * entitlement's end date, so the dates are final once this returns.
+     */
+    private CertificateExtensions prepareExtensions(Entitlement ent,
+        Product product, Set<Product> products,
+        List<org.candlepin.model.dto.Product> productModels, boolean useContentPrefix)
+        throws IOException {
 
         // oidutil is busted at the moment, so do this manually
         Set<X509ExtensionWrapper> extensions;
@@ -185,10 +208,7 @@ public class DefaultEntitlementCertServiceAdapter extends
         }
 
         setupEntitlementEndDate(ent);
-        X509Certificate x509Cert =  this.pki.createX509Certificate(
-            createDN(ent), extensions, byteExtensions, ent.getStartDate(),
-            ent.getEndDate(), keyPair, serialNumber, null);
-        return x509Cert;
+        return new CertificateExtensions(extensions, byteExtensions);
     }
 
     /**
@@ -367,21 +387,13 @@ public class DefaultEntitlementCertServiceAdapter extends
         log.info("Generating entitlement cert for entitlements");
         KeyPair keyPair = keyPairCurator.getConsumerKeyPair(consumer);
         byte[] pemEncodedKeyPair = pki.getPemEncoded(keyPair.getPrivate());
-
-        Map<String, CertificateSerial> serialMap = new HashMap<String, CertificateSerial>();
-        for (Entry<String, Entitlement> entry : entitlements.entrySet()) {
-            serialMap.put(entry.getKey(), new CertificateSerial(entry.getValue().getEndDate()));
-        }
-
-        // We need the sequence generated id before we create the
-        // EntitlementCertificate, otherwise we could have used cascading create
-        serialCurator.saveOrUpdateAll(serialMap);
+        byte[] issuer = pki.getCACert().getEncoded();
 
         Map<String, EntitlementCertificate> entitlementCerts = new HashMap<String, EntitlementCertificate>();
+        Map<String, PreparedCertificate> prepared = new HashMap<String, PreparedCertificate>();
 
         for (Entry<String, Entitlement> entry : entitlements.entrySet()) {
             Entitlement entitlement = entry.getValue();
-            CertificateSerial serial = serialMap.get(entry.getKey());
             Product product = productMap.get(entry.getKey());
 
             log.info("Generating entitlement cert for entitlement: {}", entitlement);
@@ -402,21 +414,67 @@ public class DefaultEntitlementCertServiceAdapter extends
             List<org.candlepin.model.dto.Product> productModels = v3extensionUtil.createProducts(product,
                 products, contentPrefix, promotedContent, entitlement.getConsumer(), entitlement);
 
-            X509Certificate x509Cert = createX509Certificate(entitlement, product, products, productModels,
-                BigInteger.valueOf(serial.getId()), keyPair, !thisIsUeberCert);
+            CertificateExtensions extensions = prepareExtensions(entitlement, product, products,
+                productModels, !thisIsUeberCert);
+
+            byte[] payloadBytes = null;
+            if (shouldGenerateV3(entitlement)) {
+                log.debug("Generating v3 entitlement data");
+                payloadBytes = v3extensionUtil.createEntitlementDataPayload(product, productModels,
+                    entitlement, contentPrefix, promotedContent);
+            }
+
+            String contentHash = EntitlementCertificateHasher.hash(issuer, createDN(entitlement),
+                entitlement.getStartDate(), entitlement.getEndDate(), keyPair.getPublic(),
+                extensions.extensions, extensions.byteExtensions, payloadBytes);
+
+            // Regenerating a certificate that would say exactly the same thing only
+            // burns a serial and grows the CRL, hand back the one the entitlement has.
+            EntitlementCertificate unchanged = findUnchanged(entitlement, contentHash);
+            if (unchanged != null) {
+                log.debug("Certificate of entitlement {} is unchanged", entitlement);
+                entitlementCerts.put(entry.getKey(), unchanged);
+                continue;
+            }
+
+            prepared.put(entry.getKey(),
+                new PreparedCertificate(entitlement, extensions, payloadBytes, contentHash));
+        }
+
+        Map<String, CertificateSerial> serialMap = new HashMap<String, CertificateSerial>();
+        for (Entry<String, PreparedCertificate> entry : prepared.entrySet()) {
+            serialMap.put(entry.getKey(),
+                new CertificateSerial(entry.getValue().entitlement.getEndDate()));
+        }
+
+        if (prepared.isEmpty()) {
+            return entitlementCerts;
+        }
+
+        // We need the sequence generated id before we create the
+        // EntitlementCertificate, otherwise we could have used cascading create
+        serialCurator.saveOrUpdateAll(serialMap);
+
+        List<EntitlementCertificate> generated = new ArrayList<EntitlementCertificate>();
+
+        for (Entry<String, PreparedCertificate> entry : prepared.entrySet()) {
+            PreparedCertificate certificate = entry.getValue();
+            Entitlement entitlement = certificate.entitlement;
+            CertificateSerial serial = serialMap.get(entry.getKey());
+
+            X509Certificate x509Cert = createX509Certificate(entitlement, certificate.extensions,
+                BigInteger.valueOf(serial.getId()), keyPair);
 
             EntitlementCertificate cert = new EntitlementCertificate();
             cert.setSerial(serial);
             cert.setKeyAsBytes(pemEncodedKeyPair);
+            cert.setContentHash(certificate.contentHash);
 
             log.info("Getting PEM encoded cert.");
             String pem = new String(this.pki.getPemEncoded(x509Cert));
 
-            if (shouldGenerateV3(entitlement)) {
-                log.debug("Generating v3 entitlement data");
-
-                byte[] payloadBytes = v3extensionUtil.createEntitlementDataPayload(product, productModels,
-                        entitlement, contentPrefix, promotedContent);
+            if (certificate.payload != null) {
+                byte[] payloadBytes = certificate.payload;
 
                 String payload = "-----BEGIN ENTITLEMENT DATA-----\n";
                 payload += Util.toBase64(payloadBytes);
@@ -441,17 +499,53 @@ public class DefaultEntitlementCertServiceAdapter extends
 
             entitlement.getCertificates().add(cert);
             entitlementCerts.put(entry.getKey(), cert);
+            generated.add(cert);
         }
 
         log.info("Persisting certs.");
-        entCertCurator.saveOrUpdateAll(entitlementCerts.values(), false);
+        entCertCurator.saveOrUpdateAll(generated, false);
 
         return entitlementCerts;
     }
 
+    private EntitlementCertificate findUnchanged(Entitlement entitlement, String contentHash) {
+        for (EntitlementCertificate existing : entitlement.getCertificates()) {
+            if (existing.getSerial() != null && contentHash.equals(existing.getContentHash())) {
+                return existing;
+            }
+        }
+        return null;
+    }
+
     private String createDN(Entitlement ent) {
         StringBuilder sb = new StringBuilder("CN=");
         sb.append(ent.getId());
         return sb.toString();
     }
+
+    private static class CertificateExtensions {
+        private final Set<X509ExtensionWrapper> extensions;
+        private final Set<X509ByteExtensionWrapper> byteExtensions;
+
+        CertificateExtensions(Set<X509ExtensionWrapper> extensions,
+            Set<X509ByteExtensionWrapper> byteExtensions) {
+            this.extensions = extensions;
+            this.byteExtensions = byteExtensions;
+        }
+    }
+
+    private static class PreparedCertificate {
+        private final Entitlement entitlement;
+        private final CertificateExtensions extensions;
+        private final byte[] payload;
+        private final String contentHash;
+
+        PreparedCertificate(Entitlement entitlement, CertificateExtensions extensions,
+            byte[] payload, String contentHash) {
+            this.entitlement = entitlement;
+            this.extensions = extensions;
+            this.payload = payload;
+            this.contentHash = contentHash;
+        }
+    }
 }
@@ -123,9 +123,9 @@ public class DefaultIdentityCertServiceAdapter implements
         Date endDate = this.endDateGenerator.apply(startDate);
 
         CertificateSerial serial = new CertificateSerial(endDate);
-        // We need the sequence generated id before we create the EntitlementCertificate,
-        // otherwise we could have used cascading create
-        serialCurator.create(serial);
+        // We need the generated id before we create the IdentityCertificate, but the
+        // insert itself can wait for the flush that creates the certificate.
+        serialCurator.createUnflushed(serial);
 
         String dn = createDN(consumer);
         IdentityCertificate identityCert = new IdentityCertificate();
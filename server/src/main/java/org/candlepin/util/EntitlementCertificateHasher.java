@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.candlepin.pki.X509ByteExtensionWrapper;
+import org.candlepin.pki.X509ExtensionWrapper;
+import org.candlepin.policy.js.compliance.hash.HashableStringGenerator;
+import org.candlepin.policy.js.compliance.hash.Hasher;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.security.PublicKey;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Creates an SHA256 hash of the content of an entitlement certificate: everything
+ * it says apart from its serial and signature, plus the CA certificate it is signed
+ * with. Two certificates with the same hash grant exactly the same access and chain
+ * to the same CA, so a certificate whose hash has not changed does not need to be
+ * regenerated.
+ *
+ * Every value is length prefixed so that differently split values can not produce
+ * the same hash. Extensions are sorted by the hasher, so their order does not matter.
+ */
+public class EntitlementCertificateHasher extends Hasher {
+
+    private static final HashableStringGenerator<X509ExtensionWrapper> EXTENSION =
+        new HashableStringGenerator<X509ExtensionWrapper>() {
+            @Override
+            public String generate(X509ExtensionWrapper target) {
+                return quote(quote(target.getOid()) + target.isCritical() + quote(target.getValue()));
+            }
+        };
+
+    private static final HashableStringGenerator<X509ByteExtensionWrapper> BYTE_EXTENSION =
+        new HashableStringGenerator<X509ByteExtensionWrapper>() {
+            @Override
+            public String generate(X509ByteExtensionWrapper target) {
+                return quote(quote(target.getOid()) + target.isCritical() +
+                    quote(encode(target.getValue())));
+            }
+        };
+
+    private static final HashableStringGenerator<String> VALUE =
+        new HashableStringGenerator<String>() {
+            @Override
+            public String generate(String target) {
+                return quote(target);
+            }
+        };
+
+    private EntitlementCertificateHasher(byte[] issuer, String dn, Date startDate,
+        Date endDate, PublicKey key, Set<X509ExtensionWrapper> extensions,
+        Set<X509ByteExtensionWrapper> byteExtensions, byte[] payload) {
+        putObject(encode(issuer), VALUE);
+        putObject(dn, VALUE);
+        putObject(time(startDate), VALUE);
+        putObject(time(endDate), VALUE);
+        putObject(encode(key.getEncoded()), VALUE);
+        putObject(String.valueOf(extensions.size()), VALUE);
+        putCollection(extensions, EXTENSION);
+        putObject(String.valueOf(byteExtensions.size()), VALUE);
+        putCollection(byteExtensions, BYTE_EXTENSION);
+        putObject(encode(payload), VALUE);
+    }
+
+    /**
+     * @param issuer the encoded certificate of the signing CA
+     * @param dn the subject of the certificate
+     * @param startDate the start of the validity period
+     * @param endDate the end of the validity period
+     * @param key the consumer's public key
+     * @param extensions the certificate's extensions
+     * @param byteExtensions the certificate's binary extensions
+     * @param payload the v3 entitlement data, or null for v1 certificates
+     * @return the hash of the certificate content
+     */
+    public static String hash(byte[] issuer, String dn, Date startDate, Date endDate,
+        PublicKey key, Set<X509ExtensionWrapper> extensions,
+        Set<X509ByteExtensionWrapper> byteExtensions, byte[] payload) {
+        return new EntitlementCertificateHasher(issuer, dn, startDate, endDate, key,
+            extensions, byteExtensions, payload).hash();
+    }
+
+    private static String time(Date date) {
+        return date == null ? null : String.valueOf(date.getTime());
+    }
+
+    private static String encode(byte[] bytes) {
+        return bytes == null ? null : Base64.encodeBase64String(bytes);
+    }
+
+    private static String quote(String value) {
+        return value == null ? "-" : value.length() + ":" + value;
+    }
+}
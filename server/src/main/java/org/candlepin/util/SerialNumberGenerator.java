@@ -22,6 +22,10 @@ import java.io.Serializable;
 
 /**
  * SerialNumberGenerator
+ *
+ * Serials are random rather than drawn from a database sequence, so they are
+ * assigned without a round trip and their rows go out in the regular JDBC insert
+ * batches (hibernate.jdbc.batch_size).
  */
 public class SerialNumberGenerator implements IdentifierGenerator {
 
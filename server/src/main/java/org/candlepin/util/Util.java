@@ -45,6 +45,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
@@ -61,6 +62,7 @@ public class Util {
     public static final String UTC_STR = "UTC";
     private static Logger log = LoggerFactory.getLogger(Util.class);
     private static ObjectMapper mapper = new ObjectMapper();
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
 
     /**
      * Invokes the close() method of any given object, if present.
@@ -280,7 +282,8 @@ public class Util {
           [1] http://en.wikipedia.org/wiki/Birthday_problem
          */
 
-        return Math.abs(new SecureRandom().nextLong());
+        // Math.abs() would leave Long.MIN_VALUE negative, so drop the sign bit instead.
+        return SECURE_RANDOM.nextLong() & Long.MAX_VALUE;
     }
 
     public static String toBase64(byte [] data) {
@@ -418,8 +421,9 @@ public class Util {
         for (String id : ids) {
             if (id != null) {
                 // We want to use lower case everywhere we can in order
-                // to do less work at query time.
-                id = id.toLowerCase();
+                // to do less work at query time. The consumer fact index
+                // stores its values lower cased the same way.
+                id = id.toLowerCase(Locale.ENGLISH);
             }
             results.add(id);
             if (isUuid(id)) {
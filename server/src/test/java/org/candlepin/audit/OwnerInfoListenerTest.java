@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.auth.Principal;
+import org.candlepin.auth.UserPrincipal;
+import org.candlepin.auth.permissions.Permission;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Owner;
+import org.candlepin.model.OwnerInfo;
+import org.candlepin.model.OwnerInfoCache;
+import org.candlepin.model.OwnerInfoCurator;
+
+import com.google.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+
+/**
+ * OwnerInfoListenerTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class OwnerInfoListenerTest {
+    @Mock private OwnerInfoCurator ownerInfoCurator;
+    @Mock private Configuration config;
+
+    private OwnerInfoCache cache;
+    private OwnerInfoListener listener;
+    private Owner owner;
+    private Principal admin;
+
+    @Before
+    public void init() {
+        when(config.getInt(eq(ConfigProperties.OWNER_INFO_CACHE_TTL), anyInt())).thenReturn(60);
+        when(ownerInfoCurator.lookupByOwner(any(Owner.class))).thenAnswer(
+            new Answer<OwnerInfo>() {
+                public OwnerInfo answer(InvocationOnMock invocation) {
+                    return new OwnerInfo();
+                }
+            });
+
+        cache = new OwnerInfoCache(new Provider<OwnerInfoCurator>() {
+            public OwnerInfoCurator get() {
+                return ownerInfoCurator;
+            }
+        }, config);
+        listener = new OwnerInfoListener(cache);
+
+        owner = new Owner("test-owner");
+        owner.setId("owner-id");
+        admin = new UserPrincipal("admin", new ArrayList<Permission>(), true);
+    }
+
+    private Event event(Event.Target target, String ownerId) {
+        Event event = new Event();
+        event.setTarget(target);
+        event.setOwnerId(ownerId);
+        return event;
+    }
+
+    @Test
+    public void infoReusedUntilInvalidated() {
+        OwnerInfo first = cache.lookupByOwner(owner, admin);
+        assertSame(first, cache.lookupByOwner(owner, admin));
+
+        listener.onEvent(event(Event.Target.ENTITLEMENT, owner.getId()));
+        assertNotSame(first, cache.lookupByOwner(owner, admin));
+        verify(ownerInfoCurator, times(2)).lookupByOwner(owner);
+    }
+
+    @Test
+    public void infoCachedPerPrincipal() {
+        Principal other = new UserPrincipal("other", new ArrayList<Permission>(), false);
+        assertNotSame(cache.lookupByOwner(owner, admin), cache.lookupByOwner(owner, other));
+    }
+
+    @Test
+    public void unrelatedEventsIgnored() {
+        OwnerInfo first = cache.lookupByOwner(owner, admin);
+
+        listener.onEvent(event(Event.Target.ROLE, owner.getId()));
+        listener.onEvent(event(Event.Target.POOL, "another-owner"));
+        listener.onEvent(event(Event.Target.CONSUMER, null));
+        assertSame(first, cache.lookupByOwner(owner, admin));
+    }
+
+    @Test
+    public void zeroTtlDisablesCaching() {
+        when(config.getInt(eq(ConfigProperties.OWNER_INFO_CACHE_TTL), anyInt())).thenReturn(0);
+        cache = new OwnerInfoCache(new Provider<OwnerInfoCurator>() {
+            public OwnerInfoCurator get() {
+                return ownerInfoCurator;
+            }
+        }, config);
+
+        assertNotSame(cache.lookupByOwner(owner, admin), cache.lookupByOwner(owner, admin));
+    }
+}
@@ -41,6 +41,10 @@ public class CandlepinCommonTestConfig extends MapConfiguration {
             setProperty(ConfigProperties.CA_KEY_PASSWORD, "password");
             setProperty(ConfigProperties.SYNC_WORK_DIR, "/tmp");
             setProperty(ConfigProperties.HORNETQ_LARGE_MSG_SIZE, "0");
+            // Write directly rather than on background threads racing the tests
+            setProperty(ConfigProperties.COMPLIANCE_QUEUE_ENABLED, "false");
+            setProperty(ConfigProperties.CHECKIN_WRITE_BEHIND_ENABLED, "false");
+            setProperty(ConfigProperties.KEYPAIR_POOL_SIZE, "0");
         }
         catch (URISyntaxException e) {
             throw new RuntimeException("Error loading cert/key resources!", e);
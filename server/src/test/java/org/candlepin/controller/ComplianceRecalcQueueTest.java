@@ -0,0 +1,309 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.audit.EventSink;
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.ComplianceQueueStatus;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.Owner;
+import org.candlepin.pinsetter.core.PinsetterKernel;
+import org.candlepin.pinsetter.core.model.JobStatus;
+import org.candlepin.policy.js.compliance.ComplianceRules;
+import org.candlepin.test.TestUtil;
+
+import com.google.inject.Provider;
+import com.google.inject.persist.UnitOfWork;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.quartz.JobDetail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+/**
+ * ComplianceRecalcQueueTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ComplianceRecalcQueueTest {
+
+    // Long enough that the background thread never gets to the queue during a test
+    private static final long DELAY = 60 * 60 * 1000L;
+
+    @Mock private ConsumerCurator consumerCurator;
+    @Mock private ComplianceRules complianceRules;
+    @Mock private PinsetterKernel pinsetterKernel;
+    @Mock private EventSink eventSink;
+    @Mock private UnitOfWork unitOfWork;
+    @Mock private EntityManager entityManager;
+    @Mock private Session session;
+    @Mock private Transaction transaction;
+
+    private CandlepinCommonTestConfig config;
+    private ComplianceRecalcQueue queue;
+    private Owner owner;
+
+    @Before
+    public void setUp() {
+        config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.COMPLIANCE_QUEUE_ENABLED, "true");
+        config.setProperty(ConfigProperties.COMPLIANCE_QUEUE_DELAY, Long.toString(DELAY));
+        config.setProperty(ConfigProperties.COMPLIANCE_QUEUE_BATCH_SIZE, "2");
+        config.setProperty(ConfigProperties.COMPLIANCE_QUEUE_MAX_SIZE, "3");
+        when(entityManager.getDelegate()).thenReturn(session);
+        when(session.getTransaction()).thenReturn(transaction);
+        queue = buildQueue();
+        owner = TestUtil.createOwner();
+    }
+
+    @After
+    public void tearDown() {
+        queue.shutdown();
+    }
+
+    private ComplianceRecalcQueue buildQueue() {
+        return new ComplianceRecalcQueue(new Provider<ConsumerCurator>() {
+            @Override
+            public ConsumerCurator get() {
+                return consumerCurator;
+            }
+        }, new Provider<ComplianceRules>() {
+            @Override
+            public ComplianceRules get() {
+                return complianceRules;
+            }
+        }, pinsetterKernel, eventSink, unitOfWork, new Provider<EntityManager>() {
+            @Override
+            public EntityManager get() {
+                return entityManager;
+            }
+        }, config);
+    }
+
+    private Consumer createConsumer() {
+        Consumer consumer = TestUtil.createConsumer(owner);
+        consumer.setUuid(TestUtil.randomString());
+        return consumer;
+    }
+
+    private long ready() {
+        return System.currentTimeMillis() + DELAY;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void consumerQueuedTwiceIsRecalculatedOnce() throws Exception {
+        Consumer consumer = createConsumer();
+        when(consumerCurator.lockAndLoadBatch(any(Collection.class)))
+            .thenReturn(Arrays.asList(consumer));
+
+        queue.enqueue(consumer, false);
+        queue.enqueue(consumer, true);
+        assertEquals(1, queue.getStatus().getDepth());
+
+        assertEquals(1, queue.drain(ready()));
+
+        ArgumentCaptor<Collection> uuids = ArgumentCaptor.forClass(Collection.class);
+        verify(consumerCurator).lockAndLoadBatch(uuids.capture());
+        assertEquals(Arrays.asList(consumer.getUuid()), new ArrayList<String>(uuids.getValue()));
+        // force update is kept when merging
+        verify(complianceRules).getStatus(eq(consumer), (Date) isNull(), eq(false),
+            eq(false));
+        verify(consumerCurator).update(consumer);
+        verify(unitOfWork).begin();
+        verify(eventSink).sendEvents();
+        verify(unitOfWork).end();
+
+        ComplianceQueueStatus status = queue.getStatus();
+        assertEquals(0, status.getDepth());
+        assertEquals(1, status.getCoalesced());
+        assertEquals(1, status.getRecalculated());
+        assertEquals(1, status.getBatches());
+        verifyZeroInteractions(pinsetterKernel);
+    }
+
+    @Test
+    public void nothingRecalculatedBeforeDelay() {
+        queue.enqueue(createConsumer(), false);
+
+        assertEquals(0, queue.drain(System.currentTimeMillis()));
+        assertEquals(1, queue.getStatus().getDepth());
+        verifyZeroInteractions(consumerCurator, unitOfWork);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void drainsInBatches() {
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue(createConsumer(), false);
+        }
+
+        assertEquals(2, queue.drain(ready()));
+        assertEquals(1, queue.drain(ready()));
+        assertEquals(0, queue.drain(ready()));
+
+        verify(consumerCurator, times(2)).lockAndLoadBatch(any(Collection.class));
+        verify(unitOfWork, times(2)).begin();
+        assertEquals(2, queue.getStatus().getBatches());
+    }
+
+    @Test
+    public void schedulesJobWhenFull() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue(createConsumer(), false);
+        }
+        Consumer overflow = createConsumer();
+        queue.enqueue(overflow, true);
+
+        ArgumentCaptor<JobDetail> captor = ArgumentCaptor.forClass(JobDetail.class);
+        verify(pinsetterKernel).scheduleSingleJob(captor.capture());
+        assertEquals(overflow.getUuid(), captor.getValue().getJobDataMap().get(JobStatus.TARGET_ID));
+        assertEquals(true, captor.getValue().getJobDataMap().get("force_update"));
+        assertEquals(3, queue.getStatus().getDepth());
+        assertEquals(1, queue.getStatus().getOverflowed());
+    }
+
+    @Test
+    public void schedulesJobWhenDisabled() throws Exception {
+        config.setProperty(ConfigProperties.COMPLIANCE_QUEUE_ENABLED, "false");
+        queue.shutdown();
+        queue = buildQueue();
+
+        queue.enqueue(createConsumer(), false);
+
+        verify(pinsetterKernel).scheduleSingleJob(any(JobDetail.class));
+        assertEquals(0, queue.getStatus().getDepth());
+    }
+
+    @Test
+    public void shutdownPersistsQueuedConsumers() throws Exception {
+        queue.enqueue(createConsumer(), false);
+        queue.enqueue(createConsumer(), true);
+
+        queue.shutdown();
+
+        verify(pinsetterKernel, times(2)).scheduleSingleJob(any(JobDetail.class));
+        assertEquals(0, queue.getStatus().getDepth());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failedBatchFallsBackToJobs() throws Exception {
+        when(consumerCurator.lockAndLoadBatch(any(Collection.class)))
+            .thenThrow(new RuntimeException("locked"));
+        queue.enqueue(createConsumer(), false);
+        queue.enqueue(createConsumer(), false);
+
+        assertEquals(2, queue.drain(ready()));
+
+        verify(eventSink).rollback();
+        verify(eventSink, never()).sendEvents();
+        verify(unitOfWork).end();
+        verify(pinsetterKernel, times(2)).scheduleSingleJob(any(JobDetail.class));
+    }
+
+    @Test
+    public void consumerQueuedInTransactionWaitsForCommit() {
+        when(transaction.isActive()).thenReturn(true);
+
+        queue.enqueue(createConsumer(), false);
+        assertEquals(0, queue.getStatus().getDepth());
+
+        ArgumentCaptor<Synchronization> captor = ArgumentCaptor.forClass(Synchronization.class);
+        verify(transaction).registerSynchronization(captor.capture());
+        captor.getValue().afterCompletion(Status.STATUS_COMMITTED);
+        assertEquals(1, queue.getStatus().getDepth());
+    }
+
+    @Test
+    public void rolledBackConsumerIsNotQueued() {
+        when(transaction.isActive()).thenReturn(true);
+
+        queue.enqueue(createConsumer(), false);
+
+        ArgumentCaptor<Synchronization> captor = ArgumentCaptor.forClass(Synchronization.class);
+        verify(transaction).registerSynchronization(captor.capture());
+        captor.getValue().afterCompletion(Status.STATUS_ROLLEDBACK);
+        assertEquals(0, queue.getStatus().getDepth());
+        verifyZeroInteractions(pinsetterKernel);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shutdownSchedulesJobsForBatchInFlight() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(consumerCurator.lockAndLoadBatch(any(Collection.class))).thenAnswer(
+            new Answer<List<Consumer>>() {
+                @Override
+                public List<Consumer> answer(InvocationOnMock invocation) throws Exception {
+                    loading.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    return new ArrayList<Consumer>();
+                }
+            });
+        queue.enqueue(createConsumer(), false);
+        queue.enqueue(createConsumer(), false);
+
+        Thread drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                queue.drain(ready());
+            }
+        });
+        drainer.start();
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+        queue.shutdown();
+        release.countDown();
+        drainer.join();
+
+        verify(pinsetterKernel, times(2)).scheduleSingleJob(any(JobDetail.class));
+    }
+
+    @Test
+    public void nothingDrainedAfterShutdown() throws Exception {
+        queue.enqueue(createConsumer(), false);
+        queue.shutdown();
+
+        assertEquals(0, queue.drain(ready()));
+        verifyZeroInteractions(consumerCurator, unitOfWork);
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.CheckInQueueStatus;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.test.TestUtil;
+
+import com.google.inject.Provider;
+import com.google.inject.persist.UnitOfWork;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * ConsumerCheckInRecorderTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ConsumerCheckInRecorderTest {
+
+    @Mock private ConsumerCurator consumerCurator;
+    @Mock private UnitOfWork unitOfWork;
+
+    private CandlepinCommonTestConfig config;
+    private ConsumerCheckInRecorder recorder;
+
+    @Before
+    public void setUp() {
+        config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.CHECKIN_WRITE_BEHIND_ENABLED, "true");
+        // Keep the background flush out of the way, tests flush explicitly
+        config.setProperty(ConfigProperties.CHECKIN_FLUSH_INTERVAL, "3600");
+        config.setProperty(ConfigProperties.CHECKIN_FLUSH_SIZE, "1000");
+        recorder = buildRecorder();
+    }
+
+    @After
+    public void tearDown() {
+        recorder.shutdown();
+    }
+
+    private ConsumerCheckInRecorder buildRecorder() {
+        return new ConsumerCheckInRecorder(new Provider<ConsumerCurator>() {
+            @Override
+            public ConsumerCurator get() {
+                return consumerCurator;
+            }
+        }, unitOfWork, config);
+    }
+
+    private Consumer createConsumer() {
+        Consumer consumer = TestUtil.createConsumer();
+        consumer.setId(TestUtil.randomString());
+        return consumer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Date> flushed() {
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(consumerCurator).updateLastCheckins(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    public void keepsLatestCheckInPerConsumer() {
+        Consumer consumer = createConsumer();
+        Date earlier = new Date(1000L);
+        Date later = new Date(2000L);
+
+        recorder.record(consumer, later);
+        recorder.record(consumer, earlier);
+        assertEquals(1, recorder.getStatus().getPending());
+        verify(consumerCurator, never()).updateLastCheckin(any(Consumer.class), any(Date.class));
+
+        assertEquals(1, recorder.flush());
+
+        Map<String, Date> written = flushed();
+        assertEquals(1, written.size());
+        assertEquals(later, written.get(consumer.getId()));
+        verify(unitOfWork).begin();
+        verify(unitOfWork).end();
+
+        CheckInQueueStatus status = recorder.getStatus();
+        assertEquals(0, status.getPending());
+        assertEquals(2, status.getRecorded());
+        assertEquals(1, status.getFlushed());
+        assertEquals(1, status.getBatches());
+    }
+
+    @Test
+    public void flushWithNothingPendingSkipsDatabase() {
+        assertEquals(0, recorder.flush());
+        verifyZeroInteractions(consumerCurator, unitOfWork);
+    }
+
+    @Test
+    public void recentCheckInWithinStalenessIsSkipped() {
+        config.setProperty(ConfigProperties.CHECKIN_STALENESS, "60");
+        recorder.shutdown();
+        recorder = buildRecorder();
+
+        Consumer consumer = createConsumer();
+        consumer.setLastCheckin(new Date(System.currentTimeMillis() - 10000L));
+        recorder.record(consumer);
+        assertEquals(0, recorder.getStatus().getPending());
+        assertEquals(1, recorder.getStatus().getSkipped());
+
+        consumer.setLastCheckin(new Date(System.currentTimeMillis() - 120000L));
+        recorder.record(consumer);
+        assertEquals(1, recorder.getStatus().getPending());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failedFlushKeepsCheckIns() {
+        when(consumerCurator.updateLastCheckins(any(Map.class)))
+            .thenThrow(new RuntimeException("db down"));
+        recorder.record(createConsumer());
+        recorder.record(createConsumer());
+
+        recorder.flush();
+
+        verify(unitOfWork).end();
+        assertEquals(2, recorder.getStatus().getPending());
+        assertEquals(1, recorder.getStatus().getFailures());
+        assertEquals(0, recorder.getStatus().getFlushed());
+    }
+
+    @Test
+    public void shutdownFlushesPendingCheckIns() {
+        Consumer consumer = createConsumer();
+        recorder.record(consumer);
+
+        recorder.shutdown();
+
+        assertTrue(flushed().containsKey(consumer.getId()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void checkInAfterShutdownIsWrittenImmediately() {
+        recorder.shutdown();
+        Consumer consumer = createConsumer();
+        Date checkin = new Date();
+
+        recorder.record(consumer, checkin);
+
+        assertEquals(checkin, flushed().get(consumer.getId()));
+        assertEquals(0, recorder.getStatus().getPending());
+
+        // Failures are logged, the request recording the check in carries on
+        when(consumerCurator.updateLastCheckins(any(Map.class)))
+            .thenThrow(new RuntimeException("db down"));
+        recorder.record(createConsumer());
+        assertEquals(1, recorder.getStatus().getFailures());
+        assertEquals(0, recorder.getStatus().getPending());
+    }
+
+    @Test
+    public void fullQueueAfterShutdownDoesNotThrow() {
+        config.setProperty(ConfigProperties.CHECKIN_FLUSH_SIZE, "1");
+        recorder.shutdown();
+        recorder = buildRecorder();
+        recorder.shutdown();
+
+        recorder.record(createConsumer());
+        recorder.record(createConsumer());
+
+        assertEquals(2, recorder.getStatus().getFlushed());
+    }
+
+    @Test
+    public void writesImmediatelyWhenDisabled() {
+        config.setProperty(ConfigProperties.CHECKIN_WRITE_BEHIND_ENABLED, "false");
+        recorder.shutdown();
+        recorder = buildRecorder();
+
+        Consumer consumer = createConsumer();
+        Date checkin = new Date();
+        recorder.record(consumer, checkin);
+
+        verify(consumerCurator).updateLastCheckin(consumer, checkin);
+        assertEquals(0, recorder.getStatus().getPending());
+    }
+}
@@ -22,8 +22,10 @@ import static org.mockito.Mockito.*;
 
 import org.candlepin.audit.Event;
 import org.candlepin.audit.EventSink;
+import org.candlepin.common.config.Configuration;
 import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Branding;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
@@ -96,6 +98,7 @@ public class PoolManagerFunctionalTest extends DatabaseTestFixture {
     @Inject private EntitlementCurator entitlementCurator;
     @Inject private ContentCurator contentCurator;
     @Inject private CandlepinPoolManager poolManager;
+    @Inject private Configuration config;
 
     private Product virtHost;
     private Product virtHostPlatform;
@@ -227,6 +230,27 @@ public class PoolManagerFunctionalTest extends DatabaseTestFixture {
         assertTrue(pools.isEmpty());
     }
 
+    @Test
+    public void testDeletePoolsInChunks() throws Exception {
+        config.setProperty(ConfigProperties.REVOKE_BATCH_SIZE, "1");
+        List<Pool> pools = new ArrayList<Pool>();
+        pools.add(poolCurator.listByOwnerAndProduct(o, monitoring.getId()).get(0));
+        pools.add(poolCurator.listByOwnerAndProduct(o, provisioning.getId()).get(0));
+        for (Pool pool : pools) {
+            Map<String, Integer> poolQuantities = new HashMap<String, Integer>();
+            poolQuantities.put(pool.getId(), 1);
+            poolManager.entitleByPools(parentSystem, poolQuantities);
+            poolManager.entitleByPools(childVirtSystem, poolQuantities);
+        }
+        assertEquals(2, entitlementCurator.listByConsumer(parentSystem).size());
+
+        poolManager.deletePools(pools);
+
+        assertEquals(2, poolCurator.listByOwner(o).size());
+        assertTrue(entitlementCurator.listByConsumer(parentSystem).isEmpty());
+        assertTrue(entitlementCurator.listByConsumer(childVirtSystem).isEmpty());
+    }
+
     @Test
     public void testRevocation() throws Exception {
         AutobindData data = AutobindData.create(parentSystem).on(new Date())
@@ -238,6 +262,26 @@ public class PoolManagerFunctionalTest extends DatabaseTestFixture {
         assertTrue(entitlements.isEmpty());
     }
 
+    @Test
+    public void testRevocationInBatches() throws Exception {
+        config.setProperty(ConfigProperties.REVOKE_BATCH_SIZE, "2");
+        Pool monitoringPool = poolCurator.listByOwnerAndProduct(o, monitoring.getId()).get(0);
+        Map<String, Integer> poolQuantities = new HashMap<String, Integer>();
+        List<Entitlement> ents = new ArrayList<Entitlement>();
+        for (int i = 0; i < 5; i++) {
+            poolQuantities.put(monitoringPool.getId(), 1);
+            ents.addAll(poolManager.entitleByPools(i % 2 == 0 ? parentSystem : childVirtSystem,
+                poolQuantities));
+        }
+        assertEquals(Long.valueOf(5), monitoringPool.getConsumed());
+
+        poolManager.revokeEntitlements(ents);
+
+        assertEquals(Long.valueOf(0), monitoringPool.getConsumed());
+        assertTrue(entitlementCurator.listByConsumer(parentSystem).isEmpty());
+        assertTrue(entitlementCurator.listByConsumer(childVirtSystem).isEmpty());
+    }
+
     @Test
     public void testConsumeQuantity() throws Exception {
         Pool monitoringPool = poolCurator.listByOwnerAndProduct(o,
@@ -302,7 +346,7 @@ public class PoolManagerFunctionalTest extends DatabaseTestFixture {
     @Test
     public void testRegenerateEntitlementCertificatesWithNoEntitlement() {
         reset(this.eventSink); // pool creation events went out from setup
-        poolManager.regenerateEntitlementCertificates(childVirtSystem, true);
+        poolManager.regenerateEntitlementCertificates(childVirtSystem, true, false);
         assertEquals(0, collectEntitlementCertIds(this.childVirtSystem).size());
         Mockito.verifyZeroInteractions(this.eventSink);
     }
@@ -409,6 +453,93 @@ public class PoolManagerFunctionalTest extends DatabaseTestFixture {
         assertEquals(5, results.getPageData().size());
     }
 
+    @Test
+    public void testPagedListForConsumerReadsInBatches() {
+        config.setProperty(ConfigProperties.POOL_LIST_BATCH_SIZE, "2");
+        config.setProperty(ConfigProperties.POOL_LIST_ESTIMATE_TOTAL, "false");
+
+        Product p = new Product("test-product", "Test Product", o);
+        productCurator.create(p);
+        // No entitlements available, so the rules will drop this one
+        poolCurator.create(createPool(o, p, 0L,
+            TestUtil.createDate(2000, 3, 2), TestUtil.createDate(2050, 3, 2)));
+
+        List<Pool> all = poolManager.listAvailableEntitlementPools(
+            parentSystem, null, parentSystem.getOwner(), null, null, null, true, true,
+            new PoolFilterBuilder(), null).getPageData();
+        assertEquals(4, all.size());
+
+        Set<String> seen = new HashSet<String>();
+        for (int i = 1; i <= 2; i++) {
+            PageRequest pageRequest = new PageRequest();
+            pageRequest.setSortBy("id");
+            pageRequest.setPage(i);
+            pageRequest.setPerPage(3);
+
+            Page<List<Pool>> page = poolManager.listAvailableEntitlementPools(
+                parentSystem, null, parentSystem.getOwner(), null, null, null, true, true,
+                new PoolFilterBuilder(), pageRequest);
+            assertEquals(i == 1 ? 3 : 1, page.getPageData().size());
+            assertEquals(Integer.valueOf(4), page.getMaxRecords());
+            for (Pool pool : page.getPageData()) {
+                assertTrue(seen.add(pool.getId()));
+            }
+        }
+
+        for (Pool pool : all) {
+            assertTrue(seen.contains(pool.getId()));
+        }
+
+        // Without an estimate the rest is still filtered for an exact total
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("id");
+        pageRequest.setPage(1);
+        pageRequest.setPerPage(1);
+
+        Page<List<Pool>> page = poolManager.listAvailableEntitlementPools(
+            parentSystem, null, parentSystem.getOwner(), null, null, null, true, true,
+            new PoolFilterBuilder(), pageRequest);
+        assertEquals(1, page.getPageData().size());
+        assertEquals(Integer.valueOf(4), page.getMaxRecords());
+
+        // Stopping early extrapolates from the pools scanned so far
+        config.setProperty(ConfigProperties.POOL_LIST_ESTIMATE_TOTAL, "true");
+        page = poolManager.listAvailableEntitlementPools(
+            parentSystem, null, parentSystem.getOwner(), null, null, null, true, true,
+            new PoolFilterBuilder(), pageRequest);
+        assertEquals(1, page.getPageData().size());
+        assertTrue(page.getMaxRecords() >= 2 && page.getMaxRecords() <= 5);
+    }
+
+    @Test
+    public void testSeekingListForConsumer() {
+        config.setProperty(ConfigProperties.POOL_LIST_BATCH_SIZE, "3");
+
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPerPage(3);
+        pageRequest.setCursor("");
+
+        Page<List<Pool>> page = poolManager.listAvailableEntitlementPools(
+            parentSystem, null, parentSystem.getOwner(), null, null, null, true, true,
+            new PoolFilterBuilder(), pageRequest);
+        assertEquals(3, page.getPageData().size());
+        assertNull(page.getMaxRecords());
+        assertNotNull(page.getNextCursor());
+
+        Set<String> seen = new HashSet<String>();
+        for (Pool pool : page.getPageData()) {
+            seen.add(pool.getId());
+        }
+
+        pageRequest.setCursor(page.getNextCursor());
+        page = poolManager.listAvailableEntitlementPools(
+            parentSystem, null, parentSystem.getOwner(), null, null, null, true, true,
+            new PoolFilterBuilder(), pageRequest);
+        assertEquals(1, page.getPageData().size());
+        assertNull(page.getNextCursor());
+        assertTrue(seen.add(page.getPageData().get(0).getId()));
+    }
+
     @Test
     public void testListAllForConsumerExcludesErrors() {
         Product p = new Product("test-product", "Test Product", o);
@@ -509,7 +640,7 @@ public class PoolManagerFunctionalTest extends DatabaseTestFixture {
     private void regenerateECAndAssertNotSameCertificates() {
         Set<EntitlementCertificate> oldsIds =
             collectEntitlementCertIds(this.childVirtSystem);
-        poolManager.regenerateEntitlementCertificates(childVirtSystem, false);
+        poolManager.regenerateEntitlementCertificates(childVirtSystem, false, true);
         Mockito.verify(this.eventSink, Mockito.times(oldsIds.size()))
             .queueEvent(any(Event.class));
         Set<EntitlementCertificate> newIds =
@@ -40,6 +40,7 @@ import org.candlepin.model.Entitlement;
 import org.candlepin.model.EntitlementCertificate;
 import org.candlepin.model.EntitlementCertificateCurator;
 import org.candlepin.model.EntitlementCurator;
+import org.candlepin.model.Environment;
 import org.candlepin.model.EnvironmentCurator;
 import org.candlepin.model.Eventful;
 import org.candlepin.model.Owner;
@@ -54,7 +55,6 @@ import org.candlepin.model.ProductCurator;
 import org.candlepin.model.SourceStack;
 import org.candlepin.model.SourceSubscription;
 import org.candlepin.model.dto.Subscription;
-import org.candlepin.pinsetter.core.PinsetterKernel;
 import org.candlepin.policy.EntitlementRefusedException;
 import org.candlepin.policy.ValidationError;
 import org.candlepin.policy.ValidationResult;
@@ -88,6 +88,7 @@ import org.xnap.commons.i18n.I18nFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -152,7 +153,7 @@ public class PoolManagerTest {
     @Mock
     private OwnerCurator ownerCuratorMock;
     @Mock
-    private PinsetterKernel pinsetterKernel;
+    private ComplianceRecalcQueue complianceQueue;
     @Captor
     private ArgumentCaptor<Map<String, Entitlement>> entMapCaptor;
 
@@ -189,7 +190,7 @@ public class PoolManagerTest {
             eventFactory, mockConfig, enforcerMock, poolRulesMock, entitlementCurator,
             consumerCuratorMock, certCuratorMock, complianceRules, autobindRules,
             activationKeyRules, productCuratorMock, contentCuratorMock, ownerCuratorMock,
-            pinsetterKernel, i18n)
+            complianceQueue, i18n)
         );
 
         Map<String, EntitlementCertificate> entCerts = new HashMap<String, EntitlementCertificate>();
@@ -610,7 +611,7 @@ public class PoolManagerTest {
     @Test
     public void testLazyRegenerate() {
         Entitlement e = new Entitlement();
-        manager.regenerateCertificatesOf(e, false, true);
+        manager.regenerateCertificatesOf(e, false, true, false);
         assertTrue(e.getDirty());
         verifyZeroInteractions(entCertAdapterMock);
     }
@@ -620,7 +621,7 @@ public class PoolManagerTest {
         Entitlement e = new Entitlement();
         Consumer c = new Consumer();
         c.addEntitlement(e);
-        manager.regenerateEntitlementCertificates(c, true);
+        manager.regenerateEntitlementCertificates(c, true, false);
         assertTrue(e.getDirty());
         verifyZeroInteractions(entCertAdapterMock);
     }
@@ -637,7 +638,7 @@ public class PoolManagerTest {
 
         when(mockSubAdapter.getSubscription(pool.getSubscriptionId())).thenReturn(s);
 
-        manager.regenerateCertificatesOf(e, false, false);
+        manager.regenerateCertificatesOf(e, false, false, false);
         assertFalse(e.getDirty());
 
         verify(entCertAdapterMock).generateEntitlementCerts(eq(con), entMapCaptor.capture(),
@@ -648,6 +649,124 @@ public class PoolManagerTest {
         verify(mockEventSink, times(1)).queueEvent(any(Event.class));
     }
 
+    @Test
+    public void testRegenerateKeepsUnchangedCertificate() throws Exception {
+        Consumer con = TestUtil.createConsumer(o);
+        Entitlement e = new Entitlement(pool, con, 1);
+        e.setId("ent");
+        e.setDirty(true);
+        EntitlementCertificate current = new EntitlementCertificate();
+        current.setId("current");
+        current.setEntitlement(e);
+        e.getCertificates().add(current);
+
+        Map<String, EntitlementCertificate> certs = new HashMap<String, EntitlementCertificate>();
+        certs.put(pool.getId(), current);
+        when(entCertAdapterMock.generateEntitlementCerts(eq(con),
+            anyMapOf(String.class, Entitlement.class),
+            anyMapOf(String.class, Product.class))).thenReturn(certs);
+
+        manager.regenerateCertificatesOf(e, false, false, false);
+
+        assertFalse(e.getDirty());
+        assertTrue(e.getCertificates().contains(current));
+        verify(certCuratorMock, never()).delete(any(EntitlementCertificate.class));
+        verifyZeroInteractions(mockEventSink);
+    }
+
+    @Test
+    public void testForcedLazyRegenerateForgetsContentHash() {
+        Entitlement e = new Entitlement();
+        EntitlementCertificate current = new EntitlementCertificate();
+        current.setContentHash("hash");
+        e.getCertificates().add(current);
+
+        manager.regenerateCertificatesOf(e, false, true, true);
+
+        assertTrue(e.getDirty());
+        assertNull(current.getContentHash());
+        verifyZeroInteractions(entCertAdapterMock);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDirtyRegenerateBatchesPerConsumer() throws Exception {
+        Consumer con = TestUtil.createConsumer(o);
+        Pool other = TestUtil.createPool(o, product);
+        other.setId("other");
+        Entitlement e1 = new Entitlement(pool, con, 1);
+        e1.setId("e1");
+        e1.setDirty(true);
+        Entitlement e2 = new Entitlement(other, con, 1);
+        e2.setId("e2");
+        e2.setDirty(true);
+        Entitlement clean = new Entitlement(pool, con, 1);
+        clean.setId("e3");
+        when(entitlementCurator.lockAndLoadBatch(any(Collection.class)))
+            .thenReturn(Arrays.asList(e1, e2, clean));
+
+        Map<String, EntitlementCertificate> certs = new HashMap<String, EntitlementCertificate>();
+        certs.put(pool.getId(), new EntitlementCertificate());
+        certs.put(other.getId(), new EntitlementCertificate());
+        when(entCertAdapterMock.generateEntitlementCerts(eq(con),
+            anyMapOf(String.class, Entitlement.class),
+            anyMapOf(String.class, Product.class))).thenReturn(certs);
+
+        assertEquals(2, manager.regenerateDirtyEntitlementsByIds(Arrays.asList("e1", "e2", "e3")));
+
+        verify(entCertAdapterMock).generateEntitlementCerts(eq(con), entMapCaptor.capture(),
+            productMapCaptor.capture());
+        assertEquals(2, entMapCaptor.getValue().size());
+        assertFalse(e1.getDirty());
+        assertFalse(e2.getDirty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDirtyRegenerateSkipsEntitlementRegeneratedMeanwhile() {
+        final Entitlement e = new Entitlement(pool, TestUtil.createConsumer(o), 1);
+        e.setId("ent");
+        e.setDirty(true);
+        when(entitlementCurator.lockAndLoadBatch(any(Collection.class)))
+            .thenReturn(Arrays.asList(e));
+        // the background job regenerated it before we got the lock
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                e.setDirty(false);
+                return null;
+            }
+        }).when(entitlementCurator).refresh(e);
+
+        manager.regenerateDirtyEntitlements(Arrays.asList(e));
+
+        verify(entitlementCurator).lockAndLoadBatch(eq(Arrays.asList("ent")));
+        verifyZeroInteractions(entCertAdapterMock);
+    }
+
+    @Test
+    public void testEnvironmentRegenerateInBatches() {
+        when(mockConfig.getInt(eq(ConfigProperties.ENV_REGEN_BATCH_SIZE), anyInt())).thenReturn(2);
+        Environment env = new Environment("env", "env", o);
+        Set<String> content = Collections.singleton("content");
+        when(entitlementCurator.listIdsByEnvironmentAndContent(env, content))
+            .thenReturn(Arrays.asList("e1", "e2", "e3"));
+        Entitlement e1 = new Entitlement();
+        Entitlement e2 = new Entitlement();
+        Entitlement e3 = new Entitlement();
+        when(entitlementCurator.listAllByIds(Arrays.asList("e1", "e2")))
+            .thenReturn(Arrays.asList(e1, e2));
+        when(entitlementCurator.listAllByIds(Arrays.asList("e3")))
+            .thenReturn(Arrays.asList(e3));
+
+        manager.regenerateCertificatesOf(env, content, true);
+
+        assertTrue(e1.getDirty());
+        assertTrue(e2.getDirty());
+        assertTrue(e3.getDirty());
+        verify(entitlementCurator, times(2)).clear();
+    }
+
     /**
      * @return
      */
@@ -726,6 +845,32 @@ public class PoolManagerTest {
         verify(entitlementCurator).batchDelete(eq(entsToDelete));
     }
 
+    @Test
+    public void testRevokeInBatchesGroupedByConsumer() throws Exception {
+        when(mockConfig.getInt(eq(ConfigProperties.REVOKE_BATCH_SIZE), anyInt())).thenReturn(2);
+        when(mockConfig.getBoolean(ConfigProperties.STANDALONE)).thenReturn(true);
+        Consumer c1 = TestUtil.createConsumer(o);
+        c1.setId("c1");
+        Consumer c2 = TestUtil.createConsumer(o);
+        c2.setId("c2");
+        pool.setConsumed(3L);
+
+        Entitlement e1 = new Entitlement(pool, c1, 1);
+        e1.setId("e1");
+        Entitlement e2 = new Entitlement(pool, c2, 1);
+        e2.setId("e2");
+        Entitlement e3 = new Entitlement(pool, c1, 1);
+        e3.setId("e3");
+
+        manager.revokeEntitlements(Arrays.asList(e2, e1, e3));
+
+        verify(entitlementCurator).batchDelete(eq(Arrays.asList(e1, e3)));
+        verify(entitlementCurator).batchDelete(eq(Arrays.asList(e2)));
+        assertEquals(Long.valueOf(0), pool.getConsumed());
+        // the pools of every batch are locked together, up front
+        verify(mockPoolCurator, times(1)).lock(any(List.class));
+    }
+
     @Test
     public void testBatchRevokeCleansUpCorrectPoolsWithSourceEnt() throws Exception {
         Consumer c = TestUtil.createConsumer(o);
@@ -949,7 +1094,8 @@ public class PoolManagerTest {
         pools.add(p);
 
         when(mockPoolCurator.lockAndLoad(any(Pool.class))).thenReturn(p);
-        when(mockPoolCurator.listExpiredPools()).thenReturn(pools);
+        when(mockPoolCurator.listExpiredPools(any(Date.class), any(Date.class), any(String.class),
+            anyInt())).thenReturn(pools);
         when(mockPoolCurator.entitlementsIn(p)).thenReturn(
             new ArrayList<Entitlement>(p.getEntitlements()));
         Subscription sub = new Subscription();
@@ -974,7 +1120,8 @@ public class PoolManagerTest {
         pools.add(p);
 
         when(mockPoolCurator.lockAndLoad(any(Pool.class))).thenReturn(p);
-        when(mockPoolCurator.listExpiredPools()).thenReturn(pools);
+        when(mockPoolCurator.listExpiredPools(any(Date.class), any(Date.class), any(String.class),
+            anyInt())).thenReturn(pools);
         when(mockPoolCurator.entitlementsIn(p)).thenReturn(
             new ArrayList<Entitlement>(p.getEntitlements()));
         Subscription sub = new Subscription();
@@ -993,6 +1140,57 @@ public class PoolManagerTest {
         verify(mockSubAdapter, never()).deleteSubscription(any(Subscription.class));
     }
 
+    @Test
+    public void testCleanupExpiredPoolsByPage() {
+        when(mockConfig.getInt(eq(ConfigProperties.EXPIRED_POOLS_PAGE_SIZE), anyInt())).thenReturn(2);
+        Pool p1 = createPoolWithEntitlements();
+        p1.setId("p1");
+        Pool p2 = TestUtil.createPool(o, product);
+        p2.setId("p2");
+        p2.setAttribute("derived_pool", "true");
+        Pool p3 = TestUtil.createPool(o, product);
+        p3.setId("p3");
+        List<Pool> firstPage = Arrays.asList(p1, p2);
+        List<Pool> secondPage = Arrays.asList(p3);
+
+        when(mockPoolCurator.listExpiredPools(any(Date.class), any(Date.class), any(String.class),
+            eq(2))).thenReturn(firstPage, secondPage);
+        when(mockPoolCurator.lockAndLoad(any(Pool.class))).thenReturn(p1);
+        when(mockPoolCurator.entitlementsIn(p1)).thenReturn(
+            new ArrayList<Entitlement>(p1.getEntitlements()));
+        when(mockSubAdapter.isReadOnly()).thenReturn(true);
+
+        ExpiredPoolsResult result = manager.cleanupExpiredPools();
+
+        verify(mockPoolCurator).listExpiredPools(any(Date.class), eq((Date) null), eq((String) null),
+            eq(2));
+        verify(mockPoolCurator).listExpiredPools(any(Date.class), eq(p2.getEndDate()), eq("p2"), eq(2));
+        verify(mockPoolCurator).batchDelete(Arrays.asList(p1));
+        verify(mockPoolCurator).batchDelete(Arrays.asList(p3));
+        verify(mockPoolCurator, times(2)).clear();
+        assertEquals(2, result.getPages());
+        assertEquals(2, result.getPools());
+        assertEquals(2, result.getEntitlements());
+    }
+
+    @Test
+    public void testCleanupExpiredPoolsStopsAfterMaxPages() {
+        when(mockConfig.getInt(eq(ConfigProperties.EXPIRED_POOLS_PAGE_SIZE), anyInt())).thenReturn(1);
+        when(mockConfig.getInt(eq(ConfigProperties.EXPIRED_POOLS_MAX_PAGES), anyInt())).thenReturn(1);
+        Pool p1 = TestUtil.createPool(o, product);
+        p1.setId("p1");
+        when(mockPoolCurator.listExpiredPools(any(Date.class), any(Date.class), any(String.class),
+            eq(1))).thenReturn(Arrays.asList(p1));
+        when(mockSubAdapter.isReadOnly()).thenReturn(true);
+
+        ExpiredPoolsResult result = manager.cleanupExpiredPools();
+
+        verify(mockPoolCurator, times(1)).listExpiredPools(any(Date.class), any(Date.class),
+            any(String.class), anyInt());
+        assertEquals(1, result.getPages());
+        assertEquals(1, result.getPools());
+    }
+
     private Pool createPoolWithEntitlements() {
         Pool newPool = TestUtil.createPool(o, product);
         Entitlement e1 = new Entitlement(newPool, TestUtil.createConsumer(o),
@@ -26,6 +26,7 @@ import org.candlepin.common.config.ConfigurationException;
 import org.candlepin.common.config.ConfigurationPrefixes;
 import org.candlepin.common.config.MapConfiguration;
 import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.ComplianceRecalcQueue;
 import org.candlepin.junit.CandlepinLiquibaseResource;
 import org.candlepin.pinsetter.core.PinsetterContextListener;
 
@@ -40,6 +41,7 @@ import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.InOrder;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -57,6 +59,7 @@ public class CandlepinContextListenerTest {
     private PinsetterContextListener pinlistener;
     private AMQPBusPublisher buspublisher;
     private AMQPBusPubProvider busprovider;
+    private ComplianceRecalcQueue recalcQueue;
     private ServletContextEvent evt;
     private ServletContext ctx;
     private VerifyConfigRead configRead;
@@ -78,6 +81,7 @@ public class CandlepinContextListenerTest {
         pinlistener = mock(PinsetterContextListener.class);
         buspublisher = mock(AMQPBusPublisher.class);
         busprovider = mock(AMQPBusPubProvider.class);
+        recalcQueue = mock(ComplianceRecalcQueue.class);
         configRead = mock(VerifyConfigRead.class);
 
         // for testing we override the getModules and readConfiguration methods
@@ -144,8 +148,11 @@ public class CandlepinContextListenerTest {
         // make sure we only call it 5 times all from init code
         verify(evt, atMost(5)).getServletContext();
         verifyNoMoreInteractions(evt); // destroy shouldn't use it
-        verify(hqlistener).contextDestroyed();
-        verify(pinlistener).contextDestroyed();
+        // the queue still sends events for its last batch
+        InOrder order = inOrder(recalcQueue, hqlistener, pinlistener);
+        order.verify(recalcQueue).shutdown();
+        order.verify(hqlistener).contextDestroyed();
+        order.verify(pinlistener).contextDestroyed();
         verifyZeroInteractions(busprovider);
         verifyZeroInteractions(buspublisher);
     }
@@ -210,6 +217,7 @@ public class CandlepinContextListenerTest {
             bind(HornetqContextListener.class).toInstance(hqlistener);
             bind(AMQPBusPublisher.class).toInstance(buspublisher);
             bind(AMQPBusPubProvider.class).toInstance(busprovider);
+            bind(ComplianceRecalcQueue.class).toInstance(recalcQueue);
         }
     }
 
@@ -34,6 +34,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -199,6 +200,32 @@ public class ConsumerCuratorSearchTest extends DatabaseTestFixture {
         assertEquals(consumer, resultList.get(0));
     }
 
+    @Test
+    public void testSearchFindsFactsChangedThroughGetFacts() {
+        Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
+        consumer.setFact("testkey", "oldval");
+        consumer.setFact("gone", "val");
+        consumer = consumerCurator.create(consumer);
+
+        consumer.getFacts().put("testkey", "NewVal");
+        consumer.getFacts().remove("gone");
+        for (Map.Entry<String, String> entry : consumer.getFacts().entrySet()) {
+            entry.setValue(entry.getValue() + "!");
+        }
+        consumerCurator.merge(consumer);
+
+        assertEquals(1, search("testkey", "newval!").size());
+        assertEquals(0, search("testkey", "oldval").size());
+        assertEquals(0, search("gone", "val").size());
+    }
+
+    private List<Consumer> search(String key, String value) {
+        List<KeyValueParameter> factFilters = new LinkedList<KeyValueParameter>();
+        factFilters.add(new TestingKeyValueParameter(key, value));
+        return consumerCurator.searchOwnerConsumers(
+            owner, null, null, null, null, factFilters, null, null, null, null).getPageData();
+    }
+
     @Test
     public void testSearchOwnerConsumersEscaping() {
         Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
@@ -455,6 +482,66 @@ public class ConsumerCuratorSearchTest extends DatabaseTestFixture {
         assertEquals(otherConsumer, resultList.get(0));
     }
 
+    @Test
+    public void testSearchOwnerConsumersFollowsFactUpdates() {
+        Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
+        consumer.setFact("testkey", "OldVal");
+        consumer = consumerCurator.create(consumer);
+
+        Map<String, String> facts = new HashMap<String, String>();
+        facts.put("testkey", "NewVal");
+        consumer.setFacts(facts);
+        consumer = consumerCurator.update(consumer);
+
+        List<KeyValueParameter> factFilters = new LinkedList<KeyValueParameter>();
+        factFilters.add(new TestingKeyValueParameter("testkey", "oldval"));
+        assertEquals(0, consumerCurator.searchOwnerConsumers(owner, null, null, null, null,
+            factFilters, null, null, null, null).getPageData().size());
+
+        factFilters.clear();
+        factFilters.add(new TestingKeyValueParameter("testkey", "NEWVAL"));
+        List<Consumer> resultList = consumerCurator.searchOwnerConsumers(owner, null, null, null,
+            null, factFilters, null, null, null, null).getPageData();
+        assertEquals(1, resultList.size());
+        assertEquals(consumer.getId(), resultList.get(0).getId());
+    }
+
+    @Test
+    public void testSearchOwnerConsumersManyFacts() {
+        // A synthetic org where every consumer carries the same set of fact keys.
+        Set<String> expected = new HashSet<String>();
+        for (int i = 0; i < 100; i++) {
+            Consumer consumer = new Consumer("consumer" + i, "testUser", owner, ct);
+            Map<String, String> facts = new HashMap<String, String>();
+            for (int j = 0; j < 30; j++) {
+                facts.put("fact." + j, "Value-" + ((i + j) % 7));
+            }
+            consumer.setFacts(facts);
+            consumer = consumerCurator.create(consumer);
+
+            if (i % 7 == 2 || i % 7 == 6) {
+                expected.add(consumer.getId());
+            }
+        }
+
+        List<KeyValueParameter> factFilters = new LinkedList<KeyValueParameter>();
+        factFilters.add(new TestingKeyValueParameter("fact.3", "VALUE-2"));
+        factFilters.add(new TestingKeyValueParameter("fact.3", "value-5"));
+        factFilters.add(new TestingKeyValueParameter("fact.1?", "value-*"));
+        factFilters.add(new TestingKeyValueParameter("fact.0", "value-0"));
+        factFilters.add(new TestingKeyValueParameter("fact.0", "value-2"));
+        factFilters.add(new TestingKeyValueParameter("fact.0", "value-4"));
+        factFilters.add(new TestingKeyValueParameter("fact.0", "value-6"));
+        List<Consumer> resultList = consumerCurator.searchOwnerConsumers(owner, null, null, null,
+            null, factFilters, null, null, null, null).getPageData();
+
+        Set<String> found = new HashSet<String>();
+        for (Consumer c : resultList) {
+            found.add(c.getId());
+        }
+        assertEquals(expected, found);
+    }
+
     @Test
     public void testSearchBySubscriptionId() {
         // Create another consumer to make sure we're not just retrieving everything
@@ -29,6 +29,7 @@ import org.junit.Test;
 
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -318,6 +319,44 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
 
         assertEquals(consumer.getLastCheckin().getTime(), dt.getTime());
     }
+    @Test
+    public void updateLastCheckinsInBatch() {
+        Consumer first = consumerCurator.create(new Consumer("first", "testUser", owner, ct));
+        Consumer second = consumerCurator.create(new Consumer("second", "testUser", owner, ct));
+        Consumer untouched = consumerCurator.create(new Consumer("third", "testUser", owner, ct));
+        Date firstDate = ResourceDateParser.parseDateString("2011-09-26T18:10:50.184081+00:00");
+        Date secondDate = ResourceDateParser.parseDateString("2012-01-02T03:04:05.000000+00:00");
+
+        Map<String, Date> checkins = new HashMap<String, Date>();
+        checkins.put(first.getId(), firstDate);
+        checkins.put(second.getId(), secondDate);
+        assertEquals(2, consumerCurator.updateLastCheckins(checkins));
+
+        consumerCurator.refresh(first);
+        consumerCurator.refresh(second);
+        consumerCurator.refresh(untouched);
+        assertEquals(firstDate.getTime(), first.getLastCheckin().getTime());
+        assertEquals(secondDate.getTime(), second.getLastCheckin().getTime());
+        assertNull(untouched.getLastCheckin());
+        // the check ins are older than the consumers
+        assertTrue(first.getUpdated().after(firstDate));
+    }
+
+    @Test
+    public void updateLastCheckinsNeverMovesBack() {
+        Consumer consumer = consumerCurator.create(new Consumer("first", "testUser", owner, ct));
+        Date updated = consumer.getUpdated();
+        Date later = new Date(updated.getTime() + 60000L);
+        Date earlier = new Date(updated.getTime() - 60000L);
+
+        consumerCurator.updateLastCheckins(Collections.singletonMap(consumer.getId(), later));
+        consumerCurator.updateLastCheckins(Collections.singletonMap(consumer.getId(), earlier));
+
+        consumerCurator.refresh(consumer);
+        assertEquals(later.getTime(), consumer.getLastCheckin().getTime());
+        assertEquals(later.getTime(), consumer.getUpdated().getTime());
+    }
+
     @Test
     public void updatelastCheckin() throws Exception {
         Date date = new Date();
@@ -16,7 +16,11 @@ package org.candlepin.model;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
 import org.candlepin.test.DatabaseTestFixture;
@@ -28,7 +32,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -230,4 +237,132 @@ public class CuratorPaginationTest extends DatabaseTestFixture {
         List<Owner> results = ownerCurator.takeSubList(req, ownerList);
         assertEquals(0, results.size());
     }
+
+    @Test
+    public void testSeekingWalksAllResults() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("key");
+        pageRequest.setOrder(PageRequest.Order.ASCENDING);
+        pageRequest.setPerPage(4);
+        pageRequest.setCursor("");
+
+        List<String> keys = new ArrayList<String>();
+        int pages = 0;
+        Page<List<Owner>> p;
+        do {
+            p = ownerCurator.listAll(pageRequest);
+            assertNull(p.getMaxRecords());
+            for (Owner o : p.getPageData()) {
+                keys.add(o.getKey());
+            }
+            pages++;
+
+            pageRequest = copyWithCursor(pageRequest, p.getNextCursor());
+        } while (p.getNextCursor() != null);
+
+        assertEquals(3, pages);
+        assertEquals(Arrays.asList("0", "1", "2", "3", "4", "5", "6", "7", "8", "9"), keys);
+    }
+
+    @Test
+    public void testSeekingWithCriteriaDescending() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("key");
+        pageRequest.setOrder(PageRequest.Order.DESCENDING);
+        pageRequest.setPerPage(2);
+        pageRequest.setCursor("");
+
+        Criteria criteria = session.createCriteria(Owner.class).
+            add(Restrictions.gt("key", "5"));
+
+        Page<List<Owner>> p = ownerCurator.listByCriteria(criteria, pageRequest);
+        assertEquals(2, p.getPageData().size());
+        assertEquals("9", p.getPageData().get(0).getKey());
+        assertEquals("8", p.getPageData().get(1).getKey());
+        assertNotNull(p.getNextCursor());
+
+        criteria = session.createCriteria(Owner.class).
+            add(Restrictions.gt("key", "5"));
+        p = ownerCurator.listByCriteria(criteria, copyWithCursor(pageRequest, p.getNextCursor()));
+        assertEquals(2, p.getPageData().size());
+        assertEquals("7", p.getPageData().get(0).getKey());
+        assertEquals("6", p.getPageData().get(1).getKey());
+        assertNull(p.getNextCursor());
+    }
+
+    @Test
+    public void testSeekingBreaksTiesById() {
+        for (int i = 0; i < 3; i++) {
+            Owner o = new Owner();
+            o.setDisplayName("same");
+            o.setKey("same-" + i);
+            ownerCurator.create(o);
+        }
+
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("displayName");
+        pageRequest.setOrder(PageRequest.Order.ASCENDING);
+        pageRequest.setPerPage(1);
+        pageRequest.setCursor("");
+
+        Set<String> seen = new HashSet<String>();
+        Page<List<Owner>> p;
+        do {
+            Criteria criteria = session.createCriteria(Owner.class).
+                add(Restrictions.eq("displayName", "same"));
+            p = ownerCurator.listByCriteria(criteria, pageRequest);
+            for (Owner o : p.getPageData()) {
+                assertTrue(seen.add(o.getKey()));
+            }
+            pageRequest = copyWithCursor(pageRequest, p.getNextCursor());
+        } while (p.getNextCursor() != null);
+
+        assertEquals(3, seen.size());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSeekingWithBadCursor() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPerPage(2);
+        pageRequest.setCursor("not a cursor");
+
+        ownerCurator.listAll(pageRequest);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSeekingWithUnknownSortBy() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("bogus");
+        pageRequest.setPerPage(2);
+        pageRequest.setCursor("");
+
+        ownerCurator.listAll(pageRequest);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSeekingRejectedWhenPostFiltering() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPerPage(2);
+        pageRequest.setCursor("");
+
+        ownerCurator.listAll(pageRequest, true);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSeekingRejectedWhenPostFilteringByCriteria() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPerPage(2);
+        pageRequest.setCursor("");
+
+        ownerCurator.listByCriteria(session.createCriteria(Owner.class), pageRequest, true);
+    }
+
+    private PageRequest copyWithCursor(PageRequest pageRequest, String cursor) {
+        PageRequest copy = new PageRequest();
+        copy.setSortBy(pageRequest.getSortBy());
+        copy.setOrder(pageRequest.getOrder());
+        copy.setPerPage(pageRequest.getPerPage());
+        copy.setCursor(cursor);
+        return copy;
+    }
 }
@@ -25,10 +25,10 @@ import org.candlepin.test.TestUtil;
 
 import org.hamcrest.Matchers;
 import org.hibernate.Hibernate;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
@@ -104,8 +104,9 @@ public class EntitlementCuratorTest extends DatabaseTestFixture {
             consumerCurator.flush();
         }
         catch (Exception ex) {
-            assertEquals(ex.getCause().getCause().getClass(),
-                SQLIntegrityConstraintViolationException.class);
+            // Under JDBC batching the driver reports a BatchUpdateException rather than
+            // the integrity violation itself, so check what Hibernate made of it.
+            assertEquals(ConstraintViolationException.class, ex.getCause().getClass());
         }
         finally {
             rollbackTransaction();
@@ -559,6 +560,41 @@ public class EntitlementCuratorTest extends DatabaseTestFixture {
         assertEquals(2, ents.size());
     }
 
+    @Test
+    public void listIdsByEnvironmentAndContent() {
+        Content promoted = new Content(owner, "promoted", "promoted", "promoted",
+            "yum", "RH", "http://", "http://", "x86_64");
+        contentCurator.create(promoted);
+        Content other = new Content(owner, "other", "other", "other",
+            "yum", "RH", "http://", "http://", "x86_64");
+        contentCurator.create(other);
+
+        // Through the pool's own product
+        testProduct.addContent(promoted);
+        productCurator.merge(testProduct);
+
+        // Through a provided product
+        providedProduct1.addContent(promoted);
+        productCurator.merge(providedProduct1);
+        Pool providing = createPool(owner, parentProduct, 1L, dateSource.currentDate(), futureDate);
+        providing.addProvidedProduct(providedProduct1);
+        poolCurator.create(providing);
+        Entitlement viaProvided = entitlementCurator.create(createEntitlement(owner, consumer,
+            providing, createEntitlementCertificate("key", "certificate")));
+
+        // Not in the environment
+        Consumer outside = createConsumer(owner);
+        consumerCurator.create(outside);
+        entitlementCurator.create(createEntitlement(owner, outside, firstEntitlement.getPool(),
+            createEntitlementCertificate("key", "certificate")));
+
+        assertEquals(new HashSet<String>(Arrays.asList(firstEntitlement.getId(), viaProvided.getId())),
+            new HashSet<String>(entitlementCurator.listIdsByEnvironmentAndContent(environment,
+            Arrays.asList("promoted", "unknown"))));
+        assertTrue(entitlementCurator.listIdsByEnvironmentAndContent(environment,
+            Arrays.asList("other")).isEmpty());
+    }
+
     private PageRequest createPageRequest() {
         PageRequest req = new PageRequest();
         req.setPage(1);
@@ -987,4 +1023,47 @@ public class EntitlementCuratorTest extends DatabaseTestFixture {
         Entitlement ent = createEntitlement(owner, consumer, pool, cert);
         return entitlementCurator.create(ent);
     }
+
+    private Entitlement createDirtyEntitlement(Date lastCheckin) {
+        Consumer c = createConsumer(owner);
+        c.setLastCheckin(lastCheckin);
+        consumerCurator.create(c);
+
+        Pool pool = createPool(owner, testProduct, 1L,
+            dateSource.currentDate(), createDate(2020, 1, 1));
+        poolCurator.create(pool);
+
+        Entitlement ent = createEntitlement(owner, c, pool,
+            createEntitlementCertificate("key", "certificate"));
+        ent.setDirty(true);
+        return entitlementCurator.create(ent);
+    }
+
+    @Test
+    public void listDirtyIdsRecentlyCheckedInFirst() {
+        Entitlement stale = createDirtyEntitlement(createDate(2014, 1, 1));
+        Entitlement never = createDirtyEntitlement(null);
+        Entitlement recent = createDirtyEntitlement(createDate(2015, 1, 1));
+
+        assertEquals(Arrays.asList(recent.getId(), stale.getId(), never.getId()),
+            entitlementCurator.listDirtyIds(10));
+        assertEquals(Arrays.asList(recent.getId()), entitlementCurator.listDirtyIds(1));
+    }
+
+    @Test
+    public void lockAndLoadBatchLoadsEntitlements() {
+        Entitlement ent = createDirtyEntitlement(null);
+        Entitlement other = createDirtyEntitlement(null);
+        entitlementCurator.clear();
+
+        beginTransaction();
+        List<Entitlement> locked = entitlementCurator.lockAndLoadBatch(
+            Arrays.asList(other.getId(), ent.getId()));
+        commitTransaction();
+
+        assertEquals(2, locked.size());
+        for (Entitlement e : locked) {
+            assertTrue(e.getDirty());
+        }
+    }
 }
@@ -27,6 +27,8 @@ import org.candlepin.pinsetter.core.PinsetterKernel;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 import org.candlepin.pinsetter.tasks.HealEntireOrgJob;
+import org.candlepin.pinsetter.tasks.HypervisorUpdateJob;
+import org.candlepin.pinsetter.tasks.KingpinJob;
 import org.candlepin.pinsetter.tasks.RefreshPoolsJob;
 import org.candlepin.test.DatabaseTestFixture;
 import org.candlepin.test.TestUtil;
@@ -38,6 +40,7 @@ import org.quartz.Job;
 import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -112,6 +115,22 @@ public class JobCuratorTest extends DatabaseTestFixture {
         assertEquals(0, this.curator.listAll().size());
     }
 
+    @Test
+    public void updateWaitingStateMovesOnlyWaitingJobs() {
+        JobStatus waiting = newJobStatus().state(JobState.WAITING).create();
+        JobStatus created = newJobStatus().state(JobState.CREATED).create();
+
+        assertTrue(this.curator.updateWaitingState(waiting.getId(), JobState.RUNNING));
+        // a second claim finds it taken
+        assertFalse(this.curator.updateWaitingState(waiting.getId(), JobState.CANCELED));
+        assertFalse(this.curator.updateWaitingState(created.getId(), JobState.RUNNING));
+
+        this.curator.refresh(waiting);
+        this.curator.refresh(created);
+        assertEquals(JobState.RUNNING, waiting.getState());
+        assertEquals(JobState.CREATED, created.getState());
+    }
+
     @Test
     public void findByPrincipalName() {
         JobStatus job = newJobStatus().principalName("donald").owner("ducks").create();
@@ -193,6 +212,48 @@ public class JobCuratorTest extends DatabaseTestFixture {
         assertEquals(1, result);
     }
 
+    @Test
+    public void findWaitingByClassAndTarget() {
+        JobStatus waiting = newJobStatus().state(JobStatus.JobState.WAITING)
+            .jobClass(HypervisorUpdateJob.class)
+            .owner("my_owner").create();
+        newJobStatus().state(JobStatus.JobState.CREATED)
+            .jobClass(HypervisorUpdateJob.class)
+            .owner("my_owner").create();
+        newJobStatus().state(JobStatus.JobState.WAITING)
+            .jobClass(HypervisorUpdateJob.class)
+            .owner("some_owner").create();
+        newJobStatus().state(JobStatus.JobState.WAITING)
+            .jobClass(RefreshPoolsJob.class)
+            .owner("my_owner").create();
+
+        List<JobStatus> result = curator.findWaitingByClassAndTarget("my_owner",
+            HypervisorUpdateJob.class);
+        assertEquals(1, result.size());
+        assertEquals(waiting, result.get(0));
+    }
+
+    @Test
+    public void findNumActiveByClasses() {
+        newJobStatus().state(JobStatus.JobState.CREATED)
+            .jobClass(RefreshPoolsJob.class).create();
+        newJobStatus().state(JobStatus.JobState.RUNNING)
+            .jobClass(HealEntireOrgJob.class).create();
+        newJobStatus().state(JobStatus.JobState.WAITING)
+            .jobClass(RefreshPoolsJob.class).create();
+        newJobStatus().state(JobStatus.JobState.FINISHED)
+            .jobClass(HealEntireOrgJob.class).create();
+        newJobStatus().state(JobStatus.JobState.RUNNING)
+            .jobClass(HypervisorUpdateJob.class).create();
+
+        List<Class<? extends KingpinJob>> batch = new ArrayList<Class<? extends KingpinJob>>();
+        batch.add(RefreshPoolsJob.class);
+        batch.add(HealEntireOrgJob.class);
+        assertEquals(2, curator.findNumActiveByClasses(batch));
+        assertEquals(0, curator.findNumActiveByClasses(
+            new ArrayList<Class<? extends KingpinJob>>()));
+    }
+
     @Test
     public void getLatestByClassAndOwner() {
         newJobStatus().state(JobStatus.JobState.WAITING)
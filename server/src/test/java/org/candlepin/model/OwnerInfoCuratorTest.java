@@ -15,6 +15,7 @@
 package org.candlepin.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.UserPrincipal;
@@ -25,11 +26,18 @@ import org.candlepin.test.DatabaseTestFixture;
 import org.candlepin.test.TestUtil;
 import org.candlepin.util.Util;
 
+import org.hibernate.Criteria;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -782,4 +790,233 @@ public class OwnerInfoCuratorTest extends DatabaseTestFixture {
         return u;
     }
 
+
+    @Test
+    public void countsMatchPerTypeAndFamilyQueries() {
+        ConsumerType system = consumerTypeCurator.lookupByLabel("system");
+        ConsumerType domain = consumerTypeCurator.lookupByLabel("domain");
+        ConsumerType hypervisor = consumerTypeCurator.create(new ConsumerType("hypervisor"));
+        Consumer[] consumers = new Consumer[] {
+            consumerCurator.create(new Consumer("sys", "user", owner, system)),
+            consumerCurator.create(new Consumer("dom", "user", owner, domain)),
+            consumerCurator.create(new Consumer("hyp", "user", owner, hypervisor))
+        };
+
+        // requires_consumer_type: exact, case, override, multi-valued, not a list
+        poolWith(consumers, 1).setAttribute("requires_consumer_type", "system");
+        poolWith(consumers, 2).getProduct().setAttribute("requires_consumer_type", "DOMAIN");
+        Pool overridden = poolWith(consumers, 3);
+        overridden.setAttribute("requires_consumer_type", "domain");
+        overridden.getProduct().setAttribute("requires_consumer_type", "system");
+        Pool multi = poolWith(consumers, 4);
+        multi.addAttribute(new PoolAttribute("requires_consumer_type", "system"));
+        multi.addAttribute(new PoolAttribute("requires_consumer_type", "hypervisor"));
+        poolWith(consumers, 5).getProduct().setAttribute("requires_consumer_type", "system,domain");
+
+        // enabled_consumer_types: lists, spaces, stray commas, empty override, near misses
+        poolWith(consumers, 6).setAttribute("enabled_consumer_types", "system,domain");
+        poolWith(consumers, 7).setAttribute("enabled_consumer_types", " domain, hypervisor");
+        poolWith(consumers, 8).getProduct().setAttribute("enabled_consumer_types", "hypervisor,");
+        Pool emptied = poolWith(consumers, 9);
+        emptied.setAttribute("enabled_consumer_types", "");
+        emptied.getProduct().setAttribute("enabled_consumer_types", "domain");
+        poolWith(consumers, 10).setAttribute("enabled_consumer_types", ",uebercert");
+        poolWith(consumers, 11).setAttribute("enabled_consumer_types", "xsystem,domainx");
+        Pool enabledTwice = poolWith(consumers, 12);
+        enabledTwice.addAttribute(new PoolAttribute("enabled_consumer_types", "system"));
+        enabledTwice.addAttribute(new PoolAttribute("enabled_consumer_types", "Hypervisor,domain"));
+
+        // product_family and virt_only: override, case, multi-valued, unused family
+        Pool family = poolWith(consumers, 13);
+        family.setAttribute("product_family", "Fam A");
+        family.getProduct().setAttribute("product_family", "Fam B");
+        poolWith(consumers, 14).getProduct().setAttribute("product_family", "Fam B");
+        Pool lower = poolWith(consumers, 15);
+        lower.setAttribute("product_family", "fam b");
+        lower.setAttribute("virt_only", "true");
+        Pool families = poolWith(consumers, 16);
+        families.addAttribute(new PoolAttribute("product_family", "Fam A"));
+        families.addAttribute(new PoolAttribute("product_family", "Fam C"));
+        families.getProduct().setAttribute("virt_only", "true");
+        Pool notVirt = poolWith(consumers, 17);
+        notVirt.getProduct().setAttribute("product_family", "Fam C");
+        notVirt.getProduct().setAttribute("virt_only", "true");
+        notVirt.setAttribute("virt_only", "false");
+        poolWith(consumers, 18).setAttribute("virt_only", "True");
+        poolWith(consumers, 0).setAttribute("product_family", "Fam D");
+
+        // Pools outside their validity period count for nothing
+        Product product = TestUtil.createProduct(owner);
+        productCurator.create(product);
+        Pool expired = createPool(owner, product, 10L, Util.addDaysToDt(-10), Util.yesterday());
+        expired.setAttribute("requires_consumer_type", "system");
+        expired.setAttribute("product_family", "Fam A");
+        poolCurator.merge(expired);
+
+        OwnerInfo expected = lookupByOwnerPerType(owner);
+        OwnerInfo info = ownerInfoCurator.lookupByOwner(owner);
+
+        assertEquals(expected.getConsumerCounts(), info.getConsumerCounts());
+        assertEquals(expected.getEntitlementsConsumedByType(), info.getEntitlementsConsumedByType());
+        assertEquals(expected.getConsumerTypeCountByPool(), info.getConsumerTypeCountByPool());
+        assertEquals(expected.getEnabledConsumerTypeCountByPool(),
+            info.getEnabledConsumerTypeCountByPool());
+        assertEquals(expected.getEntitlementsConsumedByFamily(),
+            info.getEntitlementsConsumedByFamily());
+
+        // the fixture has to actually hit the interesting cases
+        assertEquals(1, (int) info.getConsumerTypeCountByPool().get("hypervisor"));
+        assertEquals(2, (int) info.getConsumerTypeCountByPool().get("domain"));
+        assertEquals(2, (int) info.getEnabledConsumerTypeCountByPool().get("hypervisor"));
+        assertTrue(info.getEntitlementsConsumedByFamily().containsKey("fam b"));
+    }
+
+    private Pool poolWith(Consumer[] consumers, int quantity) {
+        Product product = TestUtil.createProduct(owner);
+        productCurator.create(product);
+        Pool pool = createPool(owner, product, 100L, Util.yesterday(), Util.tomorrow());
+
+        if (quantity > 0) {
+            Entitlement entitlement = createEntitlement(owner, consumers[quantity % consumers.length],
+                pool, createEntitlementCertificate("fake", "fake"));
+            entitlement.setQuantity(quantity);
+            entitlementCurator.create(entitlement);
+            pool.getEntitlements().add(entitlement);
+        }
+
+        return pool;
+    }
+
+    /*
+     * The per type and per family queries lookupByOwner ran before it built the info
+     * from a few grouped queries, kept to check the two agree.
+     */
+    private OwnerInfo lookupByOwnerPerType(Owner owner) {
+        OwnerInfo info = new OwnerInfo();
+        Date now = new Date();
+
+        for (ConsumerType type : consumerTypeCurator.listAll()) {
+            info.addTypeTotal(type, consumerCurator.getConsumerCount(owner, type),
+                consumerCurator.getConsumerEntitlementCount(owner, type));
+
+            info.addToConsumerTypeCountByPool(type, countActivePools(owner, now,
+                "requires_consumer_type", type.getLabel()));
+            int count = countActivePools(owner, now, "enabled_consumer_types",
+                type.getLabel() + ",*", "*," + type.getLabel() + ",*",
+                "*," + type.getLabel(), type.getLabel());
+            if (count > 0) {
+                info.addToEnabledConsumerTypeCountByPool(type, count);
+            }
+        }
+
+        info.addDefaultEnabledConsumerTypeCount(countActivePools(owner, now, null));
+
+        Set<String> families = new HashSet<String>();
+        families.addAll(listValues(owner, now, "select distinct attr.value from Pool p " +
+            "join p.attributes as attr " +
+            "where p.owner = :owner " +
+            "and p.startDate < :date and p.endDate > :date " +
+            "and attr.name = 'product_family'"));
+        families.addAll(listValues(owner, now, "select distinct prod.value from Pool p " +
+            "join p.product.attributes as prod " +
+            "where p.owner = :owner " +
+            "and p.startDate < :date and p.endDate > :date " +
+            "and prod.name = 'product_family' " +
+            "and p not in (select distinct pa.pool from PoolAttribute pa" +
+            "              where pa.name = 'product_family')"));
+
+        for (String family : families) {
+            int virtualCount = sumFamily(owner, now, family, true);
+            int totalCount = sumFamily(owner, now, family, false);
+            info.addToEntitlementsConsumedByFamily(family, totalCount - virtualCount, virtualCount);
+        }
+
+        int virtTotalEntitlements = sumFamily(owner, now, null, true);
+        int totalEntitlements = sumFamily(owner, now, null, false);
+        info.addDefaultEntitlementsConsumedByFamily(totalEntitlements - virtTotalEntitlements,
+            virtTotalEntitlements);
+
+        return info;
+    }
+
+    private int countActivePools(Owner owner, Date date, String attribute, String... values) {
+        Criteria criteria = poolCurator.createSecureCriteria()
+            .add(Restrictions.eq("owner", owner))
+            .add(Restrictions.le("startDate", date))
+            .add(Restrictions.ge("endDate", date))
+            .setProjection(Projections.countDistinct("id"));
+
+        if (attribute != null) {
+            PoolFilterBuilder filterBuilder = new PoolFilterBuilder();
+            for (String value : values) {
+                filterBuilder.addAttributeFilter(attribute, value);
+            }
+            filterBuilder.applyTo(criteria);
+        }
+
+        return ((Long) criteria.uniqueResult()).intValue();
+    }
+
+    private Set<String> listValues(Owner owner, Date date, String hql) {
+        Set<String> values = new HashSet<String>();
+        Iterator<?> iter = ((Session) entityManager().getDelegate()).createQuery(hql)
+            .setEntity("owner", owner)
+            .setParameter("date", date)
+            .iterate();
+        while (iter.hasNext()) {
+            values.add((String) iter.next());
+        }
+
+        return values;
+    }
+
+    private int sumFamily(Owner owner, Date date, String family, boolean virt) {
+        String queryStr = "select sum(ent.quantity) from Pool p" +
+            "              join p.entitlements as ent " +
+            "              where p.owner = :owner " +
+            "              and p.startDate < :date and p.endDate > :date ";
+
+        if (family != null) {
+            queryStr +=
+                "and (p in (select p from Pool p join p.attributes as attr " +
+                "           where p.owner = :owner " +
+                "           and attr.name = 'product_family' and attr.value = :family)" +
+                "     or (p in (select p from Pool p join p.product.attributes as prod " +
+                "              where p.owner = :owner " +
+                "              and prod.name = 'product_family' " +
+                "              and prod.value = :family) " +
+                "         and p not in (select p from Pool p join p.attributes as attr " +
+                "                       where p.owner = :owner " +
+                "                       and attr.name = 'product_family')" +
+                "        )" +
+                ")";
+        }
+
+        if (virt) {
+            queryStr += "and (p in (select p from Pool p join p.attributes as attr " +
+                "           where attr.name = 'virt_only' " +
+                "           and attr.value = 'true') " +
+                "     or (p in (select p from Pool p " +
+                "               join p.product.attributes as prod " +
+                "               where p.owner = :owner " +
+                "               and prod.name = 'virt_only' " +
+                "               and prod.value = 'true')" +
+                "         and p not in (select p from Pool p " +
+                "                       join p.attributes as attr " +
+                "                       where p.owner = :owner " +
+                "                       and attr.name = 'virt_only')" +
+                "     )" +
+                ")";
+        }
+
+        Query query = ((Session) entityManager().getDelegate()).createQuery(queryStr)
+            .setEntity("owner", owner)
+            .setParameter("date", date);
+        if (family != null) {
+            query.setParameter("family", family);
+        }
+
+        Long res = (Long) query.uniqueResult();
+        return res == null ? 0 : res.intValue();
+    }
 }
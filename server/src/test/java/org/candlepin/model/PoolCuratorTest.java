@@ -114,6 +114,30 @@ public class PoolCuratorTest extends DatabaseTestFixture {
         assertEquals(1, results.size());
     }
 
+    @Test
+    public void listExpiredPoolsByPage() {
+        Date start = TestUtil.createDate(2000, 3, 2);
+        Pool first = createPool(owner, product, 100L, start, TestUtil.createDate(2003, 3, 2));
+        Pool second = createPool(owner, product, 100L, start, TestUtil.createDate(2004, 3, 2));
+        Pool third = createPool(owner, product, 100L, start, TestUtil.createDate(2004, 3, 2));
+        Pool active = createPool(owner, product, 100L, start, TestUtil.createDate(2050, 3, 2));
+        for (Pool pool : new Pool[] {third, active, second, first}) {
+            poolCurator.create(pool);
+        }
+        Pool[] sameDay = second.getId().compareTo(third.getId()) < 0 ?
+            new Pool[] {second, third} : new Pool[] {third, second};
+
+        Date now = new Date();
+        List<Pool> page = poolCurator.listExpiredPools(now, null, null, 2);
+        assertEquals(2, page.size());
+        assertEquals(first, page.get(0));
+        assertEquals(sameDay[0], page.get(1));
+
+        page = poolCurator.listExpiredPools(now, page.get(1).getEndDate(), page.get(1).getId(), 2);
+        assertEquals(1, page.size());
+        assertEquals(sameDay[1], page.get(0));
+    }
+
     @Test
     public void testAvailablePoolsDoesNotIncludeUeberPool() throws Exception {
         Pool pool = createPool(owner, product, 100L,
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.core;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.JobCurator;
+import org.candlepin.pinsetter.tasks.EntitlerJob;
+import org.candlepin.pinsetter.tasks.HealEntireOrgJob;
+import org.candlepin.pinsetter.tasks.JobCleaner;
+import org.candlepin.pinsetter.tasks.KingpinJob;
+import org.candlepin.pinsetter.tasks.RefreshPoolsJob;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.quartz.Trigger;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JobLanesTest
+ */
+public class JobLanesTest {
+    private JobCurator jobCurator;
+    private Map<String, String> props;
+
+    @Before
+    public void init() {
+        jobCurator = mock(JobCurator.class);
+        props = new HashMap<String, String>();
+        props.put(ConfigProperties.PINSETTER_LANES, "interactive,batch");
+        props.put("pinsetter.lane.interactive.jobs", EntitlerJob.class.getName());
+        props.put("pinsetter.lane.interactive.priority", "7");
+        props.put("pinsetter.lane.batch.jobs", RefreshPoolsJob.class.getName() + "," +
+            HealEntireOrgJob.class.getName() + ",org.candlepin.NoSuchJob");
+        props.put("pinsetter.lane.batch.priority", "3");
+        props.put("pinsetter.lane.batch.max_running", "2");
+    }
+
+    private JobLanes lanes() {
+        return new JobLanes(new MapConfiguration(props), jobCurator);
+    }
+
+    @Test
+    public void classesGetTheirLanePriority() {
+        JobLanes lanes = lanes();
+        assertEquals("interactive", lanes.getLane(EntitlerJob.class));
+        assertEquals(7, lanes.getPriority(EntitlerJob.class));
+        assertEquals("batch", lanes.getLane(HealEntireOrgJob.class));
+        assertEquals(3, lanes.getPriority(HealEntireOrgJob.class));
+    }
+
+    @Test
+    public void unlistedClassesUseDefaults() {
+        JobLanes lanes = lanes();
+        assertNull(lanes.getLane(JobCleaner.class));
+        assertEquals(Trigger.DEFAULT_PRIORITY, lanes.getPriority(JobCleaner.class));
+        assertTrue(lanes.hasCapacity(JobCleaner.class));
+        verify(jobCurator, never()).findNumActiveByClasses(any(Collection.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void laneLimitCountsAllItsClasses() {
+        when(jobCurator.findNumActiveByClasses(any(Collection.class))).thenReturn(1L, 2L);
+        JobLanes lanes = lanes();
+        assertTrue(lanes.hasCapacity(RefreshPoolsJob.class));
+        assertFalse(lanes.hasCapacity(HealEntireOrgJob.class));
+
+        ArgumentCaptor<Collection> counted = ArgumentCaptor.forClass(Collection.class);
+        verify(jobCurator, times(2)).findNumActiveByClasses(counted.capture());
+        Collection<Class<? extends KingpinJob>> classes = counted.getValue();
+        assertEquals(2, classes.size());
+        assertTrue(classes.contains(RefreshPoolsJob.class));
+        assertTrue(classes.contains(HealEntireOrgJob.class));
+    }
+
+    @Test
+    public void unlimitedLaneIsNotCounted() {
+        assertTrue(lanes().hasCapacity(EntitlerJob.class));
+        verify(jobCurator, never()).findNumActiveByClasses(any(Collection.class));
+    }
+
+    @Test
+    public void classLimitAppliesOutsideLanes() {
+        props.put("pinsetter." + JobCleaner.class.getName() + ".max_running", "1");
+        when(jobCurator.findNumActiveByClasses(any(Collection.class))).thenReturn(1L);
+        assertFalse(lanes().hasCapacity(JobCleaner.class));
+    }
+}
@@ -21,6 +21,7 @@ import static org.quartz.JobKey.*;
 
 import org.candlepin.auth.Principal;
 import org.candlepin.model.JobCurator;
+import org.candlepin.model.JobStatusCache;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 
@@ -42,13 +43,15 @@ public class PinsetterJobListenerTest {
     private PinsetterJobListener listener;
     private JobCurator jcurator;
     private UnitOfWork unitOfWork;
+    private JobStatusCache statusCache;
     private JobExecutionContext ctx;
 
     @Before
     public void init() {
         jcurator = mock(JobCurator.class);
         unitOfWork = mock(UnitOfWork.class);
-        listener = new PinsetterJobListener(jcurator, unitOfWork);
+        statusCache = mock(JobStatusCache.class);
+        listener = new PinsetterJobListener(jcurator, unitOfWork, statusCache);
         ctx = mock(JobExecutionContext.class);
     }
 
@@ -97,6 +100,7 @@ public class PinsetterJobListenerTest {
 
         verify(status).update(eq(ctx));
         verify(jcurator).merge(eq(status));
+        verify(statusCache).finished(eq(status));
     }
 
     @Test
@@ -170,6 +174,25 @@ public class PinsetterJobListenerTest {
         verify(jcurator).merge(eq(status));
     }
 
+    @Test
+    public void refiredFailureIsNotCached() {
+        JobExecutionException e = new JobExecutionException("try again", true);
+        JobDetail detail = mock(JobDetail.class);
+        JobStatus status = mock(JobStatus.class);
+
+        when(detail.getKey()).thenReturn(jobKey("foo"));
+        when(ctx.getJobDetail()).thenReturn(detail);
+        when(jcurator.find(eq("foo"))).thenReturn(status);
+        when(status.getId()).thenReturn("foo");
+
+        listener.jobWasExecuted(ctx, e);
+
+        verify(status).setState(eq(JobState.FAILED));
+        verify(jcurator).merge(eq(status));
+        verify(statusCache).remove(eq("foo"));
+        verify(statusCache, never()).finished(any(JobStatus.class));
+    }
+
     @Test
     public void bug863518WasExecuted() {
         JobDetail detail = mock(JobDetail.class);
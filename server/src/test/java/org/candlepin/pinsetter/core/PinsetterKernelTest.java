@@ -18,6 +18,7 @@ import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.quartz.CronScheduleBuilder.*;
+import static org.quartz.JobBuilder.*;
 import static org.quartz.JobKey.*;
 import static org.quartz.TriggerBuilder.*;
 import static org.quartz.impl.matchers.GroupMatcher.*;
@@ -54,6 +55,7 @@ import org.quartz.spi.JobFactory;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -73,6 +75,7 @@ public class PinsetterKernelTest {
     private Configuration config;
     private Scheduler sched;
     private ListenerManager lm;
+    private JobLanes lanes;
 
     @Before
     public void init() throws SchedulerException {
@@ -94,6 +97,7 @@ public class PinsetterKernelTest {
                     put(ConfigProperties.TASKS, ImportRecordJob.class.getName());
                 }
             });
+        lanes = new JobLanes(config, jcurator);
         when(sfactory.getScheduler()).thenReturn(sched);
         when(sched.getListenerManager()).thenReturn(lm);
     }
@@ -101,18 +105,18 @@ public class PinsetterKernelTest {
     @Test(expected = InstantiationException.class)
     public void blowup() throws Exception {
         when(sfactory.getScheduler()).thenThrow(new SchedulerException());
-        pk = new PinsetterKernel(config, jfactory, null, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, null, jcurator, sfactory, lanes);
     }
 
     @Test
     public void skipListener() throws Exception {
-        pk = new PinsetterKernel(config, jfactory, null, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, null, jcurator, sfactory, lanes);
         verify(sched).setJobFactory(eq(jfactory));
         verify(lm, never()).addJobListener(eq(jlistener));
     }
     @Test
     public void ctor() throws Exception {
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         verify(sched).setJobFactory(eq(jfactory));
         verify(lm).addJobListener(eq(jlistener));
     }
@@ -120,7 +124,7 @@ public class PinsetterKernelTest {
     @SuppressWarnings("serial")
     @Test
     public void configure() throws Exception {
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.startup();
         verify(sched).start();
         verify(jcurator, atMost(2)).create(any(JobStatus.class));
@@ -137,7 +141,7 @@ public class PinsetterKernelTest {
                     put(ConfigProperties.ENABLE_PINSETTER, "false");
                 }
             });
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.startup();
         verify(sched).start();
         ArgumentCaptor<JobStatus> arg = ArgumentCaptor.forClass(JobStatus.class);
@@ -149,7 +153,7 @@ public class PinsetterKernelTest {
 
     @Test
     public void handleExistingJobStatus() throws Exception {
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         JobStatus status = mock(JobStatus.class);
         when(jcurator.find(startsWith(
             Util.getClassName(JobCleaner.class)))).thenReturn(status);
@@ -177,7 +181,7 @@ public class PinsetterKernelTest {
 
         when(sched.getJobKeys(eq(jobGroupEquals(crongrp)))).thenReturn(cronSet);
         when(sched.getJobKeys(eq(jobGroupEquals(singlegrp)))).thenReturn(asyncSet);
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.shutdown();
 
         verify(sched, atMost(1)).standby();
@@ -192,7 +196,7 @@ public class PinsetterKernelTest {
     public void noJobsDuringShutdown() throws Exception {
         Set<JobKey> jobs = new HashSet<JobKey>();
         when(sched.getJobKeys(jobGroupEquals(anyString()))).thenReturn(jobs);
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.shutdown();
 
         verify(sched, atMost(1)).standby();
@@ -203,14 +207,14 @@ public class PinsetterKernelTest {
     @Test(expected = PinsetterException.class)
     public void handleFailedShutdown() throws Exception {
         doThrow(new SchedulerException()).when(sched).standby();
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.shutdown();
         verify(sched, never()).shutdown();
     }
 
     @Test
     public void scheduleByString() throws Exception {
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.scheduleJob(TestJob.class, "testjob", "*/1 * * * * ?");
         ArgumentCaptor<Trigger> arg = ArgumentCaptor.forClass(Trigger.class);
         verify(jcurator, atMost(1)).create(any(JobStatus.class));
@@ -244,7 +248,7 @@ public class PinsetterKernelTest {
 
         doReturn(JobCleaner.class).when(jobDetail).getJobClass();
 
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.startup();
         verify(sched).deleteJob(key);
         verify(jcurator).create(any(JobStatus.class));
@@ -277,7 +281,7 @@ public class PinsetterKernelTest {
 
         doReturn(JobCleaner.class).when(jobDetail).getJobClass();
 
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.startup();
         verify(jcurator).deleteJobNoStatusReturn(eq(deletedJobId));
         verify(sched, atLeastOnce()).deleteJob(deletedKey);
@@ -311,7 +315,7 @@ public class PinsetterKernelTest {
 
         doReturn(JobCleaner.class).when(jobDetail).getJobClass();
 
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.startup();
         verify(sched, times(2)).deleteJob(any(JobKey.class));
         verify(jcurator).create(any(JobStatus.class));
@@ -319,13 +323,13 @@ public class PinsetterKernelTest {
 
     @Test(expected = PinsetterException.class)
     public void handleParseException() throws Exception {
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.scheduleJob(TestJob.class, "testjob", "how bout them apples");
     }
 
     @Test
     public void scheduleByTrigger() throws Exception {
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         Trigger trigger = newTrigger()
             .withIdentity("job", "grp")
             .withSchedule(cronSchedule("*/1 * * * * ?"))
@@ -347,7 +351,7 @@ public class PinsetterKernelTest {
 
         doThrow(new SchedulerException()).when(sched).scheduleJob(
             any(JobDetail.class), eq(trigger));
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.scheduleJob(TestJob.class, "testjob", trigger);
         verify(jcurator, atMost(1)).create(any(JobStatus.class));
     }
@@ -360,7 +364,7 @@ public class PinsetterKernelTest {
         jobs.add(jobKey("fakejob2"));
 
         when(sched.getJobKeys(eq(jobGroupEquals(singlegrp)))).thenReturn(jobs);
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.cancelJob("fakejob1", singlegrp);
         verify(sched, atMost(1)).deleteJob(eq(jobKey("fakejob1", singlegrp)));
     }
@@ -377,7 +381,7 @@ public class PinsetterKernelTest {
         when(detail.getKey()).thenReturn(jobKey);
         when(detail.getJobDataMap()).thenReturn(map);
         Mockito.doReturn(TestJob.class).when(detail).getJobClass();
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.scheduleSingleJob(detail);
         verify(detail).setGroup(eq(singlegrp));
         verify(lm).addJobListenerMatcher(PinsetterJobListener.LISTENER_NAME,
@@ -385,23 +389,93 @@ public class PinsetterKernelTest {
         verify(sched).scheduleJob(eq(detail), any(Trigger.class));
     }
 
+    @Test
+    public void singleJobWaitsWhenLaneIsFull() throws Exception {
+        JobDataMap map = new JobDataMap();
+        map.put(PinsetterJobListener.PRINCIPAL_KEY, mock(Principal.class));
+        map.put(JobStatus.TARGET_TYPE, JobStatus.TargetType.OWNER);
+        map.put(JobStatus.TARGET_ID, "admin");
+        JobDetailImpl detail = mock(JobDetailImpl.class);
+        when(detail.getKey()).thenReturn(jobKey("name", "group"));
+        when(detail.getJobDataMap()).thenReturn(map);
+        when(detail.isDurable()).thenReturn(true);
+        Mockito.doReturn(TestJob.class).when(detail).getJobClass();
+        JobLanes full = mock(JobLanes.class);
+        when(full.hasCapacity(TestJob.class)).thenReturn(false);
+
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, full);
+        pk.scheduleSingleJob(detail);
+        verify(sched, never()).scheduleJob(eq(detail), any(Trigger.class));
+        verify(sched).addJob(eq(detail), eq(false));
+    }
+
+    @Test
+    public void nonDurableJobIsStoredDurablyWhenLaneIsFull() throws Exception {
+        config.setProperty("org.quartz.scheduler.instanceName", "lane_test");
+        config.setProperty(ConfigProperties.PINSETTER_LANES, "batch");
+        config.setProperty(ConfigProperties.PINSETTER_LANE_PREFIX + "batch" +
+            ConfigProperties.PINSETTER_LANE_JOBS, TestJob.class.getName());
+        config.setProperty(ConfigProperties.PINSETTER_LANE_PREFIX + "batch" +
+            ConfigProperties.PINSETTER_LANE_MAX_RUNNING, "1");
+        when(jcurator.findNumActiveByClasses(any(List.class))).thenReturn(1L);
+
+        // a real, unstarted scheduler, so Quartz itself checks what it is given
+        StdSchedulerFactory realFactory = new StdSchedulerFactory();
+        pk = new PinsetterKernel(config, jfactory, null, jcurator, realFactory,
+            new JobLanes(config, jcurator));
+        Scheduler real = realFactory.getScheduler();
+        try {
+            JobDetail detail = newJob(TestJob.class).withIdentity("deferred_job").build();
+            assertFalse(detail.isDurable());
+
+            pk.scheduleSingleJob(detail);
+            JobKey key = jobKey("deferred_job", PinsetterKernel.SINGLE_JOB_GROUP);
+            assertTrue(real.getJobDetail(key).isDurable());
+            assertTrue(real.getTriggersOfJob(key).isEmpty());
+        }
+        finally {
+            real.shutdown();
+        }
+    }
+
+    @Test
+    public void singleJobUsesLanePriority() throws Exception {
+        JobDataMap map = new JobDataMap();
+        map.put(PinsetterJobListener.PRINCIPAL_KEY, mock(Principal.class));
+        map.put(JobStatus.TARGET_TYPE, JobStatus.TargetType.OWNER);
+        map.put(JobStatus.TARGET_ID, "admin");
+        JobDetailImpl detail = mock(JobDetailImpl.class);
+        when(detail.getKey()).thenReturn(jobKey("name", "group"));
+        when(detail.getJobDataMap()).thenReturn(map);
+        Mockito.doReturn(TestJob.class).when(detail).getJobClass();
+        JobLanes urgent = mock(JobLanes.class);
+        when(urgent.hasCapacity(TestJob.class)).thenReturn(true);
+        when(urgent.getPriority(TestJob.class)).thenReturn(9);
+
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, urgent);
+        pk.scheduleSingleJob(detail);
+        ArgumentCaptor<Trigger> trigger = ArgumentCaptor.forClass(Trigger.class);
+        verify(sched).scheduleJob(eq(detail), trigger.capture());
+        assertEquals(9, trigger.getValue().getPriority());
+    }
+
     @Test
     public void schedulerStatus() throws Exception {
         when(sched.isInStandbyMode()).thenReturn(false);
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         assertTrue(pk.getSchedulerStatus());
     }
 
     @Test
     public void pauseScheduler() throws Exception {
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.pauseScheduler();
         verify(sched, atMost(1)).standby();
     }
 
     @Test
     public void unpauseScheduler() throws Exception {
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.unpauseScheduler();
         verify(jcurator).findCanceledJobs(any(Set.class));
         verify(sched).start();
@@ -427,7 +501,7 @@ public class PinsetterKernelTest {
         when(sched.getJobKeys(eq(jobGroupEquals(crongrp)))).thenReturn(jobs);
         when(sched.getJobKeys(eq(jobGroupEquals(singlegrp)))).thenReturn(jobs);
 
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.shutdown();
 
         verify(sched, atMost(1)).standby();
@@ -453,7 +527,7 @@ public class PinsetterKernelTest {
         jobs.add(jobKey(JobCleaner.class.getName()));
         jobs.add(jobKey(ImportRecordJob.class.getName()));
         when(sched.getJobKeys(eq(jobGroupEquals("cron group")))).thenReturn(jobs);
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.startup();
         verify(sched).start();
         verify(jcurator, atMost(2)).create(any(JobStatus.class));
@@ -472,7 +546,7 @@ public class PinsetterKernelTest {
             });
         Set<JobKey> jobs = new HashSet<JobKey>();
         when(sched.getJobKeys(eq(jobGroupEquals("cron group")))).thenReturn(jobs);
-        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory);
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator, sfactory, lanes);
         pk.startup();
         verify(sched).start();
         verify(jcurator, atMost(2)).create(any(JobStatus.class));
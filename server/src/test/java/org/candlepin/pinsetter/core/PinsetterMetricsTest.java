@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.core;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.model.JobMetrics;
+import org.candlepin.pinsetter.core.PinsetterMetrics.Outcome;
+import org.candlepin.pinsetter.tasks.HypervisorUpdateJob;
+import org.candlepin.pinsetter.tasks.RefreshPoolsJob;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * PinsetterMetricsTest
+ */
+public class PinsetterMetricsTest {
+
+    private PinsetterMetrics metrics;
+
+    @Before
+    public void init() {
+        metrics = new PinsetterMetrics();
+    }
+
+    @Test
+    public void countsRunsPerJobClass() {
+        metrics.jobStarted(RefreshPoolsJob.class, 20);
+        metrics.jobFinished(RefreshPoolsJob.class, 700, Outcome.RETRIED);
+        metrics.jobStarted(RefreshPoolsJob.class, -1);
+        metrics.jobFinished(RefreshPoolsJob.class, 300, Outcome.SUCCEEDED);
+        metrics.jobStarted(HypervisorUpdateJob.class, 5);
+
+        List<JobMetrics> result = metrics.getMetrics();
+        assertEquals(2, result.size());
+
+        JobMetrics hypervisor = result.get(0);
+        assertEquals("HypervisorUpdateJob", hypervisor.getJobClass());
+        assertEquals(1, hypervisor.getStarted());
+        assertEquals(1, hypervisor.getRunning());
+
+        JobMetrics refresh = result.get(1);
+        assertEquals("RefreshPoolsJob", refresh.getJobClass());
+        assertEquals(2, refresh.getStarted());
+        assertEquals(1, refresh.getSucceeded());
+        assertEquals(1, refresh.getRetried());
+        assertEquals(0, refresh.getFailed());
+        assertEquals(0, refresh.getRunning());
+        assertEquals(1, refresh.getQueueWait().getCount());
+        assertEquals(2, refresh.getRunTime().getCount());
+        assertEquals(1000, refresh.getRunTime().getTotal());
+        assertEquals(700, refresh.getRunTime().getMax());
+    }
+
+    @Test
+    public void histogramBucketsAreCumulative() {
+        metrics.jobStarted(RefreshPoolsJob.class, 5);
+        metrics.jobStarted(RefreshPoolsJob.class, 50);
+        metrics.jobStarted(RefreshPoolsJob.class, 7200000);
+
+        JobMetrics refresh = metrics.getMetrics().get(0);
+        assertEquals(Long.valueOf(1), refresh.getQueueWait().getBuckets().get("10"));
+        assertEquals(Long.valueOf(2), refresh.getQueueWait().getBuckets().get("50"));
+        assertEquals(Long.valueOf(2), refresh.getQueueWait().getBuckets().get("3600000"));
+        assertEquals(Long.valueOf(3), refresh.getQueueWait().getBuckets().get("+Inf"));
+    }
+
+    @Test
+    public void prometheusFormat() {
+        metrics.jobStarted(RefreshPoolsJob.class, 1500);
+        metrics.jobFinished(RefreshPoolsJob.class, 250, Outcome.FAILED);
+
+        String text = metrics.toPrometheus();
+        assertTrue(text.contains("# TYPE candlepin_job_started_total counter\n"));
+        assertTrue(text.contains("candlepin_job_started_total{job=\"RefreshPoolsJob\"} 1\n"));
+        assertTrue(text.contains("candlepin_job_failed_total{job=\"RefreshPoolsJob\"} 1\n"));
+        assertTrue(text.contains("candlepin_job_succeeded_total{job=\"RefreshPoolsJob\"} 0\n"));
+        assertTrue(text.contains("# TYPE candlepin_job_run_seconds histogram\n"));
+        assertTrue(text.contains(
+            "candlepin_job_run_seconds_bucket{job=\"RefreshPoolsJob\",le=\"0.25\"} 1\n"));
+        assertTrue(text.contains(
+            "candlepin_job_queue_wait_seconds_bucket{job=\"RefreshPoolsJob\",le=\"1.0\"} 0\n"));
+        assertTrue(text.contains("candlepin_job_queue_wait_seconds_sum{job=\"RefreshPoolsJob\"} 1.5\n"));
+        assertTrue(text.contains("candlepin_job_queue_wait_seconds_count{job=\"RefreshPoolsJob\"} 1\n"));
+    }
+
+    @Test
+    public void prometheusNamesIgnoreDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            metrics.jobFinished(RefreshPoolsJob.class, 250, Outcome.FAILED);
+            assertTrue(metrics.toPrometheus().contains(
+                "candlepin_job_failed_total{job=\"RefreshPoolsJob\"} 1\n"));
+        }
+        finally {
+            Locale.setDefault(previous);
+        }
+    }
+}
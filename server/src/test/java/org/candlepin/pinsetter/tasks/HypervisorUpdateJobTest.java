@@ -29,6 +29,7 @@ import org.candlepin.model.VirtConsumerMap;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 import org.candlepin.resource.ConsumerResource;
+import org.candlepin.resource.dto.HypervisorUpdateResult;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -36,11 +37,15 @@ import org.mockito.ArgumentCaptor;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
 import org.quartz.ListenerManager;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -55,6 +60,7 @@ public class HypervisorUpdateJobTest {
     private OwnerCurator ownerCurator;
     private ConsumerCurator consumerCurator;
     private ConsumerResource consumerResource;
+    private JobCurator jobCurator;
 
 
     @Before
@@ -64,6 +70,7 @@ public class HypervisorUpdateJobTest {
         ownerCurator = mock(OwnerCurator.class);
         consumerCurator = mock(ConsumerCurator.class);
         consumerResource = mock(ConsumerResource.class);
+        jobCurator = mock(JobCurator.class);
         when(owner.getKey()).thenReturn("joe");
         when(principal.getUsername()).thenReturn("joe user");
 
@@ -95,10 +102,34 @@ public class HypervisorUpdateJobTest {
         when(consumerCurator.getHostConsumersMap(eq(owner), any(Set.class)))
             .thenReturn(new VirtConsumerMap());
 
-        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource);
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            jobCurator);
         job.execute(ctx);
-        verify(consumerResource).create(any(Consumer.class), eq(principal), anyString(), eq("joe"),
-            anyString(), eq(false));
+        ArgumentCaptor<List> created = ArgumentCaptor.forClass(List.class);
+        verify(consumerResource).createHypervisors(created.capture(), eq(owner), eq(principal));
+        assertEquals(1, created.getValue().size());
+    }
+
+    @Test
+    public void recordsPhaseTimings() throws JobExecutionException {
+        when(ownerCurator.lookupByKey(eq("joe"))).thenReturn(owner);
+        when(consumerCurator.getHostConsumersMap(eq(owner), any(Set.class)))
+            .thenReturn(new VirtConsumerMap());
+
+        JobDetail detail = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, null);
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            jobCurator);
+        job.execute(ctx);
+
+        ArgumentCaptor<HypervisorUpdateResult> result =
+            ArgumentCaptor.forClass(HypervisorUpdateResult.class);
+        verify(ctx).setResult(result.capture());
+        assertEquals(Arrays.asList("lookup", "update", "flush", "create"),
+            new ArrayList<String>(result.getValue().getTimings().keySet()));
+        verify(consumerCurator).flush();
     }
 
     @Test
@@ -112,12 +143,13 @@ public class HypervisorUpdateJobTest {
         when(consumerCurator.getHostConsumersMap(eq(owner), any(Set.class))).thenReturn(
             new VirtConsumerMap());
 
-        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource);
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            jobCurator);
         job.execute(ctx);
-        ArgumentCaptor<Consumer> argument = ArgumentCaptor.forClass(Consumer.class);
-        verify(consumerResource).create(argument.capture(), eq(principal), anyString(), eq("joe"),
-            anyString(), eq(false));
-        assertEquals("createReporterId", argument.getValue().getHypervisorId().getReporterId());
+        ArgumentCaptor<List> created = ArgumentCaptor.forClass(List.class);
+        verify(consumerResource).createHypervisors(created.capture(), eq(owner), eq(principal));
+        Consumer host = (Consumer) created.getValue().get(0);
+        assertEquals("createReporterId", host.getHypervisorId().getReporterId());
     }
 
     @Test
@@ -134,7 +166,8 @@ public class HypervisorUpdateJobTest {
         JobExecutionContext ctx = mock(JobExecutionContext.class);
         when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
 
-        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource);
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            jobCurator);
         job.execute(ctx);
         verify(consumerResource).performConsumerUpdates(any(Consumer.class), eq(hypervisor),
             any(VirtConsumerMap.class), eq(false));
@@ -155,11 +188,51 @@ public class HypervisorUpdateJobTest {
         JobExecutionContext ctx = mock(JobExecutionContext.class);
         when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
 
-        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource);
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            jobCurator);
         job.execute(ctx);
         assertEquals("updateReporterId", hypervisor.getHypervisorId().getReporterId());
     }
 
+    @Test
+    public void hypervisorUpdateSkipsUnchangedHost() throws JobExecutionException {
+        when(ownerCurator.lookupByKey(eq("joe"))).thenReturn(owner);
+        Consumer hypervisor = new Consumer();
+        String hypervisorId = "uuid_999";
+        hypervisor.setHypervisorId(new HypervisorId(hypervisorId));
+        VirtConsumerMap vcm = new VirtConsumerMap();
+        vcm.add(hypervisorId, hypervisor);
+        when(consumerCurator.getHostConsumersMap(eq(owner), any(Set.class))).thenReturn(vcm);
+        when(consumerCurator.getGuestConsumersMap(eq(owner), any(Set.class)))
+            .thenReturn(new VirtConsumerMap());
+
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            jobCurator);
+        for (int i = 0; i < 2; i++) {
+            JobDetail detail = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal,
+                "reporter");
+            JobExecutionContext ctx = mock(JobExecutionContext.class);
+            when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+            job.execute(ctx);
+        }
+
+        assertNotNull(hypervisor.getHypervisorId().getGuestDigest());
+        verify(consumerResource, times(1)).performConsumerUpdates(any(Consumer.class), eq(hypervisor),
+            any(VirtConsumerMap.class), eq(false));
+        verify(consumerCurator).getGuestConsumersMap(eq(owner), eq(new HashSet<String>()));
+
+        // A different reporter has to be recorded, so the host is processed again
+        JobDetail detail = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal,
+            "other reporter");
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+        job.execute(ctx);
+
+        verify(consumerResource, times(2)).performConsumerUpdates(any(Consumer.class), eq(hypervisor),
+            any(VirtConsumerMap.class), eq(false));
+        assertEquals("other reporter", hypervisor.getHypervisorId().getReporterId());
+    }
+
     @Test
     public void hypervisorUpdateExecCreateNoHypervisorId() throws JobExecutionException {
         when(ownerCurator.lookupByKey(eq("joe"))).thenReturn(owner);
@@ -175,10 +248,12 @@ public class HypervisorUpdateJobTest {
         JobExecutionContext ctx = mock(JobExecutionContext.class);
         when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
 
-        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource);
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            jobCurator);
         job.execute(ctx);
-        verify(consumerResource, never()).create(any(Consumer.class), any(Principal.class),
-            anyString(), anyString(), anyString(), eq(false));
+        ArgumentCaptor<List> created = ArgumentCaptor.forClass(List.class);
+        verify(consumerResource).createHypervisors(created.capture(), eq(owner), eq(principal));
+        assertTrue(created.getValue().isEmpty());
     }
 
     @Test
@@ -202,7 +277,8 @@ public class HypervisorUpdateJobTest {
         when(consumerCurator.getGuestConsumersMap(eq(owner), any(Set.class)))
             .thenReturn(new VirtConsumerMap());
 
-        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource);
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            jobCurator);
         job.execute(ctx);
 
         Set<String> expectedSet = new HashSet<String>();
@@ -219,10 +295,10 @@ public class HypervisorUpdateJobTest {
         JobDetail detail = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, null);
         JobStatus preExistingJobStatus = new JobStatus();
         preExistingJobStatus.setState(JobState.WAITING);
-        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource);
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            jobCurator);
         JobStatus newlyScheduledJobStatus = new JobStatus();
 
-        JobCurator jobCurator = mock(JobCurator.class);
         Scheduler scheduler = mock(Scheduler.class);
         ListenerManager lm = mock(ListenerManager.class);
 
@@ -243,9 +319,142 @@ public class HypervisorUpdateJobTest {
 
         JobDetail detail = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, null);
         JobStatus newJob = new JobStatus(detail);
-        JobCurator jobCurator = mock(JobCurator.class);
         when(jobCurator.findNumRunningByClassAndTarget(owner.getKey(), HypervisorUpdateJob.class))
                 .thenReturn(1L);
         assertFalse(HypervisorUpdateJob.isSchedulable(jobCurator, newJob));
     }
+
+    @Test
+    public void supersedesWaitingReportFromSameReporter() throws SchedulerException {
+        JobDetail older = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, "reporter");
+        JobDetail other = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, "another");
+        JobStatus olderStatus = new JobStatus(older);
+        olderStatus.setState(JobState.WAITING);
+        JobStatus otherStatus = new JobStatus(other);
+        otherStatus.setState(JobState.WAITING);
+
+        Scheduler scheduler = mock(Scheduler.class);
+        when(scheduler.getListenerManager()).thenReturn(mock(ListenerManager.class));
+        when(scheduler.getJobDetail(older.getKey())).thenReturn(older);
+        when(scheduler.getJobDetail(other.getKey())).thenReturn(other);
+        when(jobCurator.findWaitingByClassAndTarget("joe", HypervisorUpdateJob.class))
+            .thenReturn(Arrays.asList(olderStatus, otherStatus));
+        when(jobCurator.create(any(JobStatus.class))).thenReturn(new JobStatus());
+        when(jobCurator.updateWaitingState(olderStatus.getId(), JobState.CANCELED)).thenReturn(true);
+
+        JobDetail newer = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, "reporter");
+        HypervisorUpdateJob.scheduleJob(jobCurator, scheduler, newer, null);
+
+        // the scheduler entry is left for CancelJobJob
+        verify(scheduler, never()).deleteJob(any(JobKey.class));
+        verify(jobCurator, never()).updateWaitingState(eq(otherStatus.getId()), any(JobState.class));
+        assertEquals(JobState.CANCELED, olderStatus.getState());
+        assertEquals("Superseded by job " + newer.getKey().getName(), olderStatus.getResult());
+        assertEquals(JobState.WAITING, otherStatus.getState());
+        verify(jobCurator).merge(olderStatus);
+    }
+
+    @Test
+    public void appliesWaitingReportsInSameRun() throws Exception {
+        // The result is stored on the job status, so it must hold a real owner
+        Owner joe = new Owner("joe", "Joe");
+        when(ownerCurator.lookupByKey(eq("joe"))).thenReturn(joe);
+        when(consumerCurator.getHostConsumersMap(eq(joe), any(Set.class)))
+            .thenReturn(new VirtConsumerMap(), new VirtConsumerMap());
+
+        JobDetail detail = HypervisorUpdateJob.forOwner(joe, hypervisorJson, true, principal, "first");
+        JobDetail waiting = HypervisorUpdateJob.forOwner(joe, hypervisorJson, true, principal, "second");
+        JobStatus waitingStatus = new JobStatus(waiting);
+        waitingStatus.setState(JobState.WAITING);
+
+        Scheduler scheduler = mock(Scheduler.class);
+        when(scheduler.getJobDetail(waiting.getKey())).thenReturn(waiting);
+        when(jobCurator.findWaitingByClassAndTarget("joe", HypervisorUpdateJob.class))
+            .thenReturn(Arrays.asList(waitingStatus));
+        when(jobCurator.updateWaitingState(waitingStatus.getId(), JobState.RUNNING)).thenReturn(true);
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+        when(ctx.getScheduler()).thenReturn(scheduler);
+
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            jobCurator);
+        job.execute(ctx);
+
+        ArgumentCaptor<List> created = ArgumentCaptor.forClass(List.class);
+        verify(consumerResource, times(2)).createHypervisors(created.capture(), eq(joe), eq(principal));
+        assertEquals(1, created.getAllValues().get(0).size());
+        assertEquals(1, created.getAllValues().get(1).size());
+        verify(scheduler).deleteJob(waiting.getKey());
+        assertEquals(JobState.FINISHED, waitingStatus.getState());
+        assertNotNull(waitingStatus.getResultData());
+        verify(jobCurator).merge(waitingStatus);
+    }
+
+    @Test
+    public void leavesWaitingReportClaimedElsewhere() throws Exception {
+        Owner joe = new Owner("joe", "Joe");
+        when(ownerCurator.lookupByKey(eq("joe"))).thenReturn(joe);
+        when(consumerCurator.getHostConsumersMap(eq(joe), any(Set.class)))
+            .thenReturn(new VirtConsumerMap());
+
+        JobDetail detail = HypervisorUpdateJob.forOwner(joe, hypervisorJson, true, principal, "first");
+        JobDetail waiting = HypervisorUpdateJob.forOwner(joe, hypervisorJson, true, principal, "second");
+        JobStatus waitingStatus = new JobStatus(waiting);
+        waitingStatus.setState(JobState.WAITING);
+
+        Scheduler scheduler = mock(Scheduler.class);
+        when(scheduler.getJobDetail(waiting.getKey())).thenReturn(waiting);
+        when(jobCurator.findWaitingByClassAndTarget("joe", HypervisorUpdateJob.class))
+            .thenReturn(Arrays.asList(waitingStatus));
+        // started by the UnpauseJob of another node in the meantime
+        when(jobCurator.updateWaitingState(waitingStatus.getId(), JobState.RUNNING)).thenReturn(false);
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+        when(ctx.getScheduler()).thenReturn(scheduler);
+
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            jobCurator);
+        job.execute(ctx);
+
+        verify(consumerResource, times(1)).createHypervisors(any(List.class), eq(joe), eq(principal));
+        verify(scheduler, never()).deleteJob(any(JobKey.class));
+        verify(jobCurator, never()).merge(waitingStatus);
+    }
+
+    @Test
+    public void failedWaitingReportFailsOnlyItsOwnJob() throws Exception {
+        Owner joe = new Owner("joe", "Joe");
+        when(ownerCurator.lookupByKey(eq("joe"))).thenReturn(joe);
+        when(consumerCurator.getHostConsumersMap(eq(joe), any(Set.class)))
+            .thenReturn(new VirtConsumerMap());
+
+        JobDetail detail = HypervisorUpdateJob.forOwner(joe, hypervisorJson, true, principal, "first");
+        JobDetail bad = HypervisorUpdateJob.forOwner(joe, "not json", true, principal, "second");
+        JobDetail good = HypervisorUpdateJob.forOwner(joe, hypervisorJson, true, principal, "third");
+        JobStatus badStatus = new JobStatus(bad);
+        badStatus.setState(JobState.WAITING);
+        JobStatus goodStatus = new JobStatus(good);
+        goodStatus.setState(JobState.WAITING);
+
+        Scheduler scheduler = mock(Scheduler.class);
+        when(scheduler.getJobDetail(bad.getKey())).thenReturn(bad);
+        when(scheduler.getJobDetail(good.getKey())).thenReturn(good);
+        when(jobCurator.findWaitingByClassAndTarget("joe", HypervisorUpdateJob.class))
+            .thenReturn(Arrays.asList(badStatus, goodStatus));
+        when(jobCurator.updateWaitingState(anyString(), eq(JobState.RUNNING))).thenReturn(true);
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+        when(ctx.getScheduler()).thenReturn(scheduler);
+
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            jobCurator);
+        job.execute(ctx);
+
+        verify(ctx).setResult(any(HypervisorUpdateResult.class));
+        assertEquals(JobState.FAILED, badStatus.getState());
+        assertEquals(JobState.FINISHED, goodStatus.getState());
+        verify(consumerCurator).clear();
+        verify(scheduler).deleteJob(bad.getKey());
+        verify(scheduler).deleteJob(good.getKey());
+    }
 }
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.PoolManager;
+import org.candlepin.model.EntitlementCurator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.quartz.JobExecutionContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * RegenDirtyEntitlementCertsJobTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class RegenDirtyEntitlementCertsJobTest {
+
+    @Mock private PoolManager poolManager;
+    @Mock private EntitlementCurator entitlementCurator;
+    @Mock private JobExecutionContext ctx;
+
+    private CandlepinCommonTestConfig config;
+    private RegenDirtyEntitlementCertsJob job;
+
+    @Before
+    public void setUp() {
+        config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.DIRTY_CERTS_BATCH_SIZE, "2");
+        config.setProperty(ConfigProperties.DIRTY_CERTS_MAX_PER_RUN, "5");
+        config.setProperty(ConfigProperties.DIRTY_CERTS_MAX_PER_SECOND, "0");
+        job = new RegenDirtyEntitlementCertsJob(poolManager, entitlementCurator, config);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void regeneratesInBatches() throws Exception {
+        when(entitlementCurator.listDirtyIds(5)).thenReturn(
+            Arrays.asList("e1", "e2", "e3", "e4", "e5"));
+        when(poolManager.regenerateDirtyEntitlementsByIds(any(Collection.class)))
+            .thenReturn(2, 1, 1);
+
+        job.execute(ctx);
+
+        verify(poolManager).regenerateDirtyEntitlementsByIds(eq(Arrays.asList("e1", "e2")));
+        verify(poolManager).regenerateDirtyEntitlementsByIds(eq(Arrays.asList("e3", "e4")));
+        verify(poolManager).regenerateDirtyEntitlementsByIds(eq(Arrays.asList("e5")));
+        verify(entitlementCurator, times(3)).clear();
+        verify(ctx).setResult(
+            "Regenerated certificates of 4 of 5 dirty entitlements in 3 batches");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void nothingDirty() throws Exception {
+        when(entitlementCurator.listDirtyIds(5)).thenReturn(new ArrayList<String>());
+
+        job.execute(ctx);
+
+        verify(poolManager, never()).regenerateDirtyEntitlementsByIds(any(Collection.class));
+        verify(ctx).setResult(
+            "Regenerated certificates of 0 of 0 dirty entitlements in 0 batches");
+    }
+
+    @Test
+    public void rateLimited() throws Exception {
+        config.setProperty(ConfigProperties.DIRTY_CERTS_MAX_PER_SECOND, "20");
+        when(entitlementCurator.listDirtyIds(5)).thenReturn(
+            Arrays.asList("e1", "e2", "e3", "e4", "e5"));
+
+        long start = System.currentTimeMillis();
+        job.execute(ctx);
+
+        // Five entitlements at 20 per second take at least 250ms
+        assertTrue(System.currentTimeMillis() - start >= 250);
+    }
+}
@@ -62,6 +62,6 @@ public class RegenEntitlementCertsJobTest {
         recj.execute(jec);
 
         // verification
-        verify(pm).regenerateCertificatesOf(eq(owner), eq(prodId), eq(lazyRegen));
+        verify(pm).regenerateCertificatesOf(eq(owner), eq(prodId), eq(lazyRegen), eq(true));
     }
 }
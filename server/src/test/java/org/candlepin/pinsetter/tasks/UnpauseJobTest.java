@@ -20,12 +20,14 @@ import static org.mockito.Mockito.*;
 import static org.quartz.JobBuilder.*;
 
 import org.candlepin.model.JobCurator;
+import org.candlepin.pinsetter.core.JobLanes;
 import org.candlepin.pinsetter.core.PinsetterException;
 import org.candlepin.pinsetter.core.PinsetterKernel;
 import org.candlepin.pinsetter.core.model.JobStatus;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.quartz.JobDetail;
@@ -43,13 +45,16 @@ public class UnpauseJobTest {
     private UnpauseJob unpauseJob;
     @Mock private JobCurator j;
     @Mock private PinsetterKernel pk;
+    @Mock private JobLanes lanes;
     @Mock private JobExecutionContext ctx;
 
 
     @Before
     public void init() {
         MockitoAnnotations.initMocks(this);
-        unpauseJob = new UnpauseJob(j, pk);
+        when(lanes.hasCapacity(any(Class.class))).thenReturn(true);
+        when(j.updateWaitingState(anyString(), eq(JobStatus.JobState.CREATED))).thenReturn(true);
+        unpauseJob = new UnpauseJob(j, pk, lanes);
     }
 
     @Test
@@ -82,4 +87,64 @@ public class UnpauseJobTest {
             fail("Should not throw an exception");
         }
     }
+
+    @Test
+    public void fullLaneKeepsWaiting() throws Exception {
+        JobDetail jd = newJob(KingpinJob.class)
+            .withIdentity("Kayfabe", "Deluxe")
+            .build();
+
+        JobStatus js = new JobStatus(jd, true);
+        List<JobStatus> jl = new ArrayList<JobStatus>();
+        jl.add(js);
+        when(j.findWaitingJobs()).thenReturn(jl);
+        when(lanes.hasCapacity(KingpinJob.class)).thenReturn(false);
+        unpauseJob.execute(ctx);
+        verify(pk, never()).addTrigger(any(JobStatus.class));
+        assertEquals(JobStatus.JobState.WAITING, js.getState());
+    }
+
+    @Test
+    public void jobClaimedElsewhereIsNotTriggered() throws Exception {
+        JobStatus js = new JobStatus(newJob(KingpinJob.class)
+            .withIdentity("Kayfabe", "Deluxe").build(), true);
+        List<JobStatus> jl = new ArrayList<JobStatus>();
+        jl.add(js);
+        when(j.findWaitingJobs()).thenReturn(jl);
+        when(j.updateWaitingState(js.getId(), JobStatus.JobState.CREATED)).thenReturn(false);
+        unpauseJob.execute(ctx);
+        verify(pk, never()).addTrigger(any(JobStatus.class));
+    }
+
+    @Test
+    public void jobGoesBackToWaitingIfTriggerFails() throws Exception {
+        JobStatus js = new JobStatus(newJob(KingpinJob.class)
+            .withIdentity("Kayfabe", "Deluxe").build(), true);
+        List<JobStatus> jl = new ArrayList<JobStatus>();
+        jl.add(js);
+        when(j.findWaitingJobs()).thenReturn(jl);
+        doThrow(new SchedulerException()).when(pk).addTrigger(js);
+        unpauseJob.execute(ctx);
+        assertEquals(JobStatus.JobState.WAITING, js.getState());
+        verify(j).merge(js);
+    }
+
+    @Test
+    public void higherPriorityLaneGoesFirst() throws Exception {
+        JobStatus batch = new JobStatus(newJob(KingpinJob.class)
+            .withIdentity("batch", "Deluxe").build(), true);
+        JobStatus interactive = new JobStatus(newJob(UnpauseJob.class)
+            .withIdentity("interactive", "Deluxe").build(), true);
+        List<JobStatus> jl = new ArrayList<JobStatus>();
+        jl.add(batch);
+        jl.add(interactive);
+        when(j.findWaitingJobs()).thenReturn(jl);
+        when(lanes.getPriority(KingpinJob.class)).thenReturn(3);
+        when(lanes.getPriority(UnpauseJob.class)).thenReturn(7);
+        unpauseJob.execute(ctx);
+
+        InOrder order = inOrder(pk);
+        order.verify(pk).addTrigger(interactive);
+        order.verify(pk).addTrigger(batch);
+    }
 }
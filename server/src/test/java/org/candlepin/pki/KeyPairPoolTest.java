@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.KeyPairPoolStatus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * KeyPairPoolTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class KeyPairPoolTest {
+
+    @Mock private PKIUtility pki;
+
+    private CandlepinCommonTestConfig config;
+    private KeyPairPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        config = new CandlepinCommonTestConfig();
+        when(pki.generateNewKeyPair()).thenAnswer(new Answer<KeyPair>() {
+            @Override
+            public KeyPair answer(InvocationOnMock invocation) {
+                return new KeyPair(null, null);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private void waitFor(long expected, String counter) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            KeyPairPoolStatus status = pool.getStatus();
+            long value = "available".equals(counter) ? status.getAvailable() :
+                status.getFailures();
+            if (value == expected) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("Timed out waiting for " + counter + " to reach " + expected);
+    }
+
+    @Test
+    public void generatesOnDemandWhenDisabled() throws Exception {
+        config.setProperty(ConfigProperties.KEYPAIR_POOL_SIZE, "0");
+        pool = new KeyPairPool(pki, config);
+
+        assertNotNull(pool.take());
+        assertNotNull(pool.take());
+
+        KeyPairPoolStatus status = pool.getStatus();
+        assertEquals(0, status.getCapacity());
+        assertEquals(0, status.getHits());
+        assertEquals(2, status.getMisses());
+        verify(pki, times(2)).generateNewKeyPair();
+    }
+
+    @Test
+    public void fillsUpToCapacityAndHandsOutEachPairOnce() throws Exception {
+        config.setProperty(ConfigProperties.KEYPAIR_POOL_SIZE, "5");
+        config.setProperty(ConfigProperties.KEYPAIR_POOL_THREADS, "2");
+        pool = new KeyPairPool(pki, config);
+        waitFor(5, "available");
+
+        Set<KeyPair> taken = new HashSet<KeyPair>();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(taken.add(pool.take()));
+        }
+
+        KeyPairPoolStatus status = pool.getStatus();
+        assertEquals(5, status.getCapacity());
+        assertEquals(5, status.getHits());
+        assertEquals(0, status.getMisses());
+
+        // Taking from the pool makes room for the refill threads
+        waitFor(5, "available");
+    }
+
+    @Test
+    public void fallsBackToInlineGenerationWhenRefillFails() throws Exception {
+        KeyPair pair = new KeyPair(null, null);
+        reset(pki);
+        when(pki.generateNewKeyPair())
+            .thenThrow(new NoSuchAlgorithmException())
+            .thenReturn(pair);
+        config.setProperty(ConfigProperties.KEYPAIR_POOL_SIZE, "5");
+        config.setProperty(ConfigProperties.KEYPAIR_POOL_THREADS, "1");
+        pool = new KeyPairPool(pki, config);
+        waitFor(1, "failures");
+
+        assertSame(pair, pool.take());
+        KeyPairPoolStatus status = pool.getStatus();
+        assertEquals(0, status.getAvailable());
+        assertEquals(1, status.getMisses());
+    }
+}
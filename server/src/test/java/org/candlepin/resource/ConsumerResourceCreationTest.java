@@ -16,6 +16,7 @@ package org.candlepin.resource;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -40,6 +41,7 @@ import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.ConsumerType;
 import org.candlepin.model.ConsumerTypeCurator;
 import org.candlepin.model.DeletedConsumerCurator;
+import org.candlepin.model.HypervisorId;
 import org.candlepin.model.IdentityCertificate;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
@@ -70,6 +72,7 @@ import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -196,6 +199,54 @@ public class ConsumerResourceCreationTest {
             null, true);
     }
 
+    @Test
+    public void createHypervisorsFlushesOnce() {
+        ConsumerType hypervisor = new ConsumerType(ConsumerType.ConsumerTypeEnum.HYPERVISOR);
+        when(consumerTypeCurator.lookupByLabel(hypervisor.getLabel())).thenReturn(hypervisor);
+        Collection<Permission> perms = new HashSet<Permission>();
+        perms.add(new OwnerPermission(owner, Access.ALL));
+        Principal principal = new UserPrincipal(USER, perms, false);
+
+        Consumer first = new Consumer("host1", null, null, null);
+        first.setHypervisorId(new HypervisorId("host1"));
+        Consumer second = new Consumer("host2", null, null, null);
+        second.setHypervisorId(new HypervisorId("host2"));
+        this.resource.createHypervisors(Arrays.asList(first, second), owner, principal);
+
+        for (Consumer consumer : Arrays.asList(first, second)) {
+            verify(consumerCurator).create(consumer, false);
+            verify(sink).emitConsumerCreated(consumer);
+            Assert.assertEquals(owner, consumer.getOwner());
+            Assert.assertEquals(hypervisor, consumer.getType());
+            Assert.assertEquals(USER, consumer.getUsername());
+            Assert.assertEquals(consumer, consumer.getHypervisorId().getConsumer());
+        }
+        verify(consumerCurator, times(1)).flush();
+    }
+
+    @Test
+    public void createHypervisorsKeepsReportedServiceLevel() {
+        owner.setDefaultServiceLevel("Standard");
+        ConsumerType hypervisor = new ConsumerType(ConsumerType.ConsumerTypeEnum.HYPERVISOR);
+        when(consumerTypeCurator.lookupByLabel(hypervisor.getLabel())).thenReturn(hypervisor);
+        Collection<Permission> perms = new HashSet<Permission>();
+        perms.add(new OwnerPermission(owner, Access.ALL));
+        Principal principal = new UserPrincipal(USER, perms, false);
+
+        Consumer premium = new Consumer("host1", null, null, null);
+        premium.setServiceLevel("Premium");
+        Consumer unset = new Consumer("host2", null, null, null);
+        Consumer alsoUnset = new Consumer("host3", null, null, null);
+        this.resource.createHypervisors(Arrays.asList(premium, unset, alsoUnset), owner,
+            principal);
+
+        Assert.assertEquals("Premium", premium.getServiceLevel());
+        Assert.assertEquals("Standard", unset.getServiceLevel());
+        Assert.assertEquals("Standard", alsoUnset.getServiceLevel());
+        verify(consumerBindUtil).validateServiceLevel(owner, "Premium");
+        verify(consumerBindUtil, times(1)).validateServiceLevel(owner, "Standard");
+    }
+
     @Test
     public void acceptedConsumerName() {
         Assert.assertNotNull(createConsumer("test_user"));
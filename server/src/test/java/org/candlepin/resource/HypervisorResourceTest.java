@@ -16,6 +16,7 @@ package org.candlepin.resource;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.candlepin.audit.Event.Target;
@@ -35,6 +36,7 @@ import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
 import org.candlepin.model.ConsumerTypeCurator;
 import org.candlepin.model.DeletedConsumerCurator;
 import org.candlepin.model.GuestId;
+import org.candlepin.model.HypervisorId;
 import org.candlepin.model.IdentityCertificate;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
@@ -62,6 +64,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -202,6 +205,39 @@ public class HypervisorResourceTest {
         assertEquals("GUEST_B", c1.getGuestIds().get(0).getGuestId());
     }
 
+    @SuppressWarnings({ "rawtypes", "unchecked", "deprecation" })
+    @Test
+    public void hypervisorCheckInSkipsUnchangedHost() throws Exception {
+        Owner owner = new Owner("owner-id", "Owner Id");
+        String hypervisorId = "test-host";
+
+        Consumer existing = new Consumer();
+        existing.setUuid("test-host");
+        existing.setOwner(owner);
+        existing.setHypervisorId(new HypervisorId(hypervisorId));
+        existing.addGuestId(new GuestId("GUEST_A"));
+
+        when(ownerCurator.lookupByKey(eq(owner.getKey()))).thenReturn(owner);
+        when(consumerCurator.getHostConsumersMap(any(Owner.class), any(Set.class)))
+            .thenReturn(mockHypervisorConsumerMap(hypervisorId, existing));
+        when(consumerCurator.getGuestConsumersMap(any(Owner.class), any(Set.class)))
+            .thenReturn(new VirtConsumerMap());
+
+        Map<String, List<GuestId>> hostGuestMap = new HashMap<String, List<GuestId>>();
+        hostGuestMap.put(hypervisorId, new ArrayList(Arrays.asList(new GuestId("GUEST_B"))));
+        HypervisorCheckInResult result = hypervisorResource.hypervisorUpdate(
+            hostGuestMap, principal, owner.getKey(), true);
+        assertEquals(1, result.getUpdated().size());
+        assertNotNull(existing.getHypervisorId().getGuestDigest());
+
+        hostGuestMap = new HashMap<String, List<GuestId>>();
+        hostGuestMap.put(hypervisorId, new ArrayList(Arrays.asList(new GuestId("GUEST_B"))));
+        result = hypervisorResource.hypervisorUpdate(hostGuestMap, principal, owner.getKey(), true);
+        assertEquals(0, result.getUpdated().size());
+        assertEquals(1, result.getUnchanged().size());
+        verify(consumerCurator).getGuestConsumersMap(any(Owner.class), eq(new HashSet<String>()));
+    }
+
     @SuppressWarnings({ "rawtypes", "unchecked", "deprecation" })
     @Test
     public void hypervisorCheckInReportsFailuresOnCreateFailure() throws Exception {
@@ -22,27 +22,38 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.quartz.JobBuilder.newJob;
 
+import org.candlepin.common.config.MapConfiguration;
 import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.exceptions.NotFoundException;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.JobCurator;
+import org.candlepin.model.JobStatusCache;
 import org.candlepin.pinsetter.core.PinsetterException;
 import org.candlepin.pinsetter.core.PinsetterKernel;
+import org.candlepin.pinsetter.core.PinsetterMetrics;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
+import org.candlepin.pinsetter.tasks.JobCleaner;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 
@@ -54,13 +65,126 @@ public class JobResourceTest {
     private JobResource jobResource;
     @Mock private JobCurator jobCurator;
     @Mock private PinsetterKernel pinsetterKernel;
+    @Mock private PinsetterMetrics metrics;
+    private JobStatusCache statusCache;
     private I18n i18n;
 
     @Before
     public void init() {
         MockitoAnnotations.initMocks(this);
         i18n = I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK);
-        jobResource = new JobResource(jobCurator, pinsetterKernel, i18n);
+        MapConfiguration config = new MapConfiguration(new HashMap<String, String>());
+        config.setProperty(ConfigProperties.JOB_STATUS_CACHE_TTL, "300");
+        config.setProperty(ConfigProperties.JOB_STATUS_MAX_WAIT, "10");
+        config.setProperty(ConfigProperties.JOB_STATUS_WAIT_RECHECK, "1");
+        statusCache = new JobStatusCache(config);
+        jobResource = new JobResource(jobCurator, pinsetterKernel, i18n, metrics,
+            statusCache, config);
+    }
+
+    private JobStatus status(String id, JobState state) {
+        JobStatus status = new JobStatus(newJob(JobCleaner.class).withIdentity(id).build());
+        status.setState(state);
+        return status;
+    }
+
+    @Test
+    public void finishedStatusIsServedFromCache() {
+        when(jobCurator.find("done_id")).thenReturn(status("done_id", JobState.FINISHED));
+        assertEquals(JobState.FINISHED, jobResource.getStatus("done_id", false, 0).getState());
+        assertEquals(JobState.FINISHED, jobResource.getStatus("done_id", false, 0).getState());
+        verify(jobCurator, times(1)).find("done_id");
+    }
+
+    @Test
+    public void runningStatusIsNotCached() {
+        when(jobCurator.find("running_id")).thenReturn(status("running_id", JobState.RUNNING));
+        jobResource.getStatus("running_id", false, 0);
+        jobResource.getStatus("running_id", false, 0);
+        verify(jobCurator, times(2)).find("running_id");
+    }
+
+    @Test
+    public void refiredJobIsNotServedAsFailed() {
+        // a failed run cached before quartz refires the job
+        statusCache.finished(status("refire_id", JobState.FAILED));
+        statusCache.finished(status("refire_id", JobState.RUNNING));
+
+        when(jobCurator.find("refire_id")).thenReturn(status("refire_id", JobState.RUNNING));
+        assertEquals(JobState.RUNNING, jobResource.getStatus("refire_id", false, 0).getState());
+
+        statusCache.finished(status("refire_id", JobState.FINISHED));
+        assertEquals(JobState.FINISHED, jobResource.getStatus("refire_id", false, 0).getState());
+    }
+
+    @Test
+    public void waitReturnsWhenJobFinishesHere() {
+        when(jobCurator.find("wait_id")).thenReturn(status("wait_id", JobState.RUNNING));
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                statusCache.finished(status("wait_id", JobState.FINISHED));
+            }
+        }.start();
+
+        long start = System.currentTimeMillis();
+        JobStatus result = jobResource.getStatus("wait_id", false, 10);
+        assertEquals(JobState.FINISHED, result.getState());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        verify(jobCurator, never()).refresh(any(JobStatus.class));
+    }
+
+    @Test
+    public void waiterTimingOutLeavesOthersWaiting() throws Exception {
+        final JobStatus[] result = new JobStatus[1];
+        Thread patient = new Thread() {
+            public void run() {
+                try {
+                    result[0] = statusCache.await("shared_id", 10000);
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+            }
+        };
+        patient.start();
+        Thread.sleep(100);
+
+        // gives up while the other request is still waiting on the same job
+        assertEquals(null, statusCache.await("shared_id", 100));
+        statusCache.finished(status("shared_id", JobState.FINISHED));
+
+        patient.join(5000);
+        assertEquals(JobState.FINISHED, result[0].getState());
+    }
+
+    @Test
+    public void waitRechecksJobsFinishingElsewhere() {
+        final JobStatus running = status("remote_id", JobState.RUNNING);
+        when(jobCurator.find("remote_id")).thenReturn(running);
+        doAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                running.setState(JobState.FINISHED);
+                return null;
+            }
+        }).when(jobCurator).refresh(running);
+
+        assertEquals(JobState.FINISHED, jobResource.getStatus("remote_id", false, 5).getState());
+        verify(jobCurator, times(1)).refresh(running);
+        assertEquals(JobState.FINISHED, statusCache.get("remote_id").getState());
+    }
+
+    @Test
+    public void waitGivesUpAfterTimeout() {
+        JobStatus running = status("slow_id", JobState.RUNNING);
+        when(jobCurator.find("slow_id")).thenReturn(running);
+        assertEquals(JobState.RUNNING, jobResource.getStatus("slow_id", false, 1).getState());
+        verify(jobCurator, atLeastOnce()).refresh(running);
     }
 
     @Test
@@ -99,6 +223,15 @@ public class JobResourceTest {
         verify(jobCurator, atLeastOnce()).delete(finishedJobStatus);
     }
 
+    @Test
+    public void deletedStatusLeavesCache() {
+        JobStatus finished = status("gone_id", JobState.FINISHED);
+        statusCache.finished(finished);
+        when(jobCurator.find("gone_id")).thenReturn(finished);
+        jobResource.getStatusAndDeleteIfFinished("gone_id");
+        assertEquals(null, statusCache.get("gone_id"));
+    }
+
     @Test
     public void cancelJob() {
         //we are just testing that the cancellation gets into the db
@@ -178,7 +178,7 @@ public class OwnerContentResourceTest {
         verify(cc).lookupById(eq(owner), eq(contentId));
         verify(cc).updateContent(eq(content), eq(owner));
         verify(productCurator).getProductsWithContent(eq(owner), eq(Arrays.asList(contentId)));
-        verify(poolManager).regenerateCertificatesOf(eq(owner), eq(productId), eq(true));
+        verify(poolManager).regenerateCertificatesOf(eq(owner), eq(productId), eq(true), eq(false));
     }
 
     @Test(expected = NotFoundException.class)
@@ -14,21 +14,24 @@
  */
 package org.candlepin.resource.util;
 
-import static org.mockito.Matchers.eq;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
 import org.candlepin.common.exceptions.BadRequestException;
-import org.candlepin.common.exceptions.ForbiddenException;
 import org.candlepin.controller.Entitler;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerContentOverrideCurator;
 import org.candlepin.model.ConsumerInstalledProduct;
 import org.candlepin.model.ConsumerType;
+import org.candlepin.model.Entitlement;
 import org.candlepin.model.Owner;
 import org.candlepin.model.Pool;
 import org.candlepin.model.Product;
 import org.candlepin.model.Role;
 import org.candlepin.model.activationkeys.ActivationKey;
+import org.candlepin.policy.EntitlementRefusedException;
+import org.candlepin.policy.ValidationResult;
 import org.candlepin.resource.dto.AutobindData;
 import org.candlepin.test.TestUtil;
 import org.candlepin.util.ServiceLevelValidator;
@@ -36,16 +39,26 @@ import org.candlepin.util.ServiceLevelValidator;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -195,8 +208,26 @@ public class ConsumerBindUtilTest {
         consumerBindUtil.handleActivationKeys(consumer, keys);
     }
 
+    private EntitlementRefusedException refused(Pool... pools) {
+        Map<String, ValidationResult> results = new HashMap<String, ValidationResult>();
+        for (Pool pool : pools) {
+            ValidationResult result = new ValidationResult();
+            result.addError("rulefailed.no.entitlements.available");
+            results.put(pool.getId(), result);
+        }
+        return new EntitlementRefusedException(results);
+    }
+
+    private Map<String, Integer> quantities(Object... poolsAndQuantities) {
+        Map<String, Integer> quantities = new HashMap<String, Integer>();
+        for (int i = 0; i < poolsAndQuantities.length; i += 2) {
+            quantities.put(((Pool) poolsAndQuantities[i]).getId(), (Integer) poolsAndQuantities[i + 1]);
+        }
+        return quantities;
+    }
+
     @Test(expected = BadRequestException.class)
-    public void registerFailWithNoGoodKeyPool() {
+    public void registerFailWithNoGoodKeyPool() throws Exception {
         List<ActivationKey> keys = new ArrayList<ActivationKey>();
         ActivationKey key1 = new ActivationKey("key1", owner);
         keys.add(key1);
@@ -207,13 +238,13 @@ public class ConsumerBindUtilTest {
         key1.addPool(ghost, 10L);
 
         Consumer consumer = new Consumer("sys.example.com", null, null, system);
-        when(entitler.bindByPoolQuantity(eq(consumer), eq(ghost.getId()), eq(10)))
-            .thenThrow(new ForbiddenException("fail"));
+        when(entitler.bindByPoolQuantities(eq(consumer), anyMapOf(String.class, Integer.class)))
+            .thenThrow(refused(ghost));
         consumerBindUtil.handleActivationKeys(consumer, keys);
     }
 
     @Test
-    public void registerPassWithOneGoodKeyPool() {
+    public void registerPassWithOneGoodKeyPool() throws Exception {
         List<ActivationKey> keys = new ArrayList<ActivationKey>();
         ActivationKey key1 = new ActivationKey("key1", owner);
         keys.add(key1);
@@ -232,15 +263,73 @@ public class ConsumerBindUtilTest {
         key1.addPool(pool3, 5L);
 
         Consumer consumer = new Consumer("sys.example.com", null, null, system);
-        when(entitler.bindByPoolQuantity(eq(consumer), eq(pool1.getId()), eq(10)))
-            .thenThrow(new ForbiddenException("fail"));
-        when(entitler.bindByPoolQuantity(eq(consumer), eq(pool2.getId()), eq(10)))
-            .thenThrow(new ForbiddenException("fail"));
+        when(entitler.bindByPoolQuantities(eq(consumer), anyMapOf(String.class, Integer.class)))
+            .thenThrow(refused(pool1, pool2))
+            .thenReturn(new ArrayList<Entitlement>());
         consumerBindUtil.handleActivationKeys(consumer, keys);
+
+        verify(entitler).bindByPoolQuantities(eq(consumer),
+            eq(quantities(pool1, 10, pool2, 10, pool3, 5)));
+        verify(entitler).bindByPoolQuantities(eq(consumer), eq(quantities(pool3, 5)));
+    }
+
+    @Test
+    public void registerRetriesOncePerRefusal() throws Exception {
+        List<ActivationKey> keys = new ArrayList<ActivationKey>();
+        ActivationKey key1 = new ActivationKey("key1", owner);
+        keys.add(key1);
+
+        Pool[] pools = new Pool[3];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = TestUtil.createPool(owner, TestUtil.createProduct(owner), 5);
+            pools[i].setId("pool" + (i + 1));
+            key1.addPool(pools[i], 1L);
+        }
+
+        Consumer consumer = new Consumer("sys.example.com", null, null, system);
+        // Each pass only reports the first pool it refuses
+        when(entitler.bindByPoolQuantities(eq(consumer), anyMapOf(String.class, Integer.class)))
+            .thenThrow(refused(pools[0]))
+            .thenThrow(refused(pools[1]))
+            .thenReturn(new ArrayList<Entitlement>());
+        when(entitler.getRefusalMessage(anyString(), any(EntitlementRefusedException.class)))
+            .thenReturn("No subscriptions are available");
+
+        Logger log = (Logger) LoggerFactory.getLogger(ConsumerBindUtil.class);
+        @SuppressWarnings("unchecked")
+        Appender<ILoggingEvent> appender = mock(Appender.class);
+        log.addAppender(appender);
+        try {
+            consumerBindUtil.handleActivationKeys(consumer, keys);
+        }
+        finally {
+            log.detachAppender(appender);
+        }
+
+        // Two refusals cost two passes on top of the one that goes through
+        verify(entitler).bindByPoolQuantities(eq(consumer),
+            eq(quantities(pools[0], 1, pools[1], 1, pools[2], 1)));
+        verify(entitler).bindByPoolQuantities(eq(consumer), eq(quantities(pools[1], 1, pools[2], 1)));
+        verify(entitler).bindByPoolQuantities(eq(consumer), eq(quantities(pools[2], 1)));
+        verify(entitler, times(3)).bindByPoolQuantities(eq(consumer),
+            anyMapOf(String.class, Integer.class));
+
+        ArgumentCaptor<ILoggingEvent> events = ArgumentCaptor.forClass(ILoggingEvent.class);
+        verify(appender, atLeastOnce()).doAppend(events.capture());
+        List<String> warnings = new ArrayList<String>();
+        for (ILoggingEvent event : events.getAllValues()) {
+            if (event.getLevel() == Level.WARN) {
+                warnings.add(event.getFormattedMessage());
+            }
+        }
+        assertEquals(Arrays.asList(
+            "Cannot bind to pool 'pool1' in activation key 'key1': No subscriptions are available",
+            "Cannot bind to pool 'pool2' in activation key 'key1': No subscriptions are available"),
+            warnings);
     }
 
     @Test
-    public void registerPassWithOneGoodKey() {
+    public void registerPassWithOneGoodKey() throws Exception {
         List<ActivationKey> keys = new ArrayList<ActivationKey>();
         ActivationKey key1 = new ActivationKey("key1", owner);
         ActivationKey key2 = new ActivationKey("key2", owner);
@@ -261,11 +350,43 @@ public class ConsumerBindUtilTest {
         key2.addPool(pool3, 5L);
 
         Consumer consumer = new Consumer("sys.example.com", null, null, system);
-        when(entitler.bindByPoolQuantity(eq(consumer), eq(pool1.getId()), eq(10)))
-            .thenThrow(new ForbiddenException("fail"));
-        when(entitler.bindByPoolQuantity(eq(consumer), eq(pool2.getId()), eq(10)))
-            .thenThrow(new ForbiddenException("fail"));
+        when(entitler.bindByPoolQuantities(eq(consumer), anyMapOf(String.class, Integer.class)))
+            .thenThrow(refused(pool1, pool2))
+            .thenReturn(new ArrayList<Entitlement>());
         consumerBindUtil.handleActivationKeys(consumer, keys);
+
+        verify(entitler).bindByPoolQuantities(eq(consumer),
+            eq(quantities(pool1, 10, pool2, 10, pool3, 5)));
+        verify(entitler).bindByPoolQuantities(eq(consumer), eq(quantities(pool3, 5)));
+    }
+
+    @Test
+    public void registerBindsPoolsOfAllKeysAtOnce() throws Exception {
+        List<ActivationKey> keys = new ArrayList<ActivationKey>();
+        ActivationKey key1 = new ActivationKey("key1", owner);
+        ActivationKey key2 = new ActivationKey("key2", owner);
+        keys.add(key1);
+        keys.add(key2);
+
+        Product prod1 = TestUtil.createProduct(owner);
+        Pool pool1 = TestUtil.createPool(owner, prod1, 5);
+        pool1.setId("pool1");
+        key1.addPool(pool1, 1L);
+        Product prod2 = TestUtil.createProduct(owner);
+        Pool pool2 = TestUtil.createPool(owner, prod2, 5);
+        pool2.setId("pool2");
+        key1.addPool(pool2, 2L);
+        key2.addPool(pool2, 3L);
+
+        Consumer consumer = new Consumer("sys.example.com", null, null, system);
+        consumerBindUtil.handleActivationKeys(consumer, keys);
+
+        // The pool on both keys is bound once for each key
+        verify(entitler).bindByPoolQuantities(eq(consumer), eq(quantities(pool1, 1, pool2, 2)));
+        verify(entitler).bindByPoolQuantities(eq(consumer), eq(quantities(pool2, 3)));
+        verify(entitler, times(2)).bindByPoolQuantities(eq(consumer),
+            anyMapOf(String.class, Integer.class));
+        verify(entitler, never()).bindByPoolQuantity(any(Consumer.class), anyString(), anyInt());
     }
 
 }
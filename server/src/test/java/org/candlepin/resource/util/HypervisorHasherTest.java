@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.resource.util;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.GuestId;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * HypervisorHasherTest
+ */
+public class HypervisorHasherTest {
+
+    private Consumer reported(String... guestIds) {
+        Consumer consumer = new Consumer();
+        consumer.setName("host");
+        consumer.setFact("uname.machine", "x86_64");
+        consumer.setGuestIds(new ArrayList<GuestId>());
+        for (String guestId : guestIds) {
+            consumer.addGuestId(new GuestId(guestId));
+        }
+        return consumer;
+    }
+
+    @Test
+    public void guestOrderDoesNotMatter() {
+        assertEquals(HypervisorHasher.hash(reported("a", "b", "c")),
+            HypervisorHasher.hash(reported("c", "a", "b")));
+    }
+
+    @Test
+    public void guestChangesChangeHash() {
+        String hash = HypervisorHasher.hash(reported("a", "b"));
+        assertFalse(hash.equals(HypervisorHasher.hash(reported("a"))));
+        assertFalse(hash.equals(HypervisorHasher.hash(reported("a", "B"))));
+        assertFalse(hash.equals(HypervisorHasher.hash(reported("a", "b", "c"))));
+    }
+
+    @Test
+    public void differentlySplitIdsDoNotCollide() {
+        assertFalse(HypervisorHasher.hash(reported("ab", "c")).equals(
+            HypervisorHasher.hash(reported("a", "bc"))));
+    }
+
+    @Test
+    public void guestAttributesAreHashed() {
+        Consumer withAttributes = reported("a");
+        Map<String, String> attributes = new HashMap<String, String>();
+        attributes.put("active", "1");
+        withAttributes.getGuestIds().get(0).setAttributes(attributes);
+        assertFalse(HypervisorHasher.hash(reported("a")).equals(HypervisorHasher.hash(withAttributes)));
+    }
+
+    @Test
+    public void factsAndNameAreHashed() {
+        String hash = HypervisorHasher.hash(reported("a"));
+
+        Consumer renamed = reported("a");
+        renamed.setName("other");
+        assertFalse(hash.equals(HypervisorHasher.hash(renamed)));
+
+        Consumer moreFacts = reported("a");
+        moreFacts.setFact("cpu.cpu_socket(s)", "2");
+        assertFalse(hash.equals(HypervisorHasher.hash(moreFacts)));
+    }
+
+    @Test
+    public void missingGuestListDiffersFromEmptyOne() {
+        Consumer withoutGuests = reported();
+        withoutGuests.setGuestIds(null);
+        assertFalse(HypervisorHasher.hash(reported()).equals(HypervisorHasher.hash(withoutGuests)));
+    }
+
+    @Test
+    public void otherUpdatesCanNotBeHashed() {
+        Consumer withTags = reported("a");
+        withTags.setContentTags(new HashSet<String>(Arrays.asList("tag")));
+        assertNull(HypervisorHasher.hash(withTags));
+
+        Consumer withServiceLevel = reported("a");
+        withServiceLevel.setServiceLevel("premium");
+        assertNull(HypervisorHasher.hash(withServiceLevel));
+    }
+}
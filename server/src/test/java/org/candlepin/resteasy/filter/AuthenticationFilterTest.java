@@ -26,6 +26,7 @@ import org.candlepin.common.auth.SecurityHole;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.NotAuthorizedException;
 import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.ConsumerCheckInRecorder;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.DeletedConsumerCurator;
 import org.candlepin.model.User;
@@ -62,7 +63,7 @@ import javax.ws.rs.container.ResourceInfo;
  */
 @RunWith(JukitoRunner.class)
 public class AuthenticationFilterTest extends DatabaseTestFixture {
-    @Inject private ConsumerCurator consumerCurator;
+    @Inject private ConsumerCheckInRecorder checkInRecorder;
     @Inject private DeletedConsumerCurator deletedConsumerCurator;
     @Inject private Provider<UserServiceAdapter> usaProvider;
     @Inject private Injector injector;
@@ -99,7 +100,7 @@ public class AuthenticationFilterTest extends DatabaseTestFixture {
         config.setProperty(ConfigProperties.BASIC_AUTHENTICATION, "true");
         config.setProperty(ConfigProperties.TRUSTED_AUTHENTICATION, "true");
 
-        interceptor = new AuthenticationFilter(config, consumerCurator, deletedConsumerCurator, injector);
+        interceptor = new AuthenticationFilter(config, checkInRecorder, deletedConsumerCurator, injector);
     }
 
     private void mockResourceMethod(Method method) {
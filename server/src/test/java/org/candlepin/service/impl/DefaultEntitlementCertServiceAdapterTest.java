@@ -194,7 +194,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
     }
 
     @Before
-    public void setUp() {
+    public void setUp() throws Exception {
         Injector injector = Guice.createInjector(
             new TestingModules.MockJpaModule(),
             new TestingModules.ServletEnvironmentModule(),
@@ -202,6 +202,8 @@ public class DefaultEntitlementCertServiceAdapterTest {
         );
         injector.injectMembers(this);
 
+        when(mockedPKI.getCACert()).thenReturn(realPKI.getCACert());
+
         v3extensionUtil = new X509V3ExtensionUtil(config, entCurator);
         certServiceAdapter = new DefaultEntitlementCertServiceAdapter(
             mockedPKI, extensionUtil, v3extensionUtil,
@@ -1615,6 +1617,78 @@ public class DefaultEntitlementCertServiceAdapterTest {
         assertTrue(!cert.getCert().contains("ENTITLEMENT DATA"));
     }
 
+    @Test
+    public void unchangedCertificateIsReused() throws Exception {
+        mockSerialAndKeys();
+
+        EntitlementCertificate first =
+            certServiceAdapter.generateEntitlementCert(entitlement, product);
+        EntitlementCertificate second =
+            certServiceAdapter.generateEntitlementCert(entitlement, product);
+
+        assertNotNull(first.getContentHash());
+        assertSame(first, second);
+        assertEquals(1, entitlement.getCertificates().size());
+        verify(serialCurator, times(1)).saveOrUpdateAll(anyMap());
+        verify(mockedPKI, times(1)).createX509Certificate(any(String.class), any(Set.class),
+            any(Set.class), any(Date.class), any(Date.class), any(KeyPair.class),
+            any(BigInteger.class), any(String.class));
+    }
+
+    @Test
+    public void changedCertificateIsRegenerated() throws Exception {
+        mockSerialAndKeys();
+
+        EntitlementCertificate first =
+            certServiceAdapter.generateEntitlementCert(entitlement, product);
+        first.setId("first");
+        product.setName("a renamed product");
+        EntitlementCertificate second =
+            certServiceAdapter.generateEntitlementCert(entitlement, product);
+
+        assertNotSame(first, second);
+        assertFalse(first.getContentHash().equals(second.getContentHash()));
+        verify(serialCurator, times(2)).saveOrUpdateAll(anyMap());
+    }
+
+    @Test
+    public void certificateSignedByAnotherCAIsRegenerated() throws Exception {
+        mockSerialAndKeys();
+
+        EntitlementCertificate first =
+            certServiceAdapter.generateEntitlementCert(entitlement, product);
+        first.setId("first");
+        X509Certificate otherCA = mock(X509Certificate.class);
+        when(otherCA.getEncoded()).thenReturn(new byte[] {1, 2, 3});
+        when(mockedPKI.getCACert()).thenReturn(otherCA);
+        EntitlementCertificate second =
+            certServiceAdapter.generateEntitlementCert(entitlement, product);
+
+        assertNotSame(first, second);
+        assertFalse(first.getContentHash().equals(second.getContentHash()));
+    }
+
+    private void mockSerialAndKeys() throws Exception {
+        KeyPair keyPair = new BouncyCastlePKIUtility(null, null, null).generateNewKeyPair();
+        when(keyPairCurator.getConsumerKeyPair(any(Consumer.class))).thenReturn(keyPair);
+        when(mockedPKI.getPemEncoded(any(X509Certificate.class))).thenReturn("".getBytes());
+        when(mockedPKI.getPemEncoded(any(Key.class))).thenReturn("".getBytes());
+
+        final CertificateSerial serial = mock(CertificateSerial.class);
+        when(serial.getId()).thenReturn(1L);
+
+        pool.setId("poolId");
+        doAnswer(new Answer<Map<String, CertificateSerial>>() {
+            @Override
+            public Map<String, CertificateSerial> answer(InvocationOnMock invocation) throws Throwable {
+                Object[] args = invocation.getArguments();
+                Map<String, CertificateSerial> map = (Map<String, CertificateSerial>) args[0];
+                map.put("poolId", serial);
+                return null;
+            }
+        }).when(serialCurator).saveOrUpdateAll(anyMap());
+    }
+
     @Test
     public void testContentExtension() throws IOException {
         Set<Product> products = new HashSet<Product>();
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.pki.X509ByteExtensionWrapper;
+import org.candlepin.pki.X509ExtensionWrapper;
+import org.candlepin.pki.impl.BouncyCastlePKIUtility;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.PublicKey;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * EntitlementCertificateHasherTest
+ */
+public class EntitlementCertificateHasherTest {
+
+    private byte[] issuer;
+    private PublicKey key;
+    private Date start;
+    private Date end;
+
+    @Before
+    public void setUp() throws Exception {
+        issuer = new byte[] {9};
+        key = new BouncyCastlePKIUtility(null, null, null).generateNewKeyPair().getPublic();
+        start = new Date(1000L);
+        end = new Date(2000L);
+    }
+
+    @Test
+    public void extensionOrderDoesNotMatter() {
+        Set<X509ExtensionWrapper> forward = new LinkedHashSet<X509ExtensionWrapper>();
+        forward.add(new X509ExtensionWrapper("1.1", false, "a"));
+        forward.add(new X509ExtensionWrapper("1.2", false, "b"));
+        Set<X509ExtensionWrapper> backward = new LinkedHashSet<X509ExtensionWrapper>();
+        backward.add(new X509ExtensionWrapper("1.2", false, "b"));
+        backward.add(new X509ExtensionWrapper("1.1", false, "a"));
+
+        assertEquals(hash(forward, new byte[] {1}), hash(backward, new byte[] {1}));
+    }
+
+    @Test
+    public void extensionValueChangesHash() {
+        Set<X509ExtensionWrapper> before = new LinkedHashSet<X509ExtensionWrapper>();
+        before.add(new X509ExtensionWrapper("1.1", false, "a"));
+        Set<X509ExtensionWrapper> after = new LinkedHashSet<X509ExtensionWrapper>();
+        after.add(new X509ExtensionWrapper("1.1", false, "b"));
+
+        assertFalse(hash(before, null).equals(hash(after, null)));
+    }
+
+    @Test
+    public void payloadAndDatesChangeHash() {
+        Set<X509ExtensionWrapper> extensions = new LinkedHashSet<X509ExtensionWrapper>();
+        String original = hash(extensions, new byte[] {1, 2});
+
+        assertFalse(original.equals(hash(extensions, new byte[] {1, 3})));
+        assertFalse(original.equals(hash(extensions, null)));
+
+        end = new Date(3000L);
+        assertFalse(original.equals(hash(extensions, new byte[] {1, 2})));
+    }
+
+    @Test
+    public void byteExtensionsChangeHash() {
+        Set<X509ExtensionWrapper> extensions = new LinkedHashSet<X509ExtensionWrapper>();
+        Set<X509ByteExtensionWrapper> bytes = new LinkedHashSet<X509ByteExtensionWrapper>();
+        bytes.add(new X509ByteExtensionWrapper("1.1", false, new byte[] {1}));
+
+        assertFalse(hash(extensions, null).equals(EntitlementCertificateHasher.hash(issuer,
+            "CN=ent", start, end, key, extensions, bytes, null)));
+    }
+
+    @Test
+    public void issuerChangesHash() {
+        Set<X509ExtensionWrapper> extensions = new LinkedHashSet<X509ExtensionWrapper>();
+        String original = hash(extensions, null);
+
+        issuer = new byte[] {9, 8};
+        assertFalse(original.equals(hash(extensions, null)));
+    }
+
+    private String hash(Set<X509ExtensionWrapper> extensions, byte[] payload) {
+        return EntitlementCertificateHasher.hash(issuer, "CN=ent", start, end, key,
+            extensions, new LinkedHashSet<X509ByteExtensionWrapper>(), payload);
+    }
+}
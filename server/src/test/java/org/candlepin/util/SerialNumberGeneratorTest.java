@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * SerialNumberGeneratorTest
+ */
+public class SerialNumberGeneratorTest {
+
+    @Test
+    public void serialsArePositiveAndUnique() {
+        SerialNumberGenerator generator = new SerialNumberGenerator();
+        Set<Long> serials = new HashSet<Long>();
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            Long serial = (Long) generator.generate(null, null);
+            assertTrue(serial > 0);
+            serials.add(serial);
+        }
+        assertEquals(count, serials.size());
+    }
+}